@@ -19,6 +19,7 @@
 package org.eclipse.jetty.client;
 
 import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.eclipse.jetty.client.api.Connection;
@@ -97,7 +98,35 @@ public abstract class AbstractConnectionPool implements ConnectionPool, Dumpable
         return connection;
     }
 
+    /**
+     * <p>Opens, in the background, the given number of new connections,
+     * up to the max number of connections.</p>
+     * <p>Differently from the connections opened on demand by {@link #acquire()},
+     * these connections are not bounded by the number of pending connections,
+     * and are added to this pool as idle connections, ready to be used by
+     * subsequent requests without paying the cost of opening a connection.</p>
+     *
+     * @param connectionCount the number of connections to open
+     * @return a CompletableFuture that is completed when all the connections have been opened
+     */
+    public CompletableFuture<Void> preCreateConnections(int connectionCount)
+    {
+        CompletableFuture<?>[] futures = new CompletableFuture[connectionCount];
+        for (int i = 0; i < connectionCount; ++i)
+        {
+            futures[i] = new CompletableFuture<>();
+            if (!tryCreate(-1, futures[i]))
+                futures[i].complete(null);
+        }
+        return CompletableFuture.allOf(futures);
+    }
+
     protected void tryCreate(int maxPending)
+    {
+        tryCreate(maxPending, null);
+    }
+
+    private boolean tryCreate(int maxPending, CompletableFuture<?> future)
     {
         while (true)
         {
@@ -109,10 +138,10 @@ public abstract class AbstractConnectionPool implements ConnectionPool, Dumpable
                 LOG.debug("tryCreate {}/{} connections {}/{} pending", total, maxConnections, pending, maxPending);
 
             if (total >= maxConnections)
-                return;
+                return false;
 
             if (maxPending >= 0 && pending >= maxPending)
-                return;
+                return false;
 
             if (connections.compareAndSet(encoded, pending + 1, total + 1))
             {
@@ -128,6 +157,8 @@ public abstract class AbstractConnectionPool implements ConnectionPool, Dumpable
                             LOG.debug("Connection {}/{} creation succeeded {}", total + 1, maxConnections, connection);
                         connections.add(-1, 0);
                         onCreated(connection);
+                        if (future != null)
+                            future.complete(null);
                         proceed();
                     }
 
@@ -137,11 +168,13 @@ public abstract class AbstractConnectionPool implements ConnectionPool, Dumpable
                         if (LOG.isDebugEnabled())
                             LOG.debug("Connection " + (total + 1) + "/" + maxConnections + " creation failed", x);
                         connections.add(-1, -1);
+                        if (future != null)
+                            future.completeExceptionally(x);
                         requester.failed(x);
                     }
                 });
 
-                return;
+                return true;
             }
         }
     }
@@ -187,6 +220,15 @@ public abstract class AbstractConnectionPool implements ConnectionPool, Dumpable
     {
     }
 
+    /**
+     * @return a copy of the idle connections of this pool,
+     * or null if this pool does not track idle connections
+     */
+    protected Collection<Connection> idleConnections()
+    {
+        return null;
+    }
+
     protected void removed(Connection connection)
     {
         int pooled = connections.addAndGetLo(-1);
@@ -0,0 +1,538 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under
+// the terms of the Eclipse Public License 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0
+//
+// This Source Code may also be made available under the following
+// Secondary Licenses when the conditions for such availability set
+// forth in the Eclipse Public License, v. 2.0 are satisfied:
+// the Apache License v2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.client;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.client.api.Connection;
+import org.eclipse.jetty.util.AtomicBiInteger;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.component.Dumpable;
+import org.eclipse.jetty.util.component.DumpableCollection;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+import org.eclipse.jetty.util.thread.Sweeper;
+
+/**
+ * <p>A {@link ConnectionPool} that does not use locks.</p>
+ * <p>Connections are stored in a fixed size array of slots, one per
+ * {@link #getMaxConnectionCount() connection}; each slot holds an entry whose
+ * state (usage count and number of concurrent requests) is updated with
+ * compare-and-set operations, so that threads acquiring and releasing
+ * connections never block each other.</p>
+ * <p>When {@link #isThreadAffinity() thread affinity} is enabled, each thread
+ * first tries to acquire the connection it used last, which improves cache
+ * locality and reduces contention on the first slots.</p>
+ * <p>Connections can be retired after a {@link #getMaxUsageCount() number of uses}
+ * or after a {@link #getMaxAge() max age}: a retired connection is not acquired
+ * anymore and is closed when its last request completes.</p>
+ */
+@ManagedObject
+public class ConcurrentConnectionPool extends AbstractConnectionPool implements ConnectionPool.Multiplexable, Sweeper.Sweepable
+{
+    private static final Logger LOG = Log.getLogger(ConcurrentConnectionPool.class);
+
+    private final LongAdder acquires = new LongAdder();
+    private final LongAdder acquireNanos = new LongAdder();
+    private final LongAccumulator maxAcquireNanos = new LongAccumulator(Math::max, 0);
+    private final LongAdder contentions = new LongAdder();
+    private final LongAdder retirements = new LongAdder();
+    private final ThreadLocal<Entry> lastEntry = new ThreadLocal<>();
+    private final HttpDestination destination;
+    private final AtomicReferenceArray<Entry> slots;
+    private volatile int maxMultiplex;
+    private volatile int maxUsageCount;
+    private volatile long maxAge;
+    private volatile boolean threadAffinity;
+
+    public ConcurrentConnectionPool(HttpDestination destination, int maxConnections, Callback requester)
+    {
+        this(destination, maxConnections, requester, 1);
+    }
+
+    public ConcurrentConnectionPool(HttpDestination destination, int maxConnections, Callback requester, int maxMultiplex)
+    {
+        super(destination, maxConnections, requester);
+        this.destination = destination;
+        this.slots = new AtomicReferenceArray<>(maxConnections);
+        this.maxMultiplex = maxMultiplex;
+    }
+
+    @Override
+    @ManagedAttribute(value = "The max number of concurrent requests per connection")
+    public int getMaxMultiplex()
+    {
+        return maxMultiplex;
+    }
+
+    @Override
+    public void setMaxMultiplex(int maxMultiplex)
+    {
+        this.maxMultiplex = maxMultiplex;
+    }
+
+    /**
+     * @return the max number of times a connection is used before being retired, or a non-positive value for no limit
+     */
+    @ManagedAttribute("The max number of times a connection is used before being retired")
+    public int getMaxUsageCount()
+    {
+        return maxUsageCount;
+    }
+
+    /**
+     * @param maxUsageCount the max number of times a connection is used before being retired, or a non-positive value for no limit
+     */
+    public void setMaxUsageCount(int maxUsageCount)
+    {
+        this.maxUsageCount = maxUsageCount;
+    }
+
+    /**
+     * @return the max age in milliseconds of a connection before being retired, or a non-positive value for no limit
+     */
+    @ManagedAttribute("The max age in milliseconds of a connection before being retired")
+    public long getMaxAge()
+    {
+        return maxAge;
+    }
+
+    /**
+     * <p>Sets the max age in milliseconds of connections.</p>
+     * <p>Connections older than the max age are not acquired anymore and are
+     * closed when released, or when found idle while acquiring a connection.</p>
+     *
+     * @param maxAge the max age in milliseconds of a connection before being retired, or a non-positive value for no limit
+     */
+    public void setMaxAge(long maxAge)
+    {
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * @return whether threads first try to acquire the connection they used last
+     */
+    @ManagedAttribute("Whether threads first try to acquire the connection they used last")
+    public boolean isThreadAffinity()
+    {
+        return threadAffinity;
+    }
+
+    /**
+     * @param threadAffinity whether threads first try to acquire the connection they used last
+     */
+    public void setThreadAffinity(boolean threadAffinity)
+    {
+        this.threadAffinity = threadAffinity;
+    }
+
+    @ManagedAttribute(value = "The number of idle connections", readonly = true)
+    public int getIdleConnectionCount()
+    {
+        int result = 0;
+        for (int i = 0; i < slots.length(); ++i)
+        {
+            Entry entry = slots.get(i);
+            if (entry != null && entry.isIdle())
+                ++result;
+        }
+        return result;
+    }
+
+    @ManagedAttribute(value = "The number of active connections", readonly = true)
+    public int getActiveConnectionCount()
+    {
+        int result = 0;
+        for (int i = 0; i < slots.length(); ++i)
+        {
+            Entry entry = slots.get(i);
+            if (entry != null && entry.isActive())
+                ++result;
+        }
+        return result;
+    }
+
+    @ManagedAttribute(value = "The number of successful connection acquisitions", readonly = true)
+    public long getAcquireCount()
+    {
+        return acquires.sum();
+    }
+
+    @ManagedAttribute(value = "The average time in nanoseconds to acquire a connection", readonly = true)
+    public long getAverageAcquireNanos()
+    {
+        long count = acquires.sum();
+        return count == 0 ? 0 : acquireNanos.sum() / count;
+    }
+
+    @ManagedAttribute(value = "The max time in nanoseconds to acquire a connection", readonly = true)
+    public long getMaxAcquireNanos()
+    {
+        return maxAcquireNanos.get();
+    }
+
+    @ManagedAttribute(value = "The number of failed compare-and-set attempts due to concurrent updates", readonly = true)
+    public long getContentionCount()
+    {
+        return contentions.sum();
+    }
+
+    @ManagedAttribute(value = "The number of connections retired because of max usage or max age", readonly = true)
+    public long getRetiredConnectionCount()
+    {
+        return retirements.sum();
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void resetStats()
+    {
+        acquires.reset();
+        acquireNanos.reset();
+        maxAcquireNanos.reset();
+        contentions.reset();
+        retirements.reset();
+    }
+
+    @Override
+    public Connection acquire()
+    {
+        Connection connection = activate();
+        if (connection == null)
+        {
+            int maxPending = 1 + destination.getQueuedRequestCount() / getMaxMultiplex();
+            tryCreate(maxPending);
+            connection = activate();
+        }
+        return connection;
+    }
+
+    @Override
+    protected void onCreated(Connection connection)
+    {
+        Entry entry = new Entry(connection);
+        for (int i = 0; i < slots.length(); ++i)
+        {
+            if (slots.get(i) == null && slots.compareAndSet(i, null, entry))
+            {
+                idle(connection, false);
+                return;
+            }
+        }
+        // Cannot happen, as the number of connections is bounded
+        // by the number of slots, but close the connection anyway.
+        if (LOG.isDebugEnabled())
+            LOG.debug("No slot available for {}", connection);
+        removed(connection);
+        connection.close();
+    }
+
+    @Override
+    protected Connection activate()
+    {
+        long begin = System.nanoTime();
+        Entry entry = null;
+        boolean affinity = isThreadAffinity();
+        if (affinity)
+        {
+            Entry last = lastEntry.get();
+            if (last != null && tryAcquire(last))
+                entry = last;
+        }
+        if (entry == null)
+        {
+            int length = slots.length();
+            // Without affinity, start from the first slot to reuse hot connections,
+            // otherwise spread the threads across the slots to reduce contention.
+            int start = affinity ? (int)(Thread.currentThread().getId() % length) : 0;
+            for (int i = 0; i < length; ++i)
+            {
+                int index = start + i;
+                if (index >= length)
+                    index -= length;
+                Entry candidate = slots.get(index);
+                if (candidate != null && tryAcquire(candidate))
+                {
+                    entry = candidate;
+                    break;
+                }
+            }
+        }
+        if (entry == null)
+            return null;
+
+        long elapsed = System.nanoTime() - begin;
+        acquires.increment();
+        acquireNanos.add(elapsed);
+        maxAcquireNanos.accumulate(elapsed);
+        if (affinity)
+            lastEntry.set(entry);
+        return active(entry.connection);
+    }
+
+    private boolean tryAcquire(Entry entry)
+    {
+        if (entry.tryAcquire())
+            return true;
+        if (entry.tryRetire())
+        {
+            retirements.increment();
+            if (LOG.isDebugEnabled())
+                LOG.debug("Idle connection retired {}", entry);
+            // Close outside of the acquire path, as closing
+            // the connection removes it from this pool.
+            destination.getHttpClient().getExecutor().execute(entry.connection::close);
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isActive(Connection connection)
+    {
+        Entry entry = find(connection);
+        return entry != null && entry.isActive();
+    }
+
+    @Override
+    protected Collection<Connection> idleConnections()
+    {
+        List<Connection> result = new ArrayList<>();
+        for (int i = 0; i < slots.length(); ++i)
+        {
+            Entry entry = slots.get(i);
+            if (entry != null && entry.isIdle())
+                result.add(entry.connection);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean release(Connection connection)
+    {
+        Entry entry = find(connection);
+        if (entry == null)
+            return false;
+
+        while (true)
+        {
+            long encoded = entry.state.get();
+            int usage = AtomicBiInteger.getHi(encoded);
+            int active = AtomicBiInteger.getLo(encoded);
+            if (usage < 0 || active == 0)
+                return false;
+
+            --active;
+            boolean retire = active == 0 && entry.isRetired(usage);
+            if (entry.state.compareAndSet(encoded, retire ? -1 : usage, active))
+            {
+                released(connection);
+                if (retire)
+                {
+                    retirements.increment();
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("Connection retired {}", entry);
+                    return false;
+                }
+                boolean closed = isClosed();
+                if (active == 0 || closed)
+                    return idle(connection, closed);
+                return true;
+            }
+            contentions.increment();
+        }
+    }
+
+    @Override
+    public boolean remove(Connection connection)
+    {
+        return remove(connection, false);
+    }
+
+    protected boolean remove(Connection connection, boolean force)
+    {
+        for (int i = 0; i < slots.length(); ++i)
+        {
+            Entry entry = slots.get(i);
+            if (entry != null && entry.connection == connection && slots.compareAndSet(i, entry, null))
+            {
+                long encoded = entry.state.getAndSet(AtomicBiInteger.encode(-1, 0));
+                if (AtomicBiInteger.getLo(encoded) > 0 || force)
+                    released(connection);
+                removed(connection);
+                return true;
+            }
+        }
+        if (force)
+        {
+            released(connection);
+            removed(connection);
+        }
+        return force;
+    }
+
+    private Entry find(Connection connection)
+    {
+        for (int i = 0; i < slots.length(); ++i)
+        {
+            Entry entry = slots.get(i);
+            if (entry != null && entry.connection == connection)
+                return entry;
+        }
+        return null;
+    }
+
+    private List<Entry> entries()
+    {
+        List<Entry> result = new ArrayList<>(slots.length());
+        for (int i = 0; i < slots.length(); ++i)
+        {
+            Entry entry = slots.get(i);
+            if (entry != null)
+                result.add(entry);
+        }
+        return result;
+    }
+
+    @Override
+    public void close()
+    {
+        super.close();
+        List<Connection> connections = new ArrayList<>();
+        for (Entry entry : entries())
+        {
+            connections.add(entry.connection);
+        }
+        close(connections);
+    }
+
+    @Override
+    public void dump(Appendable out, String indent) throws IOException
+    {
+        Dumpable.dumpObjects(out, indent, this, new DumpableCollection("entries", entries()));
+    }
+
+    @Override
+    public boolean sweep()
+    {
+        for (Entry entry : entries())
+        {
+            Connection connection = entry.connection;
+            if (entry.isActive() && connection instanceof Sweeper.Sweepable && ((Sweeper.Sweepable)connection).sweep())
+            {
+                boolean removed = remove(connection, true);
+                LOG.warn("Connection swept: {}{}{} from active connections{}{}",
+                    connection,
+                    System.lineSeparator(),
+                    removed ? "Removed" : "Not removed",
+                    System.lineSeparator(),
+                    dump());
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[connections=%d/%d/%d,multiplex=%d,active=%d,idle=%d]",
+            getClass().getSimpleName(),
+            hashCode(),
+            getPendingConnectionCount(),
+            getConnectionCount(),
+            getMaxConnectionCount(),
+            getMaxMultiplex(),
+            getActiveConnectionCount(),
+            getIdleConnectionCount());
+    }
+
+    private class Entry
+    {
+        private final long created = System.nanoTime();
+        // The hi word is the usage count, or -1 if this entry is retired
+        // or removed; the lo word is the number of concurrent requests.
+        private final AtomicBiInteger state = new AtomicBiInteger();
+        private final Connection connection;
+
+        private Entry(Connection connection)
+        {
+            this.connection = connection;
+        }
+
+        private boolean tryAcquire()
+        {
+            while (true)
+            {
+                long encoded = state.get();
+                int usage = AtomicBiInteger.getHi(encoded);
+                int active = AtomicBiInteger.getLo(encoded);
+                if (usage < 0 || active >= getMaxMultiplex() || isRetired(usage))
+                    return false;
+                if (state.compareAndSet(encoded, usage + 1, active + 1))
+                    return true;
+                contentions.increment();
+            }
+        }
+
+        private boolean tryRetire()
+        {
+            long encoded = state.get();
+            int usage = AtomicBiInteger.getHi(encoded);
+            int active = AtomicBiInteger.getLo(encoded);
+            if (usage < 0 || active > 0 || !isRetired(usage))
+                return false;
+            return state.compareAndSet(encoded, -1, 0);
+        }
+
+        private boolean isRetired(int usage)
+        {
+            int maxUsage = getMaxUsageCount();
+            if (maxUsage > 0 && usage >= maxUsage)
+                return true;
+            long maxAge = getMaxAge();
+            return maxAge > 0 && System.nanoTime() - created >= TimeUnit.MILLISECONDS.toNanos(maxAge);
+        }
+
+        private boolean isActive()
+        {
+            return state.getLo() > 0;
+        }
+
+        private boolean isIdle()
+        {
+            long encoded = state.get();
+            return AtomicBiInteger.getHi(encoded) >= 0 && AtomicBiInteger.getLo(encoded) == 0;
+        }
+
+        @Override
+        public String toString()
+        {
+            long encoded = state.get();
+            return String.format("%s[u=%d,a=%d]", connection, AtomicBiInteger.getHi(encoded), AtomicBiInteger.getLo(encoded));
+        }
+    }
+}
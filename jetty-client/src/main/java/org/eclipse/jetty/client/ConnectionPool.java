@@ -21,6 +21,7 @@ package org.eclipse.jetty.client;
 import java.io.Closeable;
 
 import org.eclipse.jetty.client.api.Connection;
+import org.eclipse.jetty.util.Callback;
 
 /**
  * <p>Client-side connection pool abstraction.</p>
@@ -102,4 +103,18 @@ public interface ConnectionPool extends Closeable
          */
         void setMaxMultiplex(int maxMultiplex);
     }
+
+    /**
+     * Marks a connection as able to verify, while idle in the pool,
+     * that the remote peer is still responsive, for example by sending
+     * a HTTP/2 {@code PING} frame.
+     */
+    interface Pingable
+    {
+        /**
+         * @param callback the callback to succeed when the remote peer replies,
+         * or to fail if the ping cannot be sent
+         */
+        void ping(Callback callback);
+    }
 }
@@ -156,6 +156,20 @@ public class DuplexConnectionPool extends AbstractConnectionPool implements Swee
         return active(connection);
     }
 
+    @Override
+    protected Collection<Connection> idleConnections()
+    {
+        lock();
+        try
+        {
+            return new ArrayList<>(idleConnections);
+        }
+        finally
+        {
+            unlock();
+        }
+    }
+
     @Override
     public boolean release(Connection connection)
     {
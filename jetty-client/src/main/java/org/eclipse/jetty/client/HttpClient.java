@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.net.CookieManager;
 import java.net.CookiePolicy;
 import java.net.CookieStore;
+import java.net.Inet6Address;
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.SocketAddress;
@@ -132,17 +133,21 @@ public class HttpClient extends ContainerLifeCycle
     private final HttpClientTransport transport;
     private final ClientConnector connector;
     private AuthenticationStore authenticationStore = new HttpAuthenticationStore();
+    private HttpResponseCache responseCache;
     private CookieManager cookieManager;
     private CookieStore cookieStore;
     private SocketAddressResolver resolver;
     private HttpField agentField = new HttpField(HttpHeader.USER_AGENT, USER_AGENT);
     private boolean followRedirects = true;
     private int maxConnectionsPerDestination = 64;
+    private int minIdleConnectionsPerDestination;
+    private long connectionMaintenanceInterval = 5000;
     private int maxRequestsQueuedPerDestination = 1024;
     private int requestBufferSize = 4096;
     private int responseBufferSize = 16384;
     private int maxRedirects = 8;
     private long addressResolutionTimeout = 15000;
+    private long connectionAttemptDelay;
     private boolean tcpNoDelay = true;
     private boolean strictEventOrdering = false;
     private HttpField encodingField;
@@ -216,6 +221,8 @@ public class HttpClient extends ContainerLifeCycle
         handlers.put(new RedirectProtocolHandler(this));
         handlers.put(new WWWAuthenticationProtocolHandler(this));
         handlers.put(new ProxyAuthenticationProtocolHandler(this));
+        if (responseCache != null)
+            handlers.put(responseCache.getProtocolHandler());
 
         decoderFactories.add(new GZIPContentDecoder.Factory(byteBufferPool));
 
@@ -309,6 +316,25 @@ public class HttpClient extends ContainerLifeCycle
         this.authenticationStore = authenticationStore;
     }
 
+    /**
+     * @return the response cache associated with this instance, or null if responses are not cached
+     */
+    public HttpResponseCache getResponseCache()
+    {
+        return responseCache;
+    }
+
+    /**
+     * @param responseCache the response cache associated with this instance, or null to not cache responses
+     */
+    public void setResponseCache(HttpResponseCache responseCache)
+    {
+        if (isStarted())
+            throw new IllegalStateException();
+        updateBean(this.responseCache, responseCache);
+        this.responseCache = responseCache;
+    }
+
     /**
      * Returns a <em>non</em> thread-safe set of {@link ContentDecoder.Factory}s that can be modified before
      * performing requests.
@@ -552,6 +578,13 @@ public class HttpClient extends ContainerLifeCycle
 
     protected void send(final HttpRequest request, List<Response.ResponseListener> listeners)
     {
+        HttpResponseCache cache = getResponseCache();
+        if (cache != null)
+        {
+            listeners = cache.send(request, listeners);
+            if (listeners == null)
+                return;
+        }
         HttpDestination destination = (HttpDestination)resolveDestination(request);
         destination.send(request, listeners);
     }
@@ -567,7 +600,11 @@ public class HttpClient extends ContainerLifeCycle
                 Map<String, Object> context = new HashMap<>();
                 context.put(ClientConnectionFactory.CLIENT_CONTEXT_KEY, HttpClient.this);
                 context.put(HttpClientTransport.HTTP_DESTINATION_CONTEXT_KEY, destination);
-                connect(socketAddresses, 0, context);
+                long delay = getConnectionAttemptDelay();
+                if (delay > 0 && socketAddresses.size() > 1)
+                    new ConnectionAttempts(interleave(socketAddresses), context, promise, delay).connect();
+                else
+                    connect(socketAddresses, 0, context);
             }
 
             @Override
@@ -595,6 +632,33 @@ public class HttpClient extends ContainerLifeCycle
         });
     }
 
+    /**
+     * <p>Interleaves the given addresses by address family, preserving
+     * the order within each family, as specified by RFC 8305.</p>
+     */
+    private static List<InetSocketAddress> interleave(List<InetSocketAddress> addresses)
+    {
+        List<InetSocketAddress> first = new ArrayList<>();
+        List<InetSocketAddress> second = new ArrayList<>();
+        boolean firstIPv6 = addresses.get(0).getAddress() instanceof Inet6Address;
+        for (InetSocketAddress address : addresses)
+        {
+            if ((address.getAddress() instanceof Inet6Address) == firstIPv6)
+                first.add(address);
+            else
+                second.add(address);
+        }
+        List<InetSocketAddress> result = new ArrayList<>(addresses.size());
+        for (int i = 0; i < Math.max(first.size(), second.size()); ++i)
+        {
+            if (i < first.size())
+                result.add(first.get(i));
+            if (i < second.size())
+                result.add(second.get(i));
+        }
+        return result;
+    }
+
     private HttpConversation newConversation()
     {
         return new HttpConversation();
@@ -688,6 +752,35 @@ public class HttpClient extends ContainerLifeCycle
         this.addressResolutionTimeout = addressResolutionTimeout;
     }
 
+    /**
+     * @return the delay, in milliseconds, before connecting to the next resolved address
+     * while the previous connection attempts are still in progress, or zero to connect
+     * to the next address only after the previous attempt failed
+     */
+    @ManagedAttribute("The delay, in milliseconds, before connecting to the next address in parallel")
+    public long getConnectionAttemptDelay()
+    {
+        return connectionAttemptDelay;
+    }
+
+    /**
+     * <p>Sets the delay before connecting to the next resolved address in parallel,
+     * as described by the "Happy Eyeballs" algorithm of RFC 8305.</p>
+     * <p>When this delay is positive and a host resolves to multiple addresses,
+     * the addresses are interleaved by address family (IPv6 and IPv4), and if
+     * the connection to an address does not complete within this delay, a
+     * connection to the next address is attempted in parallel; the first
+     * connection that completes is used and the others are closed.
+     * The recommended value is 250 milliseconds.</p>
+     *
+     * @param connectionAttemptDelay the delay, in milliseconds, before connecting to the next address in parallel,
+     * or zero to connect to the next address only after the previous attempt failed
+     */
+    public void setConnectionAttemptDelay(long connectionAttemptDelay)
+    {
+        this.connectionAttemptDelay = connectionAttemptDelay;
+    }
+
     /**
      * @return the max time, in milliseconds, a connection can be idle (that is, without traffic of bytes in either direction)
      */
@@ -837,6 +930,58 @@ public class HttpClient extends ContainerLifeCycle
         this.maxConnectionsPerDestination = maxConnectionsPerDestination;
     }
 
+    /**
+     * @return the min number of idle connections that are kept open for each destination
+     * @see #setMinIdleConnectionsPerDestination(int)
+     */
+    @ManagedAttribute("The min number of idle connections per destination")
+    public int getMinIdleConnectionsPerDestination()
+    {
+        return minIdleConnectionsPerDestination;
+    }
+
+    /**
+     * <p>Sets the min number of idle connections that are kept open for each destination.</p>
+     * <p>Destinations periodically open, in the background, new connections when the number
+     * of idle connections falls below this value, for example after connections have been
+     * closed by the idle timeout, so that requests sent after a quiet period do not pay the
+     * cost of opening connections (including the TLS handshake and the ALPN negotiation).
+     * TLS connections opened in the background are resumed from the TLS sessions cached by
+     * the {@link SslContextFactory}, if its session caching is enabled.</p>
+     * <p>Idle connections that support it (for example HTTP/2 connections) are also pinged
+     * to verify that they are still responsive, and closed if they do not reply in time.</p>
+     *
+     * @param minIdleConnectionsPerDestination the min number of idle connections per destination,
+     * or zero to disable the maintenance of idle connections
+     * @see #setConnectionMaintenanceInterval(long)
+     */
+    public void setMinIdleConnectionsPerDestination(int minIdleConnectionsPerDestination)
+    {
+        this.minIdleConnectionsPerDestination = minIdleConnectionsPerDestination;
+    }
+
+    /**
+     * @return the interval, in milliseconds, at which destinations maintain their idle connections
+     * @see #setConnectionMaintenanceInterval(long)
+     */
+    @ManagedAttribute("The interval, in milliseconds, at which idle connections are maintained")
+    public long getConnectionMaintenanceInterval()
+    {
+        return connectionMaintenanceInterval;
+    }
+
+    /**
+     * <p>Sets the interval at which destinations maintain their idle connections,
+     * which is also the time idle connections have to reply to pings.</p>
+     *
+     * @param connectionMaintenanceInterval the interval, in milliseconds, at which idle connections are maintained
+     * @see #setMinIdleConnectionsPerDestination(int)
+     */
+    public void setConnectionMaintenanceInterval(long connectionMaintenanceInterval)
+    {
+        this.connectionMaintenanceInterval = connectionMaintenanceInterval;
+    }
+
     /**
      * @return the max number of requests that may be queued to a {@link Destination}.
      */
@@ -1283,4 +1428,107 @@ public class HttpClient extends ContainerLifeCycle
             }
         }
     }
+
+    /**
+     * <p>Connects to a list of addresses, starting a connection attempt to the next
+     * address when the previous attempt fails or does not complete within a delay.</p>
+     */
+    private class ConnectionAttempts
+    {
+        private final List<InetSocketAddress> addresses;
+        private final Map<String, Object> context;
+        private final Promise<Connection> promise;
+        private final long delay;
+        private int next;
+        private int pending;
+        private boolean complete;
+        private Scheduler.Task task;
+
+        private ConnectionAttempts(List<InetSocketAddress> addresses, Map<String, Object> context, Promise<Connection> promise, long delay)
+        {
+            this.addresses = addresses;
+            this.context = context;
+            this.promise = promise;
+            this.delay = delay;
+        }
+
+        private void connect()
+        {
+            InetSocketAddress address;
+            Scheduler.Task task;
+            synchronized (this)
+            {
+                if (complete || next == addresses.size())
+                    return;
+                address = addresses.get(next++);
+                ++pending;
+                task = this.task;
+                this.task = next < addresses.size() ? getScheduler().schedule(this::connect, delay, TimeUnit.MILLISECONDS) : null;
+            }
+            if (task != null)
+                task.cancel();
+
+            if (LOG.isDebugEnabled())
+                LOG.debug("Connection attempt to {}", address);
+            Map<String, Object> attemptContext = new HashMap<>(context);
+            attemptContext.put(HttpClientTransport.HTTP_CONNECTION_PROMISE_CONTEXT_KEY, new Promise<Connection>()
+            {
+                @Override
+                public void succeeded(Connection connection)
+                {
+                    if (win())
+                    {
+                        promise.succeeded(connection);
+                    }
+                    else
+                    {
+                        if (LOG.isDebugEnabled())
+                            LOG.debug("Closing connection attempt to {} that completed late", address);
+                        connection.close();
+                    }
+                }
+
+                @Override
+                public void failed(Throwable x)
+                {
+                    if (fail())
+                        promise.failed(x);
+                    else
+                        connect();
+                }
+            });
+            transport.connect(address, attemptContext);
+        }
+
+        private boolean win()
+        {
+            Scheduler.Task task;
+            synchronized (this)
+            {
+                --pending;
+                if (complete)
+                    return false;
+                complete = true;
+                task = this.task;
+            }
+            if (task != null)
+                task.cancel();
+            return true;
+        }
+
+        /**
+         * @return whether all the connection attempts failed
+         */
+        private boolean fail()
+        {
+            synchronized (this)
+            {
+                --pending;
+                if (complete || next < addresses.size() || pending > 0)
+                    return false;
+                complete = true;
+                return true;
+            }
+        }
+    }
 }
@@ -22,11 +22,13 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.nio.channels.AsynchronousCloseException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.eclipse.jetty.client.api.Connection;
@@ -66,6 +68,7 @@ public abstract class HttpDestination extends ContainerLifeCycle implements Dest
     private final ClientConnectionFactory connectionFactory;
     private final HttpField hostField;
     private final TimeoutTask timeout;
+    private final MaintenanceTask maintenance;
     private ConnectionPool connectionPool;
 
     public HttpDestination(HttpClient client, Origin origin)
@@ -79,6 +82,7 @@ public abstract class HttpDestination extends ContainerLifeCycle implements Dest
         this.responseNotifier = new ResponseNotifier();
 
         this.timeout = new TimeoutTask(client.getScheduler());
+        this.maintenance = new MaintenanceTask(client.getScheduler());
 
         ProxyConfiguration proxyConfig = client.getProxyConfiguration();
         proxy = proxyConfig.match(origin);
@@ -114,11 +118,13 @@ public abstract class HttpDestination extends ContainerLifeCycle implements Dest
         Sweeper sweeper = client.getBean(Sweeper.class);
         if (sweeper != null && connectionPool instanceof Sweeper.Sweepable)
             sweeper.offer((Sweeper.Sweepable)connectionPool);
+        maintenance.schedule();
     }
 
     @Override
     protected void doStop() throws Exception
     {
+        maintenance.cancel();
         Sweeper sweeper = client.getBean(Sweeper.class);
         if (sweeper != null && connectionPool instanceof Sweeper.Sweepable)
             sweeper.remove((Sweeper.Sweepable)connectionPool);
@@ -400,12 +406,16 @@ public abstract class HttpDestination extends ContainerLifeCycle implements Dest
             LOG.debug("Closed {}", this);
         connectionPool.close();
         timeout.destroy();
+        maintenance.destroy();
     }
 
     public void close(Connection connection)
     {
         boolean removed = remove(connection);
 
+        if (removed)
+            replenishIdleConnections();
+
         if (getHttpExchanges().isEmpty())
         {
             tryRemoveIdleDestination();
@@ -467,6 +477,56 @@ public abstract class HttpDestination extends ContainerLifeCycle implements Dest
             tryRemoveIdleDestination();
     }
 
+    /**
+     * <p>Opens, in the background, new connections if the number of idle
+     * connections is below {@link HttpClient#getMinIdleConnectionsPerDestination()}.</p>
+     */
+    protected void replenishIdleConnections()
+    {
+        int minIdle = client.getMinIdleConnectionsPerDestination();
+        if (minIdle <= 0 || !client.isRunning() || !(connectionPool instanceof AbstractConnectionPool))
+            return;
+        AbstractConnectionPool pool = (AbstractConnectionPool)connectionPool;
+        if (pool.isClosed())
+            return;
+        Collection<Connection> idle = pool.idleConnections();
+        if (idle == null)
+            return;
+        int missing = minIdle - idle.size() - pool.getPendingConnectionCount();
+        if (missing > 0)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Opening {} idle connections for {}", missing, this);
+            pool.preCreateConnections(missing);
+        }
+    }
+
+    /**
+     * <p>Pings the idle connections that support it, up to
+     * {@link HttpClient#getMinIdleConnectionsPerDestination()},
+     * closing those that do not reply within
+     * {@link HttpClient#getConnectionMaintenanceInterval()}.</p>
+     * <p>Idle connections in excess of the min number are not pinged,
+     * so that they can eventually be closed by the idle timeout.</p>
+     */
+    protected void pingIdleConnections()
+    {
+        int minIdle = client.getMinIdleConnectionsPerDestination();
+        if (minIdle <= 0 || !(connectionPool instanceof AbstractConnectionPool))
+            return;
+        Collection<Connection> idle = ((AbstractConnectionPool)connectionPool).idleConnections();
+        if (idle == null)
+            return;
+        int count = 0;
+        for (Connection connection : idle)
+        {
+            if (count++ == minIdle)
+                break;
+            if (connection instanceof ConnectionPool.Pingable)
+                new PingCallback(connection).ping();
+        }
+    }
+
     private void tryRemoveIdleDestination()
     {
         if (getHttpClient().isRemoveIdleDestinations() && connectionPool.isEmpty())
@@ -575,4 +635,82 @@ public abstract class HttpDestination extends ContainerLifeCycle implements Dest
             }
         }
     }
+
+    /**
+     * This class periodically pings and replenishes the idle connections of this destination.
+     */
+    private class MaintenanceTask extends CyclicTimeout
+    {
+        private MaintenanceTask(Scheduler scheduler)
+        {
+            super(scheduler);
+        }
+
+        private void schedule()
+        {
+            long interval = client.getConnectionMaintenanceInterval();
+            if (client.getMinIdleConnectionsPerDestination() > 0 && interval > 0)
+                schedule(interval, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void onTimeoutExpired()
+        {
+            if (!isRunning() || !client.isRunning())
+                return;
+            if (LOG.isDebugEnabled())
+                LOG.debug("{} maintaining idle connections", HttpDestination.this);
+            pingIdleConnections();
+            replenishIdleConnections();
+            schedule();
+        }
+    }
+
+    private class PingCallback implements Callback, Runnable
+    {
+        private final AtomicBoolean complete = new AtomicBoolean();
+        private final Connection connection;
+        private volatile Scheduler.Task task;
+
+        private PingCallback(Connection connection)
+        {
+            this.connection = connection;
+        }
+
+        private void ping()
+        {
+            task = client.getScheduler().schedule(this, client.getConnectionMaintenanceInterval(), TimeUnit.MILLISECONDS);
+            ((ConnectionPool.Pingable)connection).ping(this);
+        }
+
+        @Override
+        public void succeeded()
+        {
+            if (complete.compareAndSet(false, true))
+                task.cancel();
+        }
+
+        @Override
+        public void failed(Throwable x)
+        {
+            if (complete.compareAndSet(false, true))
+            {
+                task.cancel();
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Ping failed for " + connection, x);
+                connection.close();
+            }
+        }
+
+        @Override
+        public void run()
+        {
+            if (complete.compareAndSet(false, true))
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Ping timed out for {}", connection);
+                connection.close();
+            }
+        }
+    }
 }
@@ -0,0 +1,918 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under
+// the terms of the Eclipse Public License 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0
+//
+// This Source Code may also be made available under the following
+// Secondary Licenses when the conditions for such availability set
+// forth in the Eclipse Public License, v. 2.0 are satisfied:
+// the Apache License v2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.client.api.Response;
+import org.eclipse.jetty.client.api.Result;
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+
+/**
+ * <p>A private HTTP response cache for {@link HttpClient}, following RFC 7234.</p>
+ * <p>When {@link HttpClient#setResponseCache(HttpResponseCache) configured},
+ * {@code GET} requests are served from this cache if a fresh response is
+ * available, without contacting the server; the request listeners are not
+ * notified in this case, only the response listeners.
+ * Stale responses that carry an {@code ETag} or a {@code Last-Modified} header
+ * are revalidated with a conditional request, and a {@code 304} response from
+ * the server is converted into the cached response.</p>
+ * <p>The cache honours the {@code Cache-Control}, {@code Expires} and
+ * {@code Vary} response headers, and the {@code no-store}, {@code no-cache},
+ * {@code max-age} and {@code only-if-cached} request directives.
+ * Requests with credentials, ranges or application-provided conditional
+ * headers bypass the cache, and successful unsafe requests invalidate
+ * the cached responses for their URI.</p>
+ * <p>Response bodies are kept in a {@link Storage}, by default
+ * {@link OffHeapStorage off-heap}, and the least recently used responses are
+ * evicted when the {@link #getMaxEntries() max number of entries} or the
+ * {@link #getMaxSize() max total size} is exceeded.</p>
+ */
+@ManagedObject("The HTTP response cache")
+public class HttpResponseCache
+{
+    private static final Logger LOG = Log.getLogger(HttpResponseCache.class);
+    private static final String ATTRIBUTE = HttpResponseCache.class.getName() + ".entry";
+    private static final String REVALIDATED_ATTRIBUTE = HttpResponseCache.class.getName() + ".revalidated";
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75F, true);
+    private final Map<String, Variants> variants = new HashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder revalidations = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder stores = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final ResponseNotifier notifier = new ResponseNotifier();
+    private final ProtocolHandler protocolHandler = new RevalidationProtocolHandler();
+    private final HttpClient client;
+    private final Storage storage;
+    private int maxEntries = 1024;
+    private long maxSize = 64 * 1024 * 1024;
+    private int maxEntrySize = 1024 * 1024;
+    private long size;
+
+    public HttpResponseCache(HttpClient client)
+    {
+        this(client, new OffHeapStorage());
+    }
+
+    public HttpResponseCache(HttpClient client, Storage storage)
+    {
+        this.client = client;
+        this.storage = storage;
+    }
+
+    public Storage getStorage()
+    {
+        return storage;
+    }
+
+    @ManagedAttribute("The max number of cached responses")
+    public int getMaxEntries()
+    {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(int maxEntries)
+    {
+        this.maxEntries = maxEntries;
+    }
+
+    @ManagedAttribute("The max total size in bytes of the cached response bodies")
+    public long getMaxSize()
+    {
+        return maxSize;
+    }
+
+    public void setMaxSize(long maxSize)
+    {
+        this.maxSize = maxSize;
+    }
+
+    @ManagedAttribute("The max size in bytes of a cached response body")
+    public int getMaxEntrySize()
+    {
+        return maxEntrySize;
+    }
+
+    public void setMaxEntrySize(int maxEntrySize)
+    {
+        this.maxEntrySize = maxEntrySize;
+    }
+
+    @ManagedAttribute(value = "The number of cached responses", readonly = true)
+    public int getEntryCount()
+    {
+        synchronized (this)
+        {
+            return entries.size();
+        }
+    }
+
+    @ManagedAttribute(value = "The number of URIs with cached responses", readonly = true)
+    public int getURICount()
+    {
+        synchronized (this)
+        {
+            return variants.size();
+        }
+    }
+
+    @ManagedAttribute(value = "The total size in bytes of the cached response bodies", readonly = true)
+    public long getSize()
+    {
+        synchronized (this)
+        {
+            return size;
+        }
+    }
+
+    @ManagedAttribute(value = "The number of requests served from the cache", readonly = true)
+    public long getHits()
+    {
+        return hits.sum();
+    }
+
+    @ManagedAttribute(value = "The number of requests served from the cache after revalidation", readonly = true)
+    public long getRevalidations()
+    {
+        return revalidations.sum();
+    }
+
+    @ManagedAttribute(value = "The number of cacheable requests not served from the cache", readonly = true)
+    public long getMisses()
+    {
+        return misses.sum();
+    }
+
+    @ManagedAttribute(value = "The number of responses stored in the cache", readonly = true)
+    public long getStores()
+    {
+        return stores.sum();
+    }
+
+    @ManagedAttribute(value = "The number of responses evicted from the cache", readonly = true)
+    public long getEvictions()
+    {
+        return evictions.sum();
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void resetStats()
+    {
+        hits.reset();
+        revalidations.reset();
+        misses.reset();
+        stores.reset();
+        evictions.reset();
+    }
+
+    @ManagedOperation(value = "Removes all cached responses", impact = "ACTION")
+    public void clear()
+    {
+        List<Entry> removed;
+        synchronized (this)
+        {
+            removed = new ArrayList<>(entries.values());
+            entries.clear();
+            variants.clear();
+            size = 0;
+        }
+        removed.forEach(entry -> entry.body.release());
+    }
+
+    /**
+     * @return the protocol handler that converts {@code 304} responses to revalidation
+     * requests into the cached responses
+     */
+    public ProtocolHandler getProtocolHandler()
+    {
+        return protocolHandler;
+    }
+
+    /**
+     * <p>Serves the given request from this cache, if possible.</p>
+     *
+     * @param request the request to serve
+     * @param listeners the response listeners
+     * @return the response listeners to use to send the request to the server,
+     * or null if the response has been served from this cache
+     */
+    List<Response.ResponseListener> send(HttpRequest request, List<Response.ResponseListener> listeners)
+    {
+        String method = request.getMethod();
+        if (!HttpMethod.GET.is(method))
+        {
+            if (HttpMethod.HEAD.is(method) || HttpMethod.OPTIONS.is(method) || HttpMethod.TRACE.is(method))
+                return listeners;
+            // Unsafe methods invalidate the cached responses if successful.
+            return withListener(listeners, new InvalidationListener(uriOf(request)));
+        }
+
+        HttpFields headers = request.getHeaders();
+        Directives directives = new Directives(headers.getCSV(HttpHeader.CACHE_CONTROL, false));
+        if (directives.noStore || isBypassed(headers))
+            return listeners;
+        if (headers.contains(HttpHeader.PRAGMA, "no-cache"))
+            directives.noCache = true;
+
+        String uri = uriOf(request);
+        long now = System.currentTimeMillis();
+        String key;
+        Entry entry;
+        synchronized (this)
+        {
+            Variants uriVariants = variants.get(uri);
+            key = keyOf(uri, uriVariants == null ? null : uriVariants.vary, headers);
+            entry = entries.get(key);
+        }
+
+        if (entry != null && !directives.noCache && entry.isFresh(now, directives.maxAge))
+        {
+            ByteBuffer content = entry.load();
+            if (content != null)
+            {
+                hits.increment();
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Cache hit {} for {}", entry, request);
+                notifier.forwardSuccessComplete(listeners, request, entry.newResponse(request, listeners, now), content);
+                return null;
+            }
+        }
+
+        if (directives.onlyIfCached)
+        {
+            misses.increment();
+            HttpResponse response = new HttpResponse(request, listeners)
+                .version(HttpVersion.HTTP_1_1)
+                .status(HttpStatus.GATEWAY_TIMEOUT_504)
+                .reason(HttpStatus.getMessage(HttpStatus.GATEWAY_TIMEOUT_504));
+            notifier.forwardSuccessComplete(listeners, request, new HttpContentResponse(response, new byte[0], null, null));
+            return null;
+        }
+
+        misses.increment();
+        if (entry != null && entry.hasValidators())
+        {
+            if (entry.etag != null)
+                request.header(HttpHeader.IF_NONE_MATCH, entry.etag);
+            else
+                request.header(HttpHeader.IF_MODIFIED_SINCE, entry.lastModified);
+            request.attribute(ATTRIBUTE, entry);
+        }
+        return withListener(listeners, new StoreListener(request, uri, headers, now));
+    }
+
+    private boolean isBypassed(HttpFields headers)
+    {
+        return headers.containsKey(HttpHeader.AUTHORIZATION.asString()) ||
+            headers.containsKey(HttpHeader.RANGE.asString()) ||
+            headers.containsKey(HttpHeader.IF_NONE_MATCH.asString()) ||
+            headers.containsKey(HttpHeader.IF_MODIFIED_SINCE.asString()) ||
+            headers.containsKey(HttpHeader.IF_MATCH.asString()) ||
+            headers.containsKey(HttpHeader.IF_UNMODIFIED_SINCE.asString()) ||
+            headers.containsKey(HttpHeader.IF_RANGE.asString());
+    }
+
+    private List<Response.ResponseListener> withListener(List<Response.ResponseListener> listeners, Response.ResponseListener listener)
+    {
+        // Notified first, so that the cache is updated
+        // before the application sees the response.
+        List<Response.ResponseListener> result = new ArrayList<>(listeners.size() + 1);
+        result.add(listener);
+        result.addAll(listeners);
+        return result;
+    }
+
+    private static String uriOf(Request request)
+    {
+        URI uri = request.getURI();
+        return uri == null ? request.getPath() : uri.toString();
+    }
+
+    private static String keyOf(String uri, List<String> vary, HttpFields requestHeaders)
+    {
+        if (vary == null || vary.isEmpty())
+            return uri;
+        StringBuilder builder = new StringBuilder(uri);
+        for (String name : vary)
+        {
+            builder.append('\n').append(name).append(':');
+            String value = requestHeaders.get(name);
+            if (value != null)
+                builder.append(value);
+        }
+        return builder.toString();
+    }
+
+    private void store(Request request, String uri, HttpFields requestHeaders, long requestTime, Response response, byte[] content)
+    {
+        HttpFields headers = response.getHeaders();
+        if (!isCacheable(response.getStatus(), headers))
+            return;
+
+        List<String> vary = new ArrayList<>();
+        for (String name : headers.getCSV(HttpHeader.VARY, false))
+        {
+            if ("*".equals(name))
+                return;
+            vary.add(name.toLowerCase(Locale.ENGLISH));
+        }
+
+        HttpFields stored = new HttpFields(headers);
+        // The content has been decoded, so the headers must reflect that.
+        String encoding = stored.get(HttpHeader.CONTENT_ENCODING);
+        if (encoding != null && client.getContentDecoderFactories().stream().anyMatch(factory -> factory.getEncoding().equalsIgnoreCase(encoding)))
+            stored.remove(HttpHeader.CONTENT_ENCODING);
+        stored.remove(HttpHeader.TRANSFER_ENCODING);
+        stored.putLongField(HttpHeader.CONTENT_LENGTH, content.length);
+
+        Storage.Body body;
+        try
+        {
+            body = storage.store(content);
+        }
+        catch (IOException x)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Could not store response for " + request, x);
+            return;
+        }
+
+        String key = keyOf(uri, vary, requestHeaders);
+        Entry entry = new Entry(uri, key, response.getVersion(), response.getStatus(), response.getReason(), stored, body, requestTime, System.currentTimeMillis());
+        List<Entry> evicted = new ArrayList<>();
+        synchronized (this)
+        {
+            Variants uriVariants = variants.get(uri);
+            if (uriVariants != null && !uriVariants.vary.equals(vary))
+            {
+                // The variants stored with other Vary headers cannot be looked up anymore.
+                removeVariants(uri, evicted);
+                uriVariants = null;
+            }
+            if (uriVariants == null)
+            {
+                uriVariants = new Variants(vary);
+                variants.put(uri, uriVariants);
+            }
+            uriVariants.keys.add(key);
+            Entry old = entries.put(key, entry);
+            size += body.length();
+            if (old != null)
+            {
+                size -= old.body.length();
+                evicted.add(old);
+            }
+            Iterator<Entry> iterator = entries.values().iterator();
+            while ((entries.size() > getMaxEntries() || size > getMaxSize()) && iterator.hasNext())
+            {
+                Entry eldest = iterator.next();
+                iterator.remove();
+                unlink(eldest);
+                evicted.add(eldest);
+                evictions.increment();
+            }
+        }
+        stores.increment();
+        if (LOG.isDebugEnabled())
+            LOG.debug("Stored {} for {}", entry, request);
+        evicted.forEach(old -> old.body.release());
+    }
+
+    private Entry revalidate(Entry entry, Response response)
+    {
+        // Update the stored headers with the ones from the 304 response, RFC 7234 section 4.3.4.
+        HttpFields headers = new HttpFields(entry.headers);
+        for (HttpField field : response.getHeaders())
+        {
+            HttpHeader header = field.getHeader();
+            if (header != HttpHeader.CONTENT_LENGTH && header != HttpHeader.CONTENT_ENCODING && header != HttpHeader.TRANSFER_ENCODING)
+                headers.put(field);
+        }
+        long now = System.currentTimeMillis();
+        Entry result = new Entry(entry.uri, entry.key, entry.version, entry.status, entry.reason, headers, entry.body, now, now);
+        synchronized (this)
+        {
+            // Replace the entry only if it has not been evicted or replaced meanwhile.
+            if (entries.get(entry.key) == entry)
+                entries.put(entry.key, result);
+        }
+        return result;
+    }
+
+    private void invalidate(String uri)
+    {
+        List<Entry> removed = new ArrayList<>();
+        synchronized (this)
+        {
+            removeVariants(uri, removed);
+        }
+        removed.forEach(entry -> entry.body.release());
+    }
+
+    private void removeVariants(String uri, List<Entry> removed)
+    {
+        Variants uriVariants = variants.remove(uri);
+        if (uriVariants == null)
+            return;
+        for (String key : uriVariants.keys)
+        {
+            Entry entry = entries.remove(key);
+            if (entry != null)
+            {
+                size -= entry.body.length();
+                removed.add(entry);
+            }
+        }
+    }
+
+    private void unlink(Entry entry)
+    {
+        size -= entry.body.length();
+        Variants uriVariants = variants.get(entry.uri);
+        if (uriVariants != null && uriVariants.keys.remove(entry.key) && uriVariants.keys.isEmpty())
+            variants.remove(entry.uri);
+    }
+
+    private static boolean isCacheable(int status, HttpFields headers)
+    {
+        switch (status)
+        {
+            case HttpStatus.OK_200:
+            case HttpStatus.NON_AUTHORITATIVE_INFORMATION_203:
+            case HttpStatus.NO_CONTENT_204:
+            case HttpStatus.MULTIPLE_CHOICES_300:
+            case HttpStatus.MOVED_PERMANENTLY_301:
+            case HttpStatus.NOT_FOUND_404:
+            case HttpStatus.METHOD_NOT_ALLOWED_405:
+            case HttpStatus.GONE_410:
+            case HttpStatus.URI_TOO_LONG_414:
+            case HttpStatus.NOT_IMPLEMENTED_501:
+                break;
+            default:
+                return false;
+        }
+        Directives directives = new Directives(headers.getCSV(HttpHeader.CACHE_CONTROL, false));
+        if (directives.noStore)
+            return false;
+        // Storing is only useful if the response is fresh or can be revalidated.
+        return directives.maxAge > 0 ||
+            headers.containsKey(HttpHeader.EXPIRES.asString()) ||
+            headers.containsKey(HttpHeader.ETAG.asString()) ||
+            headers.containsKey(HttpHeader.LAST_MODIFIED.asString());
+    }
+
+    private static long dateOf(HttpFields headers, HttpHeader header, long defaultValue)
+    {
+        try
+        {
+            long date = headers.getDateField(header.asString());
+            return date < 0 ? defaultValue : date;
+        }
+        catch (IllegalArgumentException x)
+        {
+            // Invalid dates, such as "Expires: 0", are in the past.
+            return 0;
+        }
+    }
+
+    /**
+     * <p>The storage of response bodies.</p>
+     */
+    public interface Storage
+    {
+        /**
+         * @param content the response body to store
+         * @return a handle to the stored response body
+         * @throws IOException if the response body cannot be stored
+         */
+        Body store(byte[] content) throws IOException;
+
+        /**
+         * <p>A stored response body.</p>
+         */
+        interface Body
+        {
+            /**
+             * @return the length in bytes of the response body
+             */
+            int length();
+
+            /**
+             * @return a read-only buffer with the response body bytes
+             * @throws IOException if the response body cannot be loaded
+             */
+            ByteBuffer load() throws IOException;
+
+            /**
+             * <p>Releases the resources associated with this response body.</p>
+             */
+            void release();
+        }
+    }
+
+    /**
+     * <p>Stores response bodies in direct {@link ByteBuffer}s, outside of the Java heap.</p>
+     * <p>Cache hits are served read-only views of these buffers, without copying them.</p>
+     */
+    public static class OffHeapStorage implements Storage
+    {
+        @Override
+        public Body store(byte[] content)
+        {
+            ByteBuffer buffer = BufferUtil.allocateDirect(content.length);
+            BufferUtil.append(buffer, content, 0, content.length);
+            return new Body()
+            {
+                @Override
+                public int length()
+                {
+                    return content.length;
+                }
+
+                @Override
+                public ByteBuffer load()
+                {
+                    return buffer.asReadOnlyBuffer();
+                }
+
+                @Override
+                public void release()
+                {
+                    // The direct memory is freed when the buffer is garbage collected.
+                }
+            };
+        }
+    }
+
+    /**
+     * <p>Stores response bodies in files in a directory.</p>
+     */
+    public static class FileStorage implements Storage
+    {
+        private final Path directory;
+
+        public FileStorage(Path directory)
+        {
+            this.directory = directory;
+        }
+
+        public Path getDirectory()
+        {
+            return directory;
+        }
+
+        @Override
+        public Body store(byte[] content) throws IOException
+        {
+            Path file = Files.createTempFile(directory, "response-", ".cache");
+            Files.write(file, content);
+            return new Body()
+            {
+                @Override
+                public int length()
+                {
+                    return content.length;
+                }
+
+                @Override
+                public ByteBuffer load() throws IOException
+                {
+                    return ByteBuffer.wrap(Files.readAllBytes(file)).asReadOnlyBuffer();
+                }
+
+                @Override
+                public void release()
+                {
+                    IO.delete(file.toFile());
+                }
+            };
+        }
+    }
+
+    private static class Directives
+    {
+        private boolean noStore;
+        private boolean noCache;
+        private boolean onlyIfCached;
+        private long maxAge = -1;
+
+        private Directives(List<String> values)
+        {
+            for (String value : values)
+            {
+                String directive = value.toLowerCase(Locale.ENGLISH);
+                if ("no-store".equals(directive))
+                    noStore = true;
+                else if (directive.startsWith("no-cache"))
+                    noCache = true;
+                else if ("only-if-cached".equals(directive))
+                    onlyIfCached = true;
+                else if (directive.startsWith("max-age="))
+                    maxAge = seconds(directive.substring("max-age=".length()));
+            }
+        }
+
+        private static long seconds(String value)
+        {
+            try
+            {
+                return Long.parseLong(value.replace("\"", "").trim());
+            }
+            catch (NumberFormatException x)
+            {
+                // An invalid max-age means the response is stale, RFC 7234 section 4.2.1.
+                return 0;
+            }
+        }
+    }
+
+    private static class Variants
+    {
+        private final List<String> vary;
+        private final Set<String> keys = new HashSet<>();
+
+        private Variants(List<String> vary)
+        {
+            this.vary = vary;
+        }
+    }
+
+    private static class Entry
+    {
+        private final String uri;
+        private final String key;
+        private final HttpVersion version;
+        private final int status;
+        private final String reason;
+        private final HttpFields headers;
+        private final Storage.Body body;
+        private final long responseTime;
+        private final long initialAge;
+        private final long freshnessLifetime;
+        private final String etag;
+        private final String lastModified;
+
+        private Entry(String uri, String key, HttpVersion version, int status, String reason, HttpFields headers, Storage.Body body, long requestTime, long responseTime)
+        {
+            this.uri = uri;
+            this.key = key;
+            this.version = version;
+            this.status = status;
+            this.reason = reason;
+            this.headers = headers;
+            this.body = body;
+            this.responseTime = responseTime;
+            this.etag = headers.get(HttpHeader.ETAG);
+            this.lastModified = headers.get(HttpHeader.LAST_MODIFIED);
+
+            // Age calculation, RFC 7234 section 4.2.3.
+            long date = dateOf(headers, HttpHeader.DATE, responseTime);
+            long apparentAge = Math.max(0, responseTime - date);
+            long ageValue = 0;
+            try
+            {
+                ageValue = Math.max(0, headers.getLongField(HttpHeader.AGE.asString())) * 1000;
+            }
+            catch (NumberFormatException ignored)
+            {
+            }
+            long correctedAgeValue = ageValue + (responseTime - requestTime);
+            this.initialAge = Math.max(apparentAge, correctedAgeValue);
+
+            // Freshness lifetime, RFC 7234 section 4.2.1 and 4.2.2.
+            Directives directives = new Directives(headers.getCSV(HttpHeader.CACHE_CONTROL, false));
+            long lifetime;
+            if (directives.noCache)
+                lifetime = 0;
+            else if (directives.maxAge >= 0)
+                lifetime = directives.maxAge * 1000;
+            else if (headers.containsKey(HttpHeader.EXPIRES.asString()))
+                lifetime = Math.max(0, dateOf(headers, HttpHeader.EXPIRES, 0) - date);
+            else if (lastModified != null)
+                lifetime = Math.max(0, date - dateOf(headers, HttpHeader.LAST_MODIFIED, date)) / 10;
+            else
+                lifetime = 0;
+            this.freshnessLifetime = lifetime;
+        }
+
+        private long currentAge(long now)
+        {
+            return initialAge + Math.max(0, now - responseTime);
+        }
+
+        private boolean isFresh(long now, long requestMaxAge)
+        {
+            long age = currentAge(now);
+            if (requestMaxAge >= 0 && age > requestMaxAge * 1000)
+                return false;
+            return freshnessLifetime > age;
+        }
+
+        private boolean hasValidators()
+        {
+            return etag != null || lastModified != null;
+        }
+
+        private ByteBuffer load()
+        {
+            try
+            {
+                return body.load();
+            }
+            catch (IOException x)
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Could not load " + this, x);
+                return null;
+            }
+        }
+
+        private HttpResponse newResponse(Request request, List<Response.ResponseListener> listeners, long now)
+        {
+            HttpResponse response = new HttpResponse(request, listeners)
+                .version(version)
+                .status(status)
+                .reason(reason);
+            HttpFields fields = response.getHeaders();
+            fields.addAll(headers);
+            fields.putLongField(HttpHeader.AGE, currentAge(now) / 1000);
+            return response;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s@%x[%d,l=%d,f=%d,etag=%s]", getClass().getSimpleName(), hashCode(), status, body.length(), freshnessLifetime, etag);
+        }
+    }
+
+    private class StoreListener extends Response.Listener.Adapter
+    {
+        private final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        private final Request request;
+        private final String uri;
+        private final HttpFields requestHeaders;
+        private final long requestTime;
+        private boolean overflow;
+
+        private StoreListener(Request request, String uri, HttpFields requestHeaders, long requestTime)
+        {
+            this.request = request;
+            this.uri = uri;
+            // Copy the headers now, before the request is normalized,
+            // so that the Vary values match the ones of the lookup.
+            this.requestHeaders = new HttpFields(requestHeaders);
+            this.requestTime = requestTime;
+        }
+
+        @Override
+        public void onContent(Response response, ByteBuffer buffer)
+        {
+            if (overflow)
+                return;
+            int length = buffer.remaining();
+            if (content.size() + length > getMaxEntrySize())
+            {
+                overflow = true;
+                return;
+            }
+            if (buffer.hasArray())
+            {
+                content.write(buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+            }
+            else
+            {
+                byte[] bytes = new byte[length];
+                buffer.get(bytes);
+                content.write(bytes, 0, length);
+            }
+        }
+
+        @Override
+        public void onComplete(Result result)
+        {
+            Response response = result.getResponse();
+            // Redirects are forwarded with the response of another request.
+            if (result.isFailed() || overflow || response.getRequest() != request)
+                return;
+            // The response has already been handled by the revalidation.
+            if (request.getAttributes().containsKey(REVALIDATED_ATTRIBUTE))
+                return;
+            store(request, uri, requestHeaders, requestTime, response, content.toByteArray());
+        }
+    }
+
+    private class InvalidationListener extends Response.Listener.Adapter
+    {
+        private final String uri;
+
+        private InvalidationListener(String uri)
+        {
+            this.uri = uri;
+        }
+
+        @Override
+        public void onComplete(Result result)
+        {
+            if (result.isSucceeded() && result.getResponse().getStatus() < HttpStatus.BAD_REQUEST_400)
+                invalidate(uri);
+        }
+    }
+
+    private class RevalidationProtocolHandler implements ProtocolHandler
+    {
+        @Override
+        public String getName()
+        {
+            return "response-cache";
+        }
+
+        @Override
+        public boolean accept(Request request, Response response)
+        {
+            return response.getStatus() == HttpStatus.NOT_MODIFIED_304 && request.getAttributes().get(ATTRIBUTE) instanceof Entry;
+        }
+
+        @Override
+        public Response.Listener getResponseListener()
+        {
+            return new Response.Listener.Adapter()
+            {
+                @Override
+                public void onComplete(Result result)
+                {
+                    HttpRequest request = (HttpRequest)result.getRequest();
+                    HttpConversation conversation = request.getConversation();
+                    conversation.updateResponseListeners(null);
+                    List<Response.ResponseListener> listeners = conversation.getResponseListeners();
+                    Response response = result.getResponse();
+                    if (result.isFailed())
+                    {
+                        notifier.forwardFailureComplete(listeners, request, result.getRequestFailure(), response, result.getResponseFailure());
+                        return;
+                    }
+
+                    Entry entry = revalidate((Entry)request.getAttributes().get(ATTRIBUTE), response);
+                    ByteBuffer content = entry.load();
+                    if (content == null)
+                    {
+                        // The body has been evicted, forward the 304 to the application.
+                        notifier.forwardSuccessComplete(listeners, request, response);
+                        return;
+                    }
+                    revalidations.increment();
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("Revalidated {} for {}", entry, request);
+                    request.attribute(REVALIDATED_ATTRIBUTE, Boolean.TRUE);
+                    notifier.forwardSuccessComplete(listeners, request, entry.newResponse(request, listeners, System.currentTimeMillis()), content);
+                }
+            };
+        }
+    }
+}
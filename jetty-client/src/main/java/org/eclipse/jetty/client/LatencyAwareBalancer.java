@@ -0,0 +1,708 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under
+// the terms of the Eclipse Public License 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0
+//
+// This Source Code may also be made available under the following
+// Secondary Licenses when the conditions for such availability set
+// forth in the Eclipse Public License, v. 2.0 are satisfied:
+// the Apache License v2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.client;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongConsumer;
+import java.util.stream.Collectors;
+
+import org.eclipse.jetty.client.api.ContentProvider;
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.client.api.Response;
+import org.eclipse.jetty.client.api.Result;
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+import org.eclipse.jetty.util.thread.Scheduler;
+
+/**
+ * <p>Sends requests to one of a set of equivalent origins, choosing the
+ * origin with the lowest expected latency.</p>
+ * <p>Each origin tracks an exponentially weighted moving average of its
+ * response times, decaying with a {@link #getDecayTime() time constant},
+ * and its number of outstanding requests. For each request, two origins
+ * are picked at random and the one with the lower cost (average response
+ * time multiplied by the outstanding requests plus one) is chosen, so that
+ * slow or overloaded origins receive less traffic without all clients
+ * herding onto the same fastest origin.</p>
+ * <p>Failures, either failed exchanges or responses with a 5xx status, do not
+ * contribute to the average response time, since a failing origin often fails
+ * fast; instead, they eject the origin for an {@link #getEjectionTime() ejection time}
+ * that doubles with every consecutive failure, during which it is chosen only if
+ * the other picked origin is also ejected.</p>
+ * <p>Idempotent requests without content, or with reproducible content, that
+ * fail before receiving a response are retried once on another origin.
+ * When {@link #isHedging() hedging} is enabled, these requests are also sent
+ * a second time to another origin if no response has arrived after a delay
+ * equal to the {@link #getHedgePercentile() configured percentile} of the
+ * recent response times. The first attempt that receives a response wins and
+ * the other attempt is aborted.</p>
+ * <p>Requests are built against any origin and passed to
+ * {@link #send(Request, Response.Listener)}, which copies them to the chosen
+ * origins; response listeners must be passed to that method rather than
+ * registered on the request, since only the winning attempt is notified.</p>
+ */
+@ManagedObject("Latency aware load balancer")
+public class LatencyAwareBalancer
+{
+    private static final Logger LOG = Log.getLogger(LatencyAwareBalancer.class);
+    private static final int MAX_EJECTION_SHIFT = 5;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder ejections = new LongAdder();
+    private final LatencySamples samples = new LatencySamples(1024);
+    private final HttpClient client;
+    private final List<Node> nodes;
+    private long decayTime = 10000;
+    private long ejectionTime = 1000;
+    private boolean hedging;
+    private double hedgePercentile = 95;
+    private long minHedgeDelay = 10;
+    private long maxHedgeDelay = 1000;
+
+    public LatencyAwareBalancer(HttpClient client, List<URI> origins)
+    {
+        if (origins.isEmpty())
+            throw new IllegalArgumentException("No origins");
+        this.client = client;
+        this.nodes = origins.stream().map(Node::new).collect(Collectors.toList());
+    }
+
+    /**
+     * @return the time constant in milliseconds of the response time moving averages
+     */
+    @ManagedAttribute("The time constant in milliseconds of the response time moving averages")
+    public long getDecayTime()
+    {
+        return decayTime;
+    }
+
+    /**
+     * @param decayTime the time constant in milliseconds of the response time moving averages
+     */
+    public void setDecayTime(long decayTime)
+    {
+        this.decayTime = decayTime;
+    }
+
+    /**
+     * @return the time in milliseconds an origin is not chosen after a failure,
+     * doubled for every consecutive failure up to 32 times this value
+     */
+    @ManagedAttribute("The time in milliseconds an origin is not chosen after a failure")
+    public long getEjectionTime()
+    {
+        return ejectionTime;
+    }
+
+    /**
+     * @param ejectionTime the time in milliseconds an origin is not chosen after a failure
+     */
+    public void setEjectionTime(long ejectionTime)
+    {
+        this.ejectionTime = ejectionTime;
+    }
+
+    @ManagedAttribute("Whether requests are hedged")
+    public boolean isHedging()
+    {
+        return hedging;
+    }
+
+    public void setHedging(boolean hedging)
+    {
+        this.hedging = hedging;
+    }
+
+    /**
+     * @return the percentile of the recent response times after which a request is hedged
+     */
+    @ManagedAttribute("The percentile of the recent response times after which a request is hedged")
+    public double getHedgePercentile()
+    {
+        return hedgePercentile;
+    }
+
+    /**
+     * @param hedgePercentile the percentile, between 0 and 100, of the recent response times after which a request is hedged
+     */
+    public void setHedgePercentile(double hedgePercentile)
+    {
+        this.hedgePercentile = hedgePercentile;
+    }
+
+    /**
+     * @return the min delay in milliseconds before a request is hedged
+     */
+    @ManagedAttribute("The min delay in milliseconds before a request is hedged")
+    public long getMinHedgeDelay()
+    {
+        return minHedgeDelay;
+    }
+
+    /**
+     * @param minHedgeDelay the min delay in milliseconds before a request is hedged
+     */
+    public void setMinHedgeDelay(long minHedgeDelay)
+    {
+        this.minHedgeDelay = minHedgeDelay;
+    }
+
+    /**
+     * @return the max delay in milliseconds before a request is hedged,
+     * also used until enough response times have been recorded
+     */
+    @ManagedAttribute("The max delay in milliseconds before a request is hedged")
+    public long getMaxHedgeDelay()
+    {
+        return maxHedgeDelay;
+    }
+
+    /**
+     * @param maxHedgeDelay the max delay in milliseconds before a request is hedged
+     */
+    public void setMaxHedgeDelay(long maxHedgeDelay)
+    {
+        this.maxHedgeDelay = maxHedgeDelay;
+    }
+
+    /**
+     * @return the current delay in milliseconds before a request is hedged
+     */
+    @ManagedAttribute(value = "The current delay in milliseconds before a request is hedged", readonly = true)
+    public long getHedgeDelay()
+    {
+        long percentile = samples.percentile(getHedgePercentile());
+        if (percentile < 0)
+            return getMaxHedgeDelay();
+        long delay = TimeUnit.NANOSECONDS.toMillis(percentile);
+        return Math.max(getMinHedgeDelay(), Math.min(getMaxHedgeDelay(), delay));
+    }
+
+    @ManagedAttribute(value = "The number of requests", readonly = true)
+    public long getRequests()
+    {
+        return requests.sum();
+    }
+
+    @ManagedAttribute(value = "The number of hedged attempts", readonly = true)
+    public long getHedges()
+    {
+        return hedges.sum();
+    }
+
+    @ManagedAttribute(value = "The number of hedged attempts that won", readonly = true)
+    public long getHedgeWins()
+    {
+        return hedgeWins.sum();
+    }
+
+    @ManagedAttribute(value = "The number of attempts retried on another origin after a failure", readonly = true)
+    public long getRetries()
+    {
+        return retries.sum();
+    }
+
+    @ManagedAttribute(value = "The number of times an origin was ejected after a failure", readonly = true)
+    public long getEjections()
+    {
+        return ejections.sum();
+    }
+
+    @ManagedAttribute(value = "The origins with their outstanding requests and average response times", readonly = true)
+    public List<String> getOrigins()
+    {
+        return nodes.stream().map(Node::toString).collect(Collectors.toList());
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void resetStats()
+    {
+        requests.reset();
+        hedges.reset();
+        hedgeWins.reset();
+        retries.reset();
+        ejections.reset();
+    }
+
+    /**
+     * <p>Sends a copy of the given request to the best origin, possibly hedging it.</p>
+     *
+     * @param request the request to send, whose origin is replaced
+     * @param listener the listener notified of the response of the winning attempt
+     */
+    public void send(Request request, Response.Listener listener)
+    {
+        requests.increment();
+        boolean retryable = isRetryable(request);
+        Hedge hedge = new Hedge(request, listener, retryable, retryable && isHedging());
+        hedge.send(select(null), false);
+    }
+
+    private boolean isRetryable(Request request)
+    {
+        if (nodes.size() < 2)
+            return false;
+        String method = request.getMethod();
+        if (!HttpMethod.GET.is(method) && !HttpMethod.HEAD.is(method) && !HttpMethod.OPTIONS.is(method) &&
+            !HttpMethod.PUT.is(method) && !HttpMethod.DELETE.is(method))
+            return false;
+        ContentProvider content = request.getContent();
+        return content == null || content.isReproducible();
+    }
+
+    /**
+     * <p>Picks two random origins, excluding the given one, and returns the cheaper one,
+     * preferring an origin that is not ejected.</p>
+     */
+    private Node select(Node exclude)
+    {
+        int size = nodes.size();
+        if (size == 1)
+            return nodes.get(0);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (exclude != null && size == 2)
+            return nodes.get(0) == exclude ? nodes.get(1) : nodes.get(0);
+        Node node1;
+        do
+        {
+            node1 = nodes.get(random.nextInt(size));
+        }
+        while (node1 == exclude);
+        Node node2;
+        do
+        {
+            node2 = nodes.get(random.nextInt(size));
+        }
+        while (node2 == exclude || node2 == node1);
+        long now = System.nanoTime();
+        boolean ejected1 = node1.isEjected(now);
+        if (ejected1 != node2.isEjected(now))
+            return ejected1 ? node2 : node1;
+        return node1.cost(now) <= node2.cost(now) ? node1 : node2;
+    }
+
+    private Request copy(Request request, Node node)
+    {
+        URI uri = request.getURI();
+        String path = uri.getRawPath();
+        StringBuilder target = new StringBuilder(node.base);
+        target.append(path == null || path.isEmpty() ? "/" : path);
+        if (uri.getRawQuery() != null)
+            target.append('?').append(uri.getRawQuery());
+        Request result = client.newRequest(URI.create(target.toString()))
+            .method(request.getMethod())
+            .version(request.getVersion())
+            .content(request.getContent())
+            .idleTimeout(request.getIdleTimeout(), TimeUnit.MILLISECONDS)
+            .timeout(request.getTimeout(), TimeUnit.MILLISECONDS)
+            .followRedirects(request.isFollowRedirects());
+        for (HttpField field : request.getHeaders())
+        {
+            // The Host header is derived from the new URI.
+            if (field.getHeader() != HttpHeader.HOST)
+                result.header(field.getName(), field.getValue());
+        }
+        request.getAttributes().forEach(result::attribute);
+        return result;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[origins=%d,hedging=%b]", getClass().getSimpleName(), hashCode(), nodes.size(), isHedging());
+    }
+
+    private class Node
+    {
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final String base;
+        private double average;
+        private long lastUpdate;
+        private int failures;
+        private long ejectedUntil;
+
+        private Node(URI uri)
+        {
+            int port = uri.getPort();
+            this.base = uri.getScheme() + "://" + uri.getHost() + (port > 0 ? ":" + port : "");
+        }
+
+        private synchronized double average(long now)
+        {
+            // Without recent samples, the average decays towards zero
+            // so that the origin is probed again.
+            return average * Math.exp(-(double)(now - lastUpdate) / TimeUnit.MILLISECONDS.toNanos(getDecayTime()));
+        }
+
+        private double cost(long now)
+        {
+            return average(now) * (outstanding.get() + 1);
+        }
+
+        private synchronized boolean isEjected(long now)
+        {
+            return failures > 0 && now - ejectedUntil < 0;
+        }
+
+        private synchronized void onSuccess(long latency, long now)
+        {
+            failures = 0;
+            update(latency, now);
+        }
+
+        private synchronized void onFailure(long latency, long now)
+        {
+            // A failure only raises the average, for example after a timeout,
+            // since failing fast does not make the origin any better.
+            if (lastUpdate > 0 && latency > average(now))
+                update(latency, now);
+            int shift = Math.min(failures, MAX_EJECTION_SHIFT);
+            ++failures;
+            ejectedUntil = now + (TimeUnit.MILLISECONDS.toNanos(getEjectionTime()) << shift);
+            ejections.increment();
+            if (LOG.isDebugEnabled())
+                LOG.debug("Ejected {} for {} ms after {} consecutive failures", base, getEjectionTime() << shift, failures);
+        }
+
+        private void update(long latency, long now)
+        {
+            if (lastUpdate == 0)
+            {
+                average = latency;
+            }
+            else
+            {
+                double weight = Math.exp(-(double)(now - lastUpdate) / TimeUnit.MILLISECONDS.toNanos(getDecayTime()));
+                average = average * weight + latency * (1 - weight);
+            }
+            lastUpdate = now;
+        }
+
+        @Override
+        public String toString()
+        {
+            long now = System.nanoTime();
+            return String.format("%s[outstanding=%d,average=%dms,ejected=%b]", base, outstanding.get(), TimeUnit.NANOSECONDS.toMillis((long)average(now)), isEjected(now));
+        }
+    }
+
+    private class Hedge
+    {
+        private final Request request;
+        private final Response.Listener listener;
+        private final boolean hedgeable;
+        private final List<Attempt> attempts = new ArrayList<>(2);
+        private Attempt winner;
+        private int pending;
+        // Whether a second attempt, either hedged or retried, has been sent.
+        private boolean hedged;
+        private Scheduler.Task task;
+
+        private Hedge(Request request, Response.Listener listener, boolean retryable, boolean hedgeable)
+        {
+            this.request = request;
+            this.listener = listener;
+            this.hedgeable = hedgeable;
+            this.hedged = !retryable;
+        }
+
+        private void send(Node node, boolean hedge)
+        {
+            Attempt attempt = newAttempt(node, hedge);
+            if (hedge)
+                hedges.increment();
+            if (!hedge && hedgeable)
+            {
+                Scheduler.Task task = client.getScheduler().schedule(() -> onHedgeDelay(node), getHedgeDelay(), TimeUnit.MILLISECONDS);
+                synchronized (this)
+                {
+                    this.task = task;
+                }
+            }
+            if (LOG.isDebugEnabled())
+                LOG.debug("Sending {}{} to {}", hedge ? "hedged " : "", request, node.base);
+            attempt.send();
+        }
+
+        private void retry(Node node)
+        {
+            Attempt attempt = newAttempt(node, false);
+            retries.increment();
+            if (LOG.isDebugEnabled())
+                LOG.debug("Retrying {} on {}", request, node.base);
+            attempt.send();
+        }
+
+        private Attempt newAttempt(Node node, boolean hedge)
+        {
+            Attempt attempt = new Attempt(this, node, copy(request, node), hedge);
+            synchronized (this)
+            {
+                attempts.add(attempt);
+                ++pending;
+            }
+            return attempt;
+        }
+
+        private void onHedgeDelay(Node previous)
+        {
+            synchronized (this)
+            {
+                if (winner != null || hedged)
+                    return;
+                hedged = true;
+            }
+            send(select(previous), true);
+        }
+
+        private List<Attempt> begin(Attempt attempt)
+        {
+            Scheduler.Task task;
+            List<Attempt> losers;
+            synchronized (this)
+            {
+                if (winner != null)
+                    return null;
+                winner = attempt;
+                hedged = true;
+                task = this.task;
+                losers = new ArrayList<>(attempts);
+                losers.remove(attempt);
+            }
+            if (task != null)
+                task.cancel();
+            return losers;
+        }
+
+        /**
+         * @return whether the failure of the given attempt must be forwarded to the application
+         */
+        private boolean fail(Attempt attempt)
+        {
+            Scheduler.Task task;
+            boolean failover = false;
+            synchronized (this)
+            {
+                if (winner != null)
+                    return winner == attempt;
+                if (--pending > 0)
+                    return false;
+                if (hedged)
+                {
+                    winner = attempt;
+                    task = this.task;
+                }
+                else
+                {
+                    hedged = true;
+                    failover = true;
+                    task = this.task;
+                }
+            }
+            if (task != null)
+                task.cancel();
+            if (failover)
+                retry(select(attempt.node));
+            return !failover;
+        }
+
+        private boolean isWinner(Attempt attempt)
+        {
+            synchronized (this)
+            {
+                return winner == attempt;
+            }
+        }
+    }
+
+    private class Attempt implements Response.Listener
+    {
+        private final Hedge hedge;
+        private final Node node;
+        private final Request request;
+        private final boolean hedged;
+        private long begin;
+        private volatile boolean lost;
+
+        private Attempt(Hedge hedge, Node node, Request request, boolean hedged)
+        {
+            this.hedge = hedge;
+            this.node = node;
+            this.request = request;
+            this.hedged = hedged;
+        }
+
+        private void send()
+        {
+            begin = System.nanoTime();
+            node.outstanding.incrementAndGet();
+            request.send(this);
+        }
+
+        @Override
+        public void onBegin(Response response)
+        {
+            List<Attempt> losers = hedge.begin(this);
+            if (losers == null)
+                return;
+            if (hedged)
+                hedgeWins.increment();
+            for (Attempt loser : losers)
+            {
+                loser.lost = true;
+                loser.request.abort(new CancellationException("Hedged request lost"));
+            }
+            hedge.listener.onBegin(response);
+        }
+
+        @Override
+        public boolean onHeader(Response response, HttpField field)
+        {
+            return !hedge.isWinner(this) || hedge.listener.onHeader(response, field);
+        }
+
+        @Override
+        public void onHeaders(Response response)
+        {
+            if (hedge.isWinner(this))
+                hedge.listener.onHeaders(response);
+        }
+
+        @Override
+        public void onBeforeContent(Response response, LongConsumer demand)
+        {
+            if (hedge.isWinner(this))
+                hedge.listener.onBeforeContent(response, demand);
+            else
+                demand.accept(1);
+        }
+
+        @Override
+        public void onContent(Response response, LongConsumer demand, ByteBuffer content, Callback callback)
+        {
+            if (hedge.isWinner(this))
+            {
+                hedge.listener.onContent(response, demand, content, callback);
+            }
+            else
+            {
+                callback.succeeded();
+                demand.accept(1);
+            }
+        }
+
+        @Override
+        public void onSuccess(Response response)
+        {
+            if (hedge.isWinner(this))
+                hedge.listener.onSuccess(response);
+        }
+
+        @Override
+        public void onFailure(Response response, Throwable failure)
+        {
+            if (hedge.fail(this))
+                hedge.listener.onFailure(response, failure);
+        }
+
+        @Override
+        public void onComplete(Result result)
+        {
+            long now = System.nanoTime();
+            long latency = now - begin;
+            node.outstanding.decrementAndGet();
+            if (!lost)
+            {
+                if (result.isFailed() || result.getResponse().getStatus() >= HttpStatus.INTERNAL_SERVER_ERROR_500)
+                {
+                    node.onFailure(latency, now);
+                }
+                else
+                {
+                    node.onSuccess(latency, now);
+                    samples.record(latency);
+                }
+            }
+            if (hedge.isWinner(this))
+                hedge.listener.onComplete(result);
+        }
+    }
+
+    /**
+     * <p>A fixed size ring of the most recent latency samples,
+     * with percentiles recomputed periodically.</p>
+     */
+    private static class LatencySamples
+    {
+        private static final int MIN_SAMPLES = 32;
+        private static final int UPDATE_INTERVAL = 64;
+
+        private final AtomicLong count = new AtomicLong();
+        private final long[] samples;
+        private volatile long[] sorted;
+
+        private LatencySamples(int capacity)
+        {
+            this.samples = new long[capacity];
+        }
+
+        private void record(long latency)
+        {
+            long index = count.getAndIncrement();
+            samples[(int)(index % samples.length)] = latency;
+            long total = index + 1;
+            if (total >= MIN_SAMPLES && (total == MIN_SAMPLES || total % UPDATE_INTERVAL == 0))
+            {
+                long[] copy = Arrays.copyOf(samples, (int)Math.min(total, samples.length));
+                Arrays.sort(copy);
+                sorted = copy;
+            }
+        }
+
+        private long percentile(double percentile)
+        {
+            long[] sorted = this.sorted;
+            if (sorted == null)
+                return -1;
+            int index = (int)Math.ceil(percentile / 100 * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+        }
+    }
+}
@@ -21,6 +21,7 @@ package org.eclipse.jetty.client;
 import java.io.IOException;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Deque;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -134,6 +135,15 @@ public class MultiplexConnectionPool extends AbstractConnectionPool implements C
         return active(result.connection);
     }
 
+    @Override
+    protected Collection<Connection> idleConnections()
+    {
+        synchronized (this)
+        {
+            return idleConnections.stream().map(holder -> holder.connection).collect(Collectors.toList());
+        }
+    }
+
     @Override
     public boolean release(Connection connection)
     {
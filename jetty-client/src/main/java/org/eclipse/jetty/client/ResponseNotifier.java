@@ -235,6 +235,21 @@ public class ResponseNotifier
         notifyComplete(listeners, new Result(request, response));
     }
 
+    /**
+     * <p>Forwards the events of the given response, with the given content, to the given listeners.</p>
+     *
+     * @param listeners the listeners to notify
+     * @param request the request
+     * @param response the response
+     * @param content the response content, not copied, only sliced for each content listener
+     */
+    public void forwardSuccessComplete(List<Response.ResponseListener> listeners, Request request, Response response, ByteBuffer content)
+    {
+        forwardEvents(listeners, response, content);
+        notifySuccess(listeners, response);
+        notifyComplete(listeners, new Result(request, response));
+    }
+
     public void forwardFailure(List<Response.ResponseListener> listeners, Response response, Throwable failure)
     {
         forwardEvents(listeners, response);
@@ -242,6 +257,18 @@ public class ResponseNotifier
     }
 
     private void forwardEvents(List<Response.ResponseListener> listeners, Response response)
+    {
+        ByteBuffer content = null;
+        if (response instanceof ContentResponse)
+        {
+            byte[] bytes = ((ContentResponse)response).getContent();
+            if (bytes != null)
+                content = ByteBuffer.wrap(bytes);
+        }
+        forwardEvents(listeners, response, content);
+    }
+
+    private void forwardEvents(List<Response.ResponseListener> listeners, Response response, ByteBuffer content)
     {
         notifyBegin(listeners, response);
         Iterator<HttpField> iterator = response.getHeaders().iterator();
@@ -252,19 +279,15 @@ public class ResponseNotifier
                 iterator.remove();
         }
         notifyHeaders(listeners, response);
-        if (response instanceof ContentResponse)
+        if (content != null && content.hasRemaining())
         {
-            byte[] content = ((ContentResponse)response).getContent();
-            if (content != null && content.length > 0)
-            {
-                List<Response.DemandedContentListener> contentListeners = listeners.stream()
-                    .filter(Response.DemandedContentListener.class::isInstance)
-                    .map(Response.DemandedContentListener.class::cast)
-                    .collect(Collectors.toList());
-                ObjLongConsumer<Object> demand = (context, value) -> {};
-                notifyBeforeContent(response, demand, contentListeners);
-                notifyContent(response, demand, ByteBuffer.wrap(content), Callback.NOOP, contentListeners);
-            }
+            List<Response.DemandedContentListener> contentListeners = listeners.stream()
+                .filter(Response.DemandedContentListener.class::isInstance)
+                .map(Response.DemandedContentListener.class::cast)
+                .collect(Collectors.toList());
+            ObjLongConsumer<Object> demand = (context, value) -> {};
+            notifyBeforeContent(response, demand, contentListeners);
+            notifyContent(response, demand, content, Callback.NOOP, contentListeners);
         }
     }
 
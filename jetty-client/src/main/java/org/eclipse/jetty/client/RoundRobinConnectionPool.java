@@ -20,6 +20,7 @@ package org.eclipse.jetty.client;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import org.eclipse.jetty.client.api.Connection;
@@ -136,6 +137,21 @@ public class RoundRobinConnectionPool extends AbstractConnectionPool implements
         }
     }
 
+    @Override
+    protected Collection<Connection> idleConnections()
+    {
+        List<Connection> result = new ArrayList<>();
+        synchronized (this)
+        {
+            for (Entry entry : entries)
+            {
+                if (entry.connection != null && entry.active == 0)
+                    result.add(entry.connection);
+            }
+        }
+        return result;
+    }
+
     @Override
     public boolean release(Connection connection)
     {
@@ -0,0 +1,162 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under
+// the terms of the Eclipse Public License 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0
+//
+// This Source Code may also be made available under the following
+// Secondary Licenses when the conditions for such availability set
+// forth in the Eclipse Public License, v. 2.0 are satisfied:
+// the Apache License v2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.http.HttpStatus;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ArgumentsSource;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ConcurrentConnectionPoolTest extends AbstractHttpClientServerTest
+{
+    private final List<ConcurrentConnectionPool> pools = new ArrayList<>();
+
+    private void startClient(Scenario scenario, int maxUsageCount, long maxAge, boolean threadAffinity) throws Exception
+    {
+        startClient(scenario, httpClient -> httpClient.getTransport().setConnectionPoolFactory(destination ->
+        {
+            ConcurrentConnectionPool pool = new ConcurrentConnectionPool(destination, destination.getHttpClient().getMaxConnectionsPerDestination(), destination);
+            pool.setMaxUsageCount(maxUsageCount);
+            pool.setMaxAge(maxAge);
+            pool.setThreadAffinity(threadAffinity);
+            pools.add(pool);
+            return pool;
+        }));
+    }
+
+    private void awaitRetired(ConcurrentConnectionPool pool, long expected) throws Exception
+    {
+        // Connections are released asynchronously after the response completes.
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (pool.getRetiredConnectionCount() < expected && System.nanoTime() < deadline)
+        {
+            Thread.sleep(10);
+        }
+        assertThat(pool.getRetiredConnectionCount(), greaterThanOrEqualTo(expected));
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(ScenarioProvider.class)
+    public void testConnectionRetiredAfterMaxUsage(Scenario scenario) throws Exception
+    {
+        startServer(scenario, new EmptyServerHandler());
+        startClient(scenario, 2, 0, false);
+
+        for (int i = 0; i < 5; ++i)
+        {
+            ContentResponse response = client.newRequest("localhost", connector.getLocalPort())
+                .scheme(scenario.getScheme())
+                .timeout(5, TimeUnit.SECONDS)
+                .send();
+            assertEquals(HttpStatus.OK_200, response.getStatus());
+        }
+
+        // Each connection is used at most twice, so at least
+        // two connections must have been retired.
+        awaitRetired(pools.get(0), 2);
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(ScenarioProvider.class)
+    public void testConnectionRetiredAfterMaxAge(Scenario scenario) throws Exception
+    {
+        long maxAge = 500;
+        startServer(scenario, new EmptyServerHandler());
+        startClient(scenario, 0, maxAge, false);
+
+        ContentResponse response = client.newRequest("localhost", connector.getLocalPort())
+            .scheme(scenario.getScheme())
+            .timeout(5, TimeUnit.SECONDS)
+            .send();
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+        ConcurrentConnectionPool pool = pools.get(0);
+        assertEquals(0, pool.getRetiredConnectionCount());
+
+        Thread.sleep(2 * maxAge);
+
+        // The old connection is not acquired anymore, so a new one is opened.
+        response = client.newRequest("localhost", connector.getLocalPort())
+            .scheme(scenario.getScheme())
+            .timeout(5, TimeUnit.SECONDS)
+            .send();
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+        awaitRetired(pool, 1);
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(ScenarioProvider.class)
+    public void testConcurrentRequestsWithThreadAffinity(Scenario scenario) throws Exception
+    {
+        startServer(scenario, new EmptyServerHandler());
+        startClient(scenario, 0, 0, true);
+        int maxConnections = 4;
+        client.setMaxConnectionsPerDestination(maxConnections);
+
+        int threads = 8;
+        int iterations = 50;
+        AtomicInteger failures = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch(threads);
+        for (int t = 0; t < threads; ++t)
+        {
+            new Thread(() ->
+            {
+                try
+                {
+                    for (int i = 0; i < iterations; ++i)
+                    {
+                        ContentResponse response = client.newRequest("localhost", connector.getLocalPort())
+                            .scheme(scenario.getScheme())
+                            .timeout(5, TimeUnit.SECONDS)
+                            .send();
+                        if (response.getStatus() != HttpStatus.OK_200)
+                            failures.incrementAndGet();
+                    }
+                }
+                catch (Throwable x)
+                {
+                    failures.incrementAndGet();
+                }
+                finally
+                {
+                    latch.countDown();
+                }
+            }).start();
+        }
+
+        assertTrue(latch.await(30, TimeUnit.SECONDS));
+        assertEquals(0, failures.get());
+        ConcurrentConnectionPool pool = pools.get(0);
+        assertThat(pool.getAcquireCount(), greaterThan(0L));
+        assertThat(pool.getConnectionCount(), lessThanOrEqualTo(maxConnections));
+        assertEquals(0, pool.getActiveConnectionCount());
+    }
+}
@@ -18,6 +18,9 @@
 
 package org.eclipse.jetty.client;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
@@ -25,6 +28,7 @@ import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.eclipse.jetty.client.api.Connection;
 import org.eclipse.jetty.client.api.ContentResponse;
 import org.eclipse.jetty.client.http.HttpClientTransportOverHTTP;
 import org.eclipse.jetty.client.http.HttpConnectionOverHTTP;
@@ -38,6 +42,9 @@ import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -156,6 +163,64 @@ public class HttpClientIdleTimeoutTest
         assertTrue(responseLatch.await(5, TimeUnit.SECONDS));
     }
 
+    @Test
+    public void testPreCreateConnections() throws Exception
+    {
+        start(new EmptyServerHandler());
+
+        client = new HttpClient(new HttpClientTransportOverHTTP(1));
+        client.start();
+
+        HttpDestination destination = (HttpDestination)client.resolveDestination(client.newRequest("localhost", connector.getLocalPort()));
+        DuplexConnectionPool connectionPool = (DuplexConnectionPool)destination.getConnectionPool();
+        connectionPool.preCreateConnections(3).get(5, TimeUnit.SECONDS);
+
+        assertEquals(3, connectionPool.getConnectionCount());
+        assertEquals(3, connectionPool.getIdleConnectionCount());
+        assertEquals(0, connectionPool.getPendingConnectionCount());
+    }
+
+    @Test
+    public void testMinIdleConnectionsAreReplenishedAfterIdleTimeout() throws Exception
+    {
+        start(new EmptyServerHandler());
+
+        int minIdle = 2;
+        long idleTimeout = 500;
+        client = new HttpClient(new HttpClientTransportOverHTTP(1));
+        client.setMinIdleConnectionsPerDestination(minIdle);
+        client.setConnectionMaintenanceInterval(100);
+        client.setIdleTimeout(idleTimeout);
+        client.start();
+
+        ContentResponse response = client.newRequest("localhost", connector.getLocalPort()).send();
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+
+        HttpDestination destination = (HttpDestination)client.resolveDestination(client.newRequest("localhost", connector.getLocalPort()));
+        DuplexConnectionPool connectionPool = (DuplexConnectionPool)destination.getConnectionPool();
+        awaitIdleConnections(connectionPool, minIdle);
+        List<Connection> connections = new ArrayList<>(connectionPool.getIdleConnections());
+
+        // Wait for the connections to idle timeout, they must be replaced by new ones.
+        Thread.sleep(2 * idleTimeout);
+        awaitIdleConnections(connectionPool, minIdle);
+        Collection<Connection> replenished = connectionPool.getIdleConnections();
+        for (Connection connection : connections)
+        {
+            assertThat(replenished, not(hasItem(connection)));
+        }
+    }
+
+    private void awaitIdleConnections(DuplexConnectionPool connectionPool, int expected) throws InterruptedException
+    {
+        long timeout = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (connectionPool.getIdleConnectionCount() != expected && System.nanoTime() < timeout)
+        {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, connectionPool.getIdleConnectionCount());
+    }
+
     private boolean await(CountDownLatch latch)
     {
         try
@@ -926,6 +926,44 @@ public class HttpClientTest extends AbstractHttpClientServerTest
             .send();
     }
 
+    @ParameterizedTest
+    @ArgumentsSource(ScenarioProvider.class)
+    public void testConnectionAttemptDelayWithUnresponsiveAddress(Scenario scenario) throws Exception
+    {
+        startServer(scenario, new EmptyServerHandler());
+
+        int unresponsivePort;
+        try (ServerSocket socket = new ServerSocket(0))
+        {
+            unresponsivePort = socket.getLocalPort();
+        }
+        ClientConnector clientConnector = new ClientConnector();
+        clientConnector.setSslContextFactory(scenario.newClientSslContextFactory());
+        client = new HttpClient(new HttpClientTransportOverHTTP(clientConnector)
+        {
+            @Override
+            public void connect(InetSocketAddress address, Map<String, Object> context)
+            {
+                // Simulate a connect attempt that never completes.
+                if (address.getPort() != unresponsivePort)
+                    super.connect(address, context);
+            }
+        });
+        client.setConnectTimeout(10000);
+        client.setConnectionAttemptDelay(100);
+        client.setSocketAddressResolver((host, port, promise) ->
+            promise.succeeded(List.of(new InetSocketAddress("localhost", unresponsivePort), new InetSocketAddress("localhost", port))));
+        client.start();
+
+        long begin = System.nanoTime();
+        ContentResponse response = client.newRequest("localhost", connector.getLocalPort())
+            .scheme(scenario.getScheme())
+            .timeout(5, TimeUnit.SECONDS)
+            .send();
+        assertEquals(200, response.getStatus());
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin), Matchers.lessThan(5000L));
+    }
+
     @ParameterizedTest
     @ArgumentsSource(ScenarioProvider.class)
     public void testCustomUserAgent(Scenario scenario) throws Exception
@@ -0,0 +1,328 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under
+// the terms of the Eclipse Public License 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0
+//
+// This Source Code may also be made available under the following
+// Secondary Licenses when the conditions for such availability set
+// forth in the Eclipse Public License, v. 2.0 are satisfied:
+// the Apache License v2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.client;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.toolchain.test.MavenTestingUtils;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ArgumentsSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HttpResponseCacheTest extends AbstractHttpClientServerTest
+{
+    private final AtomicInteger serverRequests = new AtomicInteger();
+    private HttpResponseCache cache;
+
+    private void start(Scenario scenario, HttpResponseCache.Storage storage, EmptyServerHandler handler) throws Exception
+    {
+        startServer(scenario, handler);
+        startClient(scenario, httpClient ->
+        {
+            cache = storage == null ? new HttpResponseCache(httpClient) : new HttpResponseCache(httpClient, storage);
+            httpClient.setResponseCache(cache);
+        });
+    }
+
+    private ContentResponse send(Scenario scenario, String path) throws Exception
+    {
+        return client.newRequest("localhost", connector.getLocalPort())
+            .scheme(scenario.getScheme())
+            .path(path)
+            .timeout(5, TimeUnit.SECONDS)
+            .send();
+    }
+
+    private EmptyServerHandler newHandler(String cacheControl)
+    {
+        return new EmptyServerHandler()
+        {
+            @Override
+            protected void service(String target, org.eclipse.jetty.server.Request jettyRequest, HttpServletRequest request, HttpServletResponse response) throws IOException
+            {
+                serverRequests.incrementAndGet();
+                if (cacheControl != null)
+                    response.setHeader(HttpHeader.CACHE_CONTROL.asString(), cacheControl);
+                response.setContentType("text/plain;charset=UTF-8");
+                response.getOutputStream().write(target.getBytes(StandardCharsets.UTF_8));
+            }
+        };
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(ScenarioProvider.class)
+    public void testFreshResponseServedFromCache(Scenario scenario) throws Exception
+    {
+        start(scenario, null, newHandler("max-age=60"));
+
+        ContentResponse response1 = send(scenario, "/fresh");
+        assertEquals(HttpStatus.OK_200, response1.getStatus());
+        ContentResponse response2 = send(scenario, "/fresh");
+        assertEquals(HttpStatus.OK_200, response2.getStatus());
+        assertEquals("/fresh", response2.getContentAsString());
+        assertEquals("text/plain", response2.getMediaType());
+
+        assertEquals(1, serverRequests.get());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getEntryCount());
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(ScenarioProvider.class)
+    public void testNoStoreResponseNotCached(Scenario scenario) throws Exception
+    {
+        start(scenario, null, newHandler("no-store"));
+
+        send(scenario, "/no-store");
+        ContentResponse response = send(scenario, "/no-store");
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+
+        assertEquals(2, serverRequests.get());
+        assertEquals(0, cache.getEntryCount());
+        assertEquals(0, cache.getHits());
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(ScenarioProvider.class)
+    public void testRevalidationWithETag(Scenario scenario) throws Exception
+    {
+        String etag = "\"v1\"";
+        start(scenario, null, new EmptyServerHandler()
+        {
+            @Override
+            protected void service(String target, org.eclipse.jetty.server.Request jettyRequest, HttpServletRequest request, HttpServletResponse response) throws IOException
+            {
+                serverRequests.incrementAndGet();
+                response.setHeader(HttpHeader.CACHE_CONTROL.asString(), "no-cache");
+                response.setHeader(HttpHeader.ETAG.asString(), etag);
+                if (etag.equals(request.getHeader(HttpHeader.IF_NONE_MATCH.asString())))
+                {
+                    response.setStatus(HttpStatus.NOT_MODIFIED_304);
+                    return;
+                }
+                response.getOutputStream().write("content".getBytes(StandardCharsets.UTF_8));
+            }
+        });
+
+        ContentResponse response1 = send(scenario, "/etag");
+        assertEquals(HttpStatus.OK_200, response1.getStatus());
+        ContentResponse response2 = send(scenario, "/etag");
+        assertEquals(HttpStatus.OK_200, response2.getStatus());
+        assertEquals("content", response2.getContentAsString());
+        assertEquals(etag, response2.getHeaders().get(HttpHeader.ETAG));
+
+        assertEquals(2, serverRequests.get());
+        assertEquals(0, cache.getHits());
+        assertEquals(1, cache.getRevalidations());
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(ScenarioProvider.class)
+    public void testVary(Scenario scenario) throws Exception
+    {
+        String variant = "X-Variant";
+        start(scenario, null, new EmptyServerHandler()
+        {
+            @Override
+            protected void service(String target, org.eclipse.jetty.server.Request jettyRequest, HttpServletRequest request, HttpServletResponse response) throws IOException
+            {
+                serverRequests.incrementAndGet();
+                response.setHeader(HttpHeader.CACHE_CONTROL.asString(), "max-age=60");
+                response.setHeader(HttpHeader.VARY.asString(), variant);
+                response.getOutputStream().write(String.valueOf(request.getHeader(variant)).getBytes(StandardCharsets.UTF_8));
+            }
+        });
+
+        for (String value : new String[]{"a", "b", "a", "b"})
+        {
+            ContentResponse response = client.newRequest("localhost", connector.getLocalPort())
+                .scheme(scenario.getScheme())
+                .path("/vary")
+                .header(variant, value)
+                .timeout(5, TimeUnit.SECONDS)
+                .send();
+            assertEquals(value, response.getContentAsString());
+        }
+
+        assertEquals(2, serverRequests.get());
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getEntryCount());
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(ScenarioProvider.class)
+    public void testUnsafeMethodInvalidates(Scenario scenario) throws Exception
+    {
+        start(scenario, null, newHandler("max-age=60"));
+
+        send(scenario, "/resource");
+        assertEquals(1, cache.getEntryCount());
+
+        ContentResponse response = client.newRequest("localhost", connector.getLocalPort())
+            .scheme(scenario.getScheme())
+            .method(HttpMethod.POST)
+            .path("/resource")
+            .timeout(5, TimeUnit.SECONDS)
+            .send();
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+        assertEquals(0, cache.getEntryCount());
+
+        send(scenario, "/resource");
+        assertEquals(3, serverRequests.get());
+        assertEquals(0, cache.getHits());
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(ScenarioProvider.class)
+    public void testRequestNoCacheAndOnlyIfCached(Scenario scenario) throws Exception
+    {
+        start(scenario, null, newHandler("max-age=60"));
+
+        ContentResponse response = client.newRequest("localhost", connector.getLocalPort())
+            .scheme(scenario.getScheme())
+            .path("/missing")
+            .header(HttpHeader.CACHE_CONTROL, "only-if-cached")
+            .timeout(5, TimeUnit.SECONDS)
+            .send();
+        assertEquals(HttpStatus.GATEWAY_TIMEOUT_504, response.getStatus());
+        assertEquals(0, serverRequests.get());
+
+        send(scenario, "/resource");
+        response = client.newRequest("localhost", connector.getLocalPort())
+            .scheme(scenario.getScheme())
+            .path("/resource")
+            .header(HttpHeader.CACHE_CONTROL, "no-cache")
+            .timeout(5, TimeUnit.SECONDS)
+            .send();
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+        assertEquals(2, serverRequests.get());
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(ScenarioProvider.class)
+    public void testLeastRecentlyUsedEviction(Scenario scenario) throws Exception
+    {
+        start(scenario, null, newHandler("max-age=60"));
+        cache.setMaxEntries(2);
+
+        send(scenario, "/1");
+        send(scenario, "/2");
+        // Access /1 so that /2 becomes the least recently used.
+        send(scenario, "/1");
+        send(scenario, "/3");
+        assertEquals(2, cache.getEntryCount());
+        assertEquals(1, cache.getEvictions());
+
+        send(scenario, "/1");
+        send(scenario, "/2");
+        assertEquals(4, serverRequests.get());
+        assertEquals(2, cache.getURICount());
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(ScenarioProvider.class)
+    public void testEvictionOfVariants(Scenario scenario) throws Exception
+    {
+        String variant = "X-Variant";
+        start(scenario, null, new EmptyServerHandler()
+        {
+            @Override
+            protected void service(String target, org.eclipse.jetty.server.Request jettyRequest, HttpServletRequest request, HttpServletResponse response) throws IOException
+            {
+                serverRequests.incrementAndGet();
+                response.setHeader(HttpHeader.CACHE_CONTROL.asString(), "max-age=60");
+                response.setHeader(HttpHeader.VARY.asString(), variant);
+                response.getOutputStream().write(target.getBytes(StandardCharsets.UTF_8));
+            }
+        });
+        cache.setMaxEntries(2);
+
+        for (int i = 0; i < 10; ++i)
+        {
+            client.newRequest("localhost", connector.getLocalPort())
+                .scheme(scenario.getScheme())
+                .path("/vary/" + i)
+                .header(variant, String.valueOf(i % 2))
+                .timeout(5, TimeUnit.SECONDS)
+                .send();
+        }
+
+        // The URIs are forgotten when their last variant is evicted.
+        assertEquals(2, cache.getEntryCount());
+        assertEquals(2, cache.getURICount());
+        assertEquals(8, cache.getEvictions());
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(ScenarioProvider.class)
+    public void testHitServesReadOnlyContent(Scenario scenario) throws Exception
+    {
+        start(scenario, null, newHandler("max-age=60"));
+        send(scenario, "/read-only");
+
+        AtomicBoolean readOnly = new AtomicBoolean();
+        ContentResponse response = client.newRequest("localhost", connector.getLocalPort())
+            .scheme(scenario.getScheme())
+            .path("/read-only")
+            .onResponseContent((r, buffer) -> readOnly.set(buffer.isReadOnly()))
+            .timeout(5, TimeUnit.SECONDS)
+            .send();
+
+        assertEquals("/read-only", response.getContentAsString());
+        assertEquals(1, cache.getHits());
+        assertTrue(readOnly.get());
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(ScenarioProvider.class)
+    public void testFileStorage(Scenario scenario) throws Exception
+    {
+        Path directory = MavenTestingUtils.getTargetTestingPath(HttpResponseCacheTest.class.getSimpleName());
+        Files.createDirectories(directory);
+        start(scenario, new HttpResponseCache.FileStorage(directory), newHandler("max-age=60"));
+
+        send(scenario, "/file");
+        ContentResponse response = send(scenario, "/file");
+        assertEquals("/file", response.getContentAsString());
+        assertEquals(1, serverRequests.get());
+        assertEquals(1, cache.getHits());
+        assertEquals(5, cache.getSize());
+
+        cache.clear();
+        try (var files = Files.list(directory))
+        {
+            assertEquals(0, files.count());
+        }
+    }
+}
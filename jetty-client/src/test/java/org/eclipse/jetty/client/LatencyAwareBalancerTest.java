@@ -0,0 +1,235 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under
+// the terms of the Eclipse Public License 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0
+//
+// This Source Code may also be made available under the following
+// Secondary Licenses when the conditions for such availability set
+// forth in the Eclipse Public License, v. 2.0 are satisfied:
+// the Apache License v2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.client;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.client.util.FutureResponseListener;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class LatencyAwareBalancerTest
+{
+    private final CountDownLatch stopLatch = new CountDownLatch(1);
+    private Server server;
+    private ServerConnector fastConnector;
+    private ServerConnector slowConnector;
+    private HttpClient client;
+
+    private void start(EmptyServerHandler handler) throws Exception
+    {
+        QueuedThreadPool serverThreads = new QueuedThreadPool();
+        serverThreads.setName("server");
+        server = new Server(serverThreads);
+        fastConnector = new ServerConnector(server);
+        server.addConnector(fastConnector);
+        slowConnector = new ServerConnector(server);
+        server.addConnector(slowConnector);
+        server.setHandler(handler);
+        server.start();
+
+        client = new HttpClient();
+        client.start();
+    }
+
+    @AfterEach
+    public void dispose() throws Exception
+    {
+        stopLatch.countDown();
+        if (client != null)
+            client.stop();
+        if (server != null)
+            server.stop();
+    }
+
+    private void sleep(long millis) throws IOException
+    {
+        try
+        {
+            Thread.sleep(millis);
+        }
+        catch (InterruptedException x)
+        {
+            throw new InterruptedIOException();
+        }
+    }
+
+    private void await() throws IOException
+    {
+        try
+        {
+            stopLatch.await(10, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException x)
+        {
+            throw new InterruptedIOException();
+        }
+    }
+
+    private URI originOf(ServerConnector connector)
+    {
+        return URI.create("http://localhost:" + connector.getLocalPort());
+    }
+
+    private ContentResponse send(LatencyAwareBalancer balancer, String path) throws Exception
+    {
+        Request request = client.newRequest("http://localhost" + path).timeout(5, TimeUnit.SECONDS);
+        FutureResponseListener listener = new FutureResponseListener(request);
+        balancer.send(request, listener);
+        return listener.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testFasterOriginPreferred() throws Exception
+    {
+        AtomicInteger fastRequests = new AtomicInteger();
+        start(new EmptyServerHandler()
+        {
+            @Override
+            protected void service(String target, org.eclipse.jetty.server.Request jettyRequest, HttpServletRequest request, HttpServletResponse response) throws IOException
+            {
+                if (jettyRequest.getHttpChannel().getConnector() == fastConnector)
+                    fastRequests.incrementAndGet();
+                else
+                    sleep(20);
+            }
+        });
+
+        LatencyAwareBalancer balancer = new LatencyAwareBalancer(client, List.of(originOf(fastConnector), originOf(slowConnector)));
+        int requests = 50;
+        for (int i = 0; i < requests; ++i)
+        {
+            assertEquals(HttpStatus.OK_200, send(balancer, "/").getStatus());
+        }
+
+        assertEquals(requests, balancer.getRequests());
+        assertThat(fastRequests.get(), greaterThan(requests * 3 / 4));
+    }
+
+    @Test
+    public void testHedgedRequestWins() throws Exception
+    {
+        start(new EmptyServerHandler()
+        {
+            @Override
+            protected void service(String target, org.eclipse.jetty.server.Request jettyRequest, HttpServletRequest request, HttpServletResponse response) throws IOException
+            {
+                if (jettyRequest.getHttpChannel().getConnector() == slowConnector)
+                    await();
+            }
+        });
+
+        // Open the connection to the fast origin, so that
+        // requests sent to it are not slower than the hedge delay.
+        assertEquals(HttpStatus.OK_200, client.GET(originOf(fastConnector)).getStatus());
+
+        // The origin of the first attempt is random, so retry until
+        // the first attempt is sent to the stalled origin and is hedged.
+        LatencyAwareBalancer balancer = null;
+        for (int i = 0; i < 20; ++i)
+        {
+            balancer = new LatencyAwareBalancer(client, List.of(originOf(fastConnector), originOf(slowConnector)));
+            balancer.setHedging(true);
+            balancer.setMaxHedgeDelay(100);
+
+            long begin = System.nanoTime();
+            assertEquals(HttpStatus.OK_200, send(balancer, "/").getStatus());
+            assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin), lessThan(5000L));
+            if (balancer.getHedges() > 0)
+                break;
+        }
+
+        assertEquals(1, balancer.getHedges());
+        assertEquals(1, balancer.getHedgeWins());
+    }
+
+    @Test
+    public void testFailoverToAnotherOrigin() throws Exception
+    {
+        start(new EmptyServerHandler());
+        URI closed = originOf(slowConnector);
+        slowConnector.stop();
+
+        // Failed requests are retried even without hedging.
+        LatencyAwareBalancer balancer = new LatencyAwareBalancer(client, List.of(originOf(fastConnector), closed));
+        int requests = 50;
+        for (int i = 0; i < requests; ++i)
+        {
+            assertEquals(HttpStatus.OK_200, send(balancer, "/").getStatus());
+        }
+
+        // Every attempt sent to the closed origin is retried,
+        // but the closed origin is ejected after each failure.
+        assertEquals(0, balancer.getHedges());
+        assertThat(balancer.getRetries(), lessThanOrEqualTo(5L));
+        assertEquals(balancer.getRetries(), balancer.getEjections());
+    }
+
+    @Test
+    public void testFastServerErrorsDoNotAttractRequests() throws Exception
+    {
+        AtomicInteger errors = new AtomicInteger();
+        start(new EmptyServerHandler()
+        {
+            @Override
+            protected void service(String target, org.eclipse.jetty.server.Request jettyRequest, HttpServletRequest request, HttpServletResponse response) throws IOException
+            {
+                if (jettyRequest.getHttpChannel().getConnector() == fastConnector)
+                {
+                    errors.incrementAndGet();
+                    response.setStatus(HttpStatus.SERVICE_UNAVAILABLE_503);
+                }
+                else
+                {
+                    sleep(10);
+                }
+            }
+        });
+
+        LatencyAwareBalancer balancer = new LatencyAwareBalancer(client, List.of(originOf(fastConnector), originOf(slowConnector)));
+        int requests = 50;
+        for (int i = 0; i < requests; ++i)
+        {
+            send(balancer, "/");
+        }
+
+        assertThat(errors.get(), lessThanOrEqualTo(5));
+        assertEquals(errors.get(), balancer.getEjections());
+    }
+}
@@ -22,6 +22,7 @@ public class CompressedContentFormat
 {
     public static final CompressedContentFormat GZIP = new CompressedContentFormat("gzip", ".gz");
     public static final CompressedContentFormat BR = new CompressedContentFormat("br", ".br");
+    public static final CompressedContentFormat ZSTD = new CompressedContentFormat("zstd", ".zst");
     public static final CompressedContentFormat[] NONE = new CompressedContentFormat[0];
 
     public final String _encoding;
@@ -39,6 +40,30 @@ public class CompressedContentFormat
         _contentEncoding = new PreEncodedHttpField(HttpHeader.CONTENT_ENCODING, encoding);
     }
 
+    /**
+     * @param encoding the name of a content coding
+     * @return the known format of the content coding, or a new format with the encoding name as extension
+     */
+    public static CompressedContentFormat forEncoding(String encoding)
+    {
+        for (CompressedContentFormat format : new CompressedContentFormat[]{GZIP, BR, ZSTD})
+        {
+            if (format._encoding.equalsIgnoreCase(encoding))
+                return format;
+        }
+        return new CompressedContentFormat(encoding, "." + encoding);
+    }
+
+    /**
+     * @param etag an entity tag
+     * @return the entity tag of the content encoded in this format
+     */
+    public String etag(String etag)
+    {
+        int end = etag.length() - 1;
+        return (etag.charAt(end) == '"') ? etag.substring(0, end) + _etag + '"' : etag + _etag;
+    }
+
     @Override
     public boolean equals(Object o)
     {
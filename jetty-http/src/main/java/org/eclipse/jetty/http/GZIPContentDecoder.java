@@ -28,14 +28,14 @@ import java.util.zip.ZipException;
 
 import org.eclipse.jetty.io.ByteBufferPool;
 import org.eclipse.jetty.util.BufferUtil;
-import org.eclipse.jetty.util.component.Destroyable;
+import org.eclipse.jetty.util.compression.Compression;
 
 /**
  * <p>Decoder for the "gzip" content encoding.</p>
  * <p>This decoder inflates gzip compressed data, and has
  * been optimized for async usage with minimal data copies.</p>
  */
-public class GZIPContentDecoder implements Destroyable
+public class GZIPContentDecoder implements Compression.Decoder
 {
     // Unsigned Integer Max == 2^32
     private static final long UINT_MAX = 0xFFFFFFFFL;
@@ -85,6 +85,7 @@ public class GZIPContentDecoder implements Destroyable
      * @param compressed the buffer containing compressed data.
      * @return a buffer containing inflated data.
      */
+    @Override
     public ByteBuffer decode(ByteBuffer compressed)
     {
         decodeChunks(compressed);
@@ -423,6 +424,7 @@ public class GZIPContentDecoder implements Destroyable
         _inflater.end();
     }
 
+    @Override
     public boolean isFinished()
     {
         return _state == State.INITIAL;
@@ -451,6 +453,7 @@ public class GZIPContentDecoder implements Destroyable
      *
      * @param buffer the buffer to release.
      */
+    @Override
     public void release(ByteBuffer buffer)
     {
         if (_pool != null && !BufferUtil.isTheEmptyBuffer(buffer))
@@ -0,0 +1,208 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under
+// the terms of the Eclipse Public License 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0
+//
+// This Source Code may also be made available under the following
+// Secondary Licenses when the conditions for such availability set
+// forth in the Eclipse Public License, v. 2.0 are satisfied:
+// the Apache License v2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.compression.Compression;
+import org.eclipse.jetty.util.compression.DeflaterPool;
+
+/**
+ * <p>The {@code gzip} content coding.</p>
+ * <p>Content is encoded with pooled {@link Deflater}s and decoded with a {@link GZIPContentDecoder}.</p>
+ */
+public class GzipCompression implements Compression
+{
+    private static final byte[] GZIP_HEADER = new byte[]{(byte)0x1f, (byte)0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+    private static final byte[] NO_INPUT = new byte[0];
+
+    private final DeflaterPool _deflaterPool;
+    private final ByteBufferPool _bufferPool;
+
+    public GzipCompression()
+    {
+        this(new DeflaterPool(-1, Deflater.DEFAULT_COMPRESSION, true), null);
+    }
+
+    /**
+     * @param deflaterPool the pool of the deflaters used to encode content, that must not wrap their output
+     * @param bufferPool the pool of the buffers of decoded content, or null to allocate them
+     */
+    public GzipCompression(DeflaterPool deflaterPool, ByteBufferPool bufferPool)
+    {
+        _deflaterPool = deflaterPool;
+        _bufferPool = bufferPool;
+    }
+
+    @Override
+    public String getEncoding()
+    {
+        return CompressedContentFormat.GZIP._encoding;
+    }
+
+    @Override
+    public Encoder newEncoder()
+    {
+        return new GzipEncoder(_deflaterPool);
+    }
+
+    @Override
+    public Decoder newDecoder(int bufferSize)
+    {
+        return new GzipDecoder(_bufferPool, bufferSize);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{%s}", getClass().getSimpleName(), hashCode(), getEncoding());
+    }
+
+    private static class GzipEncoder implements Encoder
+    {
+        private final CRC32 _crc = new CRC32();
+        private final DeflaterPool _pool;
+        private Deflater _deflater;
+        private boolean _header;
+        private boolean _finished;
+
+        private GzipEncoder(DeflaterPool pool)
+        {
+            _pool = pool;
+            _deflater = pool.acquire();
+        }
+
+        @Override
+        public void setInput(ByteBuffer content)
+        {
+            _crc.update(content.slice());
+            _deflater.setInput(content);
+        }
+
+        @Override
+        public boolean needsInput()
+        {
+            return _deflater.needsInput();
+        }
+
+        @Override
+        public void finish()
+        {
+            _deflater.finish();
+        }
+
+        @Override
+        public boolean finished()
+        {
+            return _finished;
+        }
+
+        @Override
+        public int encode(ByteBuffer buffer, boolean flush)
+        {
+            int position = BufferUtil.flipToFill(buffer);
+            int start = buffer.position();
+            try
+            {
+                if (!_header)
+                {
+                    if (buffer.remaining() < GZIP_HEADER.length)
+                        return 0;
+                    buffer.put(GZIP_HEADER);
+                    _header = true;
+                }
+
+                if (!_deflater.finished())
+                {
+                    _deflater.deflate(buffer, flush ? Deflater.SYNC_FLUSH : Deflater.NO_FLUSH);
+                    // Forget the consumed content, as its buffer may then be reused and refilled.
+                    if (_deflater.needsInput())
+                        _deflater.setInput(NO_INPUT);
+                }
+
+                // The trailer is the CRC and the size of the content, in little endian.
+                if (_deflater.finished() && !_finished && buffer.remaining() >= 8)
+                {
+                    putIntLittleEndian(buffer, (int)_crc.getValue());
+                    putIntLittleEndian(buffer, (int)_deflater.getBytesRead());
+                    _finished = true;
+                }
+
+                return buffer.position() - start;
+            }
+            finally
+            {
+                BufferUtil.flipToFlush(buffer, position);
+            }
+        }
+
+        private static void putIntLittleEndian(ByteBuffer buffer, int value)
+        {
+            buffer.put((byte)(value & 0xFF));
+            buffer.put((byte)((value >>> 8) & 0xFF));
+            buffer.put((byte)((value >>> 16) & 0xFF));
+            buffer.put((byte)((value >>> 24) & 0xFF));
+        }
+
+        @Override
+        public void destroy()
+        {
+            if (_deflater != null)
+            {
+                _pool.release(_deflater);
+                _deflater = null;
+            }
+        }
+    }
+
+    /**
+     * A {@link GZIPContentDecoder} that returns the decoded content one chunk at a time,
+     * so that it is consumed before more content is decoded.
+     */
+    public static class GzipDecoder extends GZIPContentDecoder
+    {
+        private ByteBuffer _chunk;
+
+        public GzipDecoder(ByteBufferPool pool, int bufferSize)
+        {
+            super(pool, bufferSize);
+        }
+
+        @Override
+        protected boolean decodedChunk(ByteBuffer chunk)
+        {
+            _chunk = chunk;
+            return true;
+        }
+
+        @Override
+        public ByteBuffer decode(ByteBuffer compressed)
+        {
+            _chunk = null;
+            decodeChunks(compressed);
+            ByteBuffer chunk = _chunk;
+            _chunk = null;
+            return chunk == null ? BufferUtil.EMPTY_BUFFER : chunk;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under
+// the terms of the Eclipse Public License 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0
+//
+// This Source Code may also be made available under the following
+// Secondary Licenses when the conditions for such availability set
+// forth in the Eclipse Public License, v. 2.0 are satisfied:
+// the Apache License v2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.eclipse.jetty.io.ArrayByteBufferPool;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.compression.Compression;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GzipCompressionTest
+{
+    private static byte[] content(int size)
+    {
+        Random random = new Random(size);
+        byte[] content = new byte[size];
+        for (int i = 0; i < size; i++)
+        {
+            content[i] = (byte)('a' + random.nextInt(8));
+        }
+        return content;
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {16, 64, 4096})
+    public void testEncode(int bufferSize) throws IOException
+    {
+        byte[] content = content(100_000);
+        Compression.Encoder encoder = new GzipCompression().newEncoder();
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        ByteBuffer buffer = BufferUtil.allocate(bufferSize);
+
+        // Pass the content in chunks, reusing the same buffer as an application would.
+        ByteBuffer input = BufferUtil.allocate(1000);
+        for (int offset = 0; offset < content.length; offset += 1000)
+        {
+            BufferUtil.clear(input);
+            BufferUtil.append(input, content, offset, 1000);
+            encoder.setInput(input);
+            while (!encoder.needsInput())
+            {
+                BufferUtil.clear(buffer);
+                encoder.encode(buffer, false);
+                encoded.write(BufferUtil.toArray(buffer));
+            }
+        }
+        encoder.finish();
+        while (!encoder.finished())
+        {
+            BufferUtil.clear(buffer);
+            encoder.encode(buffer, false);
+            encoded.write(BufferUtil.toArray(buffer));
+        }
+        encoder.destroy();
+
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        IO.copy(new GZIPInputStream(new ByteArrayInputStream(encoded.toByteArray())), decoded);
+        assertArrayEquals(content, decoded.toByteArray());
+    }
+
+    @Test
+    public void testDecode() throws IOException
+    {
+        byte[] content = content(100_000);
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        try (GZIPOutputStream output = new GZIPOutputStream(encoded))
+        {
+            output.write(content);
+        }
+
+        Compression.Decoder decoder = new GzipCompression(null, new ArrayByteBufferPool()).newDecoder(1024);
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        ByteBuffer input = ByteBuffer.wrap(encoded.toByteArray());
+        while (true)
+        {
+            ByteBuffer chunk = decoder.decode(input);
+            if (!chunk.hasRemaining())
+            {
+                decoder.release(chunk);
+                if (!input.hasRemaining())
+                    break;
+                continue;
+            }
+            assertTrue(chunk.remaining() <= 1024);
+            decoded.write(BufferUtil.toArray(chunk));
+            decoder.release(chunk);
+        }
+        assertTrue(decoder.isFinished());
+        decoder.destroy();
+
+        assertArrayEquals(content, decoded.toByteArray());
+    }
+}
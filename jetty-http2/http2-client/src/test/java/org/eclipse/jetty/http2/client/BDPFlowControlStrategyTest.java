@@ -0,0 +1,182 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under
+// the terms of the Eclipse Public License 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0
+//
+// This Source Code may also be made available under the following
+// Secondary Licenses when the conditions for such availability set
+// forth in the Eclipse Public License, v. 2.0 are satisfied:
+// the Apache License v2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2.client;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.http2.BDPFlowControlStrategy;
+import org.eclipse.jetty.http2.FlowControlStrategy;
+import org.eclipse.jetty.http2.HTTP2Session;
+import org.eclipse.jetty.http2.api.Session;
+import org.eclipse.jetty.http2.api.Stream;
+import org.eclipse.jetty.http2.api.server.ServerSessionListener;
+import org.eclipse.jetty.http2.frames.DataFrame;
+import org.eclipse.jetty.http2.frames.HeadersFrame;
+import org.eclipse.jetty.util.Atomics;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.FutureCallback;
+import org.eclipse.jetty.util.FuturePromise;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BDPFlowControlStrategyTest extends FlowControlStrategyTest
+{
+    private final BDPFlowControlStrategy.Factory factory = new BDPFlowControlStrategy.Factory();
+
+    public BDPFlowControlStrategyTest()
+    {
+        // The inherited tests expect static windows.
+        factory.setMaxWindow(0);
+    }
+
+    @Override
+    protected FlowControlStrategy newFlowControlStrategy()
+    {
+        return factory.newFlowControlStrategy();
+    }
+
+    @Test
+    public void testWindowsGrowWithinMemoryBudget() throws Exception
+    {
+        int maxMemory = 1024 * 1024;
+        factory.setMaxWindow(4 * 1024 * 1024);
+        factory.setMaxMemory(maxMemory);
+        factory.setPingInterval(100);
+
+        byte[] content = new byte[16 * 1024 * 1024];
+        AtomicInteger maxSessionWindow = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch(1);
+        start(new ServerSessionListener.Adapter()
+        {
+            @Override
+            public Stream.Listener onNewStream(Stream stream, HeadersFrame frame)
+            {
+                HTTP2Session session = (HTTP2Session)stream.getSession();
+                BDPFlowControlStrategy flowControl = (BDPFlowControlStrategy)session.getFlowControlStrategy();
+                return new Stream.Listener.Adapter()
+                {
+                    @Override
+                    public void onData(Stream stream, DataFrame frame, Callback callback)
+                    {
+                        Atomics.updateMax(maxSessionWindow, flowControl.getSessionRecvWindow());
+                        callback.succeeded();
+                        if (frame.isEndStream())
+                            latch.countDown();
+                    }
+                };
+            }
+        });
+
+        Session session = newClient(new Session.Listener.Adapter());
+        MetaData.Request metaData = newRequest("POST", new HttpFields());
+        HeadersFrame requestFrame = new HeadersFrame(metaData, null, false);
+        FuturePromise<Stream> streamPromise = new FuturePromise<>();
+        session.newStream(requestFrame, streamPromise, new Stream.Listener.Adapter());
+        Stream stream = streamPromise.get(5, TimeUnit.SECONDS);
+        stream.data(new DataFrame(stream.getId(), ByteBuffer.wrap(content), true), Callback.NOOP);
+
+        assertTrue(latch.await(15, TimeUnit.SECONDS));
+        assertThat(maxSessionWindow.get(), greaterThan(FlowControlStrategy.DEFAULT_WINDOW_SIZE));
+        assertThat(maxSessionWindow.get(), lessThanOrEqualTo(FlowControlStrategy.DEFAULT_WINDOW_SIZE + maxMemory));
+        assertThat(factory.getCommittedMemory(), lessThanOrEqualTo((long)maxMemory));
+
+        // The memory is released when the sessions are closed.
+        session.close(0, null, Callback.NOOP);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (factory.getCommittedMemory() > 0 && System.nanoTime() < deadline)
+        {
+            Thread.sleep(10);
+        }
+        assertEquals(0, factory.getCommittedMemory());
+    }
+
+    @Test
+    public void testWindowsShrinkWithoutFlowControlError() throws Exception
+    {
+        factory.setMaxWindow(4 * 1024 * 1024);
+        // Not too small, or the fence PINGs exceed the PING rate control of the client.
+        factory.setPingInterval(50);
+
+        AtomicReference<BDPFlowControlStrategy> serverFlowControl = new AtomicReference<>();
+        Semaphore ended = new Semaphore(0);
+        start(new ServerSessionListener.Adapter()
+        {
+            @Override
+            public Stream.Listener onNewStream(Stream stream, HeadersFrame frame)
+            {
+                HTTP2Session session = (HTTP2Session)stream.getSession();
+                serverFlowControl.set((BDPFlowControlStrategy)session.getFlowControlStrategy());
+                return new Stream.Listener.Adapter()
+                {
+                    @Override
+                    public void onData(Stream stream, DataFrame frame, Callback callback)
+                    {
+                        callback.succeeded();
+                        if (frame.isEndStream())
+                            ended.release();
+                    }
+                };
+            }
+        });
+
+        Session session = newClient(new Session.Listener.Adapter());
+
+        // Grow the windows with a large upload.
+        FuturePromise<Stream> streamPromise = new FuturePromise<>();
+        session.newStream(new HeadersFrame(newRequest("POST", new HttpFields()), null, false), streamPromise, new Stream.Listener.Adapter());
+        Stream stream = streamPromise.get(5, TimeUnit.SECONDS);
+        stream.data(new DataFrame(stream.getId(), ByteBuffer.allocate(16 * 1024 * 1024), true), Callback.NOOP);
+        assertTrue(ended.tryAcquire(1, TimeUnit.MINUTES));
+        int grownWindow = serverFlowControl.get().getInitialStreamRecvWindow();
+        assertThat(grownWindow, greaterThan(FlowControlStrategy.DEFAULT_WINDOW_SIZE));
+
+        // Trickle data on another stream, so that the BDP samples shrink the windows.
+        streamPromise = new FuturePromise<>();
+        session.newStream(new HeadersFrame(newRequest("POST", new HttpFields()), null, false), streamPromise, new Stream.Listener.Adapter());
+        stream = streamPromise.get(5, TimeUnit.SECONDS);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(15);
+        while (serverFlowControl.get().getInitialStreamRecvWindow() == grownWindow && System.nanoTime() < deadline)
+        {
+            FutureCallback callback = new FutureCallback();
+            stream.data(new DataFrame(stream.getId(), ByteBuffer.allocate(16), false), callback);
+            callback.get(5, TimeUnit.SECONDS);
+            Thread.sleep(5);
+        }
+        assertThat(serverFlowControl.get().getInitialStreamRecvWindow(), lessThan(grownWindow));
+
+        // The stream that existed when the windows shrank can still send at full speed.
+        stream.data(new DataFrame(stream.getId(), ByteBuffer.allocate(16 * 1024 * 1024), true), Callback.NOOP);
+        assertTrue(ended.tryAcquire(1, TimeUnit.MINUTES));
+        assertFalse(session.isClosed());
+    }
+}
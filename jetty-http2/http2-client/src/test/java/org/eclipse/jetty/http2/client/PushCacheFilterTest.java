@@ -46,6 +46,8 @@ import org.eclipse.jetty.http2.frames.HeadersFrame;
 import org.eclipse.jetty.http2.frames.PushPromiseFrame;
 import org.eclipse.jetty.http2.frames.ResetFrame;
 import org.eclipse.jetty.http2.frames.SettingsFrame;
+import org.eclipse.jetty.http2.server.AbstractHTTP2ServerConnectionFactory;
+import org.eclipse.jetty.http2.server.PushControl;
 import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.eclipse.jetty.servlets.PushCacheFilter;
 import org.eclipse.jetty.util.Callback;
@@ -355,6 +357,8 @@ public class PushCacheFilterTest extends AbstractTest
         // We should not receive pushed data that we reset.
         assertFalse(pushLatch.await(1, TimeUnit.SECONDS));
         assertTrue(primaryResponseLatch.await(5, TimeUnit.SECONDS));
+        PushControl pushControl = connector.getConnectionFactory(AbstractHTTP2ServerConnectionFactory.class).getPushControl();
+        assertEquals(1, pushControl.getPushes());
 
         // Make sure the session is sane by requesting the secondary resource.
         HttpFields secondaryFields = new HttpFields();
@@ -374,6 +378,88 @@ public class PushCacheFilterTest extends AbstractTest
         assertTrue(secondaryResponseLatch.await(5, TimeUnit.SECONDS));
     }
 
+    @Test
+    public void testPushSkippedForReceivedResource() throws Exception
+    {
+        final String primaryResource = "/primary.html";
+        final String secondaryResource = "/secondary.png";
+        start(new HttpServlet()
+        {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException
+            {
+                String requestURI = req.getRequestURI();
+                ServletOutputStream output = resp.getOutputStream();
+                if (requestURI.endsWith(primaryResource))
+                    output.print("<html><head></head><body>PRIMARY</body></html>");
+                else if (requestURI.endsWith(secondaryResource))
+                    output.write("SECONDARY".getBytes(StandardCharsets.UTF_8));
+            }
+        });
+        PushControl pushControl = connector.getConnectionFactory(AbstractHTTP2ServerConnectionFactory.class).getPushControl();
+        pushControl.setDigestSize(64);
+
+        final Session session = newClient(new Session.Listener.Adapter());
+
+        // Request for the primary and secondary resource to build the cache.
+        final String primaryURI = newURI(primaryResource);
+        HttpFields primaryFields = new HttpFields();
+        MetaData.Request primaryRequest = newRequest("GET", primaryResource, primaryFields);
+        final CountDownLatch warmupLatch = new CountDownLatch(1);
+        session.newStream(new HeadersFrame(primaryRequest, null, true), new Promise.Adapter<>(), new Stream.Listener.Adapter()
+        {
+            @Override
+            public void onData(Stream stream, DataFrame frame, Callback callback)
+            {
+                callback.succeeded();
+                if (frame.isEndStream())
+                {
+                    // Request for the secondary resource.
+                    HttpFields secondaryFields = new HttpFields();
+                    secondaryFields.put(HttpHeader.REFERER, primaryURI);
+                    MetaData.Request secondaryRequest = newRequest("GET", secondaryResource, secondaryFields);
+                    session.newStream(new HeadersFrame(secondaryRequest, null, true), new Promise.Adapter<>(), new Stream.Listener.Adapter()
+                    {
+                        @Override
+                        public void onData(Stream stream, DataFrame frame, Callback callback)
+                        {
+                            callback.succeeded();
+                            warmupLatch.countDown();
+                        }
+                    });
+                }
+            }
+        });
+        assertTrue(warmupLatch.await(5, TimeUnit.SECONDS));
+
+        // Request again the primary resource, the secondary resource
+        // must not be pushed, as this connection already received it.
+        primaryRequest = newRequest("GET", primaryResource, primaryFields);
+        final CountDownLatch primaryResponseLatch = new CountDownLatch(1);
+        final CountDownLatch pushLatch = new CountDownLatch(1);
+        session.newStream(new HeadersFrame(primaryRequest, null, true), new Promise.Adapter<>(), new Stream.Listener.Adapter()
+        {
+            @Override
+            public Stream.Listener onPush(Stream stream, PushPromiseFrame frame)
+            {
+                pushLatch.countDown();
+                return null;
+            }
+
+            @Override
+            public void onData(Stream stream, DataFrame frame, Callback callback)
+            {
+                callback.succeeded();
+                if (frame.isEndStream())
+                    primaryResponseLatch.countDown();
+            }
+        });
+        assertTrue(primaryResponseLatch.await(5, TimeUnit.SECONDS));
+        assertFalse(pushLatch.await(1, TimeUnit.SECONDS));
+        assertEquals(0, pushControl.getPushes());
+        assertEquals(1, pushControl.getSkippedReceivedPushes());
+    }
+
     @Test
     public void testPushWithoutPrimaryResponseContent() throws Exception
     {
@@ -0,0 +1,138 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under
+// the terms of the Eclipse Public License 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0
+//
+// This Source Code may also be made available under the following
+// Secondary Licenses when the conditions for such availability set
+// forth in the Eclipse Public License, v. 2.0 are satisfied:
+// the Apache License v2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2.client;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.http2.HTTP2Flusher;
+import org.eclipse.jetty.http2.HTTP2Session;
+import org.eclipse.jetty.http2.api.Session;
+import org.eclipse.jetty.http2.api.Stream;
+import org.eclipse.jetty.http2.api.server.ServerSessionListener;
+import org.eclipse.jetty.http2.frames.DataFrame;
+import org.eclipse.jetty.http2.frames.HeadersFrame;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.FuturePromise;
+import org.eclipse.jetty.util.IteratingCallback;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WriteCoalescingTest extends AbstractTest
+{
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1024})
+    public void testSmallDataFramesEcho(int coalesceThreshold) throws Exception
+    {
+        start(new ServerSessionListener.Adapter()
+        {
+            @Override
+            public Stream.Listener onNewStream(Stream stream, HeadersFrame frame)
+            {
+                MetaData.Response response = new MetaData.Response(HttpVersion.HTTP_2, HttpStatus.OK_200, new HttpFields());
+                stream.headers(new HeadersFrame(stream.getId(), response, null, false), Callback.NOOP);
+                return new Stream.Listener.Adapter()
+                {
+                    @Override
+                    public void onData(Stream stream, DataFrame frame, Callback callback)
+                    {
+                        // Echo the content back.
+                        ByteBuffer copy = BufferUtil.copy(frame.getData());
+                        stream.data(new DataFrame(stream.getId(), copy, frame.isEndStream()), callback);
+                    }
+                };
+            }
+        });
+
+        Session session = newClient(new Session.Listener.Adapter());
+        HTTP2Session clientSession = (HTTP2Session)session;
+        clientSession.setCoalesceThreshold(coalesceThreshold);
+        HTTP2Flusher flusher = clientSession.getBean(HTTP2Flusher.class);
+        flusher.resetStats();
+
+        int frames = 100;
+        byte[] content = new byte[frames * 64];
+        new Random().nextBytes(content);
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        CountDownLatch latch = new CountDownLatch(1);
+        HeadersFrame request = new HeadersFrame(newRequest("POST", new HttpFields()), null, false);
+        FuturePromise<Stream> promise = new FuturePromise<>();
+        session.newStream(request, promise, new Stream.Listener.Adapter()
+        {
+            @Override
+            public void onData(Stream stream, DataFrame frame, Callback callback)
+            {
+                byte[] bytes = BufferUtil.toArray(frame.getData());
+                received.write(bytes, 0, bytes.length);
+                callback.succeeded();
+                if (frame.isEndStream())
+                    latch.countDown();
+            }
+        });
+        Stream stream = promise.get(5, TimeUnit.SECONDS);
+
+        // Send the small DATA frames one after the other.
+        new IteratingCallback()
+        {
+            private int index;
+
+            @Override
+            protected Action process()
+            {
+                if (index == frames)
+                    return Action.SUCCEEDED;
+                ByteBuffer data = ByteBuffer.wrap(content, index * 64, 64);
+                ++index;
+                stream.data(new DataFrame(stream.getId(), data, index == frames), this);
+                return Action.SCHEDULED;
+            }
+        }.iterate();
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertArrayEquals(content, received.toByteArray());
+
+        assertThat(flusher.getWrites(), greaterThanOrEqualTo(1L));
+        if (coalesceThreshold > 0)
+        {
+            // Each DATA frame header is coalesced with its payload.
+            assertThat(flusher.getCoalescedBuffers(), greaterThanOrEqualTo(2L * frames));
+            assertThat(flusher.getWrittenBuffers(), lessThan(flusher.getGeneratedBuffers()));
+        }
+        else
+        {
+            assertEquals(0, flusher.getCoalescedBuffers());
+            assertEquals(flusher.getGeneratedBuffers(), flusher.getWrittenBuffers());
+        }
+    }
+}
@@ -0,0 +1,534 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under
+// the terms of the Eclipse Public License 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0
+//
+// This Source Code may also be made available under the following
+// Secondary Licenses when the conditions for such availability set
+// forth in the Eclipse Public License, v. 2.0 are satisfied:
+// the Apache License v2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jetty.http2.frames.Frame;
+import org.eclipse.jetty.http2.frames.PingFrame;
+import org.eclipse.jetty.http2.frames.SettingsFrame;
+import org.eclipse.jetty.http2.frames.WindowUpdateFrame;
+import org.eclipse.jetty.util.Atomics;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+
+/**
+ * <p>A flow control strategy that sizes the receive windows after the
+ * bandwidth-delay product (BDP) of the connection.</p>
+ * <p>When DATA frames are received, a PING frame is sent and the bytes received
+ * until the PING reply arrives are counted: this is a sample of the BDP.
+ * If the sample is close to the session receive window, the window is what
+ * limits the sender, so the session window is grown to twice the sample, and the
+ * initial stream window is grown along via a SETTINGS frame. Conversely, when the
+ * samples are much smaller than the session window, the windows are halved, down
+ * to the initial windows: the session window by withholding the credit returned to
+ * the sender, and the initial stream window via a SETTINGS frame.  The peer may
+ * have sent DATA frames under the larger stream windows before receiving the
+ * SETTINGS frame, so the receive windows of the existing streams are only shrunk
+ * when the reply to a PING frame sent after the SETTINGS frame is received.</p>
+ * <p>The receive windows are the max amount of memory that the sender may
+ * commit in the receiver, so the growth of the windows beyond the initial
+ * windows is accounted against a memory budget shared by all the sessions
+ * created by the same {@link Factory}, typically those of a connector.</p>
+ * <p>Like {@link BufferingFlowControlStrategy}, window updates are only sent
+ * when the consumed bytes reach a fraction of the window.</p>
+ */
+@ManagedObject
+public class BDPFlowControlStrategy extends AbstractFlowControlStrategy
+{
+    private final AtomicInteger sessionWindow = new AtomicInteger(DEFAULT_WINDOW_SIZE);
+    private final AtomicInteger sessionLevel = new AtomicInteger();
+    private final AtomicInteger sessionDebt = new AtomicInteger();
+    private final Map<IStream, AtomicInteger> streamLevels = new ConcurrentHashMap<>();
+    private final Factory factory;
+    private int minSessionWindow;
+    private int minStreamWindow;
+    private long committed;
+    private long pingPayload;
+    private long pingTime;
+    private long lastPingTime;
+    private int sampleBytes;
+    private long rtt;
+    private int bdp;
+    private long fencePayload;
+    private int pendingStreamWindow;
+    private boolean closed;
+
+    public BDPFlowControlStrategy()
+    {
+        this(new Factory());
+    }
+
+    public BDPFlowControlStrategy(Factory factory)
+    {
+        super(DEFAULT_WINDOW_SIZE);
+        this.factory = factory;
+    }
+
+    @ManagedAttribute(value = "The current size of session's flow control receive window", readonly = true)
+    public int getSessionRecvWindow()
+    {
+        return sessionWindow.get();
+    }
+
+    @ManagedAttribute(value = "The last bandwidth-delay product sample, in bytes", readonly = true)
+    public int getBandwidthDelayProduct()
+    {
+        synchronized (this)
+        {
+            return bdp;
+        }
+    }
+
+    @ManagedAttribute(value = "The last round-trip time sample, in microseconds", readonly = true)
+    public long getRoundTripTime()
+    {
+        synchronized (this)
+        {
+            return TimeUnit.NANOSECONDS.toMicros(rtt);
+        }
+    }
+
+    @ManagedAttribute(value = "The bytes committed to the memory budget by this session", readonly = true)
+    public long getCommittedBytes()
+    {
+        synchronized (this)
+        {
+            return committed;
+        }
+    }
+
+    @Override
+    public void onStreamCreated(IStream stream)
+    {
+        super.onStreamCreated(stream);
+        streamLevels.put(stream, new AtomicInteger());
+    }
+
+    @Override
+    public void onStreamDestroyed(IStream stream)
+    {
+        streamLevels.remove(stream);
+        super.onStreamDestroyed(stream);
+    }
+
+    @Override
+    public void onDataReceived(ISession session, IStream stream, int length)
+    {
+        super.onDataReceived(session, stream, length);
+
+        // Do not sample if the peer exceeded the windows, the session or the stream are going to fail.
+        if (session.updateRecvWindow(0) < 0 || (stream != null && stream.updateRecvWindow(0) < 0))
+            return;
+
+        PingFrame ping = null;
+        synchronized (this)
+        {
+            if (closed)
+                return;
+            long now = System.nanoTime();
+            if (pingTime != 0)
+            {
+                sampleBytes += length;
+            }
+            else if (minSessionWindow == 0 || now - lastPingTime >= factory.getPingIntervalNanos())
+            {
+                if (minSessionWindow == 0)
+                {
+                    // First sample, the initial windows are the min windows.
+                    minSessionWindow = sessionWindow.get();
+                    minStreamWindow = getInitialStreamRecvWindow();
+                }
+                // Set the high bit so the payload is never 0, the value of an empty PING.
+                pingPayload = ThreadLocalRandom.current().nextLong() | Long.MIN_VALUE;
+                pingTime = now;
+                sampleBytes = length;
+                ping = new PingFrame(pingPayload, false);
+            }
+        }
+        if (ping != null)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Sampling BDP with {} for {}", ping, session);
+            session.ping(ping, Callback.NOOP);
+        }
+    }
+
+    @Override
+    public void updateInitialStreamWindow(ISession session, int initialStreamWindow, boolean local)
+    {
+        if (local)
+        {
+            synchronized (this)
+            {
+                // The shrink of the initial stream window is applied when the fence PING is replied.
+                if (fencePayload != 0 && initialStreamWindow == pendingStreamWindow)
+                    return;
+            }
+        }
+        super.updateInitialStreamWindow(session, initialStreamWindow, local);
+    }
+
+    @Override
+    public boolean onPingReply(ISession session, PingFrame frame)
+    {
+        int sample;
+        int sessionDelta;
+        int streamWindow;
+        int newStreamWindow;
+        PingFrame fence = null;
+        synchronized (this)
+        {
+            if (fencePayload != 0 && frame.getPayloadAsLong() == fencePayload)
+            {
+                // The peer has applied the SETTINGS frame, and all the DATA frames
+                // it sent under the larger stream windows have been received.
+                fencePayload = 0;
+                newStreamWindow = pendingStreamWindow;
+            }
+            else
+            {
+                newStreamWindow = 0;
+            }
+        }
+        if (newStreamWindow > 0)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Shrinking initial stream recv window to {} for {}", newStreamWindow, session);
+            super.updateInitialStreamWindow(session, newStreamWindow, true);
+            return true;
+        }
+
+        synchronized (this)
+        {
+            if (pingTime == 0 || frame.getPayloadAsLong() != pingPayload)
+                return false;
+            long now = System.nanoTime();
+            rtt = now - pingTime;
+            sample = sampleBytes;
+            bdp = sample;
+            pingTime = 0;
+            lastPingTime = now;
+            if (closed)
+                return true;
+
+            int window = sessionWindow.get();
+            streamWindow = getInitialStreamRecvWindow();
+            // A single stream is limited by the stream window.
+            int limit = Math.min(window, streamWindow);
+            if (sample * 3L >= limit * 2L)
+            {
+                // The windows limit the sender, grow them.
+                int target = (int)Math.min(factory.getMaxWindow(), 2L * sample);
+                sessionDelta = (int)factory.acquire(Math.max(0, target - window));
+                committed += sessionDelta;
+                newStreamWindow = Math.max(streamWindow, Math.min(target, window + sessionDelta));
+                // The initial stream window is not changed until a pending shrink is applied.
+                if (fencePayload != 0)
+                    newStreamWindow = streamWindow;
+            }
+            else
+            {
+                // The windows are larger than needed, shrink them.
+                sessionDelta = 0;
+                if (sample * 4L < window && window > minSessionWindow)
+                {
+                    sessionDelta = -(int)Math.min(window - Math.max(minSessionWindow, window / 2), committed);
+                    committed += sessionDelta;
+                    factory.release(-sessionDelta);
+                }
+                newStreamWindow = streamWindow;
+                if (sample * 4L < streamWindow)
+                    newStreamWindow = streamWindow / 2;
+                newStreamWindow = Math.max(minStreamWindow, Math.min(newStreamWindow, window + sessionDelta));
+                if (fencePayload != 0)
+                    newStreamWindow = streamWindow;
+                if (sessionDelta == 0 && newStreamWindow == streamWindow)
+                    return true;
+                if (newStreamWindow < streamWindow)
+                {
+                    pendingStreamWindow = newStreamWindow;
+                    fencePayload = ThreadLocalRandom.current().nextLong() | Long.MIN_VALUE;
+                    fence = new PingFrame(fencePayload, false);
+                }
+            }
+            sessionWindow.addAndGet(sessionDelta);
+        }
+
+        if (LOG.isDebugEnabled())
+            LOG.debug("BDP sample {} bytes in {} us, resized session recv window by {}, stream recv window {} -> {} for {}",
+                sample, TimeUnit.NANOSECONDS.toMicros(rtt), sessionDelta, streamWindow, newStreamWindow, session);
+
+        Frame settings = null;
+        if (newStreamWindow != streamWindow)
+            settings = new SettingsFrame(Collections.singletonMap(SettingsFrame.INITIAL_WINDOW_SIZE, newStreamWindow), false);
+
+        if (sessionDelta > 0)
+        {
+            session.updateRecvWindow(sessionDelta);
+            Frame[] frames = settings == null ? Frame.EMPTY_ARRAY : new Frame[]{settings};
+            session.frames(null, Callback.NOOP, new WindowUpdateFrame(0, sessionDelta), frames);
+        }
+        else
+        {
+            // Window updates cannot be negative: the
+            // session window shrinks by withholding credit.
+            if (sessionDelta < 0)
+                sessionDebt.addAndGet(-sessionDelta);
+            if (settings != null)
+            {
+                // The fence PING is sent after the SETTINGS frame has been written.
+                PingFrame ping = fence;
+                Callback callback = ping == null ? Callback.NOOP : Callback.from(() -> session.ping(ping, Callback.NOOP), LOG::ignore);
+                session.frames(null, callback, settings, Frame.EMPTY_ARRAY);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void onSessionClosed(ISession session)
+    {
+        long release;
+        synchronized (this)
+        {
+            closed = true;
+            release = committed;
+            committed = 0;
+        }
+        factory.release(release);
+    }
+
+    @Override
+    public void onDataConsumed(ISession session, IStream stream, int length)
+    {
+        if (length <= 0)
+            return;
+
+        float ratio = factory.getBufferRatio();
+
+        int level = sessionLevel.addAndGet(length);
+        int maxLevel = (int)(sessionWindow.get() * ratio);
+        if (level > maxLevel)
+        {
+            if (sessionLevel.compareAndSet(level, 0))
+            {
+                int credit = level - withhold(level);
+                if (credit > 0)
+                {
+                    session.updateRecvWindow(credit);
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("Data consumed, {} bytes, updated session recv window by {}/{} for {}", length, credit, maxLevel, session);
+                    session.frames(null, Callback.NOOP, new WindowUpdateFrame(0, credit), Frame.EMPTY_ARRAY);
+                }
+            }
+        }
+        else
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Data consumed, {} bytes, session recv window level {}/{} for {}", length, level, maxLevel, session);
+        }
+
+        if (stream != null)
+        {
+            if (stream.isRemotelyClosed())
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Data consumed, {} bytes, ignoring update stream recv window for remotely closed {}", length, stream);
+            }
+            else
+            {
+                AtomicInteger streamLevel = streamLevels.get(stream);
+                if (streamLevel != null)
+                {
+                    level = streamLevel.addAndGet(length);
+                    maxLevel = (int)(getInitialStreamRecvWindow() * ratio);
+                    if (level > maxLevel)
+                    {
+                        level = streamLevel.getAndSet(0);
+                        stream.updateRecvWindow(level);
+                        if (LOG.isDebugEnabled())
+                            LOG.debug("Data consumed, {} bytes, updated stream recv window by {}/{} for {}", length, level, maxLevel, stream);
+                        session.frames(stream, Callback.NOOP, new WindowUpdateFrame(stream.getId(), level), Frame.EMPTY_ARRAY);
+                    }
+                    else
+                    {
+                        if (LOG.isDebugEnabled())
+                            LOG.debug("Data consumed, {} bytes, stream recv window level {}/{} for {}", length, level, maxLevel, stream);
+                    }
+                }
+            }
+        }
+    }
+
+    private int withhold(int credit)
+    {
+        while (true)
+        {
+            int debt = sessionDebt.get();
+            if (debt == 0)
+                return 0;
+            int withheld = Math.min(debt, credit);
+            if (sessionDebt.compareAndSet(debt, debt - withheld))
+                return withheld;
+        }
+    }
+
+    @Override
+    public void windowUpdate(ISession session, IStream stream, WindowUpdateFrame frame)
+    {
+        super.windowUpdate(session, stream, frame);
+        // Track the initial session window, that may be enlarged
+        // when the session is created, see BufferingFlowControlStrategy.
+        if (frame.getStreamId() == 0)
+            Atomics.updateMax(sessionWindow, session.updateRecvWindow(0));
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[sessionWindow=%d,bdp=%d,rtt=%dus,sessionStallTime=%dms,streamsStallTime=%dms]",
+            getClass().getSimpleName(),
+            hashCode(),
+            getSessionRecvWindow(),
+            getBandwidthDelayProduct(),
+            getRoundTripTime(),
+            getSessionStallTime(),
+            getStreamsStallTime());
+    }
+
+    /**
+     * <p>A factory of {@link BDPFlowControlStrategy}s that share a memory budget.</p>
+     * <p>The memory budget bounds the growth of the receive windows, beyond
+     * the initial windows, of all the sessions using the strategies created
+     * by this factory.</p>
+     * <p>By default the budget is {@link #DEFAULT_MAX_MEMORY}, the memory of
+     * the default 128 concurrent streams with the default 512 KiB initial
+     * stream window of the server connection factories; it should be sized
+     * according to the connectors that use this factory.</p>
+     */
+    @ManagedObject
+    public static class Factory implements FlowControlStrategy.Factory
+    {
+        public static final long DEFAULT_MAX_MEMORY = 128 * 512 * 1024L;
+
+        private final AtomicLong committedMemory = new AtomicLong();
+        private long maxMemory = DEFAULT_MAX_MEMORY;
+        private int maxWindow = 16 * 1024 * 1024;
+        private long pingInterval = 200;
+        private float bufferRatio = 0.5F;
+
+        @Override
+        public FlowControlStrategy newFlowControlStrategy()
+        {
+            return new BDPFlowControlStrategy(this);
+        }
+
+        @ManagedAttribute("The max memory, in bytes, that the windows of all sessions may grow by")
+        public long getMaxMemory()
+        {
+            return maxMemory;
+        }
+
+        /**
+         * @param maxMemory the max memory, in bytes, that the windows of all sessions may grow by,
+         * or {@link Long#MAX_VALUE} for no bound
+         */
+        public void setMaxMemory(long maxMemory)
+        {
+            this.maxMemory = maxMemory;
+        }
+
+        @ManagedAttribute(value = "The memory, in bytes, that the windows of all sessions have grown by", readonly = true)
+        public long getCommittedMemory()
+        {
+            return committedMemory.get();
+        }
+
+        @ManagedAttribute("The max size of a session's flow control receive window")
+        public int getMaxWindow()
+        {
+            return maxWindow;
+        }
+
+        public void setMaxWindow(int maxWindow)
+        {
+            this.maxWindow = maxWindow;
+        }
+
+        @ManagedAttribute("The min interval, in milliseconds, between BDP sampling PINGs")
+        public long getPingInterval()
+        {
+            return pingInterval;
+        }
+
+        public void setPingInterval(long pingInterval)
+        {
+            this.pingInterval = pingInterval;
+        }
+
+        private long getPingIntervalNanos()
+        {
+            return TimeUnit.MILLISECONDS.toNanos(pingInterval);
+        }
+
+        @ManagedAttribute("The ratio between the receive buffer and the consume buffer")
+        public float getBufferRatio()
+        {
+            return bufferRatio;
+        }
+
+        public void setBufferRatio(float bufferRatio)
+        {
+            this.bufferRatio = bufferRatio;
+        }
+
+        private long acquire(long bytes)
+        {
+            while (true)
+            {
+                long committed = committedMemory.get();
+                long granted = Math.min(bytes, maxMemory - committed);
+                if (granted <= 0)
+                    return 0;
+                if (committedMemory.compareAndSet(committed, committed + granted))
+                    return granted;
+            }
+        }
+
+        private void release(long bytes)
+        {
+            if (bytes > 0)
+                committedMemory.addAndGet(-bytes);
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s@%x[memory=%d/%d,maxWindow=%d]", getClass().getSimpleName(), hashCode(), getCommittedMemory(), getMaxMemory(), getMaxWindow());
+        }
+    }
+}
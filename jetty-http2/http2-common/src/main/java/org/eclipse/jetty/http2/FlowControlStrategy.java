@@ -18,6 +18,7 @@
 
 package org.eclipse.jetty.http2;
 
+import org.eclipse.jetty.http2.frames.PingFrame;
 import org.eclipse.jetty.http2.frames.WindowUpdateFrame;
 
 public interface FlowControlStrategy
@@ -42,6 +43,30 @@ public interface FlowControlStrategy
 
     public void onDataSent(IStream stream, int length);
 
+    /**
+     * <p>Invoked when a PING reply is received, so that strategies
+     * may use PING frames to measure the round-trip time.</p>
+     *
+     * @param session the session
+     * @param frame the PING reply
+     * @return whether the PING was sent by this strategy, and
+     * therefore the application must not be notified of the reply
+     */
+    public default boolean onPingReply(ISession session, PingFrame frame)
+    {
+        return false;
+    }
+
+    /**
+     * <p>Invoked when the session is closed, so that strategies
+     * may release the resources associated with the session.</p>
+     *
+     * @param session the session
+     */
+    public default void onSessionClosed(ISession session)
+    {
+    }
+
     public interface Factory
     {
         public FlowControlStrategy newFlowControlStrategy();
@@ -21,24 +21,34 @@ package org.eclipse.jetty.http2;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Deque;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.eclipse.jetty.http2.frames.Frame;
+import org.eclipse.jetty.http2.frames.FrameType;
 import org.eclipse.jetty.http2.frames.WindowUpdateFrame;
 import org.eclipse.jetty.http2.hpack.HpackException;
 import org.eclipse.jetty.io.ByteBufferPool;
 import org.eclipse.jetty.io.EofException;
+import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.IteratingCallback;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
 import org.eclipse.jetty.util.component.Dumpable;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
 
+@ManagedObject
 public class HTTP2Flusher extends IteratingCallback implements Dumpable
 {
     private static final Logger LOG = Log.getLogger(HTTP2Flusher.class);
@@ -48,17 +58,83 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
     private final Deque<Entry> entries = new ArrayDeque<>();
     private final Queue<Entry> pendingEntries = new ArrayDeque<>();
     private final Set<Entry> processedEntries = new HashSet<>();
+    private final Map<Integer, Entry> dataEntries = new LinkedHashMap<>();
     private final HTTP2Session session;
+    private final HTTP2Scheduler scheduler;
     private final ByteBufferPool.Lease lease;
+    private final List<ByteBuffer> aggregates = new ArrayList<>();
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder writtenEntries = new LongAdder();
+    private final LongAdder generatedBuffers = new LongAdder();
+    private final LongAdder writtenBuffers = new LongAdder();
+    private final LongAdder coalescedBuffers = new LongAdder();
     private Throwable terminated;
     private Entry stalledEntry;
 
     public HTTP2Flusher(HTTP2Session session)
+    {
+        this(session, new HTTP2Scheduler(1024));
+    }
+
+    public HTTP2Flusher(HTTP2Session session, HTTP2Scheduler scheduler)
     {
         this.session = session;
+        this.scheduler = scheduler;
         this.lease = new ByteBufferPool.Lease(session.getGenerator().getByteBufferPool());
     }
 
+    public HTTP2Scheduler getScheduler()
+    {
+        return scheduler;
+    }
+
+    @ManagedAttribute(value = "The number of writes", readonly = true)
+    public long getWrites()
+    {
+        return writes.longValue();
+    }
+
+    @ManagedAttribute(value = "The number of frame entries written", readonly = true)
+    public long getWrittenEntries()
+    {
+        return writtenEntries.longValue();
+    }
+
+    @ManagedAttribute(value = "The average number of frame entries per write", readonly = true)
+    public double getEntriesPerWrite()
+    {
+        long writes = getWrites();
+        return writes == 0 ? 0 : (double)getWrittenEntries() / writes;
+    }
+
+    @ManagedAttribute(value = "The number of buffers generated for writes", readonly = true)
+    public long getGeneratedBuffers()
+    {
+        return generatedBuffers.longValue();
+    }
+
+    @ManagedAttribute(value = "The number of buffers written, after coalescing", readonly = true)
+    public long getWrittenBuffers()
+    {
+        return writtenBuffers.longValue();
+    }
+
+    @ManagedAttribute(value = "The number of small buffers copied into aggregate buffers", readonly = true)
+    public long getCoalescedBuffers()
+    {
+        return coalescedBuffers.longValue();
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void resetStats()
+    {
+        writes.reset();
+        writtenEntries.reset();
+        generatedBuffers.reset();
+        writtenBuffers.reset();
+        coalescedBuffers.reset();
+    }
+
     public void window(IStream stream, WindowUpdateFrame frame)
     {
         Throwable closed;
@@ -158,6 +234,7 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
             return Action.IDLE;
         }
 
+        int writeThreshold = session.getWriteThreshold();
         while (true)
         {
             boolean progress = false;
@@ -165,6 +242,10 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
             if (pendingEntries.isEmpty())
                 break;
 
+            // Non DATA frames are generated in queue order. DATA frames are only
+            // collected here, the first per stream, and generated below in the
+            // order decided by the scheduler.
+            dataEntries.clear();
             Iterator<Entry> pending = pendingEntries.iterator();
             while (pending.hasNext())
             {
@@ -183,30 +264,24 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
                     continue;
                 }
 
+                if (entry.frame.getType() == FrameType.DATA)
+                {
+                    dataEntries.putIfAbsent(entry.stream.getId(), entry);
+                    continue;
+                }
+
+                // Frames such as trailers must not overtake the DATA frames of the same stream.
+                if (!entry.isProtocol() && entry.stream != null && dataEntries.containsKey(entry.stream.getId()))
+                    continue;
+
                 try
                 {
-                    if (entry.generate(lease))
+                    if (generate(entry))
                     {
-                        if (LOG.isDebugEnabled())
-                            LOG.debug("Generated {} frame bytes for {}", entry.getFrameBytesGenerated(), entry);
-
                         progress = true;
-
-                        processedEntries.add(entry);
-
                         if (entry.getDataBytesRemaining() == 0)
                             pending.remove();
                     }
-                    else
-                    {
-                        if (session.getSendWindow() <= 0 && stalledEntry == null)
-                        {
-                            stalledEntry = entry;
-                            if (LOG.isDebugEnabled())
-                                LOG.debug("Flow control stalled at {}", entry);
-                            // Continue to process control frames.
-                        }
-                    }
                 }
                 catch (HpackException.StreamException failure)
                 {
@@ -225,13 +300,55 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
                 }
             }
 
+            while (stalledEntry == null)
+            {
+                int streamId = scheduler.next(dataEntries.keySet());
+                if (streamId == 0)
+                    break;
+
+                Entry entry = dataEntries.get(streamId);
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Scheduled {}", entry);
+
+                try
+                {
+                    int frameBytes = entry.getFrameBytesGenerated();
+                    if (generate(entry))
+                    {
+                        progress = true;
+                        scheduler.onDataScheduled(streamId, entry.getFrameBytesGenerated() - frameBytes);
+                        if (entry.getDataBytesRemaining() == 0)
+                        {
+                            // The next DATA frame of this stream, if any, is collected at the next iteration.
+                            dataEntries.remove(streamId);
+                            pendingEntries.remove(entry);
+                        }
+                        if (lease.getTotalLength() >= writeThreshold)
+                            break;
+                    }
+                    else
+                    {
+                        scheduler.onDataBlocked(streamId);
+                        dataEntries.remove(streamId);
+                    }
+                }
+                catch (Throwable failure)
+                {
+                    // Failure to generate the entry is catastrophic.
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("Failure generating " + entry, failure);
+                    failed(failure);
+                    return Action.SUCCEEDED;
+                }
+            }
+            dataEntries.clear();
+
             if (!progress)
                 break;
 
             if (stalledEntry != null)
                 break;
 
-            int writeThreshold = session.getWriteThreshold();
             if (lease.getTotalLength() >= writeThreshold)
             {
                 if (LOG.isDebugEnabled())
@@ -256,10 +373,114 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
                 processedEntries,
                 pendingEntries);
 
-        session.getEndPoint().write(this, byteBuffers.toArray(EMPTY_BYTE_BUFFERS));
+        ByteBuffer[] buffers = coalesce(byteBuffers);
+        writes.increment();
+        writtenEntries.add(processedEntries.size());
+        generatedBuffers.add(byteBuffers.size());
+        writtenBuffers.add(buffers.length);
+
+        session.getEndPoint().write(this, buffers);
         return Action.SCHEDULED;
     }
 
+    /**
+     * <p>Copies runs of small buffers, typically frame headers and small DATA
+     * payloads, into pooled aggregate buffers, so that the gathering write
+     * hands fewer buffers to the network and to the TLS layer.</p>
+     * <p>Large buffers are written as they are, and a small buffer between
+     * large buffers is not copied, as that would not reduce the buffers.</p>
+     *
+     * @param byteBuffers the generated buffers
+     * @return the buffers to write
+     */
+    private ByteBuffer[] coalesce(List<ByteBuffer> byteBuffers)
+    {
+        int threshold = session.getCoalesceThreshold();
+        int size = byteBuffers.size();
+        if (threshold <= 0 || size < 2)
+            return byteBuffers.toArray(EMPTY_BYTE_BUFFERS);
+
+        int bufferSize = Math.max(threshold, session.getCoalesceBufferSize());
+        List<ByteBuffer> result = new ArrayList<>(size);
+        ByteBuffer aggregate = null;
+        for (int i = 0; i < size; ++i)
+        {
+            ByteBuffer buffer = byteBuffers.get(i);
+            int remaining = buffer.remaining();
+            boolean small = remaining <= threshold;
+            if (small)
+            {
+                if (aggregate != null && aggregate.remaining() < remaining)
+                {
+                    BufferUtil.flipToFlush(aggregate, 0);
+                    aggregate = null;
+                }
+                if (aggregate == null)
+                {
+                    boolean nextSmall = i + 1 < size && byteBuffers.get(i + 1).remaining() <= threshold;
+                    if (nextSmall)
+                    {
+                        aggregate = lease.acquire(bufferSize, session.getGenerator().isUseDirectByteBuffers());
+                        aggregates.add(aggregate);
+                        result.add(aggregate);
+                    }
+                    else
+                    {
+                        small = false;
+                    }
+                }
+            }
+
+            if (small)
+            {
+                // Consume the buffer, as the write would.
+                aggregate.put(buffer);
+                coalescedBuffers.increment();
+            }
+            else
+            {
+                if (aggregate != null)
+                {
+                    BufferUtil.flipToFlush(aggregate, 0);
+                    aggregate = null;
+                }
+                result.add(buffer);
+            }
+        }
+        if (aggregate != null)
+            BufferUtil.flipToFlush(aggregate, 0);
+
+        if (LOG.isDebugEnabled())
+            LOG.debug("Coalesced {} buffers into {}", size, result.size());
+        return result.toArray(EMPTY_BYTE_BUFFERS);
+    }
+
+    private void releaseAggregates()
+    {
+        aggregates.forEach(lease::release);
+        aggregates.clear();
+    }
+
+    private boolean generate(Entry entry) throws Throwable
+    {
+        if (entry.generate(lease))
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Generated {} frame bytes for {}", entry.getFrameBytesGenerated(), entry);
+            processedEntries.add(entry);
+            return true;
+        }
+
+        if (session.getSendWindow() <= 0 && stalledEntry == null)
+        {
+            stalledEntry = entry;
+            if (LOG.isDebugEnabled())
+                LOG.debug("Flow control stalled at {}", entry);
+            // Continue to process control frames.
+        }
+        return false;
+    }
+
     void onFlushed(long bytes) throws IOException
     {
         // A single EndPoint write may be flushed multiple times (for example with SSL).
@@ -286,23 +507,14 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
     private void finish()
     {
         lease.recycle();
+        releaseAggregates();
 
         processedEntries.forEach(Entry::succeeded);
         processedEntries.clear();
 
-        if (stalledEntry != null)
-        {
-            int size = pendingEntries.size();
-            for (int i = 0; i < size; ++i)
-            {
-                Entry entry = pendingEntries.peek();
-                if (entry == stalledEntry)
-                    break;
-                pendingEntries.poll();
-                pendingEntries.offer(entry);
-            }
-            stalledEntry = null;
-        }
+        // The scheduler takes care of the fairness among
+        // the DATA frames once the send window is updated.
+        stalledEntry = null;
     }
 
     @Override
@@ -315,6 +527,7 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
     protected void onCompleteFailure(Throwable x)
     {
         lease.recycle();
+        releaseAggregates();
 
         Throwable closed;
         Set<Entry> allEntries;
@@ -425,7 +638,7 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
             return !isProtocol() && stream != null && stream.isReset();
         }
 
-        private boolean isProtocol()
+        boolean isProtocol()
         {
             switch (frame.getType())
             {
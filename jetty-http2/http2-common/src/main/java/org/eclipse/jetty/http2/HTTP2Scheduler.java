@@ -0,0 +1,598 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under
+// the terms of the Eclipse Public License 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0
+//
+// This Source Code may also be made available under the following
+// Secondary Licenses when the conditions for such availability set
+// forth in the Eclipse Public License, v. 2.0 are satisfied:
+// the Apache License v2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.http.QuotedCSV;
+import org.eclipse.jetty.http2.frames.PriorityFrame;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.component.Dumpable;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+
+/**
+ * <p>Decides the order in which streams of a session are allowed to send DATA frames.</p>
+ * <p>The scheduler maintains the stream dependency tree defined by
+ * <a href="https://tools.ietf.org/html/rfc7540#section-5.3">RFC 7540, section 5.3</a>,
+ * built from the priority information carried by HEADERS and PRIORITY frames,
+ * and the urgency and incremental parameters of the {@code priority} header defined by
+ * <a href="https://tools.ietf.org/html/rfc9218">RFC 9218</a>.</p>
+ * <p>Among the streams that have DATA ready, those with the lowest urgency are served first.
+ * Within the same urgency, non incremental streams are served one at a time in stream id order,
+ * while incremental streams share the connection according to the dependency tree:
+ * a stream is only served if its ancestors cannot make progress, and siblings are
+ * served in proportion to their weights, using a virtual clock that advances for
+ * each DATA frame sent by an amount inversely proportional to the stream weight.
+ * Under contention DATA frames are max sized, so weights apportion bytes, while
+ * frames shortened by flow control do not perturb the interleaving.</p>
+ * <p>Streams without priority information are children of the root with the default
+ * weight and urgency, so that they are interleaved fairly.</p>
+ */
+@ManagedObject
+public class HTTP2Scheduler implements Dumpable
+{
+    public static final int DEFAULT_WEIGHT = 16;
+    public static final int DEFAULT_URGENCY = 3;
+    public static final String PRIORITY_HEADER = "priority";
+
+    private static final Logger LOG = Log.getLogger(HTTP2Scheduler.class);
+    private static final int MAX_WEIGHT = 256;
+    private static final int MAX_URGENCY = 7;
+    private static final long CLOCK_TICK = 256 * MAX_WEIGHT;
+
+    private final LongAdder prioritizations = new LongAdder();
+    private final LongAdder scheduledFrames = new LongAdder();
+    private final LongAdder scheduledBytes = new LongAdder();
+    private final LongAdder blockedStreams = new LongAdder();
+    private final Map<Integer, Node> nodes = new HashMap<>();
+    // Idle nodes, in creation order for eviction, and by id for each parity for implicit closing.
+    private final Map<Integer, Node> idleNodes = new LinkedHashMap<>();
+    private final NavigableMap<Integer, Node> idleClientNodes = new TreeMap<>();
+    private final NavigableMap<Integer, Node> idleServerNodes = new TreeMap<>();
+    private final Node root = new Node(0);
+    private final int maxNodes;
+    private final int maxIdleNodes;
+    private long epoch;
+
+    /**
+     * @param maxNodes the max number of nodes of the dependency tree
+     * @see #HTTP2Scheduler(int, int)
+     */
+    public HTTP2Scheduler(int maxNodes)
+    {
+        this(maxNodes, Math.max(1, maxNodes / 4));
+    }
+
+    /**
+     * <p>Idle nodes are created by priority information received for streams that are not
+     * yet opened, and may never be. When there are {@code maxIdleNodes} idle nodes, or the
+     * tree is full, the oldest idle node is evicted to make room for a new one; priority
+     * information received when the tree is full of open streams is ignored, and the
+     * stream gets the default priority.</p>
+     *
+     * @param maxNodes the max number of nodes of the dependency tree
+     * @param maxIdleNodes the max number of nodes of streams that are not opened yet
+     */
+    public HTTP2Scheduler(int maxNodes, int maxIdleNodes)
+    {
+        this.maxNodes = maxNodes;
+        this.maxIdleNodes = Math.max(1, maxIdleNodes);
+    }
+
+    @ManagedAttribute("The max number of nodes in the stream dependency tree")
+    public int getMaxPriorityTreeSize()
+    {
+        return maxNodes;
+    }
+
+    @ManagedAttribute("The max number of nodes of idle streams in the stream dependency tree")
+    public int getMaxIdlePriorityTreeSize()
+    {
+        return maxIdleNodes;
+    }
+
+    @ManagedAttribute("The number of nodes in the stream dependency tree")
+    public int getPriorityTreeSize()
+    {
+        synchronized (this)
+        {
+            return nodes.size();
+        }
+    }
+
+    @ManagedAttribute("The number of priority signals applied")
+    public long getPrioritizations()
+    {
+        return prioritizations.longValue();
+    }
+
+    @ManagedAttribute("The number of DATA frames scheduled")
+    public long getScheduledFrames()
+    {
+        return scheduledFrames.longValue();
+    }
+
+    @ManagedAttribute("The number of DATA frame bytes scheduled")
+    public long getScheduledBytes()
+    {
+        return scheduledBytes.longValue();
+    }
+
+    @ManagedAttribute("The number of times a stream could not send DATA because of flow control")
+    public long getBlockedStreams()
+    {
+        return blockedStreams.longValue();
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void resetStats()
+    {
+        prioritizations.reset();
+        scheduledFrames.reset();
+        scheduledBytes.reset();
+        blockedStreams.reset();
+    }
+
+    /**
+     * <p>Applies the priority information carried by a HEADERS or PRIORITY frame.</p>
+     *
+     * @param frame the priority information
+     */
+    public void prioritize(PriorityFrame frame)
+    {
+        prioritize(frame.getStreamId(), frame.getParentStreamId(), frame.getWeight(), frame.isExclusive());
+    }
+
+    /**
+     * <p>Applies the {@code priority} header, if present, of the given request or response.</p>
+     *
+     * @param streamId the stream id
+     * @param metaData the request or response metadata
+     */
+    public void prioritize(int streamId, MetaData metaData)
+    {
+        if (metaData == null || metaData.getFields() == null)
+            return;
+        HttpField field = metaData.getFields().getField(PRIORITY_HEADER);
+        if (field == null)
+            return;
+
+        int urgency = DEFAULT_URGENCY;
+        boolean incremental = false;
+        for (String param : new QuotedCSV(false, field.getValue()))
+        {
+            int equals = param.indexOf('=');
+            String name = (equals < 0 ? param : param.substring(0, equals)).trim();
+            String value = equals < 0 ? null : param.substring(equals + 1).trim();
+            if ("u".equals(name) && value != null)
+            {
+                try
+                {
+                    int u = Integer.parseInt(value);
+                    if (u >= 0 && u <= MAX_URGENCY)
+                        urgency = u;
+                }
+                catch (NumberFormatException x)
+                {
+                    LOG.ignore(x);
+                }
+            }
+            else if ("i".equals(name))
+            {
+                incremental = value == null || "?1".equals(value);
+            }
+        }
+        urgency(streamId, urgency, incremental);
+    }
+
+    /**
+     * <p>Moves the given stream in the dependency tree.</p>
+     *
+     * @param streamId the stream id
+     * @param parentStreamId the id of the stream the stream depends on
+     * @param weight the stream weight, between 1 and 256
+     * @param exclusive whether the stream becomes the sole dependency of its parent
+     */
+    public void prioritize(int streamId, int parentStreamId, int weight, boolean exclusive)
+    {
+        if (streamId <= 0 || streamId == parentStreamId)
+            return;
+        weight = Math.max(1, Math.min(MAX_WEIGHT, weight));
+        synchronized (this)
+        {
+            Node node = nodes.get(streamId);
+            if (node == null)
+            {
+                node = newPriorityNode(streamId);
+                if (node == null)
+                    return;
+            }
+
+            // SPEC: a dependency on a stream not in the tree results in the default priority.
+            Node parent = parentStreamId == 0 ? root : nodes.get(parentStreamId);
+            if (parent == null)
+            {
+                parent = root;
+                weight = DEFAULT_WEIGHT;
+                exclusive = false;
+            }
+
+            // SPEC: if the new parent depends on the stream, it is first moved to the stream's parent.
+            if (parent.isDescendantOf(node))
+            {
+                parent.detach();
+                parent.attach(node.parent);
+            }
+
+            node.detach();
+            if (exclusive)
+            {
+                for (Node child : new ArrayList<>(parent.children))
+                {
+                    child.detach();
+                    child.attach(node);
+                }
+            }
+            node.weight = weight;
+            node.attach(parent);
+            prioritizations.increment();
+
+            if (LOG.isDebugEnabled())
+                LOG.debug("Prioritized {} on {}", node, parent);
+        }
+    }
+
+    /**
+     * <p>Sets the urgency and incremental parameters of the given stream.</p>
+     *
+     * @param streamId the stream id
+     * @param urgency the urgency, from 0 (most urgent) to 7 (least urgent)
+     * @param incremental whether the stream data can be interleaved with that of other streams
+     */
+    public void urgency(int streamId, int urgency, boolean incremental)
+    {
+        if (streamId <= 0)
+            return;
+        synchronized (this)
+        {
+            Node node = nodes.get(streamId);
+            if (node == null)
+            {
+                node = newPriorityNode(streamId);
+                if (node == null)
+                    return;
+            }
+            node.urgency = Math.max(0, Math.min(MAX_URGENCY, urgency));
+            node.incremental = incremental;
+            prioritizations.increment();
+
+            if (LOG.isDebugEnabled())
+                LOG.debug("Prioritized {}", node);
+        }
+    }
+
+    /**
+     * <p>Adds the given stream to the dependency tree, with the default priority
+     * unless priority information has already been received for it.</p>
+     * <p>Streams of the same parity with a lower id that received priority information
+     * but were never opened are implicitly closed, and are removed from the tree.</p>
+     *
+     * @param streamId the id of the stream to add
+     */
+    public void onStreamCreated(int streamId)
+    {
+        synchronized (this)
+        {
+            Node node = getOrCreate(streamId);
+            if (!node.open)
+            {
+                node.open = true;
+                removeIdle(node);
+            }
+            NavigableMap<Integer, Node> idle = idleNodes(streamId);
+            while (!idle.isEmpty() && idle.firstKey() < streamId)
+            {
+                remove(idle.firstEntry().getValue());
+            }
+        }
+    }
+
+    /**
+     * <p>Removes the given stream from the dependency tree.</p>
+     * <p>The children of the removed stream are moved to its parent,
+     * sharing the weight of the removed stream proportionally.</p>
+     *
+     * @param streamId the id of the stream to remove
+     */
+    public void onStreamDestroyed(int streamId)
+    {
+        synchronized (this)
+        {
+            Node node = nodes.get(streamId);
+            if (node != null)
+                remove(node);
+        }
+    }
+
+    private void remove(Node node)
+    {
+        nodes.remove(node.streamId);
+        if (!node.open)
+            removeIdle(node);
+        Node parent = node.parent;
+        node.detach();
+        int totalWeight = 0;
+        for (Node child : node.children)
+        {
+            totalWeight += child.weight;
+        }
+        for (Node child : new ArrayList<>(node.children))
+        {
+            child.detach();
+            child.weight = Math.max(1, node.weight * child.weight / totalWeight);
+            child.attach(parent);
+        }
+    }
+
+    /**
+     * <p>Selects, among the given streams that have DATA ready, the stream that should send next.</p>
+     *
+     * @param streamIds the ids of the streams that have DATA ready
+     * @return the id of the selected stream, or 0 if there are no streams to select
+     */
+    public int next(Collection<Integer> streamIds)
+    {
+        if (streamIds.isEmpty())
+            return 0;
+        synchronized (this)
+        {
+            // Only the streams with the lowest urgency compete.
+            int urgency = MAX_URGENCY + 1;
+            for (int streamId : streamIds)
+            {
+                urgency = Math.min(urgency, getOrCreate(streamId).urgency);
+            }
+
+            // Non incremental streams are served one at a time.
+            int next = Integer.MAX_VALUE;
+            for (int streamId : streamIds)
+            {
+                Node node = nodes.get(streamId);
+                if (node.urgency == urgency && !node.incremental && streamId < next)
+                    next = streamId;
+            }
+            if (next != Integer.MAX_VALUE)
+                return next;
+
+            // Mark the path from the ready streams to the root.
+            long ready = ++epoch;
+            long active = ++epoch;
+            for (int streamId : streamIds)
+            {
+                Node node = nodes.get(streamId);
+                if (node.urgency != urgency)
+                    continue;
+                node.ready = ready;
+                for (Node n = node; n != root && n.active != active; n = n.parent)
+                {
+                    n.active = active;
+                }
+            }
+
+            // Descend the tree along the children with the smallest virtual clock,
+            // until a stream that is ready is found; if a stream is ready, its
+            // descendants must wait.
+            Node node = root;
+            while (node == root || node.ready != ready)
+            {
+                Node selected = null;
+                for (Node child : node.children)
+                {
+                    if (child.active != active)
+                        continue;
+                    if (selected == null || child.compareTo(selected, node.childrenClock) < 0)
+                        selected = child;
+                }
+                if (selected == null)
+                    throw new IllegalStateException();
+                // A child that was not recently served does not accumulate credit.
+                selected.clock = Math.max(selected.clock, node.childrenClock);
+                node.childrenClock = selected.clock;
+                node = selected;
+            }
+            return node.streamId;
+        }
+    }
+
+    /**
+     * <p>Records that the given stream has sent a DATA frame.</p>
+     *
+     * @param streamId the id of the stream that sent the frame
+     * @param bytes the number of frame bytes sent
+     */
+    public void onDataScheduled(int streamId, int bytes)
+    {
+        scheduledFrames.increment();
+        scheduledBytes.add(bytes);
+        synchronized (this)
+        {
+            Node node = nodes.get(streamId);
+            for (Node n = node; n != null && n != root; n = n.parent)
+            {
+                n.clock += CLOCK_TICK / n.weight;
+            }
+        }
+    }
+
+    /**
+     * <p>Records that the given stream could not send DATA because of flow control.</p>
+     *
+     * @param streamId the id of the stream that is blocked
+     */
+    public void onDataBlocked(int streamId)
+    {
+        blockedStreams.increment();
+    }
+
+    private Node newPriorityNode(int streamId)
+    {
+        // Bound the tree, as priority information may be sent for streams that are never opened.
+        if (nodes.size() >= maxNodes || idleNodes.size() >= maxIdleNodes)
+        {
+            if (idleNodes.isEmpty())
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Ignoring priority for stream #{}, max nodes {} reached", streamId, maxNodes);
+                return null;
+            }
+            Node oldest = idleNodes.values().iterator().next();
+            if (LOG.isDebugEnabled())
+                LOG.debug("Evicting idle {} for stream #{}", oldest, streamId);
+            remove(oldest);
+        }
+        // The stream is idle until it is created.
+        Node node = getOrCreate(streamId);
+        node.open = false;
+        idleNodes.put(streamId, node);
+        idleNodes(streamId).put(streamId, node);
+        return node;
+    }
+
+    private void removeIdle(Node node)
+    {
+        idleNodes.remove(node.streamId);
+        idleNodes(node.streamId).remove(node.streamId);
+    }
+
+    private NavigableMap<Integer, Node> idleNodes(int streamId)
+    {
+        return (streamId & 1) == 1 ? idleClientNodes : idleServerNodes;
+    }
+
+    private Node getOrCreate(int streamId)
+    {
+        Node node = nodes.get(streamId);
+        if (node == null)
+        {
+            node = new Node(streamId);
+            node.attach(root);
+            nodes.put(streamId, node);
+        }
+        return node;
+    }
+
+    @Override
+    public void dump(Appendable out, String indent) throws IOException
+    {
+        synchronized (this)
+        {
+            Dumpable.dumpObjects(out, indent, this, root);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[nodes=%d,prioritizations=%d,frames=%d,bytes=%d,blocked=%d]",
+            getClass().getSimpleName(),
+            hashCode(),
+            getPriorityTreeSize(),
+            getPrioritizations(),
+            getScheduledFrames(),
+            getScheduledBytes(),
+            getBlockedStreams());
+    }
+
+    private static class Node implements Dumpable
+    {
+        private final List<Node> children = new ArrayList<>();
+        private final int streamId;
+        private Node parent;
+        private int weight = DEFAULT_WEIGHT;
+        private int urgency = DEFAULT_URGENCY;
+        private boolean incremental = true;
+        private boolean open = true;
+        private long clock;
+        private long childrenClock;
+        private long ready;
+        private long active;
+
+        private Node(int streamId)
+        {
+            this.streamId = streamId;
+        }
+
+        private boolean isDescendantOf(Node node)
+        {
+            for (Node n = parent; n != null; n = n.parent)
+            {
+                if (n == node)
+                    return true;
+            }
+            return false;
+        }
+
+        private void attach(Node parent)
+        {
+            this.parent = parent;
+            parent.children.add(this);
+        }
+
+        private void detach()
+        {
+            if (parent != null)
+                parent.children.remove(this);
+            parent = null;
+        }
+
+        private int compareTo(Node that, long floor)
+        {
+            int result = Long.compare(Math.max(clock, floor), Math.max(that.clock, floor));
+            if (result == 0)
+                result = Integer.compare(streamId, that.streamId);
+            return result;
+        }
+
+        @Override
+        public void dump(Appendable out, String indent) throws IOException
+        {
+            Dumpable.dumpObjects(out, indent, this, children.toArray());
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("#%d{weight=%d,urgency=%d,incremental=%b,clock=%d}", streamId, weight, urgency, incremental, clock);
+        }
+    }
+}
@@ -96,6 +96,8 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
     private long streamIdleTimeout;
     private int initialSessionRecvWindow;
     private int writeThreshold;
+    private int coalesceThreshold;
+    private int coalesceBufferSize;
     private boolean pushEnabled;
     private boolean connectProtocolEnabled;
     private long idleTime;
@@ -117,10 +119,13 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
         this.sendWindow.set(FlowControlStrategy.DEFAULT_WINDOW_SIZE);
         this.recvWindow.set(FlowControlStrategy.DEFAULT_WINDOW_SIZE);
         this.writeThreshold = 32 * 1024;
+        this.coalesceThreshold = 1024;
+        this.coalesceBufferSize = 16 * 1024;
         this.pushEnabled = true; // SPEC: by default, push is enabled.
         this.idleTime = System.nanoTime();
         addBean(flowControl);
         addBean(flusher);
+        addBean(flusher.getScheduler());
     }
 
     @Override
@@ -207,6 +212,36 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
         this.writeThreshold = writeThreshold;
     }
 
+    public int getCoalesceThreshold()
+    {
+        return coalesceThreshold;
+    }
+
+    /**
+     * <p>Sets the max size of the buffers, such as frame headers and small DATA payloads,
+     * that are copied into aggregate buffers before being written, so that a write
+     * is made of fewer and larger buffers.</p>
+     *
+     * @param coalesceThreshold the max size of the coalesced buffers, or 0 to disable coalescing
+     */
+    public void setCoalesceThreshold(int coalesceThreshold)
+    {
+        this.coalesceThreshold = coalesceThreshold;
+    }
+
+    public int getCoalesceBufferSize()
+    {
+        return coalesceBufferSize;
+    }
+
+    /**
+     * @param coalesceBufferSize the size of the aggregate buffers, typically the size of a TLS record
+     */
+    public void setCoalesceBufferSize(int coalesceBufferSize)
+    {
+        this.coalesceBufferSize = coalesceBufferSize;
+    }
+
     public EndPoint getEndPoint()
     {
         return endPoint;
@@ -257,15 +292,19 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
             // We must enlarge the session flow control window,
             // otherwise other requests will be stalled.
             flowControl.onDataConsumed(this, null, flowControlLength);
-            boolean local = (streamId & 1) == (localStreamIds.get() & 1);
-            boolean closed = local ? isLocalStreamClosed(streamId) : isRemoteStreamClosed(streamId);
-            if (closed)
+            if (isStreamClosed(streamId))
                 reset(new ResetFrame(streamId, ErrorCode.STREAM_CLOSED_ERROR.code), callback);
             else
                 onConnectionFailure(ErrorCode.PROTOCOL_ERROR.code, "unexpected_data_frame", callback);
         }
     }
 
+    private boolean isStreamClosed(int streamId)
+    {
+        boolean local = (streamId & 1) == (localStreamIds.get() & 1);
+        return local ? isLocalStreamClosed(streamId) : isRemoteStreamClosed(streamId);
+    }
+
     protected boolean isLocalStreamClosed(int streamId)
     {
         return streamId <= localStreamIds.get();
@@ -284,6 +323,30 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
     {
         if (LOG.isDebugEnabled())
             LOG.debug("Received {}", frame);
+        // Priority information for closed streams would create nodes that are never removed.
+        int streamId = frame.getStreamId();
+        if (getStream(streamId) == null && isStreamClosed(streamId))
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Ignoring {} for closed stream", frame);
+            return;
+        }
+        flusher.getScheduler().prioritize(frame);
+    }
+
+    /**
+     * <p>Applies the priority information carried by the given received
+     * HEADERS frame to the scheduling of the DATA frames of the stream.</p>
+     *
+     * @param frame the HEADERS frame received
+     */
+    protected void prioritize(HeadersFrame frame)
+    {
+        HTTP2Scheduler scheduler = flusher.getScheduler();
+        PriorityFrame priority = frame.getPriority();
+        if (priority != null)
+            scheduler.prioritize(priority);
+        scheduler.prioritize(frame.getStreamId(), frame.getMetaData());
     }
 
     @Override
@@ -404,7 +467,8 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
 
         if (frame.isReply())
         {
-            notifyPing(this, frame);
+            if (!flowControl.onPingReply(this, frame))
+                notifyPing(this, frame);
         }
         else
         {
@@ -784,6 +848,7 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
         {
             stream.setIdleTimeout(getStreamIdleTimeout());
             flowControl.onStreamCreated(stream);
+            flusher.getScheduler().onStreamCreated(streamId);
             if (LOG.isDebugEnabled())
                 LOG.debug("Created local {}", stream);
             return stream;
@@ -821,6 +886,7 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
             updateLastRemoteStreamId(streamId);
             stream.setIdleTimeout(getStreamIdleTimeout());
             flowControl.onStreamCreated(stream);
+            flusher.getScheduler().onStreamCreated(streamId);
             if (LOG.isDebugEnabled())
                 LOG.debug("Created remote {}", stream);
             return stream;
@@ -849,6 +915,7 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
         {
             onStreamClosed(stream);
             flowControl.onStreamDestroyed(stream);
+            flusher.getScheduler().onStreamDestroyed(stream.getId());
             if (LOG.isDebugEnabled())
                 LOG.debug("Removed {} {}", stream.isLocal() ? "local" : "remote", stream);
         }
@@ -1074,6 +1141,7 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
                     if (closed.compareAndSet(current, CloseState.CLOSED))
                     {
                         flusher.terminate(cause);
+                        flowControl.onSessionClosed(this);
                         for (IStream stream : streams.values())
                         {
                             stream.close();
@@ -1293,6 +1361,8 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
                 case HEADERS:
                 {
                     HeadersFrame headersFrame = (HeadersFrame)frame;
+                    // A priority header sent along with the headers overrides the peer's priority.
+                    flusher.getScheduler().prioritize(stream.getId(), headersFrame.getMetaData());
                     stream.updateClose(headersFrame.isEndStream(), CloseState.Event.BEFORE_SEND);
                     break;
                 }
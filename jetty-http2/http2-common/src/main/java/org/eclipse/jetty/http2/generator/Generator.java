@@ -22,6 +22,7 @@ import org.eclipse.jetty.http2.frames.DataFrame;
 import org.eclipse.jetty.http2.frames.Frame;
 import org.eclipse.jetty.http2.frames.FrameType;
 import org.eclipse.jetty.http2.hpack.HpackEncoder;
+import org.eclipse.jetty.http2.hpack.HpackEncodingCache;
 import org.eclipse.jetty.http2.hpack.HpackException;
 import org.eclipse.jetty.io.ByteBufferPool;
 
@@ -71,11 +72,21 @@ public class Generator
         return byteBufferPool;
     }
 
+    public boolean isUseDirectByteBuffers()
+    {
+        return headerGenerator.isUseDirectByteBuffers();
+    }
+
     public void setValidateHpackEncoding(boolean validateEncoding)
     {
         hpackEncoder.setValidateEncoding(validateEncoding);
     }
 
+    public void setHpackEncodingCache(HpackEncodingCache encodingCache)
+    {
+        hpackEncoder.setEncodingCache(encodingCache);
+    }
+
     public void setHeaderTableSize(int headerTableSize)
     {
         hpackEncoder.setRemoteMaxDynamicTableSize(headerTableSize);
@@ -0,0 +1,150 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under
+// the terms of the Eclipse Public License 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0
+//
+// This Source Code may also be made available under the following
+// Secondary Licenses when the conditions for such availability set
+// forth in the Eclipse Public License, v. 2.0 are satisfied:
+// the Apache License v2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+import org.eclipse.jetty.http2.frames.Frame;
+import org.eclipse.jetty.http2.frames.PingFrame;
+import org.eclipse.jetty.http2.frames.SettingsFrame;
+import org.eclipse.jetty.util.Callback;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BDPFlowControlStrategyTest
+{
+    @Test
+    public void testStreamWindowsShrinkWhenPeerAppliedSettings()
+    {
+        BDPFlowControlStrategy.Factory factory = new BDPFlowControlStrategy.Factory();
+        factory.setMaxWindow(4 * 1024 * 1024);
+        factory.setPingInterval(0);
+        BDPFlowControlStrategy flowControl = (BDPFlowControlStrategy)factory.newFlowControlStrategy();
+
+        AtomicInteger sessionWindow = new AtomicInteger(FlowControlStrategy.DEFAULT_WINDOW_SIZE);
+        AtomicInteger streamWindow = new AtomicInteger();
+        List<Frame> frames = new ArrayList<>();
+        List<Callback> callbacks = new ArrayList<>();
+        IStream stream = proxy(IStream.class, (method, args) ->
+        {
+            if ("updateRecvWindow".equals(method))
+                return streamWindow.getAndAdd((Integer)args[0]);
+            return null;
+        });
+        ISession session = proxy(ISession.class, (method, args) ->
+        {
+            switch (method)
+            {
+                case "updateRecvWindow":
+                    return sessionWindow.getAndAdd((Integer)args[0]);
+                case "getStreams":
+                    return Collections.singletonList(stream);
+                case "ping":
+                    frames.add((Frame)args[0]);
+                    return null;
+                case "frames":
+                    frames.add((Frame)args[2]);
+                    frames.addAll(Arrays.asList((Frame[])args[3]));
+                    callbacks.add((Callback)args[1]);
+                    return null;
+                default:
+                    return null;
+            }
+        });
+        flowControl.onStreamCreated(stream);
+
+        // A sample close to the windows grows them.
+        flowControl.onDataReceived(session, stream, 60_000);
+        flowControl.onPingReply(session, new PingFrame(last(frames, PingFrame.class).getPayloadAsLong(), true));
+        int grownWindow = last(frames, SettingsFrame.class).getSettings().get(SettingsFrame.INITIAL_WINDOW_SIZE);
+        assertThat(grownWindow, greaterThan(FlowControlStrategy.DEFAULT_WINDOW_SIZE));
+        // The session applies the initial window when the SETTINGS frame is written.
+        flowControl.updateInitialStreamWindow(session, grownWindow, true);
+        assertEquals(grownWindow, flowControl.getInitialStreamRecvWindow());
+        flowControl.onDataConsumed(session, stream, 60_000);
+
+        // A small sample shrinks them.
+        flowControl.onDataReceived(session, stream, 10);
+        flowControl.onPingReply(session, new PingFrame(last(frames, PingFrame.class).getPayloadAsLong(), true));
+        int shrunkWindow = last(frames, SettingsFrame.class).getSettings().get(SettingsFrame.INITIAL_WINDOW_SIZE);
+        assertThat(shrunkWindow, lessThan(grownWindow));
+        flowControl.updateInitialStreamWindow(session, shrunkWindow, true);
+
+        // The peer may have sent DATA under the larger window before receiving the SETTINGS frame.
+        assertEquals(grownWindow, flowControl.getInitialStreamRecvWindow());
+        // Fill the whole stream window, that would have been exceeded had it been shrunk already.
+        flowControl.onDataReceived(session, stream, streamWindow.get());
+        assertEquals(0, streamWindow.get());
+
+        // Once the SETTINGS frame is written, a PING is sent; its reply applies the shrink.
+        callbacks.get(callbacks.size() - 1).succeeded();
+        PingFrame fence = last(frames, PingFrame.class);
+        int before = streamWindow.get();
+        assertTrue(flowControl.onPingReply(session, new PingFrame(fence.getPayloadAsLong(), true)));
+        assertEquals(shrunkWindow, flowControl.getInitialStreamRecvWindow());
+        assertEquals(before - (grownWindow - shrunkWindow), streamWindow.get());
+    }
+
+    private static <T extends Frame> T last(List<Frame> frames, Class<T> type)
+    {
+        for (int i = frames.size() - 1; i >= 0; --i)
+        {
+            if (type.isInstance(frames.get(i)))
+                return type.cast(frames.get(i));
+        }
+        throw new AssertionError("No " + type.getSimpleName());
+    }
+
+    private static <T> T proxy(Class<T> type, BiFunction<String, Object[], Object> handler)
+    {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) ->
+        {
+            switch (method.getName())
+            {
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return type.getSimpleName();
+                default:
+                    break;
+            }
+            Object result = handler.apply(method.getName(), args);
+            if (result == null && method.getReturnType() == int.class)
+                return 0;
+            if (result == null && method.getReturnType() == boolean.class)
+                return false;
+            if (result == null && method.getReturnType() == long.class)
+                return 0L;
+            return result;
+        }));
+    }
+}
@@ -0,0 +1,240 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under
+// the terms of the Eclipse Public License 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0
+//
+// This Source Code may also be made available under the following
+// Secondary Licenses when the conditions for such availability set
+// forth in the Eclipse Public License, v. 2.0 are satisfied:
+// the Apache License v2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.MetaData;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class HTTP2SchedulerTest
+{
+    private static final int FRAME_BYTES = 16384;
+
+    @Test
+    public void testDefaultPriorityIsRoundRobin()
+    {
+        HTTP2Scheduler scheduler = new HTTP2Scheduler(16);
+
+        List<Integer> order = schedule(scheduler, 6, 1, 3, 5);
+
+        assertThat(order, contains(1, 3, 5, 1, 3, 5));
+    }
+
+    @Test
+    public void testSiblingsShareByWeight()
+    {
+        HTTP2Scheduler scheduler = new HTTP2Scheduler(16);
+        scheduler.prioritize(1, 0, 192, false);
+        scheduler.prioritize(3, 0, 64, false);
+
+        List<Integer> order = schedule(scheduler, 400, 1, 3);
+
+        long count1 = order.stream().filter(id -> id == 1).count();
+        long count3 = order.stream().filter(id -> id == 3).count();
+        assertEquals(300, count1);
+        assertEquals(100, count3);
+    }
+
+    @Test
+    public void testDependentStreamWaitsForParent()
+    {
+        HTTP2Scheduler scheduler = new HTTP2Scheduler(16);
+        scheduler.onStreamCreated(1);
+        scheduler.prioritize(3, 1, 16, false);
+        scheduler.prioritize(5, 0, 16, false);
+
+        // Stream 3 only gets the share of stream 1 when stream 1 cannot send.
+        assertThat(schedule(scheduler, 4, 1, 3, 5), contains(1, 5, 1, 5));
+        assertThat(schedule(scheduler, 4, 3, 5), contains(3, 5, 3, 5));
+    }
+
+    @Test
+    public void testExclusiveDependency()
+    {
+        HTTP2Scheduler scheduler = new HTTP2Scheduler(16);
+        scheduler.prioritize(1, 0, 16, false);
+        scheduler.prioritize(3, 0, 16, false);
+        scheduler.prioritize(5, 0, 16, true);
+
+        assertThat(schedule(scheduler, 3, 1, 3, 5), contains(5, 5, 5));
+        assertThat(schedule(scheduler, 4, 1, 3), contains(1, 3, 1, 3));
+    }
+
+    @Test
+    public void testDependencyOnDescendant()
+    {
+        HTTP2Scheduler scheduler = new HTTP2Scheduler(16);
+        scheduler.onStreamCreated(1);
+        scheduler.prioritize(3, 1, 16, false);
+        scheduler.prioritize(5, 3, 16, false);
+
+        // Stream 1 now depends on its descendant 5, which is moved first to the parent of 1.
+        scheduler.prioritize(1, 5, 16, false);
+
+        assertThat(schedule(scheduler, 3, 1, 3, 5), contains(5, 5, 5));
+        assertThat(schedule(scheduler, 2, 1, 3), contains(1, 1));
+    }
+
+    @Test
+    public void testRemovedStreamChildrenMoveToParent()
+    {
+        HTTP2Scheduler scheduler = new HTTP2Scheduler(16);
+        scheduler.onStreamCreated(1);
+        scheduler.prioritize(3, 1, 16, false);
+        scheduler.prioritize(5, 1, 16, false);
+        scheduler.prioritize(7, 0, 16, false);
+
+        scheduler.onStreamDestroyed(1);
+
+        // Streams 3 and 5 share the weight of stream 1.
+        List<Integer> order = schedule(scheduler, 400, 3, 5, 7);
+        assertEquals(100, order.stream().filter(id -> id == 3).count());
+        assertEquals(100, order.stream().filter(id -> id == 5).count());
+        assertEquals(200, order.stream().filter(id -> id == 7).count());
+        assertEquals(3, scheduler.getPriorityTreeSize());
+    }
+
+    @Test
+    public void testUrgency()
+    {
+        HTTP2Scheduler scheduler = new HTTP2Scheduler(16);
+        scheduler.prioritize(3, metaData("u=1, i"));
+        scheduler.prioritize(5, metaData("u=1,i=?1"));
+        scheduler.prioritize(7, metaData("u=0, i=?0"));
+
+        // The most urgent stream is served first.
+        assertThat(schedule(scheduler, 2, 1, 3, 5, 7), contains(7, 7));
+        // Incremental streams of the same urgency are interleaved.
+        assertThat(schedule(scheduler, 4, 1, 3, 5), contains(3, 5, 3, 5));
+        // Streams without priority have the default urgency.
+        assertThat(schedule(scheduler, 2, 1, 9), contains(1, 9));
+    }
+
+    @Test
+    public void testNonIncrementalStreamsAreServedInOrder()
+    {
+        HTTP2Scheduler scheduler = new HTTP2Scheduler(16);
+        scheduler.prioritize(3, metaData("u=2"));
+        scheduler.prioritize(5, metaData("u=2"));
+
+        assertThat(schedule(scheduler, 3, 5, 3), contains(3, 3, 3));
+        scheduler.onStreamDestroyed(3);
+        assertThat(schedule(scheduler, 2, 5), contains(5, 5));
+    }
+
+    @Test
+    public void testMaxNodes()
+    {
+        HTTP2Scheduler scheduler = new HTTP2Scheduler(2);
+        scheduler.onStreamCreated(1);
+        scheduler.onStreamCreated(3);
+        scheduler.prioritize(5, 1, 200, true);
+
+        // Open streams are never evicted.
+        assertEquals(2, scheduler.getPriorityTreeSize());
+        assertEquals(0, scheduler.getPrioritizations());
+    }
+
+    @Test
+    public void testMaxIdleNodes()
+    {
+        HTTP2Scheduler scheduler = new HTTP2Scheduler(16, 2);
+        scheduler.prioritize(Integer.MAX_VALUE, 0, 16, false);
+        scheduler.prioritize(Integer.MAX_VALUE - 2, 0, 16, false);
+        assertEquals(2, scheduler.getPriorityTreeSize());
+
+        // The oldest idle stream is evicted.
+        scheduler.prioritize(5, 0, 16, false);
+        assertEquals(2, scheduler.getPriorityTreeSize());
+        assertEquals(3, scheduler.getPrioritizations());
+
+        // Idle streams that are never opened do not prevent new streams from being prioritized.
+        scheduler.onStreamCreated(1);
+        scheduler.prioritize(3, 1, 200, true);
+        assertEquals(4, scheduler.getPrioritizations());
+        assertEquals(3, scheduler.getPriorityTreeSize());
+        assertThat(schedule(scheduler, 2, 1, 3), contains(1, 1));
+
+        // Opening stream 7 implicitly closes idle streams 3 and 5.
+        scheduler.onStreamCreated(7);
+        assertEquals(2, scheduler.getPriorityTreeSize());
+    }
+
+    @Test
+    public void testDependencyOnUnknownStream()
+    {
+        HTTP2Scheduler scheduler = new HTTP2Scheduler(16);
+        scheduler.prioritize(3, 1, 200, true);
+        scheduler.prioritize(5, 0, 16, false);
+
+        // SPEC: the dependency on a stream not in the tree results in the default priority.
+        assertThat(schedule(scheduler, 4, 3, 5), contains(3, 5, 3, 5));
+    }
+
+    @Test
+    public void testIdleStreamsRemovedWhenImplicitlyClosed()
+    {
+        HTTP2Scheduler scheduler = new HTTP2Scheduler(16);
+        scheduler.prioritize(3, 0, 16, false);
+        scheduler.prioritize(4, 0, 16, false);
+        scheduler.prioritize(7, 0, 16, false);
+        assertEquals(3, scheduler.getPriorityTreeSize());
+
+        // Opening stream 5 implicitly closes stream 3, which was never opened.
+        scheduler.onStreamCreated(5);
+        assertEquals(3, scheduler.getPriorityTreeSize());
+        scheduler.onStreamDestroyed(5);
+        assertEquals(2, scheduler.getPriorityTreeSize());
+
+        // Stream 7 was prioritized before being opened, and is kept until destroyed.
+        scheduler.onStreamCreated(7);
+        assertEquals(2, scheduler.getPriorityTreeSize());
+        scheduler.onStreamDestroyed(7);
+        assertEquals(1, scheduler.getPriorityTreeSize());
+    }
+
+    private static MetaData metaData(String priority)
+    {
+        HttpFields fields = new HttpFields();
+        fields.put(HTTP2Scheduler.PRIORITY_HEADER, priority);
+        return new MetaData(HttpVersion.HTTP_2, fields);
+    }
+
+    private static List<Integer> schedule(HTTP2Scheduler scheduler, int frames, Integer... streamIds)
+    {
+        List<Integer> ready = Arrays.asList(streamIds);
+        List<Integer> result = new ArrayList<>();
+        for (int i = 0; i < frames; ++i)
+        {
+            int streamId = scheduler.next(ready);
+            result.add(streamId);
+            scheduler.onDataScheduled(streamId, FRAME_BYTES);
+        }
+        return result;
+    }
+}
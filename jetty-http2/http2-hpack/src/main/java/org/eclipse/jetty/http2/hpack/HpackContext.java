@@ -30,7 +30,6 @@ import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.HttpMethod;
 import org.eclipse.jetty.http.HttpScheme;
 import org.eclipse.jetty.util.ArrayTernaryTrie;
-import org.eclipse.jetty.util.StringUtil;
 import org.eclipse.jetty.util.Trie;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
@@ -190,14 +189,16 @@ public class HpackContext
     private int _maxDynamicTableSizeInBytes;
     private int _dynamicTableSizeInBytes;
     private final DynamicTable _dynamicTable;
-    private final Map<HttpField, Entry> _fieldMap = new HashMap<>();
-    private final Map<String, Entry> _nameMap = new HashMap<>();
+    private final EntryIndex _fieldIndex;
+    private final EntryIndex _nameIndex;
 
     HpackContext(int maxDynamicTableSize)
     {
         _maxDynamicTableSizeInBytes = maxDynamicTableSize;
         int guesstimateEntries = 10 + maxDynamicTableSize / (32 + 10 + 10);
         _dynamicTable = new DynamicTable(guesstimateEntries);
+        _fieldIndex = new EntryIndex(false, guesstimateEntries);
+        _nameIndex = new EntryIndex(true, guesstimateEntries);
         if (LOG.isDebugEnabled())
             LOG.debug(String.format("HdrTbl[%x] created max=%d", hashCode(), maxDynamicTableSize));
     }
@@ -212,7 +213,7 @@ public class HpackContext
 
     public Entry get(HttpField field)
     {
-        Entry entry = _fieldMap.get(field);
+        Entry entry = _fieldIndex.get(field);
         if (entry == null)
             entry = __staticFieldMap.get(field);
         return entry;
@@ -223,7 +224,7 @@ public class HpackContext
         Entry entry = __staticNameMap.get(name);
         if (entry != null)
             return entry;
-        return _nameMap.get(StringUtil.asciiToLowerCase(name));
+        return _nameIndex.get(name);
     }
 
     public Entry get(int index)
@@ -260,8 +261,8 @@ public class HpackContext
         }
         _dynamicTableSizeInBytes += size;
         _dynamicTable.add(entry);
-        _fieldMap.put(field, entry);
-        _nameMap.put(field.getLowerCaseName(), entry);
+        _fieldIndex.put(entry);
+        _nameIndex.put(entry);
 
         if (LOG.isDebugEnabled())
             LOG.debug(String.format("HdrTbl[%x] added %s", hashCode(), entry));
@@ -382,10 +383,8 @@ public class HpackContext
                     LOG.debug(String.format("HdrTbl[%x] evict %s", HpackContext.this.hashCode(), entry));
                 _dynamicTableSizeInBytes -= entry.getSize();
                 entry._slot = -1;
-                _fieldMap.remove(entry.getHttpField());
-                String lc = entry.getHttpField().getLowerCaseName();
-                if (entry == _nameMap.get(lc))
-                    _nameMap.remove(lc);
+                _fieldIndex.remove(entry);
+                _nameIndex.remove(entry);
             }
             if (LOG.isDebugEnabled())
                 LOG.debug(String.format("HdrTbl[%x] entries=%d, size=%d, max=%d", HpackContext.this.hashCode(), _dynamicTable.size(), _dynamicTableSizeInBytes, _maxDynamicTableSizeInBytes));
@@ -395,8 +394,8 @@ public class HpackContext
         {
             if (LOG.isDebugEnabled())
                 LOG.debug(String.format("HdrTbl[%x] evictAll", HpackContext.this.hashCode()));
-            _fieldMap.clear();
-            _nameMap.clear();
+            _fieldIndex.clear();
+            _nameIndex.clear();
             _offset = 0;
             _size = 0;
             _dynamicTableSizeInBytes = 0;
@@ -404,6 +403,177 @@ public class HpackContext
         }
     }
 
+    /**
+     * <p>An open addressing hash index of the dynamic table entries, either by
+     * field or by case insensitive name, with linear probing and backward shift
+     * deletion, so that lookups neither allocate nor chain through nodes.</p>
+     * <p>The most recently added entry for a key replaces the previous one,
+     * which is only removed from the index when it is itself evicted.</p>
+     */
+    private static class EntryIndex
+    {
+        private final boolean _byName;
+        private Entry[] _entries;
+        private int[] _hashes;
+        private int _shift;
+        private int _size;
+
+        private EntryIndex(boolean byName, int initCapacity)
+        {
+            _byName = byName;
+            // Keep the load factor below 1/2.
+            int capacity = Integer.highestOneBit(Math.max(8, initCapacity) * 2 - 1) << 1;
+            allocate(capacity);
+        }
+
+        private void allocate(int capacity)
+        {
+            _entries = new Entry[capacity];
+            _hashes = new int[capacity];
+            _shift = Integer.numberOfLeadingZeros(capacity) + 1;
+        }
+
+        private static int nameHash(String name)
+        {
+            int h = 0;
+            for (int i = 0; i < name.length(); i++)
+            {
+                char c = name.charAt(i);
+                if (c >= 'A' && c <= 'Z')
+                    c += 0x20;
+                h = 31 * h + c;
+            }
+            return h;
+        }
+
+        private int hash(Entry entry)
+        {
+            HttpField field = entry.getHttpField();
+            return _byName ? nameHash(field.getName()) : field.hashCode();
+        }
+
+        private int home(int hash)
+        {
+            // Fibonacci hashing spreads the bits of poor hash codes.
+            return (hash * 0x9E3779B9) >>> _shift;
+        }
+
+        private boolean matches(Entry entry, Object key)
+        {
+            HttpField field = entry.getHttpField();
+            return _byName ? field.getName().equalsIgnoreCase((String)key) : field.equals(key);
+        }
+
+        private Entry get(Object key, int hash)
+        {
+            int mask = _entries.length - 1;
+            for (int i = home(hash); ; i = (i + 1) & mask)
+            {
+                Entry entry = _entries[i];
+                if (entry == null)
+                    return null;
+                if (_hashes[i] == hash && matches(entry, key))
+                    return entry;
+            }
+        }
+
+        private Entry get(HttpField field)
+        {
+            return get(field, field.hashCode());
+        }
+
+        private Entry get(String name)
+        {
+            return get(name, nameHash(name));
+        }
+
+        private void put(Entry entry)
+        {
+            if (_size * 2 >= _entries.length)
+                grow();
+            int hash = hash(entry);
+            Object key = _byName ? entry.getHttpField().getName() : entry.getHttpField();
+            int mask = _entries.length - 1;
+            for (int i = home(hash); ; i = (i + 1) & mask)
+            {
+                Entry existing = _entries[i];
+                if (existing == null)
+                {
+                    _entries[i] = entry;
+                    _hashes[i] = hash;
+                    ++_size;
+                    return;
+                }
+                if (_hashes[i] == hash && matches(existing, key))
+                {
+                    _entries[i] = entry;
+                    return;
+                }
+            }
+        }
+
+        private void remove(Entry entry)
+        {
+            int mask = _entries.length - 1;
+            int i = home(hash(entry));
+            while (true)
+            {
+                Entry existing = _entries[i];
+                if (existing == null)
+                    return;
+                if (existing == entry)
+                    break;
+                i = (i + 1) & mask;
+            }
+
+            // Shift back the following entries of the cluster
+            // that would not be reachable from their home slot.
+            int j = i;
+            while (true)
+            {
+                j = (j + 1) & mask;
+                if (_entries[j] == null)
+                    break;
+                int k = home(_hashes[j]);
+                boolean reachable = i <= j ? (i < k && k <= j) : (i < k || k <= j);
+                if (reachable)
+                    continue;
+                _entries[i] = _entries[j];
+                _hashes[i] = _hashes[j];
+                i = j;
+            }
+            _entries[i] = null;
+            --_size;
+        }
+
+        private void grow()
+        {
+            Entry[] entries = _entries;
+            int[] hashes = _hashes;
+            allocate(entries.length * 2);
+            int mask = _entries.length - 1;
+            for (int e = 0; e < entries.length; e++)
+            {
+                Entry entry = entries[e];
+                if (entry == null)
+                    continue;
+                int i = home(hashes[e]);
+                while (_entries[i] != null)
+                {
+                    i = (i + 1) & mask;
+                }
+                _entries[i] = entry;
+                _hashes[i] = hashes[e];
+            }
+        }
+
+        private void clear()
+        {
+            Arrays.fill(_entries, null);
+            _size = 0;
+        }
+    }
+
     public static class Entry
     {
         final HttpField _field;
@@ -102,6 +102,7 @@ public class HpackEncoder
     private int _maxHeaderListSize;
     private int _headerListSize;
     private boolean _validateEncoding = true;
+    private HpackEncodingCache _encodingCache;
 
     public HpackEncoder()
     {
@@ -162,6 +163,22 @@ public class HpackEncoder
         _validateEncoding = validateEncoding;
     }
 
+    public HpackEncodingCache getEncodingCache()
+    {
+        return _encodingCache;
+    }
+
+    /**
+     * <p>Sets the cache of Huffman encoded names and values, that may be shared
+     * with other encoders, used to avoid encoding the same strings repeatedly.</p>
+     *
+     * @param encodingCache the encoding cache, or null to disable caching
+     */
+    public void setEncodingCache(HpackEncodingCache encodingCache)
+    {
+        _encodingCache = encodingCache;
+    }
+
     public void encode(ByteBuffer buffer, MetaData metadata) throws HpackException
     {
         try
@@ -343,14 +360,15 @@ public class HpackEncoder
                     // unless the name is changing, this is worthwhile
                     indexed = true;
                     encodeName(buffer, (byte)0x40, 6, field.getName(), null);
-                    encodeValue(buffer, true, field.getValue());
+                    encodeCachedValue(buffer, field.getValue());
                     if (_debug)
                         encoding = "LitHuffNHuffVIdx";
                 }
                 else
                 {
                     // known custom name, but unknown value.
-                    // This is probably a custom field with changing value, so don't index.
+                    // This is probably a custom field with changing value, so don't index,
+                    // nor cache its encoding.
                     indexed = false;
                     encodeName(buffer, (byte)0x00, 4, field.getName(), null);
                     encodeValue(buffer, true, field.getValue());
@@ -390,7 +408,8 @@ public class HpackEncoder
                 }
                 else if (fieldSize >= _context.getMaxDynamicTableSize() || header == HttpHeader.CONTENT_LENGTH && field.getValue().length() > 2)
                 {
-                    // Non indexed if field too large or a content length for 3 digits or more
+                    // Non indexed if field too large or a content length for 3 digits or more,
+                    // and not cached either as the value is likely to change.
                     indexed = false;
                     encodeName(buffer, (byte)0x00, 4, header.asString(), name);
                     encodeValue(buffer, true, field.getValue());
@@ -403,7 +422,10 @@ public class HpackEncoder
                     indexed = true;
                     boolean huffman = !DO_NOT_HUFFMAN.contains(header);
                     encodeName(buffer, (byte)0x40, 6, header.asString(), name);
-                    encodeValue(buffer, huffman, field.getValue());
+                    if (huffman)
+                        encodeCachedValue(buffer, field.getValue());
+                    else
+                        encodeValue(buffer, false, field.getValue());
                     if (_debug)
                         encoding = ((name == null) ? "LitHuffN" : ("LitIdxN" + (name.isStatic() ? "S" : "") + (1 + NBitInteger.octectsNeeded(6, _context.index(name))))) +
                             (huffman ? "HuffVIdx" : "LitVIdx");
@@ -429,6 +451,13 @@ public class HpackEncoder
         {
             // leave name index bits as 0
             // Encode the name always with lowercase huffman
+            HpackEncodingCache cache = _encodingCache;
+            byte[] encoded = cache == null ? null : cache.getEncodedName(name);
+            if (encoded != null)
+            {
+                buffer.put(encoded);
+                return;
+            }
             buffer.put((byte)0x80);
             NBitInteger.encode(buffer, 7, Huffman.octetsNeededLC(name));
             Huffman.encodeLC(buffer, name);
@@ -439,6 +468,17 @@ public class HpackEncoder
         }
     }
 
+    private void encodeCachedValue(ByteBuffer buffer, String value)
+    {
+        // Only used for indexable fields, so that sensitive values are never cached.
+        HpackEncodingCache cache = _encodingCache;
+        byte[] encoded = cache == null ? null : cache.getEncodedValue(value);
+        if (encoded == null)
+            encodeValue(buffer, true, value);
+        else
+            buffer.put(encoded);
+    }
+
     static void encodeValue(ByteBuffer buffer, boolean huffman, String value)
     {
         if (huffman)
@@ -0,0 +1,304 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under
+// the terms of the Eclipse Public License 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0
+//
+// This Source Code may also be made available under the following
+// Secondary Licenses when the conditions for such availability set
+// forth in the Eclipse Public License, v. 2.0 are satisfied:
+// the Apache License v2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2.hpack;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.util.FrequencySketch;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+
+/**
+ * <p>A thread-safe cache of the Huffman encoded literal representations
+ * of header names and values, that may be shared by all the
+ * {@link HpackEncoder}s of a server.</p>
+ * <p>Encoding a literal header value requires computing its Huffman length
+ * and then Huffman encoding it, for every stream of every connection.
+ * Frequent values such as {@code Content-Type}, {@code Server} or
+ * {@code Cache-Control} are encoded once and then copied from this cache.</p>
+ * <p>Strings are admitted once they have been seen at least twice, as
+ * estimated by a {@link FrequencySketch}, so that unique values do not
+ * pollute the cache. When the cache is full, a candidate replaces the least
+ * frequent of a few randomly sampled entries, only if it is more frequent, so that
+ * values that are no longer used (such as old {@code Date} values)
+ * are eventually evicted. The keys are also kept in an array, so that sampling
+ * costs the same whatever the number of entries.</p>
+ */
+@ManagedObject
+public class HpackEncodingCache
+{
+    private static final int SAMPLE_SIZE = 4;
+
+    private final Segment _values;
+    private final Segment _names;
+    private final LongAdder _hits = new LongAdder();
+    private final LongAdder _misses = new LongAdder();
+    private final FrequencySketch _sketch;
+    private final int _maxEntries;
+    private final int _maxLength;
+
+    public HpackEncodingCache()
+    {
+        this(1024, 256);
+    }
+
+    /**
+     * @param maxEntries the max number of cached values, and separately of cached names
+     * @param maxLength the max length of the cached strings
+     */
+    public HpackEncodingCache(int maxEntries, int maxLength)
+    {
+        _maxEntries = maxEntries;
+        _maxLength = maxLength;
+        _values = new Segment(maxEntries, false);
+        _names = new Segment(maxEntries, true);
+        _sketch = new FrequencySketch(Math.max(16, 4 * maxEntries));
+    }
+
+    @ManagedAttribute(value = "The max number of cached values or names", readonly = true)
+    public int getMaxEntries()
+    {
+        return _maxEntries;
+    }
+
+    @ManagedAttribute(value = "The max length of cached strings", readonly = true)
+    public int getMaxLength()
+    {
+        return _maxLength;
+    }
+
+    @ManagedAttribute(value = "The number of cached values", readonly = true)
+    public int getValueCount()
+    {
+        return _values._map.size();
+    }
+
+    @ManagedAttribute(value = "The number of cached names", readonly = true)
+    public int getNameCount()
+    {
+        return _names._map.size();
+    }
+
+    @ManagedAttribute(value = "The number of cache hits", readonly = true)
+    public long getHits()
+    {
+        return _hits.longValue();
+    }
+
+    @ManagedAttribute(value = "The number of cache misses", readonly = true)
+    public long getMisses()
+    {
+        return _misses.longValue();
+    }
+
+    @ManagedOperation(value = "Clears the cache and resets the statistics", impact = "ACTION")
+    public void clear()
+    {
+        _values.clear();
+        _names.clear();
+        _hits.reset();
+        _misses.reset();
+    }
+
+    /**
+     * @param value the header value
+     * @return the Huffman encoded literal representation of the value, including
+     * its length prefix, or null if the value is not (yet) cached
+     */
+    public byte[] getEncodedValue(String value)
+    {
+        return get(_values, value, false);
+    }
+
+    /**
+     * @param name the header name
+     * @return the lower case Huffman encoded literal representation of the name,
+     * including its length prefix, or null if the name is not (yet) cached
+     */
+    public byte[] getEncodedName(String name)
+    {
+        return get(_names, name, true);
+    }
+
+    private byte[] get(Segment cache, String string, boolean name)
+    {
+        byte[] encoded = cache._map.get(string);
+        if (encoded != null)
+        {
+            _hits.increment();
+            return encoded;
+        }
+
+        _misses.increment();
+        if (string.length() > _maxLength)
+            return null;
+
+        // Names and values are counted separately.
+        Object key = name ? new NameKey(string) : string;
+        _sketch.increment(key);
+        int frequency = _sketch.frequency(key);
+        if (frequency < 2)
+            return null;
+
+        encoded = name ? encodeName(string) : encodeValue(string);
+        return cache.admit(string, encoded, frequency);
+    }
+
+    static byte[] encodeValue(String value)
+    {
+        int needed = Huffman.octetsNeeded(value);
+        if (needed >= 0)
+        {
+            ByteBuffer buffer = ByteBuffer.allocate(1 + NBitInteger.octectsNeeded(7, needed) + needed);
+            buffer.put((byte)0x80);
+            NBitInteger.encode(buffer, 7, needed);
+            Huffman.encode(buffer, value);
+            return buffer.array();
+        }
+        else
+        {
+            // Not iso_8859_1
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            needed = Huffman.octetsNeeded(bytes);
+            ByteBuffer buffer = ByteBuffer.allocate(1 + NBitInteger.octectsNeeded(7, needed) + needed);
+            buffer.put((byte)0x80);
+            NBitInteger.encode(buffer, 7, needed);
+            Huffman.encode(buffer, bytes);
+            return buffer.array();
+        }
+    }
+
+    static byte[] encodeName(String name)
+    {
+        int needed = Huffman.octetsNeededLC(name);
+        ByteBuffer buffer = ByteBuffer.allocate(1 + NBitInteger.octectsNeeded(7, needed) + needed);
+        buffer.put((byte)0x80);
+        NBitInteger.encode(buffer, 7, needed);
+        Huffman.encodeLC(buffer, name);
+        return buffer.array();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{values=%d,names=%d,max=%d}", getClass().getSimpleName(), hashCode(), getValueCount(), getNameCount(), _maxEntries);
+    }
+
+    /**
+     * <p>The cached names or values, read without locking, with their keys also
+     * held in an array so that eviction candidates are sampled in constant time.</p>
+     */
+    private class Segment
+    {
+        private final Map<String, byte[]> _map = new ConcurrentHashMap<>();
+        private final String[] _keys;
+        private final boolean _name;
+        private int _size;
+
+        private Segment(int capacity, boolean name)
+        {
+            _keys = new String[capacity];
+            _name = name;
+        }
+
+        private synchronized byte[] admit(String string, byte[] encoded, int frequency)
+        {
+            byte[] existing = _map.get(string);
+            if (existing != null)
+                return existing;
+
+            int slot;
+            if (_size < _keys.length)
+            {
+                slot = _size++;
+            }
+            else
+            {
+                slot = victim(frequency);
+                if (slot < 0)
+                    return null;
+                _map.remove(_keys[slot]);
+            }
+            _keys[slot] = string;
+            _map.put(string, encoded);
+            return encoded;
+        }
+
+        /**
+         * @return the slot of the least frequent of the sampled keys, or -1
+         * if none of them is less frequent than the given frequency
+         */
+        private int victim(int frequency)
+        {
+            if (_size == 0)
+                return -1;
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int victim = -1;
+            int victimFrequency = frequency;
+            for (int i = 0; i < SAMPLE_SIZE; ++i)
+            {
+                int slot = random.nextInt(_size);
+                String key = _keys[slot];
+                int f = _sketch.frequency(_name ? new NameKey(key) : key);
+                if (f < victimFrequency)
+                {
+                    victim = slot;
+                    victimFrequency = f;
+                }
+            }
+            return victim;
+        }
+
+        private synchronized void clear()
+        {
+            _map.clear();
+            Arrays.fill(_keys, null);
+            _size = 0;
+        }
+    }
+
+    private static class NameKey
+    {
+        private final String _name;
+
+        private NameKey(String name)
+        {
+            _name = name;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            return obj instanceof NameKey && _name.equals(((NameKey)obj)._name);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return ~_name.hashCode();
+        }
+    }
+}
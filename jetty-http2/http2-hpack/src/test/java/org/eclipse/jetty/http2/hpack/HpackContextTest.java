@@ -130,6 +130,39 @@ public class HpackContextTest
         assertNull(ctx.get("name"));
     }
 
+    @Test
+    public void testIndexChurn()
+    {
+        int entries = 16;
+        HpackContext ctx = new HpackContext(entries * (32 + 7 + 3));
+        Entry[] added = new Entry[1000];
+        for (int i = 0; i < added.length; i++)
+        {
+            added[i] = ctx.add(new HttpField(String.format("Name-%02d", i % 37), String.format("v%02d", i % 100)));
+            assertEquals(Math.min(entries, i + 1), ctx.size());
+
+            // The entries in the table are found by field and by name, case insensitively.
+            for (int j = Math.max(0, i - entries + 1); j <= i; j++)
+            {
+                HttpField field = added[j].getHttpField();
+                assertEquals(added[j], ctx.get(field));
+                assertEquals(field.getName(), ctx.get(field.getName().toUpperCase()).getHttpField().getName());
+            }
+            // The evicted entries are not found.
+            if (i >= entries)
+            {
+                HttpField evicted = added[i - entries].getHttpField();
+                boolean present = false;
+                for (int j = i - entries + 1; j <= i; j++)
+                {
+                    present |= added[j].getHttpField().equals(evicted);
+                }
+                if (!present)
+                    assertNull(ctx.get(evicted));
+            }
+        }
+    }
+
     @Test
     @SuppressWarnings("ReferenceEquality")
     public void testGetAddStatic()
@@ -0,0 +1,206 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under
+// the terms of the Eclipse Public License 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0
+//
+// This Source Code may also be made available under the following
+// Secondary Licenses when the conditions for such availability set
+// forth in the Eclipse Public License, v. 2.0 are satisfied:
+// the Apache License v2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2.hpack;
+
+import java.nio.ByteBuffer;
+
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.util.BufferUtil;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class HpackEncodingCacheTest
+{
+    @Test
+    public void testValueAdmittedOnSecondUse()
+    {
+        HpackEncodingCache cache = new HpackEncodingCache();
+        String value = "text/html;charset=utf-8";
+
+        assertNull(cache.getEncodedValue(value));
+        byte[] encoded = cache.getEncodedValue(value);
+        assertNotNull(encoded);
+        assertEquals(1, cache.getValueCount());
+
+        ByteBuffer buffer = BufferUtil.allocate(64);
+        BufferUtil.clearToFill(buffer);
+        HpackEncoder.encodeValue(buffer, true, value);
+        BufferUtil.flipToFlush(buffer, 0);
+        assertArrayEquals(BufferUtil.toArray(buffer), encoded);
+
+        assertSame(encoded, cache.getEncodedValue(value));
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void testNameAndValueCachedSeparately()
+    {
+        HpackEncodingCache cache = new HpackEncodingCache();
+        cache.getEncodedValue("X-Custom");
+        assertNotNull(cache.getEncodedValue("X-Custom"));
+        assertNull(cache.getEncodedName("X-Custom"));
+        byte[] name = cache.getEncodedName("X-Custom");
+        assertNotNull(name);
+        // Names are encoded in lower case.
+        assertArrayEquals(HpackEncodingCache.encodeName("x-custom"), name);
+        assertEquals(1, cache.getNameCount());
+    }
+
+    @Test
+    public void testLongValuesNotCached()
+    {
+        HpackEncodingCache cache = new HpackEncodingCache(16, 8);
+        assertNull(cache.getEncodedValue("0123456789"));
+        assertNull(cache.getEncodedValue("0123456789"));
+        assertEquals(0, cache.getValueCount());
+    }
+
+    @Test
+    public void testCacheIsBounded()
+    {
+        int maxEntries = 8;
+        HpackEncodingCache cache = new HpackEncodingCache(maxEntries, 256);
+        for (int i = 0; i < 100; i++)
+        {
+            String value = "value-" + i;
+            for (int j = 0; j < 5; j++)
+            {
+                cache.getEncodedValue(value);
+            }
+            assertThat(cache.getValueCount(), lessThanOrEqualTo(maxEntries));
+        }
+        // The most recent frequent values replace the older ones.
+        assertNotNull(cache.getEncodedValue("value-99"));
+    }
+
+    @Test
+    public void testAllEntriesAreEvictionCandidates()
+    {
+        int maxEntries = 32;
+        HpackEncodingCache cache = new HpackEncodingCache(maxEntries, 256);
+        // Half the entries are frequently used, the other half are stale.
+        for (int i = 0; i < maxEntries / 2; i++)
+        {
+            for (int j = 0; j < 10; j++)
+            {
+                cache.getEncodedValue("hot-" + i);
+            }
+            cache.getEncodedValue("stale-" + i);
+            cache.getEncodedValue("stale-" + i);
+        }
+        assertEquals(maxEntries, cache.getValueCount());
+
+        // More frequent values must replace the stale ones wherever
+        // they are in the iteration order of the cache.
+        for (int i = 0; i < 10 * maxEntries; i++)
+        {
+            String value = "new-" + i;
+            for (int j = 0; j < 5; j++)
+            {
+                cache.getEncodedValue(value);
+            }
+        }
+
+        int stale = 0;
+        for (int i = 0; i < maxEntries / 2; i++)
+        {
+            if (cache.getEncodedValue("stale-" + i) != null)
+                ++stale;
+        }
+        assertThat(stale, lessThan(2));
+    }
+
+    @Test
+    public void testEncodingWithCacheIsIdentical() throws Exception
+    {
+        HpackEncodingCache cache = new HpackEncodingCache();
+        HpackEncoder plain = new HpackEncoder();
+        HpackEncoder cached = new HpackEncoder();
+        cached.setEncodingCache(cache);
+        HpackDecoder decoder = new HpackDecoder(4096, 8192);
+
+        for (int i = 0; i < 10; i++)
+        {
+            HttpFields fields = new HttpFields();
+            fields.put(HttpHeader.CONTENT_TYPE, "application/json");
+            fields.put(HttpHeader.SERVER, "Jetty(10.0.x)");
+            fields.put(HttpHeader.CACHE_CONTROL, "no-cache, no-store");
+            fields.put(HttpHeader.CONTENT_LENGTH, String.valueOf(1000 + i));
+            fields.put(HttpHeader.SET_COOKIE, "secret=" + (i % 2));
+            fields.put("X-Request-Id", "id-" + i);
+            fields.put("X-Custom-" + (i % 3), "value");
+            MetaData.Response response = new MetaData.Response(HttpVersion.HTTP_2, 200, fields);
+
+            ByteBuffer expected = encode(plain, response);
+            ByteBuffer actual = encode(cached, response);
+            assertEquals(expected, actual);
+
+            MetaData decoded = decoder.decode(actual);
+            assertEquals(fields.size(), decoded.getFields().size());
+            assertEquals("application/json", decoded.getFields().get(HttpHeader.CONTENT_TYPE));
+        }
+
+        assertThat(cache.getHits(), greaterThan(0L));
+        // Sensitive values are never cached.
+        assertNull(cache.getEncodedValue("secret=1"));
+    }
+
+    @Test
+    public void testNonIndexedValuesNotCached() throws Exception
+    {
+        HpackEncodingCache cache = new HpackEncodingCache();
+        HpackEncoder encoder = new HpackEncoder();
+        encoder.setEncodingCache(cache);
+
+        for (int i = 0; i < 10; i++)
+        {
+            HttpFields fields = new HttpFields();
+            fields.put(HttpHeader.CONTENT_LENGTH, "12345");
+            // The name is indexed by the first response, and then the
+            // changing values of this custom header are not indexed.
+            fields.put("X-Request-Id", i == 0 ? "first" : "next");
+            encode(encoder, new MetaData.Response(HttpVersion.HTTP_2, 200, fields));
+        }
+
+        // The repeated values would have been cached if they had been looked up.
+        assertEquals(0, cache.getValueCount());
+    }
+
+    private static ByteBuffer encode(HpackEncoder encoder, MetaData metaData) throws HpackException
+    {
+        ByteBuffer buffer = BufferUtil.allocate(4096);
+        int pos = BufferUtil.flipToFill(buffer);
+        encoder.encode(buffer, metaData);
+        BufferUtil.flipToFlush(buffer, pos);
+        return buffer;
+    }
+}
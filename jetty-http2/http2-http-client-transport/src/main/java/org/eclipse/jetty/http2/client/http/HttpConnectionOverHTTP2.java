@@ -19,6 +19,7 @@
 package org.eclipse.jetty.http2.client.http;
 
 import java.nio.channels.AsynchronousCloseException;
+import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -26,7 +27,9 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.eclipse.jetty.client.ConnectionPool;
 import org.eclipse.jetty.client.HttpChannel;
 import org.eclipse.jetty.client.HttpConnection;
 import org.eclipse.jetty.client.HttpDestination;
@@ -39,12 +42,13 @@ import org.eclipse.jetty.http.HttpVersion;
 import org.eclipse.jetty.http2.ErrorCode;
 import org.eclipse.jetty.http2.IStream;
 import org.eclipse.jetty.http2.api.Session;
+import org.eclipse.jetty.http2.frames.PingFrame;
 import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
 import org.eclipse.jetty.util.thread.Sweeper;
 
-public class HttpConnectionOverHTTP2 extends HttpConnection implements Sweeper.Sweepable
+public class HttpConnectionOverHTTP2 extends HttpConnection implements ConnectionPool.Pingable, Sweeper.Sweepable
 {
     private static final Logger LOG = Log.getLogger(HttpConnection.class);
 
@@ -52,6 +56,8 @@ public class HttpConnectionOverHTTP2 extends HttpConnection implements Sweeper.S
     private final Queue<HttpChannelOverHTTP2> idleChannels = new ConcurrentLinkedQueue<>();
     private final AtomicBoolean closed = new AtomicBoolean();
     private final AtomicInteger sweeps = new AtomicInteger();
+    private final AtomicLong pingIds = new AtomicLong();
+    private final Map<Long, Callback> pings = new ConcurrentHashMap<>();
     private final Session session;
     private boolean recycleHttpChannels;
 
@@ -143,6 +149,33 @@ public class HttpConnectionOverHTTP2 extends HttpConnection implements Sweeper.S
             getHttpDestination().release(this);
     }
 
+    @Override
+    public void ping(Callback callback)
+    {
+        long payload = pingIds.incrementAndGet();
+        pings.put(payload, callback);
+        session.ping(new PingFrame(payload, false), new Callback()
+        {
+            @Override
+            public void failed(Throwable x)
+            {
+                if (pings.remove(payload) != null)
+                    callback.failed(x);
+            }
+        });
+    }
+
+    void onPing(PingFrame frame)
+    {
+        if (!frame.isReply())
+            return;
+        Callback callback = pings.remove(frame.getPayloadAsLong());
+        if (LOG.isDebugEnabled())
+            LOG.debug("Ping reply {} for {}", frame, callback);
+        if (callback != null)
+            callback.succeeded();
+    }
+
     @Override
     public boolean onIdleTimeout(long idleTimeout)
     {
@@ -174,6 +207,13 @@ public class HttpConnectionOverHTTP2 extends HttpConnection implements Sweeper.S
                 channel.destroy();
                 channel = idleChannels.poll();
             }
+
+            pings.keySet().forEach(payload ->
+            {
+                Callback callback = pings.remove(payload);
+                if (callback != null)
+                    callback.failed(failure);
+            });
         }
     }
 
@@ -26,6 +26,7 @@ import java.net.SocketTimeoutException;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -68,6 +69,7 @@ import org.eclipse.jetty.http2.parser.ServerParser;
 import org.eclipse.jetty.http2.server.RawHTTP2ServerConnectionFactory;
 import org.eclipse.jetty.io.ByteBufferPool;
 import org.eclipse.jetty.io.ClientConnector;
+import org.eclipse.jetty.io.EndPoint;
 import org.eclipse.jetty.io.MappedByteBufferPool;
 import org.eclipse.jetty.server.HttpConfiguration;
 import org.eclipse.jetty.server.Request;
@@ -394,6 +396,30 @@ public class HttpClientTransportOverHTTP2Test extends AbstractTest
         assertTrue(resetLatch.await(5, TimeUnit.SECONDS));
     }
 
+    @Test
+    public void testMinIdleConnectionsArePingedAndKeptOpen() throws Exception
+    {
+        long idleTimeout = 1000;
+        start(new EmptyServerHandler());
+        client.stop();
+        client.setIdleTimeout(idleTimeout);
+        client.setMinIdleConnectionsPerDestination(1);
+        client.setConnectionMaintenanceInterval(idleTimeout / 4);
+        client.start();
+
+        ContentResponse response = client.newRequest("localhost", connector.getLocalPort()).send();
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+        Collection<EndPoint> endPoints = new ArrayList<>(connector.getConnectedEndPoints());
+        assertEquals(1, endPoints.size());
+
+        // The pings keep the connection from idle timing out.
+        Thread.sleep(3 * idleTimeout);
+
+        response = client.newRequest("localhost", connector.getLocalPort()).send();
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+        assertEquals(endPoints, new ArrayList<>(connector.getConnectedEndPoints()));
+    }
+
     @Test
     public void testRequestIdleTimeoutSendsResetFrame() throws Exception
     {
@@ -28,5 +28,11 @@ etc/jetty-http2c.xml
 ## The max number of keys in all SETTINGS frames
 # jetty.http2.maxSettingsKeys=64
 
+## Max size of the small buffers (frame headers, small DATA) coalesced before writing, 0 to disable
+# jetty.http2c.coalesceThreshold=1024
+
+## Size of the aggregate buffers used to coalesce small buffers
+# jetty.http2c.coalesceBufferSize=16384
+
 ## Max number of bad frames and pings per second
 # jetty.http2.rateControl.maxEventsPerSecond=20
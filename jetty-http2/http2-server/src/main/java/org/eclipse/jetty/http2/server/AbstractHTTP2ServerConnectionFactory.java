@@ -34,6 +34,7 @@ import org.eclipse.jetty.http2.api.server.ServerSessionListener;
 import org.eclipse.jetty.http2.frames.Frame;
 import org.eclipse.jetty.http2.frames.SettingsFrame;
 import org.eclipse.jetty.http2.generator.Generator;
+import org.eclipse.jetty.http2.hpack.HpackEncodingCache;
 import org.eclipse.jetty.http2.parser.RateControl;
 import org.eclipse.jetty.http2.parser.ServerParser;
 import org.eclipse.jetty.http2.parser.WindowRateControl;
@@ -63,7 +64,11 @@ public abstract class AbstractHTTP2ServerConnectionFactory extends AbstractConne
     private boolean connectProtocolEnabled = true;
     private RateControl.Factory rateControlFactory = new WindowRateControl.Factory(20);
     private FlowControlStrategy.Factory flowControlStrategyFactory = () -> new BufferingFlowControlStrategy(0.5F);
+    private HpackEncodingCache hpackEncodingCache = new HpackEncodingCache();
+    private PushControl pushControl = new PushControl();
     private long streamIdleTimeout;
+    private int coalesceThreshold = 1024;
+    private int coalesceBufferSize = 16 * 1024;
     private boolean useInputDirectByteBuffers;
     private boolean useOutputDirectByteBuffers;
 
@@ -83,6 +88,8 @@ public abstract class AbstractHTTP2ServerConnectionFactory extends AbstractConne
         addBean(sessionContainer);
         this.httpConfiguration = Objects.requireNonNull(httpConfiguration);
         addBean(httpConfiguration);
+        addBean(hpackEncodingCache);
+        addBean(pushControl);
         setInputBufferSize(Frame.DEFAULT_MAX_LENGTH + Frame.HEADER_LENGTH);
         setUseInputDirectByteBuffers(httpConfiguration.isUseInputDirectByteBuffers());
         setUseOutputDirectByteBuffers(httpConfiguration.isUseOutputDirectByteBuffers());
@@ -143,6 +150,42 @@ public abstract class AbstractHTTP2ServerConnectionFactory extends AbstractConne
         this.maxHeaderBlockFragment = maxHeaderBlockFragment;
     }
 
+    /**
+     * @return the cache of HPACK encoded header names and values shared by all connections, or null
+     */
+    public HpackEncodingCache getHpackEncodingCache()
+    {
+        return hpackEncodingCache;
+    }
+
+    /**
+     * <p>Sets the cache of HPACK encoded header names and values shared by all connections.</p>
+     *
+     * @param hpackEncodingCache the encoding cache, or null to disable caching
+     */
+    public void setHpackEncodingCache(HpackEncodingCache hpackEncodingCache)
+    {
+        updateBean(this.hpackEncodingCache, hpackEncodingCache);
+        this.hpackEncodingCache = hpackEncodingCache;
+    }
+
+    /**
+     * @return the limits and statistics of the HTTP/2 pushes, or null
+     */
+    public PushControl getPushControl()
+    {
+        return pushControl;
+    }
+
+    /**
+     * @param pushControl the limits and statistics of the HTTP/2 pushes, or null to not track pushes
+     */
+    public void setPushControl(PushControl pushControl)
+    {
+        updateBean(this.pushControl, pushControl);
+        this.pushControl = pushControl;
+    }
+
     public FlowControlStrategy.Factory getFlowControlStrategyFactory()
     {
         return flowControlStrategyFactory;
@@ -164,6 +207,32 @@ public abstract class AbstractHTTP2ServerConnectionFactory extends AbstractConne
         this.streamIdleTimeout = streamIdleTimeout;
     }
 
+    @ManagedAttribute("The max size of buffers coalesced into aggregate buffers before writing")
+    public int getCoalesceThreshold()
+    {
+        return coalesceThreshold;
+    }
+
+    /**
+     * @param coalesceThreshold the max size of the buffers coalesced before writing, or 0 to disable coalescing
+     * @see org.eclipse.jetty.http2.HTTP2Session#setCoalesceThreshold(int)
+     */
+    public void setCoalesceThreshold(int coalesceThreshold)
+    {
+        this.coalesceThreshold = coalesceThreshold;
+    }
+
+    @ManagedAttribute("The size of the aggregate buffers used to coalesce writes")
+    public int getCoalesceBufferSize()
+    {
+        return coalesceBufferSize;
+    }
+
+    public void setCoalesceBufferSize(int coalesceBufferSize)
+    {
+        this.coalesceBufferSize = coalesceBufferSize;
+    }
+
     @ManagedAttribute("The max frame length in bytes")
     public int getMaxFrameLength()
     {
@@ -261,6 +330,7 @@ public abstract class AbstractHTTP2ServerConnectionFactory extends AbstractConne
         ServerSessionListener listener = newSessionListener(connector, endPoint);
 
         Generator generator = new Generator(connector.getByteBufferPool(), isUseOutputDirectByteBuffers(), getMaxDynamicTableSize(), getMaxHeaderBlockFragment());
+        generator.setHpackEncodingCache(getHpackEncodingCache());
         FlowControlStrategy flowControl = getFlowControlStrategyFactory().newFlowControlStrategy();
         HTTP2ServerSession session = new HTTP2ServerSession(connector.getScheduler(), endPoint, generator, listener, flowControl);
         session.setMaxLocalStreams(getMaxConcurrentStreams());
@@ -274,17 +344,22 @@ public abstract class AbstractHTTP2ServerConnectionFactory extends AbstractConne
             session.setStreamIdleTimeout(streamIdleTimeout);
         session.setInitialSessionRecvWindow(getInitialSessionRecvWindow());
         session.setWriteThreshold(getHttpConfiguration().getOutputBufferSize());
+        session.setCoalesceThreshold(getCoalesceThreshold());
+        session.setCoalesceBufferSize(getCoalesceBufferSize());
         session.setConnectProtocolEnabled(isConnectProtocolEnabled());
 
         ServerParser parser = newServerParser(connector, session, getRateControlFactory().newRateControl(endPoint));
         parser.setMaxFrameLength(getMaxFrameLength());
         parser.setMaxSettingsKeys(getMaxSettingsKeys());
 
-        HTTP2Connection connection = new HTTP2ServerConnection(connector.getByteBufferPool(), connector.getExecutor(),
+        HTTP2ServerConnection connection = new HTTP2ServerConnection(connector.getByteBufferPool(), connector.getExecutor(),
             endPoint, httpConfiguration, parser, session, getInputBufferSize(), listener);
         connection.setUseInputDirectByteBuffers(isUseInputDirectByteBuffers());
         connection.setUseOutputDirectByteBuffers(isUseOutputDirectByteBuffers());
         connection.addEventListener(sessionContainer);
+        PushControl pushControl = getPushControl();
+        if (pushControl != null)
+            connection.setPushTracker(pushControl.newTracker());
         return configure(connection, connector, endPoint);
     }
 
@@ -96,6 +96,7 @@ public class HTTP2ServerConnection extends HTTP2Connection implements Connection
     private final ServerSessionListener listener;
     private final HttpConfiguration httpConfig;
     private boolean recycleHttpChannels;
+    private PushControl.Tracker pushTracker;
 
     public HTTP2ServerConnection(ByteBufferPool byteBufferPool, Executor executor, EndPoint endPoint, HttpConfiguration httpConfig, ServerParser parser, ISession session, int inputBufferSize, ServerSessionListener listener)
     {
@@ -132,6 +133,19 @@ public class HTTP2ServerConnection extends HTTP2Connection implements Connection
         this.recycleHttpChannels = recycleHttpChannels;
     }
 
+    /**
+     * @return the push state of this connection, or null if pushes are not tracked
+     */
+    public PushControl.Tracker getPushTracker()
+    {
+        return pushTracker;
+    }
+
+    public void setPushTracker(PushControl.Tracker pushTracker)
+    {
+        this.pushTracker = pushTracker;
+    }
+
     @Override
     public void onUpgradeTo(ByteBuffer buffer)
     {
@@ -373,6 +387,13 @@ public class HTTP2ServerConnection extends HTTP2Connection implements Connection
         public Runnable onRequest(HeadersFrame frame)
         {
             totalRequests.incrementAndGet();
+            PushControl.Tracker tracker = getPushTracker();
+            if (tracker != null && frame.getMetaData() instanceof MetaData.Request)
+            {
+                MetaData.Request request = (MetaData.Request)frame.getMetaData();
+                if (HttpMethod.GET.is(request.getMethod()))
+                    tracker.onReceived(request.getURI().getPathQuery());
+            }
             return super.onRequest(frame);
         }
 
@@ -108,6 +108,7 @@ public class HTTP2ServerSession extends HTTP2Session implements ServerParser.Lis
                     if (stream != null)
                     {
                         onStreamOpened(stream);
+                        prioritize(frame);
 
                         if (metaData instanceof MetaData.ConnectRequest)
                         {
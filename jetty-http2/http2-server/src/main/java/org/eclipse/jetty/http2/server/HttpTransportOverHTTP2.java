@@ -246,6 +246,10 @@ public class HttpTransportOverHTTP2 implements HttpTransport
             return;
         }
 
+        PushControl.Tracker tracker = connection.getPushTracker();
+        if (tracker != null && !tracker.tryPush(request.getURI().getPathQuery()))
+            return;
+
         if (LOG.isDebugEnabled())
             LOG.debug("HTTP/2 Push {}", request);
 
@@ -254,6 +258,8 @@ public class HttpTransportOverHTTP2 implements HttpTransport
             @Override
             public void succeeded(Stream pushStream)
             {
+                if (tracker != null)
+                    tracker.onPushed(request.getURI().getPathQuery());
                 connection.push(connector, (IStream)pushStream, request);
             }
 
@@ -262,8 +268,25 @@ public class HttpTransportOverHTTP2 implements HttpTransport
             {
                 if (LOG.isDebugEnabled())
                     LOG.debug("Could not push " + request, x);
+                if (tracker != null)
+                    tracker.onPushFailed();
+            }
+        }, new Stream.Listener.Adapter()
+        {
+            @Override
+            public void onReset(Stream pushStream, ResetFrame frame)
+            {
+                if (tracker != null)
+                    tracker.onPushWasted();
+            }
+
+            @Override
+            public void onClosed(Stream pushStream)
+            {
+                if (tracker != null && !pushStream.isReset())
+                    tracker.onPushDelivered();
             }
-        }, new Stream.Listener.Adapter()); // TODO: handle reset from the client ?
+        });
     }
 
     private void sendHeadersFrame(MetaData.Response info, boolean endStream, Callback callback)
@@ -0,0 +1,311 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under
+// the terms of the Eclipse Public License 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0
+//
+// This Source Code may also be made available under the following
+// Secondary Licenses when the conditions for such availability set
+// forth in the Eclipse Public License, v. 2.0 are satisfied:
+// the Apache License v2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2.server;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+
+/**
+ * <p>Limits and statistics of the HTTP/2 pushes of the connections created
+ * by an {@link AbstractHTTP2ServerConnectionFactory}.</p>
+ * <p>Each connection has a {@link Tracker} that records, in a digest similar
+ * to a cache digest, the resources that the connection already received,
+ * either requested by the client or pushed, so that they are not pushed
+ * again, and that enforces the max number of pushes per connection.</p>
+ * <p>A push is counted as delivered when the pushed stream completes, and
+ * as wasted when the client resets the pushed stream, typically because it
+ * already has the resource in its cache.</p>
+ * <p>By default, pushes are not limited and the digest is disabled, so that
+ * only the statistics are recorded.</p>
+ */
+@ManagedObject("HTTP/2 push limits and statistics")
+public class PushControl
+{
+    private static final Logger LOG = Log.getLogger(PushControl.class);
+
+    private final LongAdder pushes = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder wasted = new LongAdder();
+    private final LongAdder skippedReceived = new LongAdder();
+    private final LongAdder skippedBudget = new LongAdder();
+    private int maxPushesPerSession = -1;
+    private int digestSize;
+
+    @ManagedAttribute("The max number of pushes per connection, or -1 for no limit")
+    public int getMaxPushesPerSession()
+    {
+        return maxPushesPerSession;
+    }
+
+    public void setMaxPushesPerSession(int maxPushesPerSession)
+    {
+        this.maxPushesPerSession = maxPushesPerSession;
+    }
+
+    @ManagedAttribute("The number of resources tracked per connection to avoid pushing them again, or 0 to disable")
+    public int getDigestSize()
+    {
+        return digestSize;
+    }
+
+    /**
+     * <p>Sets the number of resources tracked by the digest of each connection.</p>
+     * <p>The digest is a Bloom filter of about 10 bits per resource and 7 hashes, that
+     * may report false positives (about 1%), in which case a resource is not pushed, but
+     * never false negatives. When more distinct resources are recorded, the digest is cleared.</p>
+     *
+     * @param digestSize the number of tracked resources per connection, or 0 to disable the digest
+     */
+    public void setDigestSize(int digestSize)
+    {
+        this.digestSize = digestSize;
+    }
+
+    @ManagedAttribute(value = "The number of pushes", readonly = true)
+    public long getPushes()
+    {
+        return pushes.longValue();
+    }
+
+    @ManagedAttribute(value = "The number of pushes delivered to the client", readonly = true)
+    public long getDeliveredPushes()
+    {
+        return delivered.longValue();
+    }
+
+    @ManagedAttribute(value = "The number of pushes reset by the client", readonly = true)
+    public long getWastedPushes()
+    {
+        return wasted.longValue();
+    }
+
+    @ManagedAttribute(value = "The number of pushes skipped because the connection already received the resource", readonly = true)
+    public long getSkippedReceivedPushes()
+    {
+        return skippedReceived.longValue();
+    }
+
+    @ManagedAttribute(value = "The number of pushes skipped because the connection exceeded its push budget", readonly = true)
+    public long getSkippedBudgetPushes()
+    {
+        return skippedBudget.longValue();
+    }
+
+    @ManagedAttribute(value = "The ratio of completed pushes that were delivered", readonly = true)
+    public double getPushHitRate()
+    {
+        long hits = getDeliveredPushes();
+        long total = hits + getWastedPushes();
+        return total == 0 ? 0 : (double)hits / total;
+    }
+
+    @ManagedAttribute(value = "The ratio of completed pushes that were reset by the client", readonly = true)
+    public double getPushWasteRate()
+    {
+        long waste = getWastedPushes();
+        long total = waste + getDeliveredPushes();
+        return total == 0 ? 0 : (double)waste / total;
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void resetStats()
+    {
+        pushes.reset();
+        delivered.reset();
+        wasted.reset();
+        skippedReceived.reset();
+        skippedBudget.reset();
+    }
+
+    /**
+     * @return a new tracker for a connection
+     */
+    public Tracker newTracker()
+    {
+        return new Tracker(getMaxPushesPerSession(), getDigestSize());
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{pushes=%d,delivered=%d,wasted=%d}", getClass().getSimpleName(), hashCode(), getPushes(), getDeliveredPushes(), getWastedPushes());
+    }
+
+    /**
+     * <p>The push state of a connection.</p>
+     */
+    public class Tracker
+    {
+        private static final int HASHES = 7;
+
+        private final int maxPushes;
+        private final int maxResources;
+        private final long[] digest;
+        private int resources;
+        private int pushed;
+
+        private Tracker(int maxPushes, int maxResources)
+        {
+            this.maxPushes = maxPushes;
+            this.maxResources = maxResources;
+            this.digest = maxResources > 0 ? new long[(maxResources * 10 + 63) / 64] : null;
+        }
+
+        /**
+         * <p>Records that the connection received the given resource.</p>
+         *
+         * @param resource the path and query of the resource
+         */
+        public void onReceived(String resource)
+        {
+            if (digest == null)
+                return;
+            synchronized (this)
+            {
+                add(resource);
+            }
+        }
+
+        /**
+         * <p>Reserves a push from the budget of the connection, if the resource should be pushed;
+         * the push must then be reported with {@link #onPushed(String)} or {@link #onPushFailed()}.</p>
+         *
+         * @param resource the path and query of the resource to push
+         * @return whether the resource should be pushed
+         */
+        public boolean tryPush(String resource)
+        {
+            synchronized (this)
+            {
+                if (digest != null && contains(resource))
+                {
+                    skippedReceived.increment();
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("Not pushing {}, already received", resource);
+                    return false;
+                }
+                if (maxPushes >= 0 && pushed >= maxPushes)
+                {
+                    skippedBudget.increment();
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("Not pushing {}, exceeded max pushes {}", resource, maxPushes);
+                    return false;
+                }
+                ++pushed;
+            }
+            return true;
+        }
+
+        /**
+         * <p>Records that the given resource, for which {@link #tryPush(String)} returned true, has been pushed.</p>
+         *
+         * @param resource the path and query of the pushed resource
+         */
+        public void onPushed(String resource)
+        {
+            if (digest != null)
+            {
+                synchronized (this)
+                {
+                    add(resource);
+                }
+            }
+            pushes.increment();
+        }
+
+        /**
+         * <p>Records that a push, for which {@link #tryPush(String)} returned true,
+         * could not be sent, giving it back to the budget of the connection.</p>
+         */
+        public void onPushFailed()
+        {
+            synchronized (this)
+            {
+                --pushed;
+            }
+        }
+
+        public void onPushDelivered()
+        {
+            delivered.increment();
+        }
+
+        public void onPushWasted()
+        {
+            wasted.increment();
+        }
+
+        private void add(String resource)
+        {
+            // Duplicates do not hasten the clearing of the digest.
+            if (contains(resource))
+                return;
+            if (resources >= maxResources)
+            {
+                Arrays.fill(digest, 0);
+                resources = 0;
+            }
+            ++resources;
+            int bits = digest.length * 64;
+            int h1 = resource.hashCode();
+            int h2 = spread(h1);
+            for (int i = 0; i < HASHES; ++i)
+            {
+                int bit = Math.floorMod(h1 + i * h2, bits);
+                digest[bit >>> 6] |= 1L << bit;
+            }
+        }
+
+        private boolean contains(String resource)
+        {
+            int bits = digest.length * 64;
+            int h1 = resource.hashCode();
+            int h2 = spread(h1);
+            for (int i = 0; i < HASHES; ++i)
+            {
+                int bit = Math.floorMod(h1 + i * h2, bits);
+                if ((digest[bit >>> 6] & (1L << bit)) == 0)
+                    return false;
+            }
+            return true;
+        }
+
+        private int spread(int hash)
+        {
+            // A second, odd, hash for double hashing.
+            hash *= 0x9E3779B9;
+            return (hash ^ (hash >>> 16)) | 1;
+        }
+
+        @Override
+        public String toString()
+        {
+            synchronized (this)
+            {
+                return String.format("%s@%x{pushed=%d/%d,resources=%d/%d}", getClass().getSimpleName(), hashCode(), pushed, maxPushes, resources, maxResources);
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under
+// the terms of the Eclipse Public License 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0
+//
+// This Source Code may also be made available under the following
+// Secondary Licenses when the conditions for such availability set
+// forth in the Eclipse Public License, v. 2.0 are satisfied:
+// the Apache License v2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2.server;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PushControlTest
+{
+    @Test
+    public void testDefaultDoesNotLimitPushes()
+    {
+        PushControl pushControl = new PushControl();
+        PushControl.Tracker tracker = pushControl.newTracker();
+        tracker.onReceived("/style.css");
+        for (int i = 0; i < 100; ++i)
+        {
+            assertTrue(tracker.tryPush("/style.css"));
+            tracker.onPushed("/style.css");
+        }
+        assertEquals(100, pushControl.getPushes());
+    }
+
+    @Test
+    public void testReceivedResourcesAreNotPushed()
+    {
+        PushControl pushControl = new PushControl();
+        pushControl.setDigestSize(64);
+        PushControl.Tracker tracker = pushControl.newTracker();
+
+        tracker.onReceived("/style.css");
+        assertFalse(tracker.tryPush("/style.css"));
+        assertTrue(tracker.tryPush("/script.js"));
+        tracker.onPushed("/script.js");
+        // Already pushed on this connection.
+        assertFalse(tracker.tryPush("/script.js"));
+
+        assertEquals(1, pushControl.getPushes());
+        assertEquals(2, pushControl.getSkippedReceivedPushes());
+
+        // Other connections have their own digest.
+        assertTrue(pushControl.newTracker().tryPush("/style.css"));
+    }
+
+    @Test
+    public void testDigestHasNoFalseNegatives()
+    {
+        PushControl pushControl = new PushControl();
+        int size = 256;
+        pushControl.setDigestSize(size);
+        PushControl.Tracker tracker = pushControl.newTracker();
+        for (int i = 0; i < size; ++i)
+        {
+            tracker.onReceived("/resource/" + i);
+        }
+        for (int i = 0; i < size; ++i)
+        {
+            assertFalse(tracker.tryPush("/resource/" + i));
+        }
+        int pushed = 0;
+        for (int i = size; i < 2 * size; ++i)
+        {
+            if (tracker.tryPush("/other/" + i))
+                ++pushed;
+        }
+        // Few false positives.
+        assertTrue(pushed > size * 9 / 10, "pushed " + pushed);
+    }
+
+    @Test
+    public void testPushBudget()
+    {
+        PushControl pushControl = new PushControl();
+        pushControl.setMaxPushesPerSession(2);
+        PushControl.Tracker tracker = pushControl.newTracker();
+        assertTrue(tracker.tryPush("/a"));
+        tracker.onPushed("/a");
+        assertTrue(tracker.tryPush("/b"));
+        tracker.onPushed("/b");
+        assertFalse(tracker.tryPush("/c"));
+        assertEquals(2, pushControl.getPushes());
+        assertEquals(1, pushControl.getSkippedBudgetPushes());
+    }
+
+    @Test
+    public void testFailedPushDoesNotUseBudget()
+    {
+        PushControl pushControl = new PushControl();
+        pushControl.setMaxPushesPerSession(1);
+        pushControl.setDigestSize(64);
+        PushControl.Tracker tracker = pushControl.newTracker();
+        assertTrue(tracker.tryPush("/a"));
+        tracker.onPushFailed();
+
+        // The failed resource can be pushed again.
+        assertTrue(tracker.tryPush("/a"));
+        tracker.onPushed("/a");
+        assertFalse(tracker.tryPush("/b"));
+        assertEquals(1, pushControl.getPushes());
+        assertEquals(1, pushControl.getSkippedBudgetPushes());
+    }
+
+    @Test
+    public void testDuplicatesDoNotClearDigest()
+    {
+        PushControl pushControl = new PushControl();
+        pushControl.setDigestSize(2);
+        PushControl.Tracker tracker = pushControl.newTracker();
+        for (int i = 0; i < 10; ++i)
+        {
+            tracker.onReceived("/a");
+        }
+        tracker.onReceived("/b");
+        assertFalse(tracker.tryPush("/a"));
+        assertFalse(tracker.tryPush("/b"));
+    }
+
+    @Test
+    public void testHitAndWasteRates()
+    {
+        PushControl pushControl = new PushControl();
+        PushControl.Tracker tracker = pushControl.newTracker();
+        tracker.onPushDelivered();
+        tracker.onPushDelivered();
+        tracker.onPushDelivered();
+        tracker.onPushWasted();
+        assertEquals(0.75, pushControl.getPushHitRate(), 0.001);
+        assertEquals(0.25, pushControl.getPushWasteRate(), 0.001);
+
+        pushControl.resetStats();
+        assertEquals(0, pushControl.getPushHitRate());
+    }
+}
@@ -23,11 +23,15 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ByteChannel;
 import java.nio.channels.CancelledKeyException;
+import java.nio.channels.FileChannel;
 import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
+import java.nio.channels.WritePendingException;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
 import org.eclipse.jetty.util.thread.Invocable;
@@ -45,6 +49,7 @@ public abstract class ChannelEndPoint extends AbstractEndPoint implements Manage
     private final GatheringByteChannel _gather;
     protected final ManagedSelector _selector;
     protected final SelectionKey _key;
+    private final AtomicReference<FileTransfer> _transfer = new AtomicReference<>();
     private boolean _updatePending;
 
     /**
@@ -286,9 +291,73 @@ public abstract class ChannelEndPoint extends AbstractEndPoint implements Manage
                 return false;
         }
 
+        FileTransfer transfer = _transfer.get();
+        return transfer == null || transfer.transfer();
+    }
+
+    /**
+     * @return whether {@link #transferFrom(Callback, FileChannel, long, long)} can be used
+     * to write file content directly to the channel of this endpoint
+     */
+    public boolean isTransferFromSupported()
+    {
         return true;
     }
 
+    /**
+     * <p>Writes {@code count} bytes of the given file, starting at {@code position}, directly
+     * to the channel of this endpoint using {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)},
+     * so that the bytes need not be copied through a {@link ByteBuffer}.</p>
+     * <p>The transfer is a write operation that is subject to the same rules as
+     * {@link #write(Callback, ByteBuffer...)}: it must not be invoked while another
+     * write is pending, and the callback is notified when either all the bytes have
+     * been transferred or a failure occurs.
+     * The file is not closed when the transfer completes.</p>
+     *
+     * @param callback the callback to notify of the completion of the transfer
+     * @param file the file to transfer bytes from
+     * @param position the position within the file of the first byte to transfer
+     * @param count the number of bytes to transfer
+     * @throws WritePendingException if another transfer is pending
+     */
+    public void transferFrom(Callback callback, FileChannel file, long position, long count) throws WritePendingException
+    {
+        FileTransfer transfer = new FileTransfer(file, position, count);
+        if (!_transfer.compareAndSet(null, transfer))
+            throw new WritePendingException();
+
+        if (LOG.isDebugEnabled())
+            LOG.debug("transferFrom {} {}", transfer, this);
+
+        try
+        {
+            // An empty write drives the transfer through the WriteFlusher, so that
+            // incomplete transfers, idle timeouts and failures are handled as for
+            // any other write; see flush(ByteBuffer...).
+            write(new Callback.Nested(callback)
+            {
+                @Override
+                public void succeeded()
+                {
+                    _transfer.compareAndSet(transfer, null);
+                    super.succeeded();
+                }
+
+                @Override
+                public void failed(Throwable x)
+                {
+                    _transfer.compareAndSet(transfer, null);
+                    super.failed(x);
+                }
+            }, BufferUtil.EMPTY_BUFFER);
+        }
+        catch (WritePendingException x)
+        {
+            _transfer.compareAndSet(transfer, null);
+            throw x;
+        }
+    }
+
     public ByteChannel getChannel()
     {
         return _channel;
@@ -415,6 +484,72 @@ public abstract class ChannelEndPoint extends AbstractEndPoint implements Manage
             _selector.submit(_updateKeyAction);
     }
 
+    private class FileTransfer
+    {
+        private final FileChannel _file;
+        private long _position;
+        private long _remaining;
+
+        private FileTransfer(FileChannel file, long position, long count)
+        {
+            _file = file;
+            _position = position;
+            _remaining = count;
+        }
+
+        /**
+         * @return true if all the bytes have been transferred
+         * @throws IOException if the transfer fails
+         */
+        private boolean transfer() throws IOException
+        {
+            long transferred = 0;
+            boolean truncated = false;
+            try
+            {
+                while (_remaining > 0)
+                {
+                    long t = _file.transferTo(_position, _remaining, _channel);
+                    if (t <= 0)
+                    {
+                        // Distinguish a full socket buffer from a truncated file.
+                        truncated = _position >= _file.size();
+                        break;
+                    }
+                    _position += t;
+                    _remaining -= t;
+                    transferred += t;
+                }
+            }
+            catch (IOException x)
+            {
+                throw new EofException(x);
+            }
+
+            if (truncated)
+                throw new IOException("Unexpected end of file " + this);
+
+            if (LOG.isDebugEnabled())
+                LOG.debug("transferred {} {}", transferred, ChannelEndPoint.this);
+
+            if (transferred > 0)
+            {
+                notIdle();
+                Connection connection = getConnection();
+                if (connection instanceof WriteFlusher.Listener)
+                    ((WriteFlusher.Listener)connection).onFlushed(transferred);
+            }
+
+            return _remaining == 0;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s@%x[%s,p=%d,r=%d]", getClass().getSimpleName(), hashCode(), _file, _position, _remaining);
+        }
+    }
+
     @Override
     public String toEndPointString()
     {
@@ -29,6 +29,7 @@ import org.eclipse.jetty.util.annotation.ManagedOperation;
 import org.eclipse.jetty.util.component.AbstractLifeCycle;
 import org.eclipse.jetty.util.component.Dumpable;
 import org.eclipse.jetty.util.statistic.CounterStatistic;
+import org.eclipse.jetty.util.statistic.HistogramStatistic;
 import org.eclipse.jetty.util.statistic.SampleStatistic;
 
 /**
@@ -37,12 +38,17 @@ import org.eclipse.jetty.util.statistic.SampleStatistic;
  * (for the server) or to HttpClient (for the client) will trigger the
  * tracking of the connection statistics for all connections managed
  * by the server Connector or by HttpClient.</p>
+ * <p>The percentiles of the duration and of the bytes received and sent
+ * by connections are computed over the connections closed in the last minute.</p>
  */
 @ManagedObject("Tracks statistics on connections")
 public class ConnectionStatistics extends AbstractLifeCycle implements Connection.Listener, Dumpable
 {
     private final CounterStatistic _connections = new CounterStatistic();
     private final SampleStatistic _connectionsDuration = new SampleStatistic();
+    private final HistogramStatistic _connectionsDurationHistogram = new HistogramStatistic(1, TimeUnit.MINUTES);
+    private final HistogramStatistic _bytesInHistogram = new HistogramStatistic(1, TimeUnit.MINUTES);
+    private final HistogramStatistic _bytesOutHistogram = new HistogramStatistic(1, TimeUnit.MINUTES);
     private final LongAdder _rcvdBytes = new LongAdder();
     private final AtomicLong _bytesInStamp = new AtomicLong();
     private final LongAdder _sentBytes = new LongAdder();
@@ -57,6 +63,9 @@ public class ConnectionStatistics extends AbstractLifeCycle implements Connectio
     {
         _connections.reset();
         _connectionsDuration.reset();
+        _connectionsDurationHistogram.reset();
+        _bytesInHistogram.reset();
+        _bytesOutHistogram.reset();
         _rcvdBytes.reset();
         _bytesInStamp.set(System.nanoTime());
         _sentBytes.reset();
@@ -92,13 +101,16 @@ public class ConnectionStatistics extends AbstractLifeCycle implements Connectio
 
         long elapsed = System.currentTimeMillis() - connection.getCreatedTimeStamp();
         _connectionsDuration.record(elapsed);
+        _connectionsDurationHistogram.record(elapsed);
 
         long bytesIn = connection.getBytesIn();
         if (bytesIn > 0)
             _rcvdBytes.add(bytesIn);
+        _bytesInHistogram.record(bytesIn);
         long bytesOut = connection.getBytesOut();
         if (bytesOut > 0)
             _sentBytes.add(bytesOut);
+        _bytesOutHistogram.record(bytesOut);
 
         long messagesIn = connection.getMessagesIn();
         if (messagesIn > 0)
@@ -138,6 +150,30 @@ public class ConnectionStatistics extends AbstractLifeCycle implements Connectio
         return elapsed == 0 ? 0 : getSentBytes() * 1000 / elapsed;
     }
 
+    @ManagedAttribute("The median number of bytes received by a connection closed in the last minute")
+    public long getReceivedBytesP50()
+    {
+        return _bytesInHistogram.getValueAtPercentile(50);
+    }
+
+    @ManagedAttribute("The 99th percentile of the bytes received by a connection closed in the last minute")
+    public long getReceivedBytesP99()
+    {
+        return _bytesInHistogram.getValueAtPercentile(99);
+    }
+
+    @ManagedAttribute("The median number of bytes sent by a connection closed in the last minute")
+    public long getSentBytesP50()
+    {
+        return _bytesOutHistogram.getValueAtPercentile(50);
+    }
+
+    @ManagedAttribute("The 99th percentile of the bytes sent by a connection closed in the last minute")
+    public long getSentBytesP99()
+    {
+        return _bytesOutHistogram.getValueAtPercentile(99);
+    }
+
     @ManagedAttribute("The max duration of a connection in ms")
     public long getConnectionDurationMax()
     {
@@ -156,6 +192,24 @@ public class ConnectionStatistics extends AbstractLifeCycle implements Connectio
         return _connectionsDuration.getStdDev();
     }
 
+    @ManagedAttribute("The median duration in ms of a connection closed in the last minute")
+    public long getConnectionDurationP50()
+    {
+        return _connectionsDurationHistogram.getValueAtPercentile(50);
+    }
+
+    @ManagedAttribute("The 99th percentile duration in ms of a connection closed in the last minute")
+    public long getConnectionDurationP99()
+    {
+        return _connectionsDurationHistogram.getValueAtPercentile(99);
+    }
+
+    @ManagedAttribute("The 99.9th percentile duration in ms of a connection closed in the last minute")
+    public long getConnectionDurationP999()
+    {
+        return _connectionsDurationHistogram.getValueAtPercentile(99.9);
+    }
+
     @ManagedAttribute("The total number of connections opened")
     public long getConnectionsTotal()
     {
@@ -216,7 +270,9 @@ public class ConnectionStatistics extends AbstractLifeCycle implements Connectio
         Dumpable.dumpObjects(out, indent, this,
             String.format("connections=%s", _connections),
             String.format("durations=%s", _connectionsDuration),
+            String.format("duration percentiles=%s", _connectionsDurationHistogram),
             String.format("bytes in/out=%s/%s", getReceivedBytes(), getSentBytes()),
+            String.format("bytes in/out percentiles=%s/%s", _bytesInHistogram, _bytesOutHistogram),
             String.format("messages in/out=%s/%s", getReceivedMessages(), getSentMessages()));
     }
 
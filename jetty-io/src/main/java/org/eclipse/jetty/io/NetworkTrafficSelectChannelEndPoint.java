@@ -71,6 +71,13 @@ public class NetworkTrafficSelectChannelEndPoint extends SocketChannelEndPoint
         return flushed;
     }
 
+    @Override
+    public boolean isTransferFromSupported()
+    {
+        // Transferred bytes never pass through a buffer that could be notified to listeners.
+        return false;
+    }
+
     @Override
     public void onOpen()
     {
@@ -0,0 +1,289 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under
+// the terms of the Eclipse Public License 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0
+//
+// This Source Code may also be made available under the following
+// Secondary Licenses when the conditions for such availability set
+// forth in the Eclipse Public License, v. 2.0 are satisfied:
+// the Apache License v2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.io;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.ProcessorUtils;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+
+/**
+ * <p>A {@link ByteBufferPool} that holds a small number of ByteBuffers in
+ * per-thread stripes in front of a shared delegate pool.</p>
+ * <p>Threads are mapped to stripes by their id, so that with a number of stripes
+ * at least equal to the number of cores, the selector and worker threads
+ * rarely contend on the same stripe.
+ * Each stripe holds, for each capacity that is a multiple of the capacity
+ * {@code factor} up to {@code maxCapacity}, at most {@code maxStripeLength}
+ * ByteBuffers in slots that are acquired and released with a single
+ * compare-and-set, without touching the shared state of the delegate.</p>
+ * <p>When the stripe of the current thread has no ByteBuffer of the requested
+ * capacity, the other stripes are searched (a steal) before the delegate is
+ * asked for a ByteBuffer (a miss).
+ * When the stripe of the current thread is full, released ByteBuffers are
+ * returned to the delegate.</p>
+ */
+@ManagedObject
+public class StripedByteBufferPool extends ContainerLifeCycle implements ByteBufferPool
+{
+    private final ByteBufferPool _delegate;
+    private final int _factor;
+    private final int _capacities;
+    private final int _stripes;
+    private final int _maxStripeLength;
+    private final AtomicReferenceArray<ByteBuffer> _direct;
+    private final AtomicReferenceArray<ByteBuffer> _indirect;
+    private final LongAdder _hits = new LongAdder();
+    private final LongAdder _steals = new LongAdder();
+    private final LongAdder _misses = new LongAdder();
+
+    /**
+     * Creates a new StripedByteBufferPool in front of an {@link ArrayByteBufferPool} with a default configuration.
+     */
+    public StripedByteBufferPool()
+    {
+        this(new ArrayByteBufferPool());
+    }
+
+    /**
+     * Creates a new StripedByteBufferPool in front of the given delegate pool with a default configuration.
+     *
+     * @param delegate the pool to acquire ByteBuffers from, and release ByteBuffers to, when the stripes miss or are full
+     */
+    public StripedByteBufferPool(ByteBufferPool delegate)
+    {
+        this(delegate, -1, -1, -1, -1);
+    }
+
+    /**
+     * Creates a new StripedByteBufferPool in front of the given delegate pool with the given configuration.
+     *
+     * @param delegate the pool to acquire ByteBuffers from, and release ByteBuffers to, when the stripes miss or are full
+     * @param factor the capacity factor, which should be the same as the delegate's
+     * @param maxCapacity the maximum ByteBuffer capacity held by the stripes
+     * @param stripes the number of stripes, or -1 for a number of stripes based on the number of available processors
+     * @param maxStripeLength the maximum number of ByteBuffers of each capacity held by each stripe
+     */
+    public StripedByteBufferPool(ByteBufferPool delegate, int factor, int maxCapacity, int stripes, int maxStripeLength)
+    {
+        _delegate = delegate;
+        _factor = factor <= 0 ? 1024 : factor;
+        if (maxCapacity <= 0)
+            maxCapacity = 64 * 1024;
+        if ((maxCapacity % _factor) != 0 || _factor >= maxCapacity)
+            throw new IllegalArgumentException("The capacity factor must be a divisor of maxCapacity");
+        _capacities = maxCapacity / _factor;
+        if (stripes <= 0)
+            stripes = ProcessorUtils.availableProcessors();
+        // Round up to a power of 2 so that the stripe is selected with a mask.
+        int powerOf2 = 1;
+        while (powerOf2 < stripes)
+        {
+            powerOf2 <<= 1;
+        }
+        _stripes = powerOf2;
+        _maxStripeLength = maxStripeLength <= 0 ? 4 : maxStripeLength;
+        int length = _stripes * _capacities * _maxStripeLength;
+        _direct = new AtomicReferenceArray<>(length);
+        _indirect = new AtomicReferenceArray<>(length);
+        addBean(delegate);
+    }
+
+    public ByteBufferPool getDelegate()
+    {
+        return _delegate;
+    }
+
+    @ManagedAttribute("The number of stripes")
+    public int getStripes()
+    {
+        return _stripes;
+    }
+
+    @ManagedAttribute("The maximum number of ByteBuffers of each capacity held by each stripe")
+    public int getMaxStripeLength()
+    {
+        return _maxStripeLength;
+    }
+
+    @Override
+    public ByteBuffer acquire(int size, boolean direct)
+    {
+        int index = size <= 0 ? -1 : (size - 1) / _factor;
+        if (index < 0 || index >= _capacities)
+            return _delegate.acquire(size, direct);
+
+        AtomicReferenceArray<ByteBuffer> slots = slotsFor(direct);
+        int stripe = stripe();
+        ByteBuffer buffer = poll(slots, stripe, index);
+        if (buffer != null)
+        {
+            _hits.increment();
+            return buffer;
+        }
+
+        for (int i = 1; i < _stripes; ++i)
+        {
+            buffer = poll(slots, (stripe + i) & (_stripes - 1), index);
+            if (buffer != null)
+            {
+                _steals.increment();
+                return buffer;
+            }
+        }
+
+        _misses.increment();
+        return _delegate.acquire(size, direct);
+    }
+
+    @Override
+    public void release(ByteBuffer buffer)
+    {
+        if (buffer == null)
+            return;
+
+        int capacity = buffer.capacity();
+        int index = capacity / _factor - 1;
+        if ((capacity % _factor) != 0 || index < 0 || index >= _capacities)
+        {
+            _delegate.release(buffer);
+            return;
+        }
+
+        BufferUtil.clear(buffer);
+        if (!offer(slotsFor(buffer.isDirect()), stripe(), index, buffer))
+            _delegate.release(buffer);
+    }
+
+    private ByteBuffer poll(AtomicReferenceArray<ByteBuffer> slots, int stripe, int index)
+    {
+        int offset = offset(stripe, index);
+        for (int i = 0; i < _maxStripeLength; ++i)
+        {
+            ByteBuffer buffer = slots.get(offset + i);
+            if (buffer != null && slots.compareAndSet(offset + i, buffer, null))
+                return buffer;
+        }
+        return null;
+    }
+
+    private boolean offer(AtomicReferenceArray<ByteBuffer> slots, int stripe, int index, ByteBuffer buffer)
+    {
+        int offset = offset(stripe, index);
+        for (int i = 0; i < _maxStripeLength; ++i)
+        {
+            if (slots.get(offset + i) == null && slots.compareAndSet(offset + i, null, buffer))
+                return true;
+        }
+        return false;
+    }
+
+    private int offset(int stripe, int index)
+    {
+        return (stripe * _capacities + index) * _maxStripeLength;
+    }
+
+    private int stripe()
+    {
+        return (int)Thread.currentThread().getId() & (_stripes - 1);
+    }
+
+    private AtomicReferenceArray<ByteBuffer> slotsFor(boolean direct)
+    {
+        return direct ? _direct : _indirect;
+    }
+
+    @ManagedAttribute("The number of acquires served by the stripe of the acquiring thread")
+    public long getHitCount()
+    {
+        return _hits.sum();
+    }
+
+    @ManagedAttribute("The number of acquires served by the stripe of another thread")
+    public long getStealCount()
+    {
+        return _steals.sum();
+    }
+
+    @ManagedAttribute("The number of acquires served by the delegate pool")
+    public long getMissCount()
+    {
+        return _misses.sum();
+    }
+
+    @ManagedAttribute("The number of direct ByteBuffers held by the stripes")
+    public long getDirectByteBufferCount()
+    {
+        return getByteBufferCount(true);
+    }
+
+    @ManagedAttribute("The number of heap ByteBuffers held by the stripes")
+    public long getHeapByteBufferCount()
+    {
+        return getByteBufferCount(false);
+    }
+
+    private long getByteBufferCount(boolean direct)
+    {
+        AtomicReferenceArray<ByteBuffer> slots = slotsFor(direct);
+        long count = 0;
+        for (int i = 0; i < slots.length(); ++i)
+        {
+            if (slots.get(i) != null)
+                ++count;
+        }
+        return count;
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void resetStats()
+    {
+        _hits.reset();
+        _steals.reset();
+        _misses.reset();
+    }
+
+    @ManagedOperation(value = "Clears the stripes of this ByteBufferPool", impact = "ACTION")
+    public void clear()
+    {
+        for (int i = 0; i < _direct.length(); ++i)
+        {
+            _direct.set(i, null);
+            _indirect.set(i, null);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{stripes=%d,hits=%d,steals=%d,misses=%d}",
+            getClass().getSimpleName(),
+            hashCode(),
+            _stripes,
+            getHitCount(),
+            getStealCount(),
+            getMissCount());
+    }
+}
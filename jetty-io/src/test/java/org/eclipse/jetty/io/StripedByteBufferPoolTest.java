@@ -0,0 +1,133 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under
+// the terms of the Eclipse Public License 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0
+//
+// This Source Code may also be made available under the following
+// Secondary Licenses when the conditions for such availability set
+// forth in the Eclipse Public License, v. 2.0 are satisfied:
+// the Apache License v2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.io;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StripedByteBufferPoolTest
+{
+    @Test
+    public void testAcquireReleaseHit()
+    {
+        ArrayByteBufferPool delegate = new ArrayByteBufferPool(0, 100, 1000);
+        StripedByteBufferPool bufferPool = new StripedByteBufferPool(delegate, 100, 1000, 4, 2);
+
+        ByteBuffer buffer = bufferPool.acquire(150, true);
+        assertTrue(buffer.isDirect());
+        assertThat(buffer.capacity(), greaterThanOrEqualTo(150));
+        assertEquals(1, bufferPool.getMissCount());
+
+        bufferPool.release(buffer);
+        assertEquals(1, bufferPool.getDirectByteBufferCount());
+        assertEquals(0, delegate.getDirectByteBufferCount());
+
+        ByteBuffer buffer2 = bufferPool.acquire(199, true);
+        assertSame(buffer, buffer2);
+        assertEquals(0, buffer2.remaining());
+        assertEquals(1, bufferPool.getHitCount());
+        assertEquals(0, bufferPool.getDirectByteBufferCount());
+
+        // A different capacity or directness does not hit.
+        bufferPool.release(buffer2);
+        assertNotSame(buffer2, bufferPool.acquire(201, true));
+        assertNotSame(buffer2, bufferPool.acquire(150, false));
+        assertEquals(3, bufferPool.getMissCount());
+    }
+
+    @Test
+    public void testMaxStripeLength()
+    {
+        ArrayByteBufferPool delegate = new ArrayByteBufferPool(0, 100, 1000);
+        StripedByteBufferPool bufferPool = new StripedByteBufferPool(delegate, 100, 1000, 1, 2);
+
+        ByteBuffer buffer1 = bufferPool.acquire(100, false);
+        ByteBuffer buffer2 = bufferPool.acquire(100, false);
+        ByteBuffer buffer3 = bufferPool.acquire(100, false);
+        bufferPool.release(buffer1);
+        bufferPool.release(buffer2);
+        bufferPool.release(buffer3);
+
+        assertEquals(2, bufferPool.getHeapByteBufferCount());
+        assertEquals(1, delegate.getHeapByteBufferCount());
+    }
+
+    @Test
+    public void testLargeBuffersGoToDelegate()
+    {
+        ArrayByteBufferPool delegate = new ArrayByteBufferPool(0, 100, 2000);
+        StripedByteBufferPool bufferPool = new StripedByteBufferPool(delegate, 100, 1000, 1, 2);
+
+        ByteBuffer buffer = bufferPool.acquire(1500, true);
+        bufferPool.release(buffer);
+
+        assertEquals(0, bufferPool.getDirectByteBufferCount());
+        assertEquals(1, delegate.getDirectByteBufferCount());
+        assertEquals(0, bufferPool.getHitCount() + bufferPool.getStealCount() + bufferPool.getMissCount());
+    }
+
+    @Test
+    public void testSteal() throws Exception
+    {
+        StripedByteBufferPool bufferPool = new StripedByteBufferPool(new ArrayByteBufferPool(0, 100, 1000), 100, 1000, 64, 1);
+
+        AtomicReference<ByteBuffer> released = new AtomicReference<>();
+        Thread thread = new Thread(() ->
+        {
+            ByteBuffer buffer = bufferPool.acquire(500, true);
+            released.set(buffer);
+            bufferPool.release(buffer);
+        });
+        // Make sure the other thread maps to another stripe.
+        while ((thread.getId() & 63) == (Thread.currentThread().getId() & 63))
+        {
+            thread = new Thread(thread);
+        }
+        thread.start();
+        thread.join();
+
+        ByteBuffer buffer = bufferPool.acquire(500, true);
+        assertSame(released.get(), buffer);
+        assertEquals(1, bufferPool.getStealCount());
+        assertEquals(0, bufferPool.getHitCount());
+    }
+
+    @Test
+    public void testClear()
+    {
+        StripedByteBufferPool bufferPool = new StripedByteBufferPool();
+        bufferPool.release(bufferPool.acquire(1024, true));
+        bufferPool.release(bufferPool.acquire(2048, false));
+        assertEquals(1, bufferPool.getDirectByteBufferCount());
+        assertEquals(1, bufferPool.getHeapByteBufferCount());
+
+        bufferPool.clear();
+        assertEquals(0, bufferPool.getDirectByteBufferCount());
+        assertEquals(0, bufferPool.getHeapByteBufferCount());
+    }
+}
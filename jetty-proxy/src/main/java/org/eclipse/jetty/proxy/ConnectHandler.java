@@ -77,6 +77,8 @@ public class ConnectHandler extends HandlerWrapper
     private long connectTimeout = 15000;
     private long idleTimeout = 30000;
     private int bufferSize = 4096;
+    private int maxBufferSize = 64 * 1024;
+    private boolean highThroughput;
 
     public ConnectHandler()
     {
@@ -162,6 +164,47 @@ public class ConnectHandler extends HandlerWrapper
         this.bufferSize = bufferSize;
     }
 
+    /**
+     * @return the max size, in bytes, the tunnel buffers may grow to in high throughput mode
+     * @see #isHighThroughput()
+     */
+    public int getMaxBufferSize()
+    {
+        return maxBufferSize;
+    }
+
+    /**
+     * @param maxBufferSize the max size, in bytes, the tunnel buffers may grow to in high throughput mode
+     * @see #setHighThroughput(boolean)
+     */
+    public void setMaxBufferSize(int maxBufferSize)
+    {
+        this.maxBufferSize = maxBufferSize;
+    }
+
+    /**
+     * @return whether tunnels use the high throughput mode
+     */
+    public boolean isHighThroughput()
+    {
+        return highThroughput;
+    }
+
+    /**
+     * <p>Sets whether tunnels use the high throughput mode.</p>
+     * <p>In high throughput mode, each direction of a tunnel grows its buffer from
+     * {@link #getBufferSize()} up to {@link #getMaxBufferSize()} depending on how much
+     * data each read returns, keeps its buffers rather than returning them to the pool
+     * after every write, and reads the next chunk of data while the previous one is
+     * still being written.</p>
+     *
+     * @param highThroughput whether tunnels use the high throughput mode
+     */
+    public void setHighThroughput(boolean highThroughput)
+    {
+        this.highThroughput = highThroughput;
+    }
+
     @Override
     protected void doStart() throws Exception
     {
@@ -335,6 +378,17 @@ public class ConnectHandler extends HandlerWrapper
         return new InetSocketAddress(host, port);
     }
 
+    private void configure(ProxyConnection connection)
+    {
+        connection.setInputBufferSize(getBufferSize());
+        if (isHighThroughput())
+        {
+            connection.setMaxInputBufferSize(getMaxBufferSize());
+            connection.setRetainBuffers(true);
+            connection.setReadAhead(true);
+        }
+    }
+
     protected void onConnectSuccess(ConnectContext connectContext, UpstreamConnection upstreamConnection)
     {
         ConcurrentMap<String, Object> context = connectContext.getContext();
@@ -343,7 +397,7 @@ public class ConnectHandler extends HandlerWrapper
 
         EndPoint downstreamEndPoint = connectContext.getEndPoint();
         DownstreamConnection downstreamConnection = newDownstreamConnection(downstreamEndPoint, context);
-        downstreamConnection.setInputBufferSize(getBufferSize());
+        configure(downstreamConnection);
 
         upstreamConnection.setConnection(downstreamConnection);
         downstreamConnection.setConnection(upstreamConnection);
@@ -518,7 +572,7 @@ public class ConnectHandler extends HandlerWrapper
                 ConnectHandler.LOG.debug("Connected to {}", ((SocketChannel)channel).getRemoteAddress());
             ConnectContext connectContext = (ConnectContext)attachment;
             UpstreamConnection connection = newUpstreamConnection(endpoint, connectContext);
-            connection.setInputBufferSize(getBufferSize());
+            configure(connection);
             return connection;
         }
 
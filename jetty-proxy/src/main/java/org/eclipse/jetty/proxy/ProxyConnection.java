@@ -22,11 +22,15 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.eclipse.jetty.io.AbstractConnection;
 import org.eclipse.jetty.io.ByteBufferPool;
 import org.eclipse.jetty.io.Connection;
 import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.IteratingCallback;
 import org.eclipse.jetty.util.log.Logger;
@@ -34,10 +38,18 @@ import org.eclipse.jetty.util.log.Logger;
 public abstract class ProxyConnection extends AbstractConnection
 {
     protected static final Logger LOG = ConnectHandler.LOG;
-    private final IteratingCallback pipe = new ProxyIteratingCallback();
+    private final ProxyIteratingCallback pipe = new ProxyIteratingCallback();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesPiped = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder writeNanos = new LongAdder();
+    private final AtomicLong maxWriteNanos = new AtomicLong();
     private final ByteBufferPool bufferPool;
     private final ConcurrentMap<String, Object> context;
     private ProxyConnection connection;
+    private int maxInputBufferSize;
+    private boolean readAhead;
+    private boolean retainBuffers;
 
     protected ProxyConnection(EndPoint endp, Executor executor, ByteBufferPool bufferPool, ConcurrentMap<String, Object> context)
     {
@@ -66,12 +78,126 @@ public abstract class ProxyConnection extends AbstractConnection
         this.connection = connection;
     }
 
+    /**
+     * @return the max size the read buffer may grow to, or a value not greater than
+     * {@link #getInputBufferSize()} if the read buffer size is fixed
+     */
+    public int getMaxInputBufferSize()
+    {
+        return maxInputBufferSize;
+    }
+
+    /**
+     * <p>Sets the max size the read buffer may grow to.</p>
+     * <p>The read buffer starts at {@link #getInputBufferSize()} and doubles every time
+     * a read fills it completely, up to this value; it halves again, down to
+     * {@link #getInputBufferSize()}, when reads use less than a quarter of it.</p>
+     *
+     * @param maxInputBufferSize the max read buffer size
+     */
+    public void setMaxInputBufferSize(int maxInputBufferSize)
+    {
+        this.maxInputBufferSize = maxInputBufferSize;
+    }
+
+    /**
+     * @return whether this connection reads the next chunk of data while the previous one is being written
+     */
+    public boolean isReadAhead()
+    {
+        return readAhead;
+    }
+
+    /**
+     * @param readAhead whether this connection reads the next chunk of data while the previous one is being written
+     */
+    public void setReadAhead(boolean readAhead)
+    {
+        this.readAhead = readAhead;
+    }
+
+    /**
+     * @return whether this connection keeps a buffer across reads rather than returning it to the pool;
+     * the buffer is returned to the pool when there is nothing to read
+     */
+    public boolean isRetainBuffers()
+    {
+        return retainBuffers;
+    }
+
+    /**
+     * @param retainBuffers whether this connection keeps a buffer across reads rather than returning it to the pool
+     */
+    public void setRetainBuffers(boolean retainBuffers)
+    {
+        this.retainBuffers = retainBuffers;
+    }
+
+    /**
+     * @return the number of bytes read from this connection's endpoint
+     */
+    @Override
+    public long getBytesIn()
+    {
+        return bytesIn.sum();
+    }
+
+    /**
+     * @return the number of bytes the peer connection wrote to this connection's endpoint
+     */
+    @Override
+    public long getBytesOut()
+    {
+        ProxyConnection peer = connection;
+        return peer == null ? 0 : peer.bytesPiped.sum();
+    }
+
+    /**
+     * @return the number of writes this connection completed to the peer connection's endpoint
+     */
+    public long getWrites()
+    {
+        return writes.sum();
+    }
+
+    /**
+     * @return the average time, in nanoseconds, a write to the peer connection's endpoint took to complete
+     */
+    public long getAverageWriteLatency()
+    {
+        long count = writes.sum();
+        return count == 0 ? 0 : writeNanos.sum() / count;
+    }
+
+    /**
+     * @return the max time, in nanoseconds, a write to the peer connection's endpoint took to complete
+     */
+    public long getMaxWriteLatency()
+    {
+        return maxWriteNanos.get();
+    }
+
     @Override
     public void onFillable()
     {
         pipe.iterate();
     }
 
+    @Override
+    public void onClose(Throwable cause)
+    {
+        super.onClose(cause);
+        pipe.releaseRetained();
+        if (LOG.isDebugEnabled())
+            LOG.debug("{} closed, in={} out={} writes={} avgWrite={}us maxWrite={}us",
+                this,
+                getBytesIn(),
+                getBytesOut(),
+                getWrites(),
+                TimeUnit.NANOSECONDS.toMicros(getAverageWriteLatency()),
+                TimeUnit.NANOSECONDS.toMicros(getMaxWriteLatency()));
+    }
+
     protected abstract int read(EndPoint endPoint, ByteBuffer buffer) throws IOException;
 
     protected abstract void write(EndPoint endPoint, ByteBuffer buffer, Callback callback);
@@ -93,43 +219,177 @@ public abstract class ProxyConnection extends AbstractConnection
 
     private class ProxyIteratingCallback extends IteratingCallback
     {
+        private ByteBuffer retained;
+        private boolean closed;
+        private int bufferSize;
         private ByteBuffer buffer;
         private int filled;
+        private long writeBegin;
+        private ByteBuffer pending;
+        private boolean eof;
+        private Throwable failure;
 
         @Override
         protected Action process()
         {
-            buffer = bufferPool.acquire(getInputBufferSize(), true);
-            try
+            // The previous write has completed, its buffer can be reused.
+            if (buffer != null)
             {
-                int filled = this.filled = read(getEndPoint(), buffer);
-                if (LOG.isDebugEnabled())
-                    LOG.debug("{} filled {} bytes", ProxyConnection.this, filled);
-                if (filled > 0)
+                release(buffer);
+                buffer = null;
+            }
+
+            ByteBuffer buffer = pending;
+            pending = null;
+            if (buffer == null)
+            {
+                if (failure != null)
                 {
-                    write(connection.getEndPoint(), buffer, this);
-                    return Action.SCHEDULED;
+                    disconnect(failure);
+                    return Action.SUCCEEDED;
                 }
-                else if (filled == 0)
+                if (eof)
                 {
-                    bufferPool.release(buffer);
-                    fillInterested();
-                    return Action.IDLE;
+                    connection.getEndPoint().shutdownOutput();
+                    return Action.SUCCEEDED;
                 }
-                else
+
+                buffer = acquire();
+                try
                 {
-                    bufferPool.release(buffer);
-                    connection.getEndPoint().shutdownOutput();
+                    int filled = fill(buffer);
+                    if (filled == 0)
+                    {
+                        releaseIdle(buffer);
+                        fillInterested();
+                        return Action.IDLE;
+                    }
+                    else if (filled < 0)
+                    {
+                        release(buffer);
+                        connection.getEndPoint().shutdownOutput();
+                        return Action.SUCCEEDED;
+                    }
+                }
+                catch (IOException x)
+                {
+                    if (LOG.isDebugEnabled())
+                        LOG.debug(ProxyConnection.this + " could not fill", x);
+                    release(buffer);
+                    disconnect(x);
                     return Action.SUCCEEDED;
                 }
             }
+
+            this.buffer = buffer;
+            this.filled = buffer.remaining();
+            this.writeBegin = System.nanoTime();
+            write(connection.getEndPoint(), buffer, this);
+
+            if (isReadAhead() && !isFailed())
+                readAhead();
+
+            return Action.SCHEDULED;
+        }
+
+        private void readAhead()
+        {
+            // Fill another buffer while the write is pending, so that
+            // the next iteration can write without waiting for a read.
+            ByteBuffer buffer = acquire();
+            try
+            {
+                int filled = fill(buffer);
+                if (filled > 0)
+                {
+                    pending = buffer;
+                    return;
+                }
+                release(buffer);
+                if (filled < 0)
+                    eof = true;
+            }
             catch (IOException x)
             {
                 if (LOG.isDebugEnabled())
-                    LOG.debug(ProxyConnection.this + " could not fill", x);
+                    LOG.debug(ProxyConnection.this + " could not read ahead", x);
+                release(buffer);
+                failure = x;
+            }
+        }
+
+        private int fill(ByteBuffer buffer) throws IOException
+        {
+            int filled = read(getEndPoint(), buffer);
+            if (LOG.isDebugEnabled())
+                LOG.debug("{} filled {} bytes", ProxyConnection.this, filled);
+            if (filled > 0)
+            {
+                bytesIn.add(filled);
+                int maxBufferSize = getMaxInputBufferSize();
+                if (maxBufferSize > getInputBufferSize())
+                {
+                    int bufferSize = this.bufferSize;
+                    if (BufferUtil.space(buffer) == 0)
+                        this.bufferSize = Math.min(bufferSize * 2, maxBufferSize);
+                    else if (filled < bufferSize / 4)
+                        this.bufferSize = Math.max(bufferSize / 2, getInputBufferSize());
+                }
+            }
+            return filled;
+        }
+
+        private synchronized ByteBuffer acquire()
+        {
+            if (bufferSize == 0)
+                bufferSize = getInputBufferSize();
+            ByteBuffer buffer = retained;
+            if (buffer != null)
+            {
+                retained = null;
+                if (fits(buffer))
+                    return buffer;
                 bufferPool.release(buffer);
-                disconnect(x);
-                return Action.SUCCEEDED;
+            }
+            return bufferPool.acquire(bufferSize, true);
+        }
+
+        private synchronized void release(ByteBuffer buffer)
+        {
+            if (isRetainBuffers() && !closed && retained == null && fits(buffer))
+            {
+                BufferUtil.clear(buffer);
+                retained = buffer;
+                return;
+            }
+            bufferPool.release(buffer);
+        }
+
+        private synchronized void releaseIdle(ByteBuffer buffer)
+        {
+            // The tunnel may stay idle for long, so it does not hold on to buffers.
+            bufferPool.release(buffer);
+            releaseRetainedBuffer();
+        }
+
+        private boolean fits(ByteBuffer buffer)
+        {
+            int capacity = buffer.capacity();
+            return capacity >= bufferSize && capacity < 2 * bufferSize;
+        }
+
+        private synchronized void releaseRetained()
+        {
+            closed = true;
+            releaseRetainedBuffer();
+        }
+
+        private void releaseRetainedBuffer()
+        {
+            if (retained != null)
+            {
+                bufferPool.release(retained);
+                retained = null;
             }
         }
 
@@ -138,7 +398,11 @@ public abstract class ProxyConnection extends AbstractConnection
         {
             if (LOG.isDebugEnabled())
                 LOG.debug("{} wrote {} bytes", ProxyConnection.this, filled);
-            bufferPool.release(buffer);
+            long latency = System.nanoTime() - writeBegin;
+            writes.increment();
+            writeNanos.add(latency);
+            maxWriteNanos.accumulateAndGet(latency, Math::max);
+            bytesPiped.add(filled);
             super.succeeded();
         }
 
@@ -152,7 +416,13 @@ public abstract class ProxyConnection extends AbstractConnection
         {
             if (LOG.isDebugEnabled())
                 LOG.debug(ProxyConnection.this + " failed to write " + filled + " bytes", x);
-            bufferPool.release(buffer);
+            // A buffer still being read ahead is left to the garbage collector,
+            // as it may be in use by process() on another thread.
+            if (buffer != null)
+            {
+                release(buffer);
+                buffer = null;
+            }
             disconnect(x);
         }
 
@@ -31,6 +31,8 @@ import java.nio.charset.StandardCharsets;
 import java.util.Base64;
 import java.util.Locale;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.servlet.ServletException;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
@@ -39,6 +41,7 @@ import javax.servlet.http.HttpServletResponse;
 import org.eclipse.jetty.http.HttpStatus;
 import org.eclipse.jetty.http.tools.HttpTester;
 import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.io.MappedByteBufferPool;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.ServerConnector;
@@ -51,6 +54,8 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -663,6 +668,131 @@ public class ConnectHandlerTest extends AbstractConnectHandlerTest
         }
     }
 
+    @Test
+    public void testCONNECTAndPOSTWithBigBodyInHighThroughputMode() throws Exception
+    {
+        connectHandler.setHighThroughput(true);
+
+        String hostPort = "localhost:" + serverConnector.getLocalPort();
+        String request =
+            "CONNECT " + hostPort + " HTTP/1.1\r\n" +
+                "Host: " + hostPort + "\r\n" +
+                "\r\n";
+        try (Socket socket = newSocket())
+        {
+            OutputStream output = socket.getOutputStream();
+            InputStream input = socket.getInputStream();
+
+            output.write(request.getBytes(StandardCharsets.UTF_8));
+            output.flush();
+
+            // Expect 200 OK from the CONNECT request
+            HttpTester.Input in = HttpTester.from(input);
+            HttpTester.Response response = HttpTester.parseResponse(in);
+            assertEquals(HttpStatus.OK_200, response.getStatus());
+
+            StringBuilder body = new StringBuilder();
+            String chunk = "0123456789ABCDEF";
+            for (int i = 0; i < 64 * 1024; ++i)
+            {
+                body.append(chunk);
+            }
+
+            request =
+                "POST /echo HTTP/1.1\r\n" +
+                    "Host: " + hostPort + "\r\n" +
+                    "Content-Length: " + body.length() + "\r\n" +
+                    "\r\n" +
+                    body;
+            output.write(request.getBytes(StandardCharsets.UTF_8));
+            output.flush();
+
+            response = HttpTester.parseResponse(in);
+            assertEquals(HttpStatus.OK_200, response.getStatus());
+            assertEquals("POST /echo\r\n" + body, response.getContent());
+
+            ProxyConnection downstream = proxyConnector.getConnectedEndPoints().stream()
+                .map(EndPoint::getConnection)
+                .filter(ProxyConnection.class::isInstance)
+                .map(ProxyConnection.class::cast)
+                .findFirst()
+                .orElseThrow();
+            assertTrue(downstream.isReadAhead());
+            assertTrue(downstream.isRetainBuffers());
+            assertThat(downstream.getBytesIn(), greaterThan((long)body.length()));
+            // The write callbacks may complete just after the client read the response.
+            long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (downstream.getBytesOut() <= body.length() && System.nanoTime() < end)
+            {
+                Thread.sleep(10);
+            }
+            assertThat(downstream.getBytesOut(), greaterThan((long)body.length()));
+            assertThat(downstream.getWrites(), greaterThan(0L));
+            assertThat(downstream.getMaxWriteLatency(), greaterThan(0L));
+        }
+    }
+
+    @Test
+    public void testIdleTunnelReleasesBuffers() throws Exception
+    {
+        AtomicInteger acquired = new AtomicInteger();
+        disposeProxy();
+        connectHandler.setHighThroughput(true);
+        connectHandler.setByteBufferPool(new MappedByteBufferPool()
+        {
+            @Override
+            public ByteBuffer acquire(int size, boolean direct)
+            {
+                acquired.incrementAndGet();
+                return super.acquire(size, direct);
+            }
+
+            @Override
+            public void release(ByteBuffer buffer)
+            {
+                acquired.decrementAndGet();
+                super.release(buffer);
+            }
+        });
+        proxy.start();
+
+        String hostPort = "localhost:" + serverConnector.getLocalPort();
+        String request =
+            "CONNECT " + hostPort + " HTTP/1.1\r\n" +
+                "Host: " + hostPort + "\r\n" +
+                "\r\n";
+        try (Socket socket = newSocket())
+        {
+            OutputStream output = socket.getOutputStream();
+            InputStream input = socket.getInputStream();
+
+            output.write(request.getBytes(StandardCharsets.UTF_8));
+            output.flush();
+
+            HttpTester.Input in = HttpTester.from(input);
+            HttpTester.Response response = HttpTester.parseResponse(in);
+            assertEquals(HttpStatus.OK_200, response.getStatus());
+
+            request =
+                "GET /echo HTTP/1.1\r\n" +
+                    "Host: " + hostPort + "\r\n" +
+                    "\r\n";
+            output.write(request.getBytes(StandardCharsets.UTF_8));
+            output.flush();
+
+            response = HttpTester.parseResponse(in);
+            assertEquals(HttpStatus.OK_200, response.getStatus());
+
+            // Both directions of the tunnel are idle, and return their buffers to the pool.
+            long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (acquired.get() != 0 && System.nanoTime() < end)
+            {
+                Thread.sleep(10);
+            }
+            assertEquals(0, acquired.get());
+        }
+    }
+
     @Test
     public void testCONNECTAndPOSTWithContext() throws Exception
     {
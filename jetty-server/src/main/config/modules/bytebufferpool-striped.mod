@@ -0,0 +1,18 @@
+DO NOT EDIT - See: https://www.eclipse.org/jetty/documentation/current/startup-modules.html
+
+[description]
+Holds pooled ByteBuffers in per-thread stripes in front of the ByteBufferPool used by ServerConnectors.
+
+[depend]
+bytebufferpool
+
+[xml]
+etc/jetty-bytebufferpool-striped.xml
+
+[ini-template]
+### Striped ByteBufferPool Configuration
+## Number of stripes (-1 for the number of available processors)
+#jetty.byteBufferPool.stripes=-1
+
+## Maximum number of ByteBuffers of each capacity held by each stripe
+#jetty.byteBufferPool.maxStripeLength=4
@@ -32,6 +32,18 @@ etc/jetty-gzip.xml
 ## Deflater pool max size (-1 for unlimited, 0 for no pool)
 # jetty.gzip.deflaterPoolCapacity=-1
 
+## Comma separated list of the content codings to use, in order of preference (all available if not set)
+# jetty.gzip.encodingList=zstd,gzip
+
+## Max size in bytes of the cache of compressed responses, or 0 for no cache
+# jetty.gzip.contentCache.maxCacheSize=0
+
+## Max size in bytes of a cached compressed response
+# jetty.gzip.contentCache.maxCachedFileSize=4194304
+
+## Max number of cached compressed responses
+# jetty.gzip.contentCache.maxCachedFiles=2048
+
 ## Comma separated list of included methods
 # jetty.gzip.includedMethodList=GET
 
@@ -0,0 +1,50 @@
+DO NOT EDIT - See: https://www.eclipse.org/jetty/documentation/current/startup-modules.html
+
+[description]
+Log requests using CustomRequestLog and BatchingRequestLogWriter,
+which writes batches of lines from a lock-free queue.
+This module replaces the requestlog module.
+
+[tags]
+requestlog
+logging
+
+[provides]
+requestlog
+
+[depend]
+server
+
+[xml]
+etc/jetty-requestlog-batching.xml
+
+[files]
+logs/
+
+[ini-template]
+## Format string
+# jetty.requestlog.formatString=%a - %u %{dd/MMM/yyyy:HH:mm:ss ZZZ|GMT}t "%r" %s %B "%{Referer}i" "%{User-Agent}i" "%C"
+
+## Logging directory (relative to $jetty.base)
+# jetty.requestlog.dir=logs
+
+## File path
+# jetty.requestlog.filePath=${jetty.requestlog.dir}/yyyy_mm_dd.request.log
+
+## Date format for rollovered files (uses SimpleDateFormat syntax)
+# jetty.requestlog.filenameDateFormat=yyyy_MM_dd
+
+## How many days to retain old log files
+# jetty.requestlog.retainDays=90
+
+## Whether to append to existing file
+# jetty.requestlog.append=false
+
+## Timezone of the log file rollover
+# jetty.requestlog.timezone=GMT
+
+## Maximum number of lines waiting to be written, before lines are dropped
+# jetty.requestlog.maxQueuedLines=8192
+
+## Maximum number of lines written at once
+# jetty.requestlog.maxBatchSize=256
@@ -8,6 +8,7 @@ jvm
 ext
 resources
 logging
+bytebufferpool-striped
 
 [depend]
 threadpool
@@ -0,0 +1,39 @@
+DO NOT EDIT - See: https://www.eclipse.org/jetty/documentation/current/startup-modules.html
+
+[description]
+Enables the Server thread pool with a lock-free job queue.
+This module replaces the threadpool module.
+
+[tags]
+threadpool
+
+[provides]
+threadpool
+
+[xml]
+etc/jetty-threadpool-lockfree.xml
+
+[ini-template]
+
+### Server Thread Pool Configuration
+## Minimum Number of Threads
+#jetty.threadPool.minThreads=10
+
+## Maximum Number of Threads
+#jetty.threadPool.maxThreads=200
+
+## Number of reserved threads (-1 for heuristic)
+# jetty.threadPool.reservedThreads=-1
+
+## Thread Idle Timeout (in milliseconds)
+#jetty.threadPool.idleTimeout=60000
+
+## Maximum number of queued jobs, rounded up to a power of 2 (0 for unbounded)
+#jetty.threadPool.queueCapacity=0
+
+## Whether to Output a Detailed Dump
+#jetty.threadPool.detailedDump=false
+
+## Whether to run blocking tasks, such as servlet requests handling,
+## on virtual threads (requires a JVM that supports virtual threads)
+#jetty.threadPool.useVirtualThreads=false
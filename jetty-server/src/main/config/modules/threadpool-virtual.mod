@@ -0,0 +1,15 @@
+DO NOT EDIT - See: https://www.eclipse.org/jetty/documentation/current/startup-modules.html
+
+[description]
+Runs blocking tasks, such as the handling of servlet requests, on virtual threads.
+The server thread pool still runs the selectors, the acceptors and the non blocking tasks.
+Requires a JVM that supports virtual threads, otherwise platform threads are used.
+
+[tags]
+threadpool
+
+[depend]
+threadpool
+
+[ini]
+jetty.threadPool.useVirtualThreads=true
@@ -23,3 +23,7 @@ etc/jetty-threadpool.xml
 
 ## Whether to Output a Detailed Dump
 #jetty.threadPool.detailedDump=false
+
+## Whether to run blocking tasks, such as servlet requests handling,
+## on virtual threads (requires a JVM that supports virtual threads)
+#jetty.threadPool.useVirtualThreads=false
@@ -16,6 +16,8 @@
 // ========================================================================
 //
 
+import org.eclipse.jetty.util.compression.Compression;
+
 module org.eclipse.jetty.server
 {
     exports org.eclipse.jetty.server;
@@ -33,4 +35,6 @@ module org.eclipse.jetty.server
     requires static java.naming;
     // Only required if using JMX.
     requires static org.eclipse.jetty.jmx;
+
+    uses Compression;
 }
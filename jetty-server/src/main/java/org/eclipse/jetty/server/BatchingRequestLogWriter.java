@@ -0,0 +1,327 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under
+// the terms of the Eclipse Public License 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0
+//
+// This Source Code may also be made available under the following
+// Secondary Licenses when the conditions for such availability set
+// forth in the Eclipse Public License, v. 2.0 are satisfied:
+// the Apache License v2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.io.ArrayByteBufferPool;
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.ConcurrentBlockingQueue;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+
+/**
+ * <p>An asynchronously writing RequestLogWriter that writes request log lines in batches.</p>
+ * <p>Each log entry is encoded in UTF-8 by the logging thread into a pooled buffer, without
+ * creating a String, and the buffer is queued into a lock-free ring buffer.
+ * A single writer thread takes the queued lines and writes up to {@link #getMaxBatchSize()}
+ * of them at once, with a gathering write when the log is written to a file.</p>
+ * <p>Logging threads never block: when the ring buffer is full the line is dropped and counted.
+ * The rollover of the log file is performed by the writer thread only, between two batches.</p>
+ */
+@ManagedObject("Request Log writer which writes batches of lines to file")
+public class BatchingRequestLogWriter extends RequestLogWriter
+{
+    private static final Logger LOG = Log.getLogger(BatchingRequestLogWriter.class);
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+    private static final ByteBuffer STOP = ByteBuffer.allocate(0);
+
+    private final LongAdder _dropped = new LongAdder();
+    private final LongAdder _written = new LongAdder();
+    private final LongAdder _batches = new LongAdder();
+    private ByteBufferPool _bufferPool;
+    private int _maxQueuedLines = 8192;
+    private int _maxBatchSize = 256;
+    private boolean _directBuffers = true;
+    private volatile ConcurrentBlockingQueue<ByteBuffer> _queue;
+    private volatile boolean _stopping;
+    private transient WriterThread _thread;
+
+    public BatchingRequestLogWriter()
+    {
+        this(null);
+    }
+
+    public BatchingRequestLogWriter(String filename)
+    {
+        super(filename);
+    }
+
+    /**
+     * @return the maximum number of lines queued before lines are dropped
+     */
+    @ManagedAttribute("maximum number of queued lines")
+    public int getMaxQueuedLines()
+    {
+        return _maxQueuedLines;
+    }
+
+    /**
+     * @param maxQueuedLines the maximum number of lines queued before lines are dropped, rounded up to a power of 2
+     */
+    public void setMaxQueuedLines(int maxQueuedLines)
+    {
+        if (isStarted())
+            throw new IllegalStateException(getState());
+        _maxQueuedLines = maxQueuedLines;
+    }
+
+    /**
+     * @return the maximum number of lines written at once
+     */
+    @ManagedAttribute("maximum number of lines written at once")
+    public int getMaxBatchSize()
+    {
+        return _maxBatchSize;
+    }
+
+    /**
+     * @param maxBatchSize the maximum number of lines written at once
+     */
+    public void setMaxBatchSize(int maxBatchSize)
+    {
+        if (isStarted())
+            throw new IllegalStateException(getState());
+        _maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * @return whether lines are encoded into direct buffers
+     */
+    @ManagedAttribute("whether lines are encoded into direct buffers")
+    public boolean isDirectBuffers()
+    {
+        return _directBuffers;
+    }
+
+    /**
+     * @param directBuffers whether lines are encoded into direct buffers, that a file is written from without copy
+     */
+    public void setDirectBuffers(boolean directBuffers)
+    {
+        _directBuffers = directBuffers;
+    }
+
+    /**
+     * @return the pool of the buffers of the encoded lines
+     */
+    public ByteBufferPool getByteBufferPool()
+    {
+        return _bufferPool;
+    }
+
+    /**
+     * @param bufferPool the pool of the buffers of the encoded lines, or null for a pool owned by this writer
+     */
+    public void setByteBufferPool(ByteBufferPool bufferPool)
+    {
+        if (isStarted())
+            throw new IllegalStateException(getState());
+        _bufferPool = bufferPool;
+    }
+
+    @ManagedAttribute("number of lines waiting to be written")
+    public int getQueuedLines()
+    {
+        ConcurrentBlockingQueue<ByteBuffer> queue = _queue;
+        return queue == null ? 0 : queue.size();
+    }
+
+    @ManagedAttribute("number of lines dropped because the queue was full")
+    public long getDroppedLines()
+    {
+        return _dropped.sum();
+    }
+
+    @ManagedAttribute("number of lines written")
+    public long getWrittenLines()
+    {
+        return _written.sum();
+    }
+
+    @ManagedAttribute("number of batches of lines written")
+    public long getWrittenBatches()
+    {
+        return _batches.sum();
+    }
+
+    @ManagedOperation(value = "resets the statistics", impact = "ACTION")
+    public void resetStats()
+    {
+        _dropped.reset();
+        _written.reset();
+        _batches.reset();
+    }
+
+    @Override
+    public void write(String requestEntry) throws IOException
+    {
+        write((CharSequence)requestEntry);
+    }
+
+    @Override
+    public void write(CharSequence requestEntry) throws IOException
+    {
+        ConcurrentBlockingQueue<ByteBuffer> queue = _queue;
+        if (queue == null || _stopping)
+            return;
+
+        ByteBuffer line = encode(requestEntry);
+        if (!queue.offer(line))
+        {
+            _bufferPool.release(line);
+            _dropped.increment();
+            if (LOG.isDebugEnabled())
+                LOG.debug("Log queue overflow, dropped {}", requestEntry);
+        }
+    }
+
+    private ByteBuffer encode(CharSequence entry)
+    {
+        int length = entry.length();
+        ByteBuffer line = _bufferPool.acquire(length + LINE_SEPARATOR.length, _directBuffers);
+        int position = BufferUtil.flipToFill(line);
+        // Fast path for the common case of US-ASCII log entries.
+        for (int i = 0; i < length; i++)
+        {
+            char c = entry.charAt(i);
+            if (c >= 0x80)
+            {
+                BufferUtil.flipToFlush(line, position);
+                _bufferPool.release(line);
+                return encodeUTF8(entry);
+            }
+            line.put((byte)c);
+        }
+        line.put(LINE_SEPARATOR);
+        BufferUtil.flipToFlush(line, position);
+        return line;
+    }
+
+    private ByteBuffer encodeUTF8(CharSequence entry)
+    {
+        ByteBuffer encoded = StandardCharsets.UTF_8.encode(CharBuffer.wrap(entry));
+        ByteBuffer line = _bufferPool.acquire(encoded.remaining() + LINE_SEPARATOR.length, _directBuffers);
+        int position = BufferUtil.flipToFill(line);
+        line.put(encoded);
+        line.put(LINE_SEPARATOR);
+        BufferUtil.flipToFlush(line, position);
+        return line;
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        if (_bufferPool == null)
+            _bufferPool = new ArrayByteBufferPool();
+        super.doStart();
+        _stopping = false;
+        _queue = new ConcurrentBlockingQueue.Bounded<>(_maxQueuedLines);
+        _thread = new WriterThread();
+        _thread.start();
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        // Do not interrupt the writer thread, as that would close the file channel.
+        _stopping = true;
+        _queue.offer(STOP);
+        _thread.join();
+        _thread = null;
+        _queue = null;
+        super.doStop();
+    }
+
+    private class WriterThread extends Thread
+    {
+        private final ByteBuffer[] _batch = new ByteBuffer[_maxBatchSize];
+
+        WriterThread()
+        {
+            setName("BatchingRequestLogWriter@" + Integer.toString(BatchingRequestLogWriter.this.hashCode(), 16));
+            setDaemon(true);
+        }
+
+        @Override
+        public void run()
+        {
+            ConcurrentBlockingQueue<ByteBuffer> queue = _queue;
+            while (true)
+            {
+                try
+                {
+                    ByteBuffer line = queue.poll(10, TimeUnit.SECONDS);
+                    int size = 0;
+                    while (line != null)
+                    {
+                        if (line != STOP)
+                            _batch[size++] = line;
+                        if (size == _batch.length)
+                            break;
+                        line = queue.poll();
+                    }
+
+                    if (size > 0)
+                        writeBatch(size);
+                    else if (_stopping)
+                        return;
+
+                    if (_stopping && queue.isEmpty())
+                        return;
+                }
+                catch (InterruptedException e)
+                {
+                    LOG.ignore(e);
+                }
+                catch (Throwable t)
+                {
+                    LOG.warn(t);
+                }
+            }
+        }
+
+        private void writeBatch(int size) throws IOException
+        {
+            try
+            {
+                BatchingRequestLogWriter.super.write(_batch, 0, size);
+                _written.add(size);
+                _batches.increment();
+            }
+            finally
+            {
+                for (int i = 0; i < size; i++)
+                {
+                    _bufferPool.release(_batch[i]);
+                    _batch[i] = null;
+                }
+            }
+        }
+    }
+}
@@ -26,12 +26,12 @@ import java.nio.channels.ReadableByteChannel;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.SortedSet;
-import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.eclipse.jetty.http.CompressedContentFormat;
 import org.eclipse.jetty.http.DateGenerator;
@@ -43,12 +43,32 @@ import org.eclipse.jetty.http.MimeTypes.Type;
 import org.eclipse.jetty.http.PreEncodedHttpField;
 import org.eclipse.jetty.http.PrecompressedHttpContent;
 import org.eclipse.jetty.http.ResourceHttpContent;
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.io.RetainableByteBuffer;
 import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.Retainable;
+import org.eclipse.jetty.util.TinyLfuPolicy;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
 import org.eclipse.jetty.util.resource.Resource;
 import org.eclipse.jetty.util.resource.ResourceFactory;
 
+/**
+ * <p>A {@link HttpContent.ContentFactory} that caches the content of the resources in memory.</p>
+ * <p>The cache is bounded in number of files and in bytes, and the entries to evict are
+ * selected by a {@link TinyLfuPolicy}, so that the frequently accessed resources stay
+ * cached even when the set of accessed resources is larger than the cache.</p>
+ * <p>The content is held in heap buffers, in direct buffers or in file mapped buffers.
+ * If a {@link #setByteBufferPool(ByteBufferPool) ByteBufferPool} is set, the direct
+ * buffers are acquired from the pool and are reference counted: each content returned by
+ * {@link #getContent(String, int)} is retained until it is {@link HttpContent#release() released},
+ * and the direct buffer of an evicted content is returned to the pool only once the content
+ * is released by all the requests that use it.</p>
+ */
+@ManagedObject("A cache of resource contents")
 public class CachedContentFactory implements HttpContent.ContentFactory
 {
     private static final Logger LOG = Log.getLogger(CachedContentFactory.class);
@@ -63,6 +83,12 @@ public class CachedContentFactory implements HttpContent.ContentFactory
     private final boolean _etags;
     private final CompressedContentFormat[] _precompressedFormats;
     private final boolean _useFileMappedBuffer;
+    private final TinyLfuPolicy<CachedHttpContent> _policy;
+    private final LongAdder _hits = new LongAdder();
+    private final LongAdder _misses = new LongAdder();
+    private final LongAdder _evictions = new LongAdder();
+    private final LongAdder _bytesSaved = new LongAdder();
+    private ByteBufferPool _bufferPool;
 
     private int _maxCachedFileSize = 128 * 1024 * 1024;
     private int _maxCachedFiles = 2048;
@@ -89,18 +115,22 @@ public class CachedContentFactory implements HttpContent.ContentFactory
         _useFileMappedBuffer = useFileMappedBuffer;
         _etags = etags;
         _precompressedFormats = precompressedFormats;
+        _policy = new TinyLfuPolicy<>(_maxCachedFiles);
     }
 
+    @ManagedAttribute("The size in bytes of the cached content")
     public int getCachedSize()
     {
         return _cachedSize.get();
     }
 
+    @ManagedAttribute("The number of cached files")
     public int getCachedFiles()
     {
         return _cachedFiles.get();
     }
 
+    @ManagedAttribute("The maximum size in bytes of a cached file")
     public int getMaxCachedFileSize()
     {
         return _maxCachedFileSize;
@@ -112,6 +142,7 @@ public class CachedContentFactory implements HttpContent.ContentFactory
         shrinkCache();
     }
 
+    @ManagedAttribute("The maximum size in bytes of the cached content")
     public int getMaxCacheSize()
     {
         return _maxCacheSize;
@@ -126,6 +157,7 @@ public class CachedContentFactory implements HttpContent.ContentFactory
     /**
      * @return the max number of cached files.
      */
+    @ManagedAttribute("The maximum number of cached files")
     public int getMaxCachedFiles()
     {
         return _maxCachedFiles;
@@ -137,14 +169,78 @@ public class CachedContentFactory implements HttpContent.ContentFactory
     public void setMaxCachedFiles(int maxCachedFiles)
     {
         _maxCachedFiles = maxCachedFiles;
+        _policy.setMaxEntries(maxCachedFiles);
         shrinkCache();
     }
 
+    @ManagedAttribute("Whether file mapped buffers are used")
     public boolean isUseFileMappedBuffer()
     {
         return _useFileMappedBuffer;
     }
 
+    public ByteBufferPool getByteBufferPool()
+    {
+        return _bufferPool;
+    }
+
+    /**
+     * @param bufferPool the pool to acquire the direct buffers of the cached content from,
+     * or null to allocate them
+     */
+    public void setByteBufferPool(ByteBufferPool bufferPool)
+    {
+        _bufferPool = bufferPool;
+    }
+
+    @ManagedAttribute("The number of contents served from the cache")
+    public long getHits()
+    {
+        return _hits.sum();
+    }
+
+    @ManagedAttribute("The number of contents not found in the cache")
+    public long getMisses()
+    {
+        return _misses.sum();
+    }
+
+    @ManagedAttribute("The ratio of the contents served from the cache")
+    public double getHitRatio()
+    {
+        long hits = getHits();
+        long total = hits + getMisses();
+        return total == 0 ? 0.0D : (double)hits / total;
+    }
+
+    @ManagedAttribute("The number of bytes of the contents served from the cache")
+    public long getBytesSaved()
+    {
+        return _bytesSaved.sum();
+    }
+
+    @ManagedAttribute("The number of contents evicted from the cache")
+    public long getEvictions()
+    {
+        return _evictions.sum();
+    }
+
+    @ManagedAttribute("The number of new contents evicted because they were less frequently accessed than the cached contents")
+    public long getRejections()
+    {
+        return _policy.getRejections();
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void resetStats()
+    {
+        _hits.reset();
+        _misses.reset();
+        _evictions.reset();
+        _bytesSaved.reset();
+    }
+
+    @ManagedOperation(value = "Flushes the cache", impact = "ACTION")
     public void flushCache()
     {
         while (_cache.size() > 0)
@@ -175,8 +271,15 @@ public class CachedContentFactory implements HttpContent.ContentFactory
     {
         // Is the content in this cache?
         CachedHttpContent content = _cache.get(pathInContext);
-        if (content != null && (content).isValid())
+        if (content != null && content.isValid() && content.tryRetain())
+        {
+            _policy.access(content._node);
+            content._hits.incrementAndGet();
+            _hits.increment();
+            _bytesSaved.add(content._contentLengthValue);
             return content;
+        }
+        _misses.increment();
 
         // try loading the content from our factory.
         Resource resource = _factory.getResource(pathInContext);
@@ -238,13 +341,7 @@ public class CachedContentFactory implements HttpContent.ContentFactory
                         if (compressedResource.exists() && compressedResource.lastModified() >= resource.lastModified() &&
                             compressedResource.length() < resource.length())
                         {
-                            compressedContent = new CachedHttpContent(compressedPathInContext, compressedResource, null);
-                            CachedHttpContent added = _cache.putIfAbsent(compressedPathInContext, compressedContent);
-                            if (added != null)
-                            {
-                                compressedContent.invalidate();
-                                compressedContent = added;
-                            }
+                            compressedContent = cache(new CachedHttpContent(compressedPathInContext, compressedResource, null));
                         }
                     }
                     if (compressedContent != null)
@@ -256,14 +353,10 @@ public class CachedContentFactory implements HttpContent.ContentFactory
                 content = new CachedHttpContent(pathInContext, resource, null);
 
             // Add it to the cache.
-            CachedHttpContent added = _cache.putIfAbsent(pathInContext, content);
-            if (added != null)
-            {
-                content.invalidate();
-                content = added;
-            }
-
-            return content;
+            content = cache(content);
+            if (content.tryRetain())
+                return content;
+            return new ResourceHttpContent(resource, _mimeTypes.getMimeByExtension(pathInContext), maxBufferSize);
         }
 
         // Look for non Cacheable precompressed resource or content
@@ -276,7 +369,8 @@ public class CachedContentFactory implements HttpContent.ContentFactory
             {
                 String compressedPathInContext = pathInContext + format._extension;
                 CachedHttpContent compressedContent = _cache.get(compressedPathInContext);
-                if (compressedContent != null && compressedContent.isValid() && compressedContent.getResource().lastModified() >= resource.lastModified())
+                // Cached contents are only used while retained, which the non cached content does not do.
+                if (_bufferPool == null && compressedContent != null && compressedContent.isValid() && compressedContent.getResource().lastModified() >= resource.lastModified())
                     compressedContents.put(format, compressedContent);
 
                 // Is there a precompressed resource?
@@ -293,34 +387,38 @@ public class CachedContentFactory implements HttpContent.ContentFactory
         return new ResourceHttpContent(resource, mt, maxBufferSize);
     }
 
+    /**
+     * Adds a content to the cache, unless another content has been added concurrently for the same key.
+     *
+     * @param content the content to add
+     * @return the cached content
+     */
+    private CachedHttpContent cache(CachedHttpContent content)
+    {
+        content._node = _policy.add(content.getKey(), content);
+        CachedHttpContent added = _cache.putIfAbsent(content.getKey(), content);
+        if (added != null)
+        {
+            content.invalidate();
+            return added;
+        }
+        if (_cachedFiles.get() > _maxCachedFiles)
+            shrinkCache();
+        return content;
+    }
+
     private void shrinkCache()
     {
-        // While we need to shrink
+        // While we need to shrink, evict the contents selected by the policy.
         while (_cache.size() > 0 && (_cachedFiles.get() > _maxCachedFiles || _cachedSize.get() > _maxCacheSize))
         {
-            // Scan the entire cache and generate an ordered list by last accessed time.
-            SortedSet<CachedHttpContent> sorted = new TreeSet<>((c1, c2) ->
-            {
-                if (c1._lastAccessed < c2._lastAccessed)
-                    return -1;
-
-                if (c1._lastAccessed > c2._lastAccessed)
-                    return 1;
-
-                if (c1._contentLengthValue < c2._contentLengthValue)
-                    return -1;
-
-                return c1._key.compareTo(c2._key);
-            });
-            sorted.addAll(_cache.values());
-
-            // Invalidate least recently used first
-            for (CachedHttpContent content : sorted)
+            CachedHttpContent content = _policy.evict();
+            if (content == null)
+                break;
+            if (_cache.remove(content.getKey(), content))
             {
-                if (_cachedFiles.get() <= _maxCachedFiles && _cachedSize.get() <= _maxCacheSize)
-                    break;
-                if (content == _cache.remove(content.getKey()))
-                    content.invalidate();
+                _evictions.increment();
+                content.invalidate();
             }
         }
     }
@@ -370,6 +468,39 @@ public class CachedContentFactory implements HttpContent.ContentFactory
         return null;
     }
 
+    /**
+     * @param length the length of the content
+     * @return a direct buffer acquired from the {@link #setByteBufferPool(ByteBufferPool) pool} and filled
+     * with the content of the resource, or null if there is no pool or if the resource cannot be read
+     */
+    protected RetainableByteBuffer getPooledBuffer(Resource resource, int length)
+    {
+        ByteBufferPool bufferPool = _bufferPool;
+        if (bufferPool == null)
+            return null;
+        RetainableByteBuffer pooled = new RetainableByteBuffer(bufferPool, length, true);
+        ByteBuffer buffer = pooled.getBuffer();
+        try (ReadableByteChannel channel = resource.getReadableByteChannel())
+        {
+            BufferUtil.clearToFill(buffer);
+            buffer.limit(length);
+            while (buffer.hasRemaining())
+            {
+                if (channel.read(buffer) < 0)
+                    throw new IOException("Unexpected end of " + resource);
+            }
+            BufferUtil.flipToFlush(buffer, 0);
+            return pooled;
+        }
+        catch (IOException | IllegalArgumentException e)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug(e);
+            pooled.release();
+        }
+        return null;
+    }
+
     @Override
     public String toString()
     {
@@ -378,8 +509,10 @@ public class CachedContentFactory implements HttpContent.ContentFactory
 
     /**
      * MetaData associated with a context Resource.
+     * <p>The content is reference counted: the cache holds a reference until the content is
+     * evicted or invalidated, and each request holds a reference until it releases the content.</p>
      */
-    public class CachedHttpContent implements HttpContent
+    public class CachedHttpContent implements HttpContent, Retainable
     {
         private final String _key;
         private final Resource _resource;
@@ -395,7 +528,11 @@ public class CachedContentFactory implements HttpContent.ContentFactory
         private final AtomicReference<ByteBuffer> _indirectBuffer = new AtomicReference<>();
         private final AtomicReference<ByteBuffer> _directBuffer = new AtomicReference<>();
         private final AtomicReference<ByteBuffer> _mappedBuffer = new AtomicReference<>();
-        private volatile long _lastAccessed;
+        private final AtomicReference<RetainableByteBuffer> _pooledBuffer = new AtomicReference<>();
+        private final AtomicInteger _references = new AtomicInteger(1);
+        private final AtomicLong _hits = new AtomicLong();
+        private volatile boolean _invalidated;
+        private TinyLfuPolicy.Node<CachedHttpContent> _node;
 
         CachedHttpContent(String pathInContext, Resource resource, Map<CompressedContentFormat, CachedHttpContent> precompressedResources)
         {
@@ -415,10 +552,7 @@ public class CachedContentFactory implements HttpContent.ContentFactory
             _contentLengthValue = exists ? resource.length() : 0;
             _contentLength = new PreEncodedHttpField(HttpHeader.CONTENT_LENGTH, Long.toString(_contentLengthValue));
 
-            if (_cachedFiles.incrementAndGet() > _maxCachedFiles)
-                shrinkCache();
-
-            _lastAccessed = System.currentTimeMillis();
+            _cachedFiles.incrementAndGet();
 
             _etag = CachedContentFactory.this._etags ? new PreEncodedHttpField(HttpHeader.ETAG, resource.getWeakETag()) : null;
 
@@ -427,7 +561,9 @@ public class CachedContentFactory implements HttpContent.ContentFactory
                 _precompressed = new HashMap<>(precompressedResources.size());
                 for (Map.Entry<CompressedContentFormat, CachedHttpContent> entry : precompressedResources.entrySet())
                 {
-                    _precompressed.put(entry.getKey(), new CachedPrecompressedHttpContent(this, entry.getValue(), entry.getKey()));
+                    // Retain the precompressed content for as long as this content is used.
+                    if (entry.getValue().tryRetain())
+                        _precompressed.put(entry.getKey(), new CachedPrecompressedHttpContent(this, entry.getValue(), entry.getKey()));
                 }
             }
             else
@@ -446,6 +582,33 @@ public class CachedContentFactory implements HttpContent.ContentFactory
             return _key != null;
         }
 
+        /**
+         * @return the number of times this content has been served from the cache
+         */
+        public long getHits()
+        {
+            return _hits.get();
+        }
+
+        @Override
+        public void retain()
+        {
+            if (!tryRetain())
+                throw new IllegalStateException("released " + this);
+        }
+
+        boolean tryRetain()
+        {
+            while (true)
+            {
+                int references = _references.get();
+                if (references == 0)
+                    return false;
+                if (_references.compareAndSet(references, references + 1))
+                    return true;
+            }
+        }
+
         @Override
         public Resource getResource()
         {
@@ -467,10 +630,7 @@ public class CachedContentFactory implements HttpContent.ContentFactory
         boolean isValid()
         {
             if (_lastModifiedValue == _resource.lastModified() && _contentLengthValue == _resource.length())
-            {
-                _lastAccessed = System.currentTimeMillis();
                 return true;
-            }
 
             if (this == _cache.remove(_key))
                 invalidate();
@@ -479,6 +639,10 @@ public class CachedContentFactory implements HttpContent.ContentFactory
 
         protected void invalidate()
         {
+            _invalidated = true;
+            if (_node != null)
+                _policy.remove(_node);
+
             ByteBuffer indirect = _indirectBuffer.getAndSet(null);
             if (indirect != null)
                 _cachedSize.addAndGet(-BufferUtil.length(indirect));
@@ -490,7 +654,9 @@ public class CachedContentFactory implements HttpContent.ContentFactory
             _mappedBuffer.getAndSet(null);
 
             _cachedFiles.decrementAndGet();
-            _resource.close();
+
+            // Release the reference of the cache.
+            release();
         }
 
         @Override
@@ -544,6 +710,31 @@ public class CachedContentFactory implements HttpContent.ContentFactory
         @Override
         public void release()
         {
+            int references = _references.decrementAndGet();
+            if (references == 0)
+            {
+                RetainableByteBuffer pooled = _pooledBuffer.getAndSet(null);
+                if (pooled != null)
+                    pooled.release();
+                for (CachedPrecompressedHttpContent precompressed : _precompressed.values())
+                {
+                    precompressed._precompressedContent.release();
+                }
+                _resource.close();
+            }
+            else if (references < 0)
+            {
+                throw new IllegalStateException("already released " + this);
+            }
+        }
+
+        /**
+         * Undoes the caching of a buffer loaded concurrently with the invalidation of this content.
+         */
+        private void uncache(AtomicReference<ByteBuffer> reference, ByteBuffer buffer)
+        {
+            if (_invalidated && reference.compareAndSet(buffer, null))
+                _cachedSize.addAndGet(-BufferUtil.length(buffer));
         }
 
         @Override
@@ -554,6 +745,9 @@ public class CachedContentFactory implements HttpContent.ContentFactory
                 return null;
             }
 
+            if (_invalidated)
+                return CachedContentFactory.this.getIndirectBuffer(_resource);
+
             ByteBuffer buffer = _indirectBuffer.get();
             if (buffer == null)
             {
@@ -570,6 +764,7 @@ public class CachedContentFactory implements HttpContent.ContentFactory
                     buffer = buffer2;
                     if (_cachedSize.addAndGet(BufferUtil.length(buffer)) > _maxCacheSize)
                         shrinkCache();
+                    uncache(_indirectBuffer, buffer);
                 }
                 else
                 {
@@ -596,19 +791,29 @@ public class CachedContentFactory implements HttpContent.ContentFactory
                         buffer = _mappedBuffer.get();
                 }
                 // Since MappedBuffers don't use heap, we don't care about the resource.length
+                else if (_invalidated)
+                {
+                    return CachedContentFactory.this.getDirectBuffer(_resource);
+                }
                 else if (_resource.length() < _maxCachedFileSize)
                 {
-                    ByteBuffer direct = CachedContentFactory.this.getDirectBuffer(_resource);
+                    RetainableByteBuffer pooled = getPooledBuffer(_resource, (int)_contentLengthValue);
+                    ByteBuffer direct = pooled == null ? CachedContentFactory.this.getDirectBuffer(_resource) : pooled.getBuffer();
                     if (direct != null)
                     {
                         if (_directBuffer.compareAndSet(null, direct))
                         {
+                            if (pooled != null)
+                                _pooledBuffer.set(pooled);
                             buffer = direct;
                             if (_cachedSize.addAndGet(BufferUtil.length(buffer)) > _maxCacheSize)
                                 shrinkCache();
+                            uncache(_directBuffer, buffer);
                         }
                         else
                         {
+                            if (pooled != null)
+                                pooled.release();
                             buffer = _directBuffer.get();
                         }
                     }
@@ -653,7 +858,7 @@ public class CachedContentFactory implements HttpContent.ContentFactory
         @Override
         public String toString()
         {
-            return String.format("CachedContent@%x{r=%s,e=%b,lm=%s,ct=%s,c=%d}", hashCode(), _resource, _resource.exists(), _lastModified, _contentType, _precompressed.size());
+            return String.format("CachedContent@%x{r=%s,e=%b,lm=%s,ct=%s,c=%d,h=%d}", hashCode(), _resource, _resource.exists(), _lastModified, _contentType, _precompressed.size(), getHits());
         }
 
         @Override
@@ -21,6 +21,7 @@ package org.eclipse.jetty.server;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.EventListener;
 import java.util.List;
@@ -56,6 +57,7 @@ import org.eclipse.jetty.util.SharedBlockingCallback.Blocker;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
 import org.eclipse.jetty.util.thread.Scheduler;
+import org.eclipse.jetty.util.thread.VirtualThreads;
 
 /**
  * HttpChannel represents a single endpoint for HTTP semantic processing.
@@ -913,6 +915,42 @@ public class HttpChannel implements Runnable, HttpOutput.Interceptor
         return _endPoint.isOpen();
     }
 
+    /**
+     * @return whether file content may be written with {@link #transferFrom(Callback, FileChannel, long, long)}
+     * @see HttpConfiguration#isUseOutputFileTransfer()
+     */
+    public boolean isTransferFromSupported()
+    {
+        return getHttpConfiguration().isUseOutputFileTransfer() && _transport.isTransferFromSupported();
+    }
+
+    /**
+     * <p>Non-Blocking write of file content directly to the transport.</p>
+     * <p>The response must already be committed with a content length that accounts
+     * for the transferred bytes, and the response must still be completed by a last
+     * {@link #write(ByteBuffer, boolean, Callback)}.
+     * The transferred bytes are not passed through any {@link HttpOutput.Interceptor}
+     * nor notified to {@link Listener#onResponseContent(Request, ByteBuffer)}.</p>
+     *
+     * @param callback Callback when complete or failed
+     * @param file the file to transfer the content from
+     * @param position the position within the file of the first byte to transfer
+     * @param count the number of bytes to transfer
+     * @see HttpTransport#transferFrom(Callback, FileChannel, long, long)
+     */
+    public void transferFrom(Callback callback, FileChannel file, long position, long count)
+    {
+        _transport.transferFrom(new Callback.Nested(callback)
+        {
+            @Override
+            public void succeeded()
+            {
+                _written += count;
+                super.succeeded();
+            }
+        }, file, position, count);
+    }
+
     /**
      * <p>Non-Blocking write, committing the response if needed.</p>
      * Called as last link in HttpOutput.Filter chain
@@ -940,9 +978,17 @@ public class HttpChannel implements Runnable, HttpOutput.Interceptor
         return null;
     }
 
+    /**
+     * <p>Executes a task that may block, such as the handling of the request,
+     * on a virtual thread if the thread pool is configured so, otherwise with
+     * the thread pool.</p>
+     *
+     * @param task the task to execute
+     * @see VirtualThreads
+     */
     protected void execute(Runnable task)
     {
-        _executor.execute(task);
+        VirtualThreads.execute(_executor, task);
     }
 
     public Scheduler getScheduler()
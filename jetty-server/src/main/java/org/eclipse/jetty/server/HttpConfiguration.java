@@ -69,6 +69,7 @@ public class HttpConfiguration implements Dumpable
     private int _maxErrorDispatches = 10;
     private boolean _useInputDirectByteBuffers = true;
     private boolean _useOutputDirectByteBuffers = true;
+    private boolean _useOutputFileTransfer = true;
     private long _minRequestDataRate;
     private long _minResponseDataRate;
     private HttpCompliance _httpCompliance = HttpCompliance.RFC7230;
@@ -137,6 +138,7 @@ public class HttpConfiguration implements Dumpable
         _maxErrorDispatches = config._maxErrorDispatches;
         _useInputDirectByteBuffers = config._useInputDirectByteBuffers;
         _useOutputDirectByteBuffers = config._useOutputDirectByteBuffers;
+        _useOutputFileTransfer = config._useOutputFileTransfer;
         _minRequestDataRate = config._minRequestDataRate;
         _minResponseDataRate = config._minResponseDataRate;
         _httpCompliance = config._httpCompliance;
@@ -356,6 +358,21 @@ public class HttpConfiguration implements Dumpable
         return _useOutputDirectByteBuffers;
     }
 
+    /**
+     * @param useOutputFileTransfer whether to write static file content directly from the file to the
+     * network, without copying it through ByteBuffers, when the transport supports it
+     */
+    public void setUseOutputFileTransfer(boolean useOutputFileTransfer)
+    {
+        _useOutputFileTransfer = useOutputFileTransfer;
+    }
+
+    @ManagedAttribute("Whether to write file content directly from the file to the network")
+    public boolean isUseOutputFileTransfer()
+    {
+        return _useOutputFileTransfer;
+    }
+
     /**
      * <p>Sets the {@link Customizer}s that are invoked for every
      * request received.</p>
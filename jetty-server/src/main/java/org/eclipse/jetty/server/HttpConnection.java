@@ -20,6 +20,7 @@ package org.eclipse.jetty.server;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.WritePendingException;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -39,6 +40,7 @@ import org.eclipse.jetty.http.MetaData;
 import org.eclipse.jetty.http.PreEncodedHttpField;
 import org.eclipse.jetty.io.AbstractConnection;
 import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.io.ChannelEndPoint;
 import org.eclipse.jetty.io.Connection;
 import org.eclipse.jetty.io.EndPoint;
 import org.eclipse.jetty.io.EofException;
@@ -48,6 +50,7 @@ import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.IteratingCallback;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
+import org.eclipse.jetty.util.thread.VirtualThreads;
 
 /**
  * <p>A {@link Connection} that handles the HTTP protocol.</p>
@@ -489,7 +492,7 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
                     // Dispatched to handle a pipelined request
                     try
                     {
-                        getExecutor().execute(this);
+                        VirtualThreads.execute(getExecutor(), this);
                     }
                     catch (RejectedExecutionException e)
                     {
@@ -531,7 +534,7 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
         if (isRequestBufferEmpty())
             fillInterested();
         else
-            getExecutor().execute(this);
+            VirtualThreads.execute(getExecutor(), this);
     }
 
     @Override
@@ -590,6 +593,22 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
         getEndPoint().close();
     }
 
+    @Override
+    public boolean isTransferFromSupported()
+    {
+        EndPoint endPoint = getEndPoint();
+        return endPoint instanceof ChannelEndPoint && ((ChannelEndPoint)endPoint).isTransferFromSupported();
+    }
+
+    @Override
+    public void transferFrom(Callback callback, FileChannel file, long position, long count)
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug("transferFrom {} p={} c={} {}", file, position, count, this);
+        bytesOut.add(count);
+        ((ChannelEndPoint)getEndPoint()).transferFrom(callback, file, position, count);
+    }
+
     @Override
     public boolean isPushSupported()
     {
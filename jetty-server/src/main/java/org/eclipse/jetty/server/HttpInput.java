@@ -24,7 +24,6 @@ import java.nio.ByteBuffer;
 import java.util.ArrayDeque;
 import java.util.Deque;
 import java.util.Objects;
-import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import javax.servlet.ReadListener;
 import javax.servlet.ServletInputStream;
@@ -242,8 +241,7 @@ public class HttpInput extends ServletInputStream implements Runnable
     protected void wake()
     {
         HttpChannel channel = _channelState.getHttpChannel();
-        Executor executor = channel.getConnector().getServer().getThreadPool();
-        executor.execute(channel);
+        channel.execute(channel);
     }
 
     @Override
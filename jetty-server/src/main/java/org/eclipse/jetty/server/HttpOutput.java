@@ -18,16 +18,19 @@
 
 package org.eclipse.jetty.server;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritePendingException;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetEncoder;
 import java.nio.charset.CoderResult;
 import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
 import java.util.concurrent.TimeUnit;
 import javax.servlet.RequestDispatcher;
 import javax.servlet.ServletOutputStream;
@@ -36,6 +39,7 @@ import javax.servlet.ServletResponse;
 import javax.servlet.WriteListener;
 
 import org.eclipse.jetty.http.HttpContent;
+import org.eclipse.jetty.http.HttpMethod;
 import org.eclipse.jetty.io.EofException;
 import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Callback;
@@ -1121,6 +1125,24 @@ public class HttpOutput extends ServletOutputStream implements Runnable
         }
     }
 
+    /**
+     * Blocking send of file content.
+     *
+     * @param file The file content to send
+     * @param position The position within the file of the first byte to send
+     * @param count The number of bytes to send
+     * @throws IOException if the send fails
+     * @see #sendContent(FileChannel, long, long, Callback)
+     */
+    public void sendContent(FileChannel file, long position, long count) throws IOException
+    {
+        try (Blocker blocker = _writeBlocker.acquire())
+        {
+            sendContent(file, position, count, blocker);
+            blocker.block();
+        }
+    }
+
     /**
      * Blocking send of HTTP content.
      *
@@ -1199,6 +1221,43 @@ public class HttpOutput extends ServletOutputStream implements Runnable
             new ReadableByteChannelWritingCB(in, callback).iterate();
     }
 
+    /**
+     * Asynchronous send of file content.
+     * If the content is not modified by an {@link Interceptor} and the transport supports it,
+     * then the content is written directly from the file with
+     * {@link HttpChannel#transferFrom(Callback, FileChannel, long, long)}, otherwise it
+     * is read into a {@link ByteBuffer} as for {@link #sendContent(ReadableByteChannel, Callback)}.
+     * The file will be closed after all content has been sent.
+     *
+     * @param file The file content to send
+     * @param position The position within the file of the first byte to send
+     * @param count The number of bytes to send
+     * @param callback The callback to use to notify success or failure
+     */
+    public void sendContent(FileChannel file, long position, long count, Callback callback)
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug("sendContent(file={},p={},c={},{})", file, position, count, callback);
+
+        if (prepareSendContent(0, callback))
+            new FileChannelWritingCB(file, position, count, callback).iterate();
+    }
+
+    /**
+     * @param count the number of bytes to send
+     * @return whether the bytes can be written directly to the transport, which requires that
+     * no interceptor modifies them, that they are framed by the response content length
+     * and that the response is not for a HEAD request.
+     */
+    private boolean isTransferFromSupported(long count)
+    {
+        return _interceptor == _channel &&
+            count > 0 &&
+            _channel.getResponse().getLongContentLength() == count &&
+            !HttpMethod.HEAD.is(_channel.getRequest().getMethod()) &&
+            _channel.isTransferFromSupported();
+    }
+
     private boolean prepareSendContent(int len, Callback callback)
     {
         synchronized (_channelState)
@@ -1262,6 +1321,28 @@ public class HttpOutput extends ServletOutputStream implements Runnable
             return;
         }
 
+        long length = httpContent.getContentLengthValue();
+        if (isTransferFromSupported(length))
+        {
+            FileChannel file = null;
+            try
+            {
+                File f = httpContent.getResource().getFile();
+                if (f != null)
+                    file = FileChannel.open(f.toPath(), StandardOpenOption.READ);
+            }
+            catch (Throwable x)
+            {
+                LOG.debug(x);
+            }
+            if (file != null)
+            {
+                // Close of the file is done by the async sendContent
+                sendContent(file, 0, length, callback);
+                return;
+            }
+        }
+
         ReadableByteChannel rbc = null;
         try
         {
@@ -1803,6 +1884,113 @@ public class HttpOutput extends ServletOutputStream implements Runnable
         }
     }
 
+    /**
+     * An iterating callback that will write a region of a FileChannel to the {@link HttpChannel}.
+     * If {@link #isTransferFromSupported(long)}, then the response is committed and the region
+     * is written with {@link HttpChannel#transferFrom(Callback, FileChannel, long, long)}, otherwise
+     * a {@link ByteBuffer} of size {@link HttpOutput#getBufferSize()} is used as for
+     * {@link ReadableByteChannelWritingCB}.
+     * Only once all the region is written will the wrapped {@link Callback#succeeded()} method be called.
+     */
+    private class FileChannelWritingCB extends NestedChannelWriteCB
+    {
+        private final FileChannel _in;
+        private final boolean _transfer;
+        private long _position;
+        private long _remaining;
+        private ByteBuffer _buffer;
+        private boolean _committed;
+        private boolean _completed;
+        private boolean _closed;
+
+        FileChannelWritingCB(FileChannel in, long position, long count, Callback callback)
+        {
+            super(callback, true);
+            _in = in;
+            _position = position;
+            _remaining = count;
+            _transfer = isTransferFromSupported(count);
+        }
+
+        @Override
+        protected Action process() throws Exception
+        {
+            // Only return if the last write has previously been done.
+            if (_completed)
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("EOF of {}", this);
+                release();
+                return Action.SUCCEEDED;
+            }
+
+            if (_transfer)
+            {
+                // Commit the response so that the header is written before the content.
+                if (!_committed)
+                {
+                    _committed = true;
+                    channelWrite(BufferUtil.EMPTY_BUFFER, false, this);
+                    return Action.SCHEDULED;
+                }
+
+                if (_remaining > 0)
+                {
+                    long count = _remaining;
+                    _remaining = 0;
+                    _written += count;
+                    _channel.transferFrom(this, _in, _position, count);
+                    return Action.SCHEDULED;
+                }
+
+                _completed = true;
+                channelWrite(BufferUtil.EMPTY_BUFFER, true, this);
+                return Action.SCHEDULED;
+            }
+
+            if (_buffer == null)
+                _buffer = _channel.getByteBufferPool().acquire(getBufferSize(), _channel.isUseOutputDirectByteBuffers());
+
+            // Read from the file until buffer full or the region is read.
+            BufferUtil.clearToFill(_buffer);
+            if (_buffer.remaining() > _remaining)
+                _buffer.limit(_buffer.position() + (int)_remaining);
+            while (_buffer.hasRemaining())
+            {
+                int read = _in.read(_buffer, _position);
+                if (read < 0)
+                    throw new IOException("Unexpected end of file " + _in);
+                _position += read;
+                _remaining -= read;
+            }
+
+            // write what we have
+            BufferUtil.flipToFlush(_buffer, 0);
+            _written += _buffer.remaining();
+            _completed = _remaining == 0;
+            channelWrite(_buffer, _completed, this);
+            return Action.SCHEDULED;
+        }
+
+        private void release()
+        {
+            if (!_closed)
+            {
+                _closed = true;
+                if (_buffer != null)
+                    _channel.getByteBufferPool().release(_buffer);
+                IO.close(_in);
+            }
+        }
+
+        @Override
+        public void onCompleteFailure(Throwable x)
+        {
+            release();
+            super.onCompleteFailure(x);
+        }
+    }
+
     private static class WriteBlocker extends SharedBlockingCallback
     {
         private final HttpChannel _channel;
@@ -19,6 +19,7 @@
 package org.eclipse.jetty.server;
 
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 import org.eclipse.jetty.http.MetaData;
 import org.eclipse.jetty.util.Callback;
@@ -42,6 +43,32 @@ public interface HttpTransport
      */
     void send(MetaData.Request request, MetaData.Response response, ByteBuffer content, boolean lastContent, Callback callback);
 
+    /**
+     * @return true if file content can be written with {@link #transferFrom(Callback, FileChannel, long, long)}
+     */
+    default boolean isTransferFromSupported()
+    {
+        return false;
+    }
+
+    /**
+     * <p>Asynchronous call to send file content directly over the transport, without
+     * the content being copied into a buffer.</p>
+     * <p>This method may only be called after the response has been committed by
+     * {@link #send(MetaData.Request, MetaData.Response, ByteBuffer, boolean, Callback)}
+     * with a known content length, and the content sent by this method is not
+     * framed or otherwise processed by the transport.</p>
+     *
+     * @param callback The Callback instance that success or failure of the send is notified on
+     * @param file The file to send content from
+     * @param position The position within the file of the first byte to send
+     * @param count The number of bytes to send
+     */
+    default void transferFrom(Callback callback, FileChannel file, long position, long count)
+    {
+        callback.failed(new UnsupportedOperationException());
+    }
+
     /**
      * @return true if responses can be pushed over this transport
      */
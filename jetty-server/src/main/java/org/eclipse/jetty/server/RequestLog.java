@@ -47,6 +47,18 @@ public interface RequestLog
     interface Writer
     {
         void write(String requestEntry) throws IOException;
+
+        /**
+         * <p>Writes a generated log entry that is only valid for the duration of the call,
+         * so that implementations can encode it without creating a String.</p>
+         *
+         * @param requestEntry the log entry
+         * @throws IOException if the log entry cannot be written
+         */
+        default void write(CharSequence requestEntry) throws IOException
+        {
+            write(requestEntry.toString());
+        }
     }
 
     class Collection implements RequestLog
@@ -22,8 +22,10 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.nio.ByteBuffer;
 import java.util.TimeZone;
 
+import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.RolloverFileOutputStream;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
@@ -185,6 +187,36 @@ public class RequestLogWriter extends AbstractLifeCycle implements RequestLog.Wr
         }
     }
 
+    /**
+     * <p>Writes a batch of pre-encoded request log lines, each with its line separator.</p>
+     * <p>When the log is written to a file, the lines are written with a single gathering write.</p>
+     *
+     * @param lines the buffers of the encoded lines
+     * @param offset the index of the first line to write
+     * @param length the number of lines to write
+     * @throws IOException if the lines cannot be written
+     */
+    protected void write(ByteBuffer[] lines, int offset, int length) throws IOException
+    {
+        synchronized (this)
+        {
+            if (_writer == null)
+                return;
+            if (_fileOut instanceof RolloverFileOutputStream)
+            {
+                ((RolloverFileOutputStream)_fileOut).write(lines, offset, length);
+            }
+            else
+            {
+                for (int i = offset; i < offset + length; i++)
+                {
+                    BufferUtil.writeTo(lines[i], _out);
+                }
+                _out.flush();
+            }
+        }
+    }
+
     @Override
     protected synchronized void doStart() throws Exception
     {
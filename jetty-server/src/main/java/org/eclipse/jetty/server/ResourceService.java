@@ -18,11 +18,14 @@
 
 package org.eclipse.jetty.server;
 
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.Collection;
 import java.util.Enumeration;
 import java.util.List;
@@ -752,7 +755,13 @@ public class ResourceService
                     response.addDateHeader(HttpHeader.DATE.asString(), System.currentTimeMillis());
                 response.setHeader(HttpHeader.CONTENT_RANGE.asString(),
                     singleSatisfiableRange.toHeaderRangeString(content_length));
-                writeContent(content, out, singleSatisfiableRange.getFirst(), singleLength);
+
+                // do a bypass write of the range directly from the file if possible
+                FileChannel file = (written || !(out instanceof HttpOutput)) ? null : getFileChannel(content);
+                if (file != null)
+                    ((HttpOutput)out).sendContent(file, singleSatisfiableRange.getFirst(), singleLength);
+                else
+                    writeContent(content, out, singleSatisfiableRange.getFirst(), singleLength);
                 return true;
             }
 
@@ -841,6 +850,21 @@ public class ResourceService
         }
     }
 
+    private static FileChannel getFileChannel(HttpContent content)
+    {
+        try
+        {
+            File file = content.getResource().getFile();
+            if (file != null)
+                return FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        }
+        catch (Throwable x)
+        {
+            LOG.ignore(x);
+        }
+        return null;
+    }
+
     protected void putHeaders(HttpServletResponse response, HttpContent content, long contentLength)
     {
         if (response instanceof Response)
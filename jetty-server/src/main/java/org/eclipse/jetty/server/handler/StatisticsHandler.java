@@ -20,6 +20,7 @@ package org.eclipse.jetty.server.handler;
 
 import java.io.IOException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.LongAdder;
@@ -42,6 +43,7 @@ import org.eclipse.jetty.util.component.Graceful;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
 import org.eclipse.jetty.util.statistic.CounterStatistic;
+import org.eclipse.jetty.util.statistic.HistogramStatistic;
 import org.eclipse.jetty.util.statistic.SampleStatistic;
 
 @ManagedObject("Request Statistics Gathering")
@@ -56,6 +58,9 @@ public class StatisticsHandler extends HandlerWrapper implements Graceful
     private final CounterStatistic _dispatchedStats = new CounterStatistic();
     private final SampleStatistic _dispatchedTimeStats = new SampleStatistic();
     private final CounterStatistic _asyncWaitStats = new CounterStatistic();
+    private final HistogramStatistic _requestTimeHistogram = new HistogramStatistic(1, TimeUnit.MINUTES);
+    private final HistogramStatistic _dispatchedTimeHistogram = new HistogramStatistic(1, TimeUnit.MINUTES);
+    private final HistogramStatistic _asyncWaitTimeHistogram = new HistogramStatistic(1, TimeUnit.MINUTES);
 
     private final LongAdder _asyncDispatches = new LongAdder();
     private final LongAdder _expires = new LongAdder();
@@ -69,8 +74,15 @@ public class StatisticsHandler extends HandlerWrapper implements Graceful
 
     private final AtomicBoolean _wrapWarning = new AtomicBoolean();
 
-    private final AsyncListener _onCompletion = new AsyncListener()
+    private class OnCompletion implements AsyncListener
     {
+        private final long _suspended;
+
+        private OnCompletion(long suspended)
+        {
+            _suspended = suspended;
+        }
+
         @Override
         public void onTimeout(AsyncEvent event) throws IOException
         {
@@ -94,14 +106,17 @@ public class StatisticsHandler extends HandlerWrapper implements Graceful
             HttpChannelState state = ((AsyncContextEvent)event).getHttpChannelState();
 
             Request request = state.getBaseRequest();
-            final long elapsed = System.currentTimeMillis() - request.getTimeStamp();
+            final long now = System.currentTimeMillis();
+            final long elapsed = now - request.getTimeStamp();
 
             final long d = _requestStats.decrement();
             _requestTimeStats.record(elapsed);
+            _requestTimeHistogram.record(elapsed);
 
             updateResponse(request);
 
             _asyncWaitStats.decrement();
+            _asyncWaitTimeHistogram.record(now - _suspended);
 
             // If we have no more dispatches, should we signal shutdown?
             if (d == 0)
@@ -111,7 +126,7 @@ public class StatisticsHandler extends HandlerWrapper implements Graceful
                     shutdown.check();
             }
         }
-    };
+    }
 
     /**
      * Resets the current request statistics.
@@ -126,6 +141,9 @@ public class StatisticsHandler extends HandlerWrapper implements Graceful
         _dispatchedStats.reset();
         _dispatchedTimeStats.reset();
         _asyncWaitStats.reset();
+        _requestTimeHistogram.reset();
+        _dispatchedTimeHistogram.reset();
+        _asyncWaitTimeHistogram.reset();
 
         _asyncDispatches.reset();
         _expires.reset();
@@ -179,12 +197,13 @@ public class StatisticsHandler extends HandlerWrapper implements Graceful
 
             _dispatchedStats.decrement();
             _dispatchedTimeStats.record(dispatched);
+            _dispatchedTimeHistogram.record(dispatched);
 
             if (state.isSuspended())
             {
                 if (state.isInitial())
                 {
-                    state.addListener(_onCompletion);
+                    state.addListener(new OnCompletion(now));
                     _asyncWaitStats.increment();
                 }
             }
@@ -192,6 +211,7 @@ public class StatisticsHandler extends HandlerWrapper implements Graceful
             {
                 long d = _requestStats.decrement();
                 _requestTimeStats.record(dispatched);
+                _requestTimeHistogram.record(dispatched);
                 updateResponse(baseRequest);
 
                 // If we have no more dispatches, should we signal shutdown?
@@ -337,6 +357,36 @@ public class StatisticsHandler extends HandlerWrapper implements Graceful
         return _requestTimeStats.getStdDev();
     }
 
+    /**
+     * @return the median time (in milliseconds) of request handling
+     * over the last minute.
+     */
+    @ManagedAttribute("median time of request handling over the last minute (in ms)")
+    public long getRequestTimeP50()
+    {
+        return _requestTimeHistogram.getValueAtPercentile(50);
+    }
+
+    /**
+     * @return the 99th percentile time (in milliseconds) of request handling
+     * over the last minute.
+     */
+    @ManagedAttribute("99th percentile time of request handling over the last minute (in ms)")
+    public long getRequestTimeP99()
+    {
+        return _requestTimeHistogram.getValueAtPercentile(99);
+    }
+
+    /**
+     * @return the 99.9th percentile time (in milliseconds) of request handling
+     * over the last minute.
+     */
+    @ManagedAttribute("99.9th percentile time of request handling over the last minute (in ms)")
+    public long getRequestTimeP999()
+    {
+        return _requestTimeHistogram.getValueAtPercentile(99.9);
+    }
+
     /**
      * @return the number of dispatches seen by this handler
      * since {@link #statsReset()} was last called, excluding
@@ -414,6 +464,36 @@ public class StatisticsHandler extends HandlerWrapper implements Graceful
         return _dispatchedTimeStats.getStdDev();
     }
 
+    /**
+     * @return the median time (in milliseconds) of dispatch handling
+     * over the last minute.
+     */
+    @ManagedAttribute("median time of dispatch handling over the last minute (in ms)")
+    public long getDispatchedTimeP50()
+    {
+        return _dispatchedTimeHistogram.getValueAtPercentile(50);
+    }
+
+    /**
+     * @return the 99th percentile time (in milliseconds) of dispatch handling
+     * over the last minute.
+     */
+    @ManagedAttribute("99th percentile time of dispatch handling over the last minute (in ms)")
+    public long getDispatchedTimeP99()
+    {
+        return _dispatchedTimeHistogram.getValueAtPercentile(99);
+    }
+
+    /**
+     * @return the 99.9th percentile time (in milliseconds) of dispatch handling
+     * over the last minute.
+     */
+    @ManagedAttribute("99.9th percentile time of dispatch handling over the last minute (in ms)")
+    public long getDispatchedTimeP999()
+    {
+        return _dispatchedTimeHistogram.getValueAtPercentile(99.9);
+    }
+
     /**
      * @return the number of requests handled by this handler
      * since {@link #statsReset()} was last called, including
@@ -446,6 +526,36 @@ public class StatisticsHandler extends HandlerWrapper implements Graceful
         return (int)_asyncWaitStats.getMax();
     }
 
+    /**
+     * @return the median time (in milliseconds) of async requests waiting
+     * over the last minute.
+     */
+    @ManagedAttribute("median time of async requests waiting over the last minute (in ms)")
+    public long getAsyncWaitTimeP50()
+    {
+        return _asyncWaitTimeHistogram.getValueAtPercentile(50);
+    }
+
+    /**
+     * @return the 99th percentile time (in milliseconds) of async requests waiting
+     * over the last minute.
+     */
+    @ManagedAttribute("99th percentile time of async requests waiting over the last minute (in ms)")
+    public long getAsyncWaitTimeP99()
+    {
+        return _asyncWaitTimeHistogram.getValueAtPercentile(99);
+    }
+
+    /**
+     * @return the 99.9th percentile time (in milliseconds) of async requests waiting
+     * over the last minute.
+     */
+    @ManagedAttribute("99.9th percentile time of async requests waiting over the last minute (in ms)")
+    public long getAsyncWaitTimeP999()
+    {
+        return _asyncWaitTimeHistogram.getValueAtPercentile(99.9);
+    }
+
     /**
      * @return the number of requests that have been asynchronously dispatched
      */
@@ -548,6 +658,8 @@ public class StatisticsHandler extends HandlerWrapper implements Graceful
         sb.append("Mean request time: ").append(getRequestTimeMean()).append("<br />\n");
         sb.append("Max request time: ").append(getRequestTimeMax()).append("<br />\n");
         sb.append("Request time standard deviation: ").append(getRequestTimeStdDev()).append("<br />\n");
+        sb.append("Request time 50th/99th/99.9th percentiles (last minute): ").append(getRequestTimeP50())
+            .append("/").append(getRequestTimeP99()).append("/").append(getRequestTimeP999()).append("<br />\n");
 
         sb.append("<h2>Dispatches:</h2>\n");
         sb.append("Total dispatched: ").append(getDispatched()).append("<br />\n");
@@ -557,8 +669,12 @@ public class StatisticsHandler extends HandlerWrapper implements Graceful
         sb.append("Mean dispatched time: ").append(getDispatchedTimeMean()).append("<br />\n");
         sb.append("Max dispatched time: ").append(getDispatchedTimeMax()).append("<br />\n");
         sb.append("Dispatched time standard deviation: ").append(getDispatchedTimeStdDev()).append("<br />\n");
+        sb.append("Dispatched time 50th/99th/99.9th percentiles (last minute): ").append(getDispatchedTimeP50())
+            .append("/").append(getDispatchedTimeP99()).append("/").append(getDispatchedTimeP999()).append("<br />\n");
 
         sb.append("Total requests suspended: ").append(getAsyncRequests()).append("<br />\n");
+        sb.append("Async wait time 50th/99th/99.9th percentiles (last minute): ").append(getAsyncWaitTimeP50())
+            .append("/").append(getAsyncWaitTimeP99()).append("/").append(getAsyncWaitTimeP999()).append("<br />\n");
         sb.append("Total requests expired: ").append(getExpires()).append("<br />\n");
         sb.append("Total requests resumed: ").append(getAsyncDispatches()).append("<br />\n");
 
@@ -0,0 +1,371 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under
+// the terms of the Eclipse Public License 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0
+//
+// This Source Code may also be made available under the following
+// Secondary Licenses when the conditions for such availability set
+// forth in the Eclipse Public License, v. 2.0 are satisfied:
+// the Apache License v2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.handler.gzip;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.util.TinyLfuPolicy;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.annotation.Name;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+
+/**
+ * <p>A bounded cache of the compressed content of responses, used by
+ * {@link GzipHandler} to avoid compressing again a response that it has
+ * already compressed with the same content coding.</p>
+ * <p>The application still handles every request, but when it commits a response
+ * whose {@link #getKey(Request, Response) key} is cached, the cached compressed
+ * bytes are sent and the content written by the application is discarded, so
+ * that no {@link java.util.zip.Deflater} work is done.
+ * Only the responses to {@code GET} requests that have an {@code ETag} or a
+ * {@code Last-Modified} header are cached, as the key of a response includes
+ * its validator: an application must change the validator of a resource when
+ * its content changes.</p>
+ * <p>The compressed contents are stored in direct buffers by default, and the
+ * cache is bounded both in number of entries and in total size; the entries to
+ * evict are selected by a {@link TinyLfuPolicy}.</p>
+ */
+@ManagedObject("A cache of compressed response contents")
+public class GzipContentCache
+{
+    private static final Logger LOG = Log.getLogger(GzipContentCache.class);
+
+    private final ConcurrentMap<String, Entry> _cache = new ConcurrentHashMap<>();
+    private final AtomicLong _cachedSize = new AtomicLong();
+    private final TinyLfuPolicy<Entry> _policy;
+    private final LongAdder _hits = new LongAdder();
+    private final LongAdder _misses = new LongAdder();
+    private final LongAdder _evictions = new LongAdder();
+    private final LongAdder _bytesSaved = new LongAdder();
+    private boolean _useDirectBuffers = true;
+    private int _maxCachedFileSize = 4 * 1024 * 1024;
+    private int _maxCachedFiles = 2048;
+    private int _maxCacheSize;
+
+    public GzipContentCache()
+    {
+        this(64 * 1024 * 1024);
+    }
+
+    /**
+     * @param maxCacheSize the maximum size in bytes of the cached content, or 0 to disable the cache
+     */
+    public GzipContentCache(@Name("maxCacheSize") int maxCacheSize)
+    {
+        _maxCacheSize = maxCacheSize;
+        _policy = new TinyLfuPolicy<>(_maxCachedFiles);
+    }
+
+    /**
+     * @return whether the cache may hold content, that is whether its maximum size is positive
+     */
+    public boolean isEnabled()
+    {
+        return _maxCacheSize > 0;
+    }
+
+    @ManagedAttribute("The size in bytes of the cached content")
+    public long getCachedSize()
+    {
+        return _cachedSize.get();
+    }
+
+    @ManagedAttribute("The number of cached responses")
+    public int getCachedFiles()
+    {
+        return _cache.size();
+    }
+
+    @ManagedAttribute("The maximum size in bytes of a cached compressed response")
+    public int getMaxCachedFileSize()
+    {
+        return _maxCachedFileSize;
+    }
+
+    public void setMaxCachedFileSize(int maxCachedFileSize)
+    {
+        _maxCachedFileSize = maxCachedFileSize;
+    }
+
+    @ManagedAttribute("The maximum size in bytes of the cached content")
+    public int getMaxCacheSize()
+    {
+        return _maxCacheSize;
+    }
+
+    public void setMaxCacheSize(int maxCacheSize)
+    {
+        _maxCacheSize = maxCacheSize;
+        shrinkCache();
+    }
+
+    @ManagedAttribute("The maximum number of cached responses")
+    public int getMaxCachedFiles()
+    {
+        return _maxCachedFiles;
+    }
+
+    public void setMaxCachedFiles(int maxCachedFiles)
+    {
+        _maxCachedFiles = maxCachedFiles;
+        _policy.setMaxEntries(maxCachedFiles);
+        shrinkCache();
+    }
+
+    @ManagedAttribute("Whether the cached content is stored in direct buffers")
+    public boolean isUseDirectBuffers()
+    {
+        return _useDirectBuffers;
+    }
+
+    public void setUseDirectBuffers(boolean useDirectBuffers)
+    {
+        _useDirectBuffers = useDirectBuffers;
+    }
+
+    @ManagedAttribute("The number of responses served from the cache")
+    public long getHits()
+    {
+        return _hits.sum();
+    }
+
+    @ManagedAttribute("The number of cacheable responses not found in the cache")
+    public long getMisses()
+    {
+        return _misses.sum();
+    }
+
+    @ManagedAttribute("The ratio of cacheable responses served from the cache")
+    public double getHitRatio()
+    {
+        long hits = getHits();
+        long total = hits + getMisses();
+        return total == 0 ? 0.0D : (double)hits / total;
+    }
+
+    @ManagedAttribute("The number of compressed bytes served from the cache")
+    public long getBytesSaved()
+    {
+        return _bytesSaved.sum();
+    }
+
+    @ManagedAttribute("The number of responses evicted from the cache")
+    public long getEvictions()
+    {
+        return _evictions.sum();
+    }
+
+    @ManagedAttribute("The number of responses not admitted in the cache because they were less frequent than the cached ones")
+    public long getRejections()
+    {
+        return _policy.getRejections();
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void resetStats()
+    {
+        _hits.reset();
+        _misses.reset();
+        _evictions.reset();
+        _bytesSaved.reset();
+    }
+
+    @ManagedOperation(value = "Removes all the cached responses", impact = "ACTION")
+    public void flushCache()
+    {
+        for (Entry entry : _cache.values())
+        {
+            remove(entry);
+        }
+    }
+
+    /**
+     * <p>Computes the key of a response that is about to be compressed.</p>
+     * <p>The key is made of the request host, path and query, of the validator of
+     * the response (its {@code ETag}, or its {@code Last-Modified} header) and of
+     * the values of the request headers listed by the {@code Vary} header of the
+     * response, so it must be computed before the {@code Vary} header of the
+     * {@link GzipHandler} is added.</p>
+     * <p>Only complete {@code 200} responses to requests that carry neither a
+     * {@code Range} nor an {@code Authorization} header can be cached.</p>
+     *
+     * @param request the request
+     * @param response the committing response
+     * @return the key of the response, or null if the response cannot be cached
+     */
+    public String getKey(Request request, Response response)
+    {
+        if (!isEnabled() || !HttpMethod.GET.is(request.getMethod()))
+            return null;
+        if (response.getStatus() != HttpStatus.OK_200)
+            return null;
+        HttpFields requestFields = request.getHttpFields();
+        if (requestFields.contains(HttpHeader.RANGE) || requestFields.contains(HttpHeader.AUTHORIZATION))
+            return null;
+
+        HttpFields fields = response.getHttpFields();
+        if (fields.contains(HttpHeader.CONTENT_RANGE))
+            return null;
+        String validator = fields.get(HttpHeader.ETAG);
+        if (validator == null)
+            validator = fields.get(HttpHeader.LAST_MODIFIED);
+        if (validator == null)
+            return null;
+        if (fields.contains(HttpHeader.SET_COOKIE) ||
+            fields.contains(HttpHeader.CACHE_CONTROL, "no-store") ||
+            fields.contains(HttpHeader.CACHE_CONTROL, "private"))
+            return null;
+
+        StringBuilder key = new StringBuilder(128);
+        key.append(request.getServerName()).append(':').append(request.getServerPort());
+        key.append(request.getRequestURI());
+        String query = request.getQueryString();
+        if (query != null)
+            key.append('?').append(query);
+        key.append('\n').append(validator);
+        for (String vary : fields.getCSV(HttpHeader.VARY, false))
+        {
+            if ("*".equals(vary))
+                return null;
+            if (HttpHeader.ACCEPT_ENCODING.is(vary))
+                continue;
+            List<String> values = requestFields.getValuesList(vary);
+            key.append('\n').append(vary).append(':').append(String.join(",", values));
+        }
+        return key.toString();
+    }
+
+    /**
+     * @param key the key of a response
+     * @param encoding the content coding of the compressed content
+     * @return a read only buffer with the compressed content of the response, or null if it is not cached
+     */
+    public ByteBuffer get(String key, String encoding)
+    {
+        Entry entry = _cache.get(key + '\n' + encoding);
+        if (entry == null)
+        {
+            _misses.increment();
+            return null;
+        }
+        _policy.access(entry._node);
+        _hits.increment();
+        ByteBuffer content = entry._content.slice();
+        _bytesSaved.add(content.remaining());
+        return content;
+    }
+
+    /**
+     * <p>Caches the compressed content of a response.</p>
+     * <p>The content is copied and may not be cached if it is larger than
+     * the maximum size of a cached response, or if the key is already cached.</p>
+     *
+     * @param key the key of the response
+     * @param encoding the content coding of the compressed content
+     * @param content the complete compressed content of the response
+     */
+    public void put(String key, String encoding, ByteBuffer content)
+    {
+        key = key + '\n' + encoding;
+        int size = content.remaining();
+        if (size > _maxCachedFileSize || size > _maxCacheSize || _cache.containsKey(key))
+            return;
+
+        ByteBuffer buffer = _useDirectBuffers ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+        buffer.put(content.slice()).flip();
+        Entry entry = new Entry(key, buffer.asReadOnlyBuffer());
+        entry._node = _policy.add(key, entry);
+        if (_cache.putIfAbsent(key, entry) != null)
+        {
+            _policy.remove(entry._node);
+            return;
+        }
+        _cachedSize.addAndGet(size);
+        if (LOG.isDebugEnabled())
+            LOG.debug("cached {} bytes for {}", size, key);
+        shrinkCache();
+    }
+
+    private void shrinkCache()
+    {
+        while (_cache.size() > _maxCachedFiles || _cachedSize.get() > _maxCacheSize)
+        {
+            Entry entry = _policy.evict();
+            if (entry == null)
+                break;
+            if (_cache.remove(entry._key, entry))
+            {
+                _cachedSize.addAndGet(-entry._content.capacity());
+                _evictions.increment();
+                if (LOG.isDebugEnabled())
+                    LOG.debug("evicted {}", entry._key);
+            }
+        }
+    }
+
+    private void remove(Entry entry)
+    {
+        if (_cache.remove(entry._key, entry))
+        {
+            _policy.remove(entry._node);
+            _cachedSize.addAndGet(-entry._content.capacity());
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{size=%d/%d,files=%d/%d,hits=%d,misses=%d}",
+            getClass().getSimpleName(),
+            hashCode(),
+            getCachedSize(),
+            getMaxCacheSize(),
+            getCachedFiles(),
+            getMaxCachedFiles(),
+            getHits(),
+            getMisses());
+    }
+
+    private static class Entry
+    {
+        private final String _key;
+        private final ByteBuffer _content;
+        private TinyLfuPolicy.Node<Entry> _node;
+
+        private Entry(String key, ByteBuffer content)
+        {
+            _key = key;
+            _content = content;
+        }
+    }
+}
@@ -20,13 +20,39 @@ package org.eclipse.jetty.server.handler.gzip;
 
 import java.util.zip.Deflater;
 
+import org.eclipse.jetty.http.CompressedContentFormat;
 import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.util.compression.Compression;
 
 public interface GzipFactory
 {
+    /**
+     * @param request the request
+     * @param contentLength the length of the response content, or -1 if unknown
+     * @return a gzip deflater, or null if the response must not be compressed
+     * @deprecated use {@link #getCompression(Request, long)}
+     */
+    @Deprecated
     Deflater getDeflater(Request request, long contentLength);
 
+    /**
+     * @param request the request
+     * @param contentLength the length of the response content, or -1 if unknown
+     * @return the compression negotiated for the response, or null if the response must not be compressed
+     */
+    Compression getCompression(Request request, long contentLength);
+
+    /**
+     * @return the formats of the compressions that may be negotiated
+     */
+    CompressedContentFormat[] getCompressedContentFormats();
+
     boolean isMimeTypeGzipable(String mimetype);
 
+    /**
+     * @param deflater a deflater obtained from {@link #getDeflater(Request, long)}
+     * @deprecated use {@link #getCompression(Request, long)}
+     */
+    @Deprecated
     void recycle(Deflater deflater);
 }
@@ -19,11 +19,16 @@
 package org.eclipse.jetty.server.handler.gzip;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
+import java.util.ServiceLoader;
 import java.util.Set;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.zip.Deflater;
 import javax.servlet.DispatcherType;
 import javax.servlet.ServletContext;
@@ -32,6 +37,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.eclipse.jetty.http.CompressedContentFormat;
+import org.eclipse.jetty.http.GzipCompression;
 import org.eclipse.jetty.http.HttpField;
 import org.eclipse.jetty.http.HttpFields;
 import org.eclipse.jetty.http.HttpHeader;
@@ -39,7 +45,10 @@ import org.eclipse.jetty.http.HttpHeaderValue;
 import org.eclipse.jetty.http.HttpMethod;
 import org.eclipse.jetty.http.MimeTypes;
 import org.eclipse.jetty.http.PreEncodedHttpField;
+import org.eclipse.jetty.http.QuotedCSV;
+import org.eclipse.jetty.http.QuotedQualityCSV;
 import org.eclipse.jetty.http.pathmap.PathSpecSet;
+import org.eclipse.jetty.server.HttpChannel;
 import org.eclipse.jetty.server.HttpOutput;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.handler.HandlerWrapper;
@@ -47,6 +56,7 @@ import org.eclipse.jetty.util.IncludeExclude;
 import org.eclipse.jetty.util.RegexSet;
 import org.eclipse.jetty.util.StringUtil;
 import org.eclipse.jetty.util.URIUtil;
+import org.eclipse.jetty.util.compression.Compression;
 import org.eclipse.jetty.util.compression.DeflaterPool;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
@@ -65,17 +75,25 @@ import org.eclipse.jetty.util.log.Logger;
  * <br>(Default: {@link DispatcherType#REQUEST}).
  * </p>
  * <p>
- * Requests with a {@code Content-Encoding} header with the value {@code gzip} will
- * be uncompressed by a {@link GzipHttpInputInterceptor} for any API that uses
- * {@link HttpServletRequest#getInputStream()} or {@link HttpServletRequest#getReader()}.
+ * Requests with a {@code Content-Encoding} header with the value {@code gzip} (or any other
+ * available content coding) will be uncompressed by a {@link GzipHttpInputInterceptor} for
+ * any API that uses {@link HttpServletRequest#getInputStream()} or {@link HttpServletRequest#getReader()}.
+ * </p>
+ * <p>
+ * The {@code gzip} content coding is always available, other content codings are made
+ * available by {@link Compression} implementations discovered with the {@link ServiceLoader}
+ * (for example the {@code zstd} content coding of the {@code jetty-zstd} module).
+ * The content codings that may be used, in order of preference, can be set with
+ * {@link #setEncodings(String...)}.
  * </p>
  * <p>
  * Response compression has a number of checks before GzipHandler will perform compression.
  * </p>
  * <ol>
  * <li>
- * Does the request contain a {@code Accept-Encoding} header that specifies
- * {@code gzip} value?
+ * Does the request contain a {@code Accept-Encoding} header that accepts, with a non zero
+ * quality value, one of the available content codings?  When several are accepted with the
+ * same quality, the content coding preferred by the server is used.
  * </li>
  * <li>
  * Is the {@link HttpServletRequest#getMethod()} allowed by the configured HTTP Method Filter.
@@ -93,10 +111,6 @@ import org.eclipse.jetty.util.log.Logger;
  * Is the Response {@code Content-Length} header present, and does its
  * value meet the minimum gzip size requirements (default 32 bytes)?
  * </li>
- * <li>
- * Is the Request {@code Accept} header present and does it contain the
- * required {@code gzip} value?
- * </li>
  * </ol>
  * <p>
  * When you encounter a configurable filter in the GzipHandler (method, paths, user-agent,
@@ -113,7 +127,7 @@ import org.eclipse.jetty.util.log.Logger;
  * <p>
  * ETag (or Entity Tag) information: any Request headers for {@code If-None-Match} or
  * {@code If-Match} will be evaluated by the GzipHandler to determine if it was involved
- * in compression of the response earlier.  This is usually present as a {@code --gzip} suffix
+ * in compression of the response earlier.  This is usually present as a {@code --gzip} (or {@code --zstd}, etc.) suffix
  * on the ETag that the Client User-Agent is tracking and handed to the Jetty server.
  * The special {@code --gzip} suffix on the ETag is how GzipHandler knows that the content
  * passed through itself, and this suffix will be stripped from the Request header values
@@ -124,6 +138,12 @@ import org.eclipse.jetty.util.log.Logger;
  * and sent to the User Agent.
  * </p>
  * <p>
+ * Responses that are generated again for every request but that are identical for the same
+ * {@code ETag} or {@code Last-Modified} validator can be compressed only once by setting
+ * a {@link GzipContentCache}: the cached compressed content is then sent instead of the
+ * compression of the content written by the application.
+ * </p>
+ * <p>
  * This implementation relies on an Jetty internal {@link org.eclipse.jetty.server.HttpOutput.Interceptor}
  * mechanism to allow for effective and efficient compression of the response on all Output API usages:
  * </p>
@@ -156,9 +176,8 @@ public class GzipHandler extends HandlerWrapper implements GzipFactory
     public static final int DEFAULT_MIN_GZIP_SIZE = 32;
     public static final int BREAK_EVEN_GZIP_SIZE = 23;
     private static final Logger LOG = Log.getLogger(GzipHandler.class);
-    private static final HttpField X_CE_GZIP = new PreEncodedHttpField("X-Content-Encoding", "gzip");
     private static final HttpField TE_CHUNKED = new PreEncodedHttpField(HttpHeader.TRANSFER_ENCODING, HttpHeaderValue.CHUNKED.asString());
-    private static final Pattern COMMA_GZIP = Pattern.compile(".*, *gzip");
+    private static final int ACCEPT_ENCODING_CACHE_SIZE = 1024;
 
     private int poolCapacity = -1;
     private DeflaterPool _deflaterPool = null;
@@ -173,6 +192,11 @@ public class GzipHandler extends HandlerWrapper implements GzipFactory
     private final IncludeExclude<String> _paths = new IncludeExclude<>(PathSpecSet.class);
     private final IncludeExclude<String> _mimeTypes = new IncludeExclude<>();
     private HttpField _vary;
+    private GzipContentCache _contentCache;
+    private String[] _encodings;
+    private Compression[] _compressions = new Compression[0];
+    private CompressedContentFormat[] _formats = CompressedContentFormat.NONE;
+    private final Map<String, List<String>> _acceptEncodingCache = new ConcurrentHashMap<>();
 
     /**
      * Instantiates a new GzipHandler.
@@ -414,6 +438,35 @@ public class GzipHandler extends HandlerWrapper implements GzipFactory
     protected void doStart() throws Exception
     {
         _deflaterPool = newDeflaterPool(poolCapacity);
+
+        List<Compression> available = newCompressions();
+        List<Compression> compressions = new ArrayList<>();
+        if (_encodings == null)
+        {
+            compressions.addAll(available);
+        }
+        else
+        {
+            for (String encoding : _encodings)
+            {
+                Compression compression = available.stream()
+                    .filter(c -> c.getEncoding().equalsIgnoreCase(encoding))
+                    .findFirst()
+                    .orElse(null);
+                if (compression == null)
+                    LOG.warn("{} unavailable encoding {}", this, encoding);
+                else
+                    compressions.add(compression);
+            }
+        }
+        _compressions = compressions.toArray(new Compression[0]);
+        _formats = compressions.stream()
+            .map(c -> CompressedContentFormat.forEncoding(c.getEncoding()))
+            .toArray(CompressedContentFormat[]::new);
+        _acceptEncodingCache.clear();
+        if (LOG.isDebugEnabled())
+            LOG.debug("{} compressions {}", this, compressions);
+
         _vary = (_agentPatterns.size() > 0) ? GzipHttpOutputInterceptor.VARY_ACCEPT_ENCODING_USER_AGENT : GzipHttpOutputInterceptor.VARY_ACCEPT_ENCODING;
         super.doStart();
     }
@@ -445,6 +498,109 @@ public class GzipHandler extends HandlerWrapper implements GzipFactory
         return _deflaterPool.acquire();
     }
 
+    @Override
+    public Compression getCompression(Request request, long contentLength)
+    {
+        HttpFields httpFields = request.getHttpFields();
+        String ua = httpFields.get(HttpHeader.USER_AGENT);
+        if (ua != null && !isAgentGzipable(ua))
+        {
+            LOG.debug("{} excluded user agent {}", this, request);
+            return null;
+        }
+
+        if (contentLength >= 0 && contentLength < _minGzipSize)
+        {
+            LOG.debug("{} excluded minGzipSize {}", this, request);
+            return null;
+        }
+
+        // negotiate the content coding with the accept encoding header
+        Compression compression = negotiate(httpFields);
+        if (compression == null)
+            LOG.debug("{} excluded no accepted encoding {}", this, request);
+        return compression;
+    }
+
+    @Override
+    public CompressedContentFormat[] getCompressedContentFormats()
+    {
+        return _formats;
+    }
+
+    private Compression negotiate(HttpFields httpFields)
+    {
+        String acceptEncoding = null;
+        for (HttpField field : httpFields)
+        {
+            if (field.getHeader() == HttpHeader.ACCEPT_ENCODING)
+                acceptEncoding = acceptEncoding == null ? field.getValue() : acceptEncoding + "," + field.getValue();
+        }
+        if (acceptEncoding == null)
+            return null;
+
+        Compression[] compressions = _compressions;
+        List<String> values = _acceptEncodingCache.get(acceptEncoding);
+        if (values == null)
+        {
+            String[] preferredOrder = new String[compressions.length];
+            for (int i = 0; i < compressions.length; i++)
+            {
+                preferredOrder[i] = compressions[i].getEncoding();
+            }
+            QuotedQualityCSV encodingQualityCSV = new QuotedQualityCSV(preferredOrder);
+            encodingQualityCSV.addValue(acceptEncoding);
+            values = encodingQualityCSV.getValues();
+
+            // keep cache size in check even if we get strange/malicious input
+            if (_acceptEncodingCache.size() > ACCEPT_ENCODING_CACHE_SIZE)
+                _acceptEncodingCache.clear();
+            _acceptEncodingCache.put(acceptEncoding, values);
+        }
+
+        for (String value : values)
+        {
+            if ("*".equals(value))
+            {
+                // Any content coding not explicitly listed, as the listed ones either matched before or are not acceptable.
+                List<String> listed = new QuotedCSV(false, acceptEncoding).getValues();
+                for (Compression compression : compressions)
+                {
+                    if (listed.stream().noneMatch(l -> isEncoding(l, compression.getEncoding())))
+                        return compression;
+                }
+                return null;
+            }
+
+            if ("identity".equalsIgnoreCase(value))
+                return null;
+
+            for (Compression compression : compressions)
+            {
+                if (compression.getEncoding().equalsIgnoreCase(value))
+                    return compression;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isEncoding(String value, String encoding)
+    {
+        int semicolon = value.indexOf(';');
+        String name = semicolon < 0 ? value : value.substring(0, semicolon);
+        return name.trim().equalsIgnoreCase(encoding);
+    }
+
+    private Compression getCompression(String encoding)
+    {
+        for (Compression compression : _compressions)
+        {
+            if (compression.getEncoding().equalsIgnoreCase(encoding))
+                return compression;
+        }
+        return null;
+    }
+
     /**
      * Get the current filter list of excluded User-Agent patterns
      *
@@ -596,38 +752,44 @@ public class GzipHandler extends HandlerWrapper implements GzipFactory
         // Handle request inflation
         if (_inflateBufferSize > 0)
         {
-            boolean inflate = false;
+            Compression inflate = null;
             for (ListIterator<HttpField> i = baseRequest.getHttpFields().listIterator(); i.hasNext(); )
             {
                 HttpField field = i.next();
 
                 if (field.getHeader() == HttpHeader.CONTENT_ENCODING)
                 {
-                    if (field.getValue().equalsIgnoreCase("gzip"))
-                    {
-                        i.set(X_CE_GZIP);
-                        inflate = true;
-                        break;
-                    }
-
-                    if (COMMA_GZIP.matcher(field.getValue()).matches())
+                    // Only the last applied content coding can be decoded
+                    String value = field.getValue();
+                    int comma = value.lastIndexOf(',');
+                    String encoding = value.substring(comma + 1).trim();
+                    inflate = getCompression(encoding);
+                    if (inflate != null)
                     {
-                        String v = field.getValue();
-                        v = v.substring(0, v.lastIndexOf(','));
-                        i.set(new HttpField(HttpHeader.CONTENT_ENCODING, v));
-                        i.add(X_CE_GZIP);
-                        inflate = true;
+                        HttpField xContentEncoding = new HttpField("X-Content-Encoding", encoding);
+                        if (comma < 0)
+                        {
+                            i.set(xContentEncoding);
+                        }
+                        else
+                        {
+                            i.set(new HttpField(HttpHeader.CONTENT_ENCODING, value.substring(0, comma)));
+                            i.add(xContentEncoding);
+                        }
                         break;
                     }
                 }
             }
 
-            if (inflate)
+            if (inflate != null)
             {
                 if (LOG.isDebugEnabled())
-                    LOG.debug("{} inflate {}", this, request);
+                    LOG.debug("{} inflate {} {}", this, inflate.getEncoding(), request);
 
-                baseRequest.getHttpInput().addInterceptor(new GzipHttpInputInterceptor(baseRequest.getHttpChannel().getByteBufferPool(), _inflateBufferSize));
+                GzipHttpInputInterceptor inputInterceptor = inflate instanceof GzipCompression
+                    ? new GzipHttpInputInterceptor(baseRequest.getHttpChannel().getByteBufferPool(), _inflateBufferSize)
+                    : new GzipHttpInputInterceptor(inflate.newDecoder(_inflateBufferSize));
+                baseRequest.getHttpInput().addInterceptor(inputInterceptor);
 
                 for (ListIterator<HttpField> i = baseRequest.getHttpFields().listIterator(); i.hasNext(); )
                 {
@@ -662,17 +824,21 @@ public class GzipHandler extends HandlerWrapper implements GzipFactory
             if (field.getHeader() == HttpHeader.IF_NONE_MATCH || field.getHeader() == HttpHeader.IF_MATCH)
             {
                 String etag = field.getValue();
-                int i = etag.indexOf(CompressedContentFormat.GZIP._etagQuote);
-                if (i > 0)
+                String stripped = etag;
+                for (CompressedContentFormat format : _formats)
                 {
-                    baseRequest.setAttribute("o.e.j.s.h.gzip.GzipHandler.etag", etag);
-                    while (i >= 0)
+                    int i = stripped.indexOf(format._etagQuote);
+                    while (i > 0)
                     {
-                        etag = etag.substring(0, i) + etag.substring(i + CompressedContentFormat.GZIP._etag.length());
-                        i = etag.indexOf(CompressedContentFormat.GZIP._etagQuote, i);
+                        stripped = stripped.substring(0, i) + stripped.substring(i + format._etag.length());
+                        i = stripped.indexOf(format._etagQuote, i);
                     }
+                }
 
-                    fields.set(new HttpField(field.getHeader(), etag));
+                if (!stripped.equals(etag))
+                {
+                    baseRequest.setAttribute("o.e.j.s.h.gzip.GzipHandler.etag", etag);
+                    fields.set(new HttpField(field.getHeader(), stripped));
                 }
             }
         }
@@ -712,7 +878,9 @@ public class GzipHandler extends HandlerWrapper implements GzipFactory
         try
         {
             // install interceptor and handle
-            out.setInterceptor(new GzipHttpOutputInterceptor(this, getVaryField(), baseRequest.getHttpChannel(), origInterceptor, isSyncFlush()));
+            HttpChannel channel = baseRequest.getHttpChannel();
+            GzipContentCache cache = _contentCache != null && _contentCache.isEnabled() ? _contentCache : null;
+            out.setInterceptor(new GzipHttpOutputInterceptor(this, getVaryField(), channel.getHttpConfiguration().getOutputBufferSize(), channel, origInterceptor, isSyncFlush(), cache));
 
             if (_handler != null)
                 _handler.handle(target, baseRequest, request, response);
@@ -955,11 +1123,103 @@ public class GzipHandler extends HandlerWrapper implements GzipFactory
         poolCapacity = capacity;
     }
 
+    /**
+     * @return the cache of compressed response contents, or null if compressed contents are not cached
+     */
+    public GzipContentCache getContentCache()
+    {
+        return _contentCache;
+    }
+
+    /**
+     * Sets the cache of compressed response contents.
+     *
+     * @param contentCache the cache of compressed response contents, or null to not cache compressed contents
+     */
+    public void setContentCache(GzipContentCache contentCache)
+    {
+        updateBean(_contentCache, contentCache);
+        _contentCache = contentCache;
+    }
+
+    /**
+     * Set the content codings that may be used to compress responses and uncompress requests,
+     * in order of preference.
+     *
+     * @param encodings the content codings, or null to use all the available content codings
+     * @see #setEncodingList(String)
+     */
+    public void setEncodings(String... encodings)
+    {
+        if (isStarted())
+            throw new IllegalStateException(getState());
+
+        _encodings = encodings == null || encodings.length == 0 ? null : encodings;
+    }
+
+    /**
+     * Get the content codings that may be used to compress responses and uncompress requests.
+     *
+     * @return the content codings in order of preference, or null if all the available content codings are used
+     */
+    public String[] getEncodings()
+    {
+        return _encodings;
+    }
+
+    /**
+     * Set the content codings that may be used, in order of preference
+     *
+     * @param csvEncodings the list of content codings, CSV format
+     * @see #setEncodings(String...)
+     */
+    public void setEncodingList(String csvEncodings)
+    {
+        setEncodings(StringUtil.csvSplit(csvEncodings));
+    }
+
+    /**
+     * Get the content codings that may be used in CSV format
+     *
+     * @return the content codings in CSV format, or null if all the available content codings are used
+     */
+    public String getEncodingList()
+    {
+        return _encodings == null ? null : String.join(",", _encodings);
+    }
+
     protected DeflaterPool newDeflaterPool(int capacity)
     {
         return new DeflaterPool(capacity, Deflater.DEFAULT_COMPRESSION, true);
     }
 
+    /**
+     * <p>Creates the available compressions: the ones discovered with the {@link ServiceLoader}
+     * followed by {@code gzip}, which is always available.</p>
+     *
+     * @return the available compressions, in order of preference
+     */
+    protected List<Compression> newCompressions()
+    {
+        List<Compression> compressions = new ArrayList<>();
+        Iterator<Compression> iter = ServiceLoader.load(Compression.class).iterator();
+        while (iter.hasNext())
+        {
+            try
+            {
+                Compression compression = iter.next();
+                if (!GZIP.equalsIgnoreCase(compression.getEncoding()))
+                    compressions.add(compression);
+            }
+            catch (Error | RuntimeException e)
+            {
+                LOG.warn(e);
+            }
+        }
+        compressions.add(new GzipCompression(_deflaterPool, null));
+        return compressions;
+    }
+
     @Override
     public String toString()
     {
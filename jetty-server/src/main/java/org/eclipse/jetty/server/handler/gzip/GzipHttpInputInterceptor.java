@@ -20,33 +20,43 @@ package org.eclipse.jetty.server.handler.gzip;
 
 import java.nio.ByteBuffer;
 
-import org.eclipse.jetty.http.GZIPContentDecoder;
+import org.eclipse.jetty.http.GzipCompression;
 import org.eclipse.jetty.io.ByteBufferPool;
 import org.eclipse.jetty.server.HttpInput;
 import org.eclipse.jetty.server.HttpInput.Content;
 import org.eclipse.jetty.util.component.Destroyable;
+import org.eclipse.jetty.util.compression.Compression;
 
 /**
- * An HttpInput Interceptor that inflates GZIP encoded request content.
+ * An HttpInput Interceptor that decodes GZIP, or any other {@link Compression}, encoded request content.
  */
 public class GzipHttpInputInterceptor implements HttpInput.Interceptor, Destroyable
 {
-    private final Decoder _decoder;
-    private ByteBuffer _chunk;
+    private final Compression.Decoder _decoder;
 
     public GzipHttpInputInterceptor(ByteBufferPool pool, int bufferSize)
     {
-        _decoder = new Decoder(pool, bufferSize);
+        this(new GzipCompression.GzipDecoder(pool, bufferSize));
+    }
+
+    /**
+     * @param decoder the decoder of the request content
+     */
+    public GzipHttpInputInterceptor(Compression.Decoder decoder)
+    {
+        _decoder = decoder;
     }
 
     @Override
     public Content readFrom(Content content)
     {
-        _decoder.decodeChunks(content.getByteBuffer());
-        final ByteBuffer chunk = _chunk;
+        final ByteBuffer chunk = _decoder.decode(content.getByteBuffer());
 
-        if (chunk == null)
+        if (!chunk.hasRemaining())
+        {
+            _decoder.release(chunk);
             return null;
+        }
 
         return new Content(chunk)
         {
@@ -63,26 +73,4 @@ public class GzipHttpInputInterceptor implements HttpInput.Interceptor, Destroya
     {
         _decoder.destroy();
     }
-
-    private class Decoder extends GZIPContentDecoder
-    {
-        private Decoder(ByteBufferPool pool, int bufferSize)
-        {
-            super(pool, bufferSize);
-        }
-
-        @Override
-        protected boolean decodedChunk(final ByteBuffer chunk)
-        {
-            _chunk = chunk;
-            return true;
-        }
-
-        @Override
-        public void decodeChunks(ByteBuffer compressed)
-        {
-            _chunk = null;
-            super.decodeChunks(compressed);
-        }
-    }
 }
@@ -21,9 +21,8 @@ package org.eclipse.jetty.server.handler.gzip;
 import java.nio.ByteBuffer;
 import java.nio.channels.WritePendingException;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.zip.CRC32;
-import java.util.zip.Deflater;
 
+import org.eclipse.jetty.http.CompressedContentFormat;
 import org.eclipse.jetty.http.HttpField;
 import org.eclipse.jetty.http.HttpFields;
 import org.eclipse.jetty.http.HttpHeader;
@@ -33,29 +32,27 @@ import org.eclipse.jetty.server.HttpChannel;
 import org.eclipse.jetty.server.HttpOutput;
 import org.eclipse.jetty.server.Response;
 import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.ByteArrayOutputStream2;
 import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.IteratingNestedCallback;
 import org.eclipse.jetty.util.StringUtil;
+import org.eclipse.jetty.util.compression.Compression;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
 
-import static org.eclipse.jetty.http.CompressedContentFormat.GZIP;
-
 public class GzipHttpOutputInterceptor implements HttpOutput.Interceptor
 {
     public static Logger LOG = Log.getLogger(GzipHttpOutputInterceptor.class);
-    private static final byte[] GZIP_HEADER = new byte[]{(byte)0x1f, (byte)0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
 
     public static final HttpField VARY_ACCEPT_ENCODING_USER_AGENT = new PreEncodedHttpField(HttpHeader.VARY, HttpHeader.ACCEPT_ENCODING + ", " + HttpHeader.USER_AGENT);
     public static final HttpField VARY_ACCEPT_ENCODING = new PreEncodedHttpField(HttpHeader.VARY, HttpHeader.ACCEPT_ENCODING.asString());
 
     private enum GZState
     {
-        MIGHT_COMPRESS, NOT_COMPRESSING, COMMITTING, COMPRESSING, FINISHED
+        MIGHT_COMPRESS, NOT_COMPRESSING, COMMITTING, COMPRESSING, CACHED, FINISHED
     }
 
     private final AtomicReference<GZState> _state = new AtomicReference<>(GZState.MIGHT_COMPRESS);
-    private final CRC32 _crc = new CRC32();
 
     private final GzipFactory _factory;
     private final HttpOutput.Interceptor _interceptor;
@@ -63,9 +60,13 @@ public class GzipHttpOutputInterceptor implements HttpOutput.Interceptor
     private final HttpField _vary;
     private final int _bufferSize;
     private final boolean _syncFlush;
+    private final GzipContentCache _cache;
 
-    private Deflater _deflater;
+    private Compression.Encoder _encoder;
     private ByteBuffer _buffer;
+    private String _cacheKey;
+    private String _cacheEncoding;
+    private ByteArrayOutputStream2 _cacheContent;
 
     public GzipHttpOutputInterceptor(GzipFactory factory, HttpChannel channel, HttpOutput.Interceptor next, boolean syncFlush)
     {
@@ -78,6 +79,20 @@ public class GzipHttpOutputInterceptor implements HttpOutput.Interceptor
     }
 
     public GzipHttpOutputInterceptor(GzipFactory factory, HttpField vary, int bufferSize, HttpChannel channel, HttpOutput.Interceptor next, boolean syncFlush)
+    {
+        this(factory, vary, bufferSize, channel, next, syncFlush, null);
+    }
+
+    /**
+     * @param factory the factory of the compressions
+     * @param vary the Vary header to add to compressed responses, or null
+     * @param bufferSize the size of the buffers of compressed content
+     * @param channel the channel of the response
+     * @param next the next interceptor
+     * @param syncFlush whether the compressed content is flushed on every write
+     * @param cache the cache of compressed contents, or null
+     */
+    public GzipHttpOutputInterceptor(GzipFactory factory, HttpField vary, int bufferSize, HttpChannel channel, HttpOutput.Interceptor next, boolean syncFlush, GzipContentCache cache)
     {
         _factory = factory;
         _channel = channel;
@@ -85,6 +100,7 @@ public class GzipHttpOutputInterceptor implements HttpOutput.Interceptor
         _vary = vary;
         _bufferSize = bufferSize;
         _syncFlush = syncFlush;
+        _cache = cache;
     }
 
     @Override
@@ -114,18 +130,18 @@ public class GzipHttpOutputInterceptor implements HttpOutput.Interceptor
                 gzip(content, complete, callback);
                 break;
 
+            case CACHED:
+                // The cached content has already been written, discard the content of the application.
+                content.position(content.limit());
+                callback.succeeded();
+                break;
+
             default:
                 callback.failed(new IllegalStateException("state=" + _state.get()));
                 break;
         }
     }
 
-    private void addTrailer()
-    {
-        BufferUtil.putIntLittleEndian(_buffer, (int)_crc.getValue());
-        BufferUtil.putIntLittleEndian(_buffer, _deflater.getTotalIn());
-    }
-
     private void gzip(ByteBuffer content, boolean complete, final Callback callback)
     {
         if (content.hasRemaining() || complete)
@@ -150,9 +166,15 @@ public class GzipHttpOutputInterceptor implements HttpOutput.Interceptor
                 String responseEtag = response.getHttpFields().get(HttpHeader.ETAG);
                 if (requestEtags != null && responseEtag != null)
                 {
-                    String responseEtagGzip = etagGzip(responseEtag);
-                    if (requestEtags.contains(responseEtagGzip))
-                        response.getHttpFields().put(HttpHeader.ETAG, responseEtagGzip);
+                    for (CompressedContentFormat format : _factory.getCompressedContentFormats())
+                    {
+                        String responseEtagCompressed = format.etag(responseEtag);
+                        if (requestEtags.contains(responseEtagCompressed))
+                        {
+                            response.getHttpFields().put(HttpHeader.ETAG, responseEtagCompressed);
+                            break;
+                        }
+                    }
                 }
             }
 
@@ -188,6 +210,9 @@ public class GzipHttpOutputInterceptor implements HttpOutput.Interceptor
         // Are we the thread that commits?
         if (_state.compareAndSet(GZState.MIGHT_COMPRESS, GZState.COMMITTING))
         {
+            // The key depends on the Vary header of the application, so it is computed before ours is added.
+            String cacheKey = _cache == null ? null : _cache.getKey(_channel.getRequest(), response);
+
             // We are varying the response due to accept encoding header.
             if (_vary != null)
             {
@@ -201,26 +226,42 @@ public class GzipHttpOutputInterceptor implements HttpOutput.Interceptor
             if (contentLength < 0 && complete)
                 contentLength = content.remaining();
 
-            _deflater = _factory.getDeflater(_channel.getRequest(), contentLength);
+            Compression compression = _factory.getCompression(_channel.getRequest(), contentLength);
 
-            if (_deflater == null)
+            if (compression == null)
             {
-                LOG.debug("{} exclude no deflater", this);
+                LOG.debug("{} exclude no compression", this);
                 _state.set(GZState.NOT_COMPRESSING);
                 _interceptor.write(content, complete, callback);
                 return;
             }
 
-            fields.put(GZIP._contentEncoding);
-            _crc.reset();
+            CompressedContentFormat format = CompressedContentFormat.forEncoding(compression.getEncoding());
+            fields.put(format._contentEncoding);
 
             // Adjust headers
             response.setContentLength(-1);
             String etag = fields.get(HttpHeader.ETAG);
             if (etag != null)
-                fields.put(HttpHeader.ETAG, etagGzip(etag));
+                fields.put(HttpHeader.ETAG, format.etag(etag));
 
-            LOG.debug("{} compressing {}", this, _deflater);
+            if (cacheKey != null)
+            {
+                ByteBuffer cached = _cache.get(cacheKey, format._encoding);
+                if (cached != null)
+                {
+                    LOG.debug("{} cached {}", this, cacheKey);
+                    _state.set(GZState.CACHED);
+                    content.position(content.limit());
+                    _interceptor.write(cached, true, callback);
+                    return;
+                }
+                _cacheKey = cacheKey;
+                _cacheEncoding = format._encoding;
+            }
+
+            _encoder = compression.newEncoder();
+            LOG.debug("{} compressing {}", this, compression);
             _state.set(GZState.COMPRESSING);
 
             gzip(content, complete, callback);
@@ -229,12 +270,6 @@ public class GzipHttpOutputInterceptor implements HttpOutput.Interceptor
             callback.failed(new WritePendingException());
     }
 
-    private String etagGzip(String etag)
-    {
-        int end = etag.length() - 1;
-        return (etag.charAt(end) == '"') ? etag.substring(0, end) + GZIP._etag + '"' : etag + GZIP._etag;
-    }
-
     public void noCompression()
     {
         while (true)
@@ -262,6 +297,7 @@ public class GzipHttpOutputInterceptor implements HttpOutput.Interceptor
             switch (_state.get())
             {
                 case COMPRESSING:
+                case CACHED:
                 case NOT_COMPRESSING:
                     return;
 
@@ -281,9 +317,30 @@ public class GzipHttpOutputInterceptor implements HttpOutput.Interceptor
         return _state.get() == GZState.MIGHT_COMPRESS;
     }
 
+    private void cache(ByteBuffer buffer, boolean complete)
+    {
+        if (_cacheContent == null)
+            _cacheContent = new ByteArrayOutputStream2(Math.max(_bufferSize, buffer.remaining()));
+
+        if (_cacheContent.size() + buffer.remaining() > _cache.getMaxCachedFileSize())
+        {
+            // Too large to be cached.
+            _cacheKey = null;
+            _cacheContent = null;
+            return;
+        }
+
+        _cacheContent.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        if (complete)
+        {
+            _cache.put(_cacheKey, _cacheEncoding, ByteBuffer.wrap(_cacheContent.getBuf(), 0, _cacheContent.size()));
+            _cacheKey = null;
+            _cacheContent = null;
+        }
+    }
+
     private class GzipBufferCB extends IteratingNestedCallback
     {
-        private ByteBuffer _copy;
         private final ByteBuffer _content;
         private final boolean _last;
 
@@ -297,39 +354,36 @@ public class GzipHttpOutputInterceptor implements HttpOutput.Interceptor
         @Override
         protected void onCompleteFailure(Throwable x)
         {
-            _factory.recycle(_deflater);
-            _deflater = null;
+            _cacheKey = null;
+            _cacheContent = null;
+            if (_encoder != null)
+            {
+                _encoder.destroy();
+                _encoder = null;
+            }
             super.onCompleteFailure(x);
         }
 
         @Override
         protected Action process() throws Exception
         {
-            // If we have no deflator
-            if (_deflater == null)
+            // If we have no encoder
+            if (_encoder == null)
             {
-                // then the trailer has been generated and written below.
-                // we have finished compressing the entire content, so
-                // cleanup and succeed.
+                // then the complete content has been encoded and written below,
+                // so cleanup and succeed.
                 if (_buffer != null)
                 {
                     _channel.getByteBufferPool().release(_buffer);
                     _buffer = null;
                 }
-                if (_copy != null)
-                {
-                    _channel.getByteBufferPool().release(_copy);
-                    _copy = null;
-                }
                 return Action.SUCCEEDED;
             }
 
             // If we have no buffer
             if (_buffer == null)
             {
-                // allocate a buffer and add the gzip header
                 _buffer = _channel.getByteBufferPool().acquire(_bufferSize, false);
-                BufferUtil.fill(_buffer, GZIP_HEADER, 0, GZIP_HEADER.length);
             }
             else
             {
@@ -337,83 +391,60 @@ public class GzipHttpOutputInterceptor implements HttpOutput.Interceptor
                 BufferUtil.clear(_buffer);
             }
 
-            // If the deflator is not finished, then compress more data
-            if (!_deflater.finished())
+            // Encode until there is encoded content to write.
+            while (!_encoder.finished())
             {
-                if (_deflater.needsInput())
+                if (_encoder.needsInput())
                 {
-                    // if there is no more content available to compress
+                    // if there is no more content available to encode
                     // then we are either finished all content or just the current write.
                     if (BufferUtil.isEmpty(_content))
                     {
                         if (_last)
-                            _deflater.finish();
+                            _encoder.finish();
                         else
                             return Action.SUCCEEDED;
                     }
                     else
                     {
-                        // If there is more content available to compress, we have to make sure
-                        // it is available in an array for the current deflator API, maybe slicing
-                        // of content.
-                        ByteBuffer slice;
-                        if (_content.hasArray())
-                            slice = _content;
-                        else
-                        {
-                            if (_copy == null)
-                                _copy = _channel.getByteBufferPool().acquire(_bufferSize, false);
-                            else
-                                BufferUtil.clear(_copy);
-                            slice = _copy;
-                            BufferUtil.append(_copy, _content);
-                        }
-
-                        // transfer the data from the slice to the the deflator
-                        byte[] array = slice.array();
-                        int off = slice.arrayOffset() + slice.position();
-                        int len = slice.remaining();
-                        _crc.update(array, off, len);
-                        _deflater.setInput(array, off, len);  // TODO use ByteBuffer API in Jetty-10
-                        slice.position(slice.position() + len);
-                        if (_last && BufferUtil.isEmpty(_content))
-                            _deflater.finish();
+                        // transfer the content to the encoder
+                        _encoder.setInput(_content);
+                        if (_last)
+                            _encoder.finish();
                     }
                 }
 
-                // deflate the content into the available space in the buffer
-                int off = _buffer.arrayOffset() + _buffer.limit();
-                int len = BufferUtil.space(_buffer);
-                int produced = _deflater.deflate(_buffer.array(), off, len, _syncFlush ? Deflater.SYNC_FLUSH : Deflater.NO_FLUSH);
-                _buffer.limit(_buffer.limit() + produced);
+                // encode the content into the available space in the buffer
+                _encoder.encode(_buffer, _syncFlush);
+                if (BufferUtil.hasContent(_buffer))
+                    break;
             }
 
-            // If we have finished deflation and there is room for the trailer.
-            if (_deflater.finished() && BufferUtil.space(_buffer) >= 8)
+            // If we have finished encoding, release the encoder to flag that
+            // we will have had completeSuccess when the write below completes.
+            if (_encoder.finished())
             {
-                // add the trailer and recycle the deflator to flag that we will have had completeSuccess when
-                // the write below completes.
-                addTrailer();
-                _factory.recycle(_deflater);
-                _deflater = null;
+                _encoder.destroy();
+                _encoder = null;
             }
 
+            if (_cacheKey != null)
+                cache(_buffer, _encoder == null);
+
             // write the compressed buffer.
-            _interceptor.write(_buffer, _deflater == null, this);
+            _interceptor.write(_buffer, _encoder == null, this);
             return Action.SCHEDULED;
         }
 
         @Override
         public String toString()
         {
-            return String.format("%s[content=%s last=%b copy=%s buffer=%s deflate=%s",
+            return String.format("%s[content=%s last=%b buffer=%s encoder=%s]",
                 super.toString(),
                 BufferUtil.toDetailString(_content),
                 _last,
-                BufferUtil.toDetailString(_copy),
                 BufferUtil.toDetailString(_buffer),
-                _deflater,
-                _deflater != null && _deflater.finished() ? "(finished)" : "");
+                _encoder);
         }
     }
 }
@@ -0,0 +1,126 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under
+// the terms of the Eclipse Public License 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0
+//
+// This Source Code may also be made available under the following
+// Secondary Licenses when the conditions for such availability set
+// forth in the Eclipse Public License, v. 2.0 are satisfied:
+// the Apache License v2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.toolchain.test.FS;
+import org.eclipse.jetty.toolchain.test.jupiter.WorkDir;
+import org.eclipse.jetty.toolchain.test.jupiter.WorkDirExtension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(WorkDirExtension.class)
+public class BatchingRequestLogWriterTest
+{
+    public WorkDir workDir;
+
+    @Test
+    public void testWriteLines() throws Exception
+    {
+        Path dir = workDir.getEmptyPathDir();
+        Path file = dir.resolve("request.log");
+        BatchingRequestLogWriter writer = new BatchingRequestLogWriter(file.toString());
+        writer.start();
+        try
+        {
+            writer.write("GET /one");
+            writer.write(new StringBuilder("GET /deux/élève"));
+        }
+        finally
+        {
+            writer.stop();
+        }
+
+        assertThat(Files.readAllLines(file, UTF_8), contains("GET /one", "GET /deux/élève"));
+        assertThat(writer.getWrittenLines(), is(2L));
+        assertThat(writer.getDroppedLines(), is(0L));
+    }
+
+    @Test
+    public void testConcurrentWriters() throws Exception
+    {
+        Path dir = workDir.getEmptyPathDir();
+        FS.ensureDirExists(dir);
+        Path file = dir.resolve("request.log");
+        int threads = 4;
+        int lines = 5000;
+        BatchingRequestLogWriter writer = new BatchingRequestLogWriter(file.toString());
+        writer.setMaxQueuedLines(threads * lines);
+        writer.setMaxBatchSize(64);
+        writer.start();
+        try
+        {
+            CountDownLatch latch = new CountDownLatch(threads);
+            for (int t = 0; t < threads; t++)
+            {
+                int thread = t;
+                new Thread(() ->
+                {
+                    StringBuilder builder = new StringBuilder();
+                    try
+                    {
+                        for (int i = 0; i < lines; i++)
+                        {
+                            builder.setLength(0);
+                            builder.append("GET /").append(thread).append('/').append(i);
+                            writer.write(builder);
+                        }
+                    }
+                    catch (Throwable x)
+                    {
+                        x.printStackTrace();
+                    }
+                    finally
+                    {
+                        latch.countDown();
+                    }
+                }).start();
+            }
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        }
+        finally
+        {
+            writer.stop();
+        }
+
+        List<String> written = Files.readAllLines(file, UTF_8);
+        Set<String> unique = new HashSet<>(written);
+        assertThat(written.size(), is(threads * lines));
+        assertThat(unique.size(), is(threads * lines));
+        assertThat(writer.getWrittenLines(), is((long)threads * lines));
+        assertThat(writer.getWrittenBatches(), greaterThan(0L));
+        assertThat(writer.getWrittenBatches(), lessThanOrEqualTo((long)threads * lines));
+        assertThat(writer.getQueuedLines(), is(0));
+    }
+}
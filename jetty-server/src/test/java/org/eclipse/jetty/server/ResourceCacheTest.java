@@ -23,6 +23,7 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
@@ -31,6 +32,7 @@ import org.eclipse.jetty.http.CompressedContentFormat;
 import org.eclipse.jetty.http.HttpContent;
 import org.eclipse.jetty.http.MimeTypes;
 import org.eclipse.jetty.http.ResourceHttpContent;
+import org.eclipse.jetty.io.ArrayByteBufferPool;
 import org.eclipse.jetty.toolchain.test.FS;
 import org.eclipse.jetty.toolchain.test.jupiter.WorkDir;
 import org.eclipse.jetty.toolchain.test.jupiter.WorkDirExtension;
@@ -42,11 +44,14 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @ExtendWith(WorkDirExtension.class)
@@ -248,102 +253,94 @@ public class ResourceCacheTest
         assertEquals(80, cache.getCachedSize());
         assertEquals(1, cache.getCachedFiles());
 
-        Thread.sleep(200);
-
-        content = cache.getContent(names[1], 4096);
-        assertEquals(80, cache.getCachedSize());
-        content.getIndirectBuffer();
+        // Access a small content frequently.
+        for (int i = 0; i < 3; ++i)
+        {
+            content = cache.getContent(names[1], 4096);
+            content.getIndirectBuffer();
+        }
         assertEquals(90, cache.getCachedSize());
         assertEquals(2, cache.getCachedFiles());
 
-        Thread.sleep(200);
-
+        // Loading another content evicts the least frequently accessed one.
         content = cache.getContent(names[2], 4096);
         content.getIndirectBuffer();
         assertEquals(30, cache.getCachedSize());
         assertEquals(2, cache.getCachedFiles());
 
-        Thread.sleep(200);
-
         content = cache.getContent(names[3], 4096);
         content.getIndirectBuffer();
         assertEquals(60, cache.getCachedSize());
         assertEquals(3, cache.getCachedFiles());
 
-        Thread.sleep(200);
-
+        // A scan of contents accessed once does not evict the frequently accessed content.
         content = cache.getContent(names[4], 4096);
         content.getIndirectBuffer();
-        assertEquals(90, cache.getCachedSize());
+        assertEquals(70, cache.getCachedSize());
         assertEquals(3, cache.getCachedFiles());
 
-        Thread.sleep(200);
-
         content = cache.getContent(names[5], 4096);
         content.getIndirectBuffer();
-        assertEquals(90, cache.getCachedSize());
-        assertEquals(2, cache.getCachedFiles());
-
-        Thread.sleep(200);
+        assertEquals(80, cache.getCachedSize());
+        assertEquals(3, cache.getCachedFiles());
 
         content = cache.getContent(names[6], 4096);
         content.getIndirectBuffer();
-        assertEquals(60, cache.getCachedSize());
-        assertEquals(1, cache.getCachedFiles());
+        assertEquals(90, cache.getCachedSize());
+        assertEquals(3, cache.getCachedFiles());
 
-        Thread.sleep(200);
+        content = cache.getContent(names[7], 4096);
+        content.getIndirectBuffer();
+        assertEquals(80, cache.getCachedSize());
+        assertEquals(2, cache.getCachedFiles());
 
-        try (OutputStream out = new FileOutputStream(files[6]))
+        content = cache.getContent(names[1], 4096);
+        assertThat(content, instanceOf(CachedContentFactory.CachedHttpContent.class));
+        assertEquals(3, ((CachedContentFactory.CachedHttpContent)content).getHits());
+        assertThat(cache.getRejections(), greaterThan(0L));
+        assertThat(cache.getEvictions(), greaterThan(0L));
+        assertThat(cache.getBytesSaved(), is(30L));
+
+        // A modified content is reloaded.
+        try (OutputStream out = new FileOutputStream(files[7]))
         {
             out.write(' ');
         }
         content = cache.getContent(names[7], 4096);
         content.getIndirectBuffer();
-        assertEquals(70, cache.getCachedSize());
-        assertEquals(1, cache.getCachedFiles());
-
-        Thread.sleep(200);
-
-        content = cache.getContent(names[6], 4096);
-        content.getIndirectBuffer();
-        assertEquals(71, cache.getCachedSize());
+        assertEquals(11, cache.getCachedSize());
         assertEquals(2, cache.getCachedFiles());
 
-        Thread.sleep(200);
-
-        content = cache.getContent(names[0], 4096);
-        content.getIndirectBuffer();
-        assertEquals(72, cache.getCachedSize());
-        assertEquals(3, cache.getCachedFiles());
-
-        Thread.sleep(200);
-
-        content = cache.getContent(names[1], 4096);
-        content.getIndirectBuffer();
-        assertEquals(82, cache.getCachedSize());
-        assertEquals(4, cache.getCachedFiles());
-
-        Thread.sleep(200);
-
-        content = cache.getContent(names[2], 4096);
-        content.getIndirectBuffer();
-        assertEquals(32, cache.getCachedSize());
-        assertEquals(4, cache.getCachedFiles());
+        cache.flushCache();
+        assertEquals(0, cache.getCachedSize());
+        assertEquals(0, cache.getCachedFiles());
 
-        Thread.sleep(200);
+        cache.flushCache();
+    }
 
-        content = cache.getContent(names[3], 4096);
-        content.getIndirectBuffer();
-        assertEquals(61, cache.getCachedSize());
-        assertEquals(4, cache.getCachedFiles());
+    @Test
+    public void testPooledBufferReleasedWhenContentReleased() throws Exception
+    {
+        Path basePath = createUtilTestResources(workDir.getEmptyPathDir());
+        ArrayByteBufferPool bufferPool = new ArrayByteBufferPool();
+        CachedContentFactory cache = new CachedContentFactory(null, new PathResource(basePath), new MimeTypes(), false, false, CompressedContentFormat.NONE);
+        cache.setByteBufferPool(bufferPool);
 
-        Thread.sleep(200);
+        HttpContent content = cache.getContent("resource.txt", 4096);
+        ByteBuffer buffer = content.getDirectBuffer();
+        assertEquals("this is test data", BufferUtil.toString(buffer));
+        assertEquals(17, cache.getCachedSize());
 
+        // The content is evicted while still used by a request.
         cache.flushCache();
         assertEquals(0, cache.getCachedSize());
-        assertEquals(0, cache.getCachedFiles());
+        assertEquals(0, bufferPool.getDirectByteBufferCount());
+        assertEquals("this is test data", BufferUtil.toString(buffer));
 
-        cache.flushCache();
+        // The buffer is returned to the pool once the request releases the content.
+        content.release();
+        assertEquals(1, bufferPool.getDirectByteBufferCount());
+        assertThrows(IllegalStateException.class, content::release);
     }
 
     @Test
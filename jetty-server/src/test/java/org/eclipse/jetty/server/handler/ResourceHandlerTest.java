@@ -255,6 +255,22 @@ public class ResourceHandlerTest
         }
     }
 
+    @Test
+    public void testBiggerRange() throws Exception
+    {
+        int line = "     1\tThis is a big file".length() + LN.length();
+        long first = 50L * 400 * line;
+        long last = first + 2 * line - 1;
+        try (Socket socket = new Socket("localhost", _connector.getLocalPort()))
+        {
+            socket.getOutputStream().write(("GET /resource/bigger.txt HTTP/1.0\r\nRange: bytes=" + first + "-" + last + "\r\n\r\n").getBytes());
+            HttpTester.Response response = HttpTester.parseResponse(socket.getInputStream());
+            assertThat(response.getStatus(), equalTo(HttpStatus.PARTIAL_CONTENT_206));
+            assertThat(response.get(CONTENT_LENGTH), equalTo(Long.toString(2 * line)));
+            assertThat(response.getContent(), equalTo("     1\tThis is a big file" + LN + "     2\tThis is a big file" + LN));
+        }
+    }
+
     @Test
     public void testWelcome() throws Exception
     {
@@ -596,6 +596,10 @@ public class StatisticsHandlerTest
         assertTrue(_statsHandler.getDispatchedTimeTotal() < _statsHandler.getRequestTimeTotal());
         assertEquals(_statsHandler.getDispatchedTimeTotal(), _statsHandler.getDispatchedTimeMax());
         assertEquals(_statsHandler.getDispatchedTimeTotal(), _statsHandler.getDispatchedTimeMean(), 0.01);
+
+        assertEquals(_statsHandler.getRequestTimeMax(), _statsHandler.getRequestTimeP999());
+        assertEquals(_statsHandler.getDispatchedTimeMax(), _statsHandler.getDispatchedTimeP999());
+        assertThat(_statsHandler.getAsyncWaitTimeP999(), greaterThanOrEqualTo(requestTime * 3 / 4));
     }
 
     @Test
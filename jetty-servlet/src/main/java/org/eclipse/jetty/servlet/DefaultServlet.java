@@ -36,6 +36,8 @@ import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.MimeTypes;
 import org.eclipse.jetty.http.PreEncodedHttpField;
 import org.eclipse.jetty.http.pathmap.MappedResource;
+import org.eclipse.jetty.io.ArrayByteBufferPool;
+import org.eclipse.jetty.io.ByteBufferPool;
 import org.eclipse.jetty.server.CachedContentFactory;
 import org.eclipse.jetty.server.ResourceContentFactory;
 import org.eclipse.jetty.server.ResourceService;
@@ -108,6 +110,10 @@ import org.eclipse.jetty.util.resource.ResourceFactory;
  *  maxCachedFileSize The maximum size of a file to cache
  *  maxCachedFiles    The maximum number of files to cache
  *
+ *  usePooledBuffers  If True, the direct buffers of the cached files are acquired from the
+ *                    server ByteBufferPool, and returned to it once evicted files are no
+ *                    longer used by any request.
+ *
  *  useFileMappedBuffer
  *                    If set to true, it will use mapped file buffer to serve static content
  *                    when using NIO connector. Setting this value to false means that
@@ -264,6 +270,11 @@ public class DefaultServlet extends HttpServlet implements ResourceFactory, Welc
                     _cache.setMaxCachedFileSize(maxCachedFileSize);
                 if (maxCachedFiles >= -1)
                     _cache.setMaxCachedFiles(maxCachedFiles);
+                if (getInitBoolean("usePooledBuffers", false))
+                {
+                    ByteBufferPool bufferPool = _contextHandler.getServer() == null ? null : _contextHandler.getServer().getBean(ByteBufferPool.class);
+                    _cache.setByteBufferPool(bufferPool == null ? new ArrayByteBufferPool() : bufferPool);
+                }
                 _servletContext.setAttribute(resourceCache == null ? "resourceCache" : resourceCache, _cache);
             }
         }
@@ -1901,6 +1901,26 @@ public class DefaultServletTest
         }
     }
 
+    @Test
+    public void testCachedPooledBuffers() throws Exception
+    {
+        createFile(docRoot.resolve("file.txt"), "Now is the time for all good men to come to the aid of the party");
+
+        ServletHolder defholder = context.addServlet(DefaultServlet.class, "/");
+        defholder.setInitParameter("maxCacheSize", "4096");
+        defholder.setInitParameter("maxCachedFileSize", "1024");
+        defholder.setInitParameter("maxCachedFiles", "100");
+        defholder.setInitParameter("usePooledBuffers", "true");
+
+        for (int i = 0; i < 3; i++)
+        {
+            String rawResponse = connector.getResponse("GET /context/file.txt HTTP/1.1\r\nHost:test\r\nConnection:close\r\n\r\n");
+            HttpTester.Response response = HttpTester.parseResponse(rawResponse);
+            assertThat(response.toString(), response.getStatus(), is(HttpStatus.OK_200));
+            assertThat(response.getContent(), is("Now is the time for all good men to come to the aid of the party"));
+        }
+    }
+
     @ParameterizedTest
     @ValueSource(strings = {
         "Hello World",
@@ -48,6 +48,7 @@ import org.eclipse.jetty.http.tools.HttpTester;
 import org.eclipse.jetty.server.HttpOutput;
 import org.eclipse.jetty.server.LocalConnector;
 import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.gzip.GzipContentCache;
 import org.eclipse.jetty.server.handler.gzip.GzipHandler;
 import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.IO;
@@ -55,6 +56,8 @@ import org.hamcrest.Matchers;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.contains;
@@ -113,6 +116,7 @@ public class GzipHandlerTest
         servlets.addServletWithMapping(MicroServlet.class, "/micro");
         servlets.addServletWithMapping(MicroChunkedServlet.class, "/microchunked");
         servlets.addServletWithMapping(TestServlet.class, "/content");
+        servlets.addServletWithMapping(RangeServlet.class, "/range");
         servlets.addServletWithMapping(ForwardServlet.class, "/forward");
         servlets.addServletWithMapping(IncludeServlet.class, "/include");
         servlets.addServletWithMapping(EchoServlet.class, "/echo/*");
@@ -184,6 +188,26 @@ public class GzipHandlerTest
         }
     }
 
+    public static class RangeServlet extends HttpServlet
+    {
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse response) throws ServletException, IOException
+        {
+            response.setHeader("ETag", __contentETag);
+            PrintWriter writer = response.getWriter();
+            if ("bytes=0-99".equals(req.getHeader("Range")))
+            {
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader("Content-Range", "bytes 0-99/" + __content.length());
+                writer.write(__content.substring(0, 100));
+            }
+            else
+            {
+                writer.write(__content);
+            }
+        }
+    }
+
     public static class AsyncServlet extends HttpServlet
     {
         @Override
@@ -348,6 +372,108 @@ public class GzipHandlerTest
         assertEquals(__content, testOut.toString("UTF8"));
     }
 
+    @Test
+    public void testCachedResponse() throws Exception
+    {
+        GzipContentCache cache = new GzipContentCache();
+        _server.getChildHandlerByClass(GzipHandler.class).setContentCache(cache);
+
+        for (String other : new String[]{"one", "two", "one", "two", "one"})
+        {
+            HttpTester.Request request = HttpTester.newRequest();
+            request.setMethod("GET");
+            request.setURI("/ctx/content?vary=Accept-Encoding,Other");
+            request.setVersion("HTTP/1.0");
+            request.setHeader("Host", "tester");
+            request.setHeader("Other", other);
+            request.setHeader("accept-encoding", "gzip");
+
+            HttpTester.Response response = HttpTester.parseResponse(_connector.getResponse(request.generate()));
+
+            assertThat(response.getStatus(), is(200));
+            assertThat(response.get("Content-Encoding"), Matchers.equalToIgnoringCase("gzip"));
+            assertThat(response.get("ETag"), is(__contentETagGzip));
+            assertThat(response.getCSV("Vary", false), Matchers.contains("Accept-Encoding", "Other"));
+
+            InputStream testIn = new GZIPInputStream(new ByteArrayInputStream(response.getContentBytes()));
+            ByteArrayOutputStream testOut = new ByteArrayOutputStream();
+            IO.copy(testIn, testOut);
+            assertEquals(__content, testOut.toString("UTF8"));
+        }
+
+        assertThat(cache.getCachedFiles(), is(2));
+        assertThat(cache.getMisses(), is(2L));
+        assertThat(cache.getHits(), is(3L));
+
+        // A request that does not accept gzip is not served from the cache.
+        HttpTester.Request request = HttpTester.newRequest();
+        request.setMethod("GET");
+        request.setURI("/ctx/content?vary=Accept-Encoding,Other");
+        request.setVersion("HTTP/1.0");
+        request.setHeader("Host", "tester");
+        request.setHeader("Other", "one");
+
+        HttpTester.Response response = HttpTester.parseResponse(_connector.getResponse(request.generate()));
+
+        assertThat(response.getStatus(), is(200));
+        assertThat(response.get("Content-Encoding"), nullValue());
+        assertEquals(__content, response.getContent());
+        assertThat(cache.getHits(), is(3L));
+    }
+
+    @Test
+    public void testPartialResponseIsNotCached() throws Exception
+    {
+        GzipContentCache cache = new GzipContentCache();
+        _server.getChildHandlerByClass(GzipHandler.class).setContentCache(cache);
+
+        HttpTester.Request request = HttpTester.newRequest();
+        request.setMethod("GET");
+        request.setURI("/ctx/range");
+        request.setVersion("HTTP/1.0");
+        request.setHeader("Host", "tester");
+        request.setHeader("Range", "bytes=0-99");
+        request.setHeader("accept-encoding", "gzip");
+
+        HttpTester.Response response = HttpTester.parseResponse(_connector.getResponse(request.generate()));
+        assertThat(response.getStatus(), is(206));
+        assertThat(cache.getCachedFiles(), is(0));
+
+        for (int i = 0; i < 2; ++i)
+        {
+            request = HttpTester.newRequest();
+            request.setMethod("GET");
+            request.setURI("/ctx/range");
+            request.setVersion("HTTP/1.0");
+            request.setHeader("Host", "tester");
+            request.setHeader("accept-encoding", "gzip");
+
+            response = HttpTester.parseResponse(_connector.getResponse(request.generate()));
+
+            assertThat(response.getStatus(), is(200));
+            assertThat(response.get("Content-Encoding"), Matchers.equalToIgnoringCase("gzip"));
+            InputStream testIn = new GZIPInputStream(new ByteArrayInputStream(response.getContentBytes()));
+            ByteArrayOutputStream testOut = new ByteArrayOutputStream();
+            IO.copy(testIn, testOut);
+            assertEquals(__content, testOut.toString("UTF8"));
+        }
+        assertThat(cache.getCachedFiles(), is(1));
+        assertThat(cache.getHits(), is(1L));
+
+        // Responses to authorized requests are not cached.
+        request = HttpTester.newRequest();
+        request.setMethod("GET");
+        request.setURI("/ctx/content");
+        request.setVersion("HTTP/1.0");
+        request.setHeader("Host", "tester");
+        request.setHeader("Authorization", "Basic dXNlcjpwYXNz");
+        request.setHeader("accept-encoding", "gzip");
+
+        response = HttpTester.parseResponse(_connector.getResponse(request.generate()));
+        assertThat(response.getStatus(), is(200));
+        assertThat(cache.getCachedFiles(), is(1));
+    }
+
     @Test
     public void testAsyncResponse() throws Exception
     {
@@ -483,6 +609,47 @@ public class GzipHandlerTest
         assertEquals(__content, testOut.toString("UTF8"));
     }
 
+    @ParameterizedTest
+    @ValueSource(strings = {"*", "br, gzip;q=0.8", "identity;q=0.5, gzip", "GZIP;q=0.1, compress;q=0"})
+    public void testAcceptEncodingGzip(String acceptEncoding) throws Exception
+    {
+        HttpTester.Request request = HttpTester.newRequest();
+        request.setMethod("GET");
+        request.setURI("/ctx/content");
+        request.setVersion("HTTP/1.0");
+        request.setHeader("Host", "tester");
+        request.setHeader("accept-encoding", acceptEncoding);
+
+        HttpTester.Response response = HttpTester.parseResponse(_connector.getResponse(request.generate()));
+
+        assertThat(response.getStatus(), is(200));
+        assertThat(response.get("Content-Encoding"), Matchers.equalToIgnoringCase("gzip"));
+
+        InputStream testIn = new GZIPInputStream(new ByteArrayInputStream(response.getContentBytes()));
+        ByteArrayOutputStream testOut = new ByteArrayOutputStream();
+        IO.copy(testIn, testOut);
+
+        assertEquals(__content, testOut.toString("UTF8"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"gzip;q=0", "*, gzip;q=0", "br, deflate", "identity, gzip;q=0.5", "*;q=0"})
+    public void testAcceptEncodingNotGzip(String acceptEncoding) throws Exception
+    {
+        HttpTester.Request request = HttpTester.newRequest();
+        request.setMethod("GET");
+        request.setURI("/ctx/content");
+        request.setVersion("HTTP/1.0");
+        request.setHeader("Host", "tester");
+        request.setHeader("accept-encoding", acceptEncoding);
+
+        HttpTester.Response response = HttpTester.parseResponse(_connector.getResponse(request.generate()));
+
+        assertThat(response.getStatus(), is(200));
+        assertThat(response.get("Content-Encoding"), nullValue());
+        assertEquals(__content, response.getContent());
+    }
+
     @Test
     public void testGzipNotMicro() throws Exception
     {
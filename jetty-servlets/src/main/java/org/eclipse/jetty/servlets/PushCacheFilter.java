@@ -20,18 +20,21 @@ package org.eclipse.jetty.servlets;
 
 import java.io.IOException;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
-import java.util.TreeSet;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
@@ -71,6 +74,14 @@ import org.eclipse.jetty.util.log.Logger;
  * cache.</p>
  * <p>If the init param useQueryInKey is set, then the query string is used as
  * as part of the key to identify a resource</p>
+ * <p>The association graph is bounded by the {@code maxPrimaryResources} init
+ * param, the least recently requested resources being evicted, and decays:
+ * the request counts of resources and associations are halved every
+ * {@code decayPeriod} milliseconds, so that associations that are no longer
+ * observed are eventually forgotten. Pushed requests, that carry a
+ * {@code Referer} to the primary resource, keep the associations alive.
+ * Associated resources are pushed only if their association count relative
+ * to the primary resource request count is at least {@code pushConfidence}.</p>
  */
 @ManagedObject("Push cache based on the HTTP 'Referer' header")
 public class PushCacheFilter implements Filter
@@ -82,8 +93,14 @@ public class PushCacheFilter implements Filter
     private final ConcurrentMap<String, PrimaryResource> _cache = new ConcurrentHashMap<>();
     private long _associatePeriod = 4000L;
     private int _maxAssociations = 16;
-    private long _renew = System.nanoTime();
+    private final LongAdder _pushes = new LongAdder();
+    private final LongAdder _evictions = new LongAdder();
+    private final long _start = System.nanoTime();
+    private long _renew = _start;
     private boolean _useQueryInKey;
+    private int _maxPrimaryResources = 4096;
+    private long _decayPeriod = TimeUnit.HOURS.toMillis(1);
+    private double _pushConfidence;
 
     @Override
     public void init(FilterConfig config) throws ServletException
@@ -109,11 +126,24 @@ public class PushCacheFilter implements Filter
 
         _useQueryInKey = Boolean.parseBoolean(config.getInitParameter("useQueryInKey"));
 
+        String maxPrimaryResources = config.getInitParameter("maxPrimaryResources");
+        if (maxPrimaryResources != null)
+            _maxPrimaryResources = Integer.parseInt(maxPrimaryResources);
+
+        String decayPeriod = config.getInitParameter("decayPeriod");
+        if (decayPeriod != null)
+            _decayPeriod = Long.parseLong(decayPeriod);
+
+        String pushConfidence = config.getInitParameter("pushConfidence");
+        if (pushConfidence != null)
+            _pushConfidence = Double.parseDouble(pushConfidence);
+
         // Expose for JMX.
         config.getServletContext().setAttribute(config.getFilterName(), this);
 
         if (LOG.isDebugEnabled())
-            LOG.debug("period={} max={} hosts={} ports={}", _associatePeriod, _maxAssociations, _hosts, _ports);
+            LOG.debug("period={} max={} hosts={} ports={} maxPrimary={} decay={} confidence={}",
+                _associatePeriod, _maxAssociations, _hosts, _ports, _maxPrimaryResources, _decayPeriod, _pushConfidence);
     }
 
     @Override
@@ -131,6 +161,8 @@ public class PushCacheFilter implements Filter
         }
 
         long now = System.nanoTime();
+        long epoch = _decayPeriod > 0 ? (now - _start) / TimeUnit.MILLISECONDS.toNanos(_decayPeriod) : 0;
+        boolean pushed = Boolean.TRUE.equals(request.getAttribute("org.eclipse.jetty.pushed"));
 
         boolean conditional = false;
         String referrer = null;
@@ -189,20 +221,15 @@ public class PushCacheFilter implements Filter
                             PrimaryResource primaryResource = _cache.get(referrerPath);
                             if (primaryResource != null)
                             {
-                                long primaryTimestamp = primaryResource._timestamp.get();
+                                long primaryTimestamp = primaryResource._lastAccess;
                                 if (primaryTimestamp != 0)
                                 {
                                     if (now - primaryTimestamp < TimeUnit.MILLISECONDS.toNanos(_associatePeriod))
                                     {
-                                        Set<String> associated = primaryResource._associated;
-                                        // Not strictly concurrent-safe, just best effort to limit associations.
-                                        if (associated.size() <= _maxAssociations)
+                                        if (primaryResource.associate(path, epoch, _maxAssociations))
                                         {
-                                            if (associated.add(path))
-                                            {
-                                                if (LOG.isDebugEnabled())
-                                                    LOG.debug("Associated {} to {}", path, referrerPath);
-                                            }
+                                            if (LOG.isDebugEnabled())
+                                                LOG.debug("Associated {} to {}", path, referrerPath);
                                         }
                                         else
                                         {
@@ -247,29 +274,40 @@ public class PushCacheFilter implements Filter
             primaryResource._timestamp.compareAndSet(0, now);
             if (LOG.isDebugEnabled())
                 LOG.debug("Cached primary resource {}", path);
+            if (primaryResource == r && _maxPrimaryResources > 0 && _cache.size() > _maxPrimaryResources)
+                evict();
         }
         else
         {
             long last = primaryResource._timestamp.get();
             if (last < _renew && primaryResource._timestamp.compareAndSet(last, now))
             {
-                primaryResource._associated.clear();
+                primaryResource.clear();
                 if (LOG.isDebugEnabled())
                     LOG.debug("Clear associated resources for {}", path);
             }
         }
+        // Pushed requests do not count as requests of the
+        // resource, otherwise pushes would reinforce themselves.
+        if (!pushed)
+            primaryResource.access(now, epoch);
 
         // Push associated resources.
         if (!conditional && !primaryResource._associated.isEmpty())
         {
             // Breadth-first push of associated resources.
+            Set<String> visited = new HashSet<>();
+            visited.add(path);
             Queue<PrimaryResource> queue = new ArrayDeque<>();
             queue.offer(primaryResource);
             while (!queue.isEmpty())
             {
                 PrimaryResource parent = queue.poll();
-                for (String childPath : parent._associated)
+                for (String childPath : parent.getPushable(epoch, _pushConfidence))
                 {
+                    if (!visited.add(childPath))
+                        continue;
+
                     PrimaryResource child = _cache.get(childPath);
                     if (child != null)
                         queue.offer(child);
@@ -277,6 +315,7 @@ public class PushCacheFilter implements Filter
                     if (LOG.isDebugEnabled())
                         LOG.debug("Pushing {} for {}", childPath, path);
                     pushBuilder.path(childPath).push();
+                    _pushes.increment();
                 }
             }
         }
@@ -290,6 +329,29 @@ public class PushCacheFilter implements Filter
         clearPushCache();
     }
 
+    private void evict()
+    {
+        synchronized (_evictions)
+        {
+            int size = _cache.size();
+            if (size <= _maxPrimaryResources)
+                return;
+            // Evict the least recently requested resources, 10% at a time
+            // so that the cost of sorting is amortized over many requests.
+            int count = size - _maxPrimaryResources + _maxPrimaryResources / 10;
+            List<Map.Entry<String, PrimaryResource>> entries = new ArrayList<>(_cache.entrySet());
+            entries.sort(Comparator.comparingLong(e -> e.getValue()._lastAccess));
+            for (int i = 0; i < count && i < entries.size(); ++i)
+            {
+                Map.Entry<String, PrimaryResource> entry = entries.get(i);
+                if (_cache.remove(entry.getKey(), entry.getValue()))
+                    _evictions.increment();
+            }
+            if (LOG.isDebugEnabled())
+                LOG.debug("Evicted {} primary resources", count);
+        }
+    }
+
     @ManagedAttribute("The push cache contents")
     public Map<String, String> getPushCache()
     {
@@ -297,12 +359,47 @@ public class PushCacheFilter implements Filter
         for (Map.Entry<String, PrimaryResource> entry : _cache.entrySet())
         {
             PrimaryResource resource = entry.getValue();
-            String value = String.format("size=%d: %s", resource._associated.size(), new TreeSet<>(resource._associated));
-            result.put(entry.getKey(), value);
+            result.put(entry.getKey(), resource.toString());
         }
         return result;
     }
 
+    @ManagedAttribute("The number of primary resources in the push cache")
+    public int getPrimaryResources()
+    {
+        return _cache.size();
+    }
+
+    @ManagedAttribute("The max number of primary resources in the push cache")
+    public int getMaxPrimaryResources()
+    {
+        return _maxPrimaryResources;
+    }
+
+    @ManagedAttribute("The period in milliseconds after which the association counts are halved")
+    public long getDecayPeriod()
+    {
+        return _decayPeriod;
+    }
+
+    @ManagedAttribute("The min ratio of association count to request count for an associated resource to be pushed")
+    public double getPushConfidence()
+    {
+        return _pushConfidence;
+    }
+
+    @ManagedAttribute("The number of pushes")
+    public long getPushes()
+    {
+        return _pushes.longValue();
+    }
+
+    @ManagedAttribute("The number of primary resources evicted from the push cache")
+    public long getEvictions()
+    {
+        return _evictions.longValue();
+    }
+
     @ManagedOperation(value = "Renews the push cache contents", impact = "ACTION")
     public void renewPushCache()
     {
@@ -317,7 +414,79 @@ public class PushCacheFilter implements Filter
 
     private static class PrimaryResource
     {
-        private final Set<String> _associated = Collections.newSetFromMap(new ConcurrentHashMap<>());
+        private final Map<String, Association> _associated = new ConcurrentHashMap<>();
         private final AtomicLong _timestamp = new AtomicLong();
+        private volatile long _lastAccess;
+        private long _epoch;
+        private int _count;
+
+        private synchronized void access(long now, long epoch)
+        {
+            _lastAccess = now;
+            decay(epoch);
+            ++_count;
+        }
+
+        private synchronized boolean associate(String path, long epoch, int maxAssociations)
+        {
+            decay(epoch);
+            Association association = _associated.get(path);
+            if (association == null)
+            {
+                if (_associated.size() > maxAssociations)
+                    return false;
+                association = new Association();
+                _associated.put(path, association);
+            }
+            // Never more associations than requests of this resource.
+            association._count = Math.min(association._count + 1, Math.max(1, _count));
+            return true;
+        }
+
+        private synchronized List<String> getPushable(long epoch, double confidence)
+        {
+            decay(epoch);
+            List<String> result = new ArrayList<>(_associated.size());
+            for (Map.Entry<String, Association> entry : _associated.entrySet())
+            {
+                if (entry.getValue()._count >= confidence * _count)
+                    result.add(entry.getKey());
+            }
+            return result;
+        }
+
+        private synchronized void clear()
+        {
+            _associated.clear();
+            _count = 0;
+        }
+
+        private void decay(long epoch)
+        {
+            long periods = epoch - _epoch;
+            if (periods <= 0)
+                return;
+            _epoch = epoch;
+            int shift = (int)Math.min(periods, 31);
+            _count >>= shift;
+            _associated.values().removeIf(association ->
+            {
+                association._count >>= shift;
+                return association._count == 0;
+            });
+        }
+
+        @Override
+        public synchronized String toString()
+        {
+            Map<String, Integer> associated = new TreeMap<>();
+            _associated.forEach((path, association) -> associated.put(path, association._count));
+            return String.format("count=%d,size=%d: %s", _count, associated.size(), associated);
+        }
+    }
+
+    private static class Association
+    {
+        private int _count;
     }
 }
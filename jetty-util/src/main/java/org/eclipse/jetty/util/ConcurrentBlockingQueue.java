@@ -0,0 +1,514 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under
+// the terms of the Eclipse Public License 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0
+//
+// This Source Code may also be made available under the following
+// Secondary Licenses when the conditions for such availability set
+// forth in the Eclipse Public License, v. 2.0 are satisfied:
+// the Apache License v2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.util;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.eclipse.jetty.util.annotation.Name;
+
+/**
+ * <p>A lock-free {@link BlockingQueue}, tuned for the job queue of a thread pool
+ * where many threads {@link #offer(Object) offer} jobs and idle worker threads
+ * {@link #take() take} or {@link #poll(long, TimeUnit) poll} them.</p>
+ * <p>Offering and polling an element never take a lock: the elements are held either
+ * in an array based multi producer, multi consumer ring buffer (see {@link #newInstance(int)})
+ * or in a linked queue when the queue is unbounded.
+ * Threads waiting for an element register themselves and park; an offer unparks
+ * at most one of the waiting threads, and only if no other waiting thread is already
+ * being woken up, so that the producer does not contend with the consumers on a lock
+ * and does not wake more threads than can make progress.</p>
+ * <p>Unlike {@link BlockingArrayQueue}, this queue does not support the removal of
+ * arbitrary elements, and its iterator is a weakly consistent snapshot of the
+ * elements that does not support {@link Iterator#remove()}.</p>
+ *
+ * @param <E> The element type
+ */
+public abstract class ConcurrentBlockingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E>
+{
+    private final Queue<Waiter> _waiters = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger _signalled = new AtomicInteger();
+
+    /**
+     * @param maxCapacity the maximum capacity of the queue, or a non positive value for an unbounded queue
+     * @param <E> The element type
+     * @return a {@link Bounded} queue with at least the given capacity, or an {@link Unbounded} queue
+     */
+    public static <E> ConcurrentBlockingQueue<E> newInstance(int maxCapacity)
+    {
+        return maxCapacity > 0 ? new Bounded<>(maxCapacity) : new Unbounded<>();
+    }
+
+    /**
+     * @param e the element to insert
+     * @return whether the element has been inserted
+     */
+    protected abstract boolean tryOffer(E e);
+
+    /**
+     * @return the head element removed from the queue, or null if the queue is empty
+     */
+    protected abstract E tryPoll();
+
+    /**
+     * @return the head element, or null if the queue is empty
+     */
+    @Override
+    public abstract E peek();
+
+    /**
+     * @return the maximum capacity of the queue, or {@link Integer#MAX_VALUE} if the queue is unbounded
+     */
+    public abstract int getMaxCapacity();
+
+    @Override
+    public boolean offer(E e)
+    {
+        Objects.requireNonNull(e);
+        if (!tryOffer(e))
+            return false;
+        signal();
+        return true;
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException
+    {
+        Objects.requireNonNull(e);
+        long nanos = unit.toNanos(timeout);
+        long deadline = System.nanoTime() + nanos;
+        while (!offer(e))
+        {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            nanos = deadline - System.nanoTime();
+            if (nanos <= 0)
+                return false;
+            // Full queues are rare for job queues, so just back off.
+            LockSupport.parkNanos(this, Math.min(nanos, TimeUnit.MILLISECONDS.toNanos(1)));
+        }
+        return true;
+    }
+
+    @Override
+    public void put(E e) throws InterruptedException
+    {
+        Objects.requireNonNull(e);
+        while (!offer(e))
+        {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+
+    @Override
+    public E poll()
+    {
+        return tryPoll();
+    }
+
+    @Override
+    public E take() throws InterruptedException
+    {
+        E e = tryPoll();
+        return e != null ? e : await(false, 0);
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        E e = tryPoll();
+        return e != null ? e : await(true, unit.toNanos(timeout));
+    }
+
+    private E await(boolean timed, long nanos) throws InterruptedException
+    {
+        long deadline = timed ? System.nanoTime() + nanos : 0;
+        Waiter waiter = null;
+        try
+        {
+            while (true)
+            {
+                if (waiter == null)
+                {
+                    waiter = new Waiter();
+                    _waiters.offer(waiter);
+                }
+
+                // Poll again after the registration, in case an offer
+                // happened before it and so did not signal this waiter.
+                E e = tryPoll();
+                if (e != null)
+                    return e;
+
+                if (Thread.interrupted())
+                    throw new InterruptedException();
+
+                if (timed)
+                {
+                    nanos = deadline - System.nanoTime();
+                    if (nanos <= 0)
+                        return null;
+                    LockSupport.parkNanos(this, nanos);
+                }
+                else
+                {
+                    LockSupport.park(this);
+                }
+
+                // If signalled, the waiter has been removed, so register a new one.
+                if (waiter.get())
+                {
+                    waiter = null;
+                    _signalled.decrementAndGet();
+                }
+            }
+        }
+        finally
+        {
+            if (waiter != null)
+            {
+                if (waiter.compareAndSet(false, true))
+                    _waiters.remove(waiter);
+                else
+                    _signalled.decrementAndGet();
+            }
+            // Offers do not signal while a signalled thread has not resumed,
+            // so wake another waiting thread for the remaining elements, if any.
+            if (!isEmpty())
+                signal();
+        }
+    }
+
+    /**
+     * <p>Unparks one waiting thread, unless a waiting thread has already been
+     * signalled and has not resumed yet: that thread will signal another waiting
+     * thread, if there are elements left, once it has polled an element.</p>
+     * <p>This avoids that a burst of offers unparks many threads that then
+     * compete for the same elements, in the same way as a lock based queue only
+     * signals the transition from empty to not empty.</p>
+     */
+    private void signal()
+    {
+        while (_signalled.get() <= 0)
+        {
+            Waiter waiter = _waiters.poll();
+            if (waiter == null)
+                return;
+            _signalled.incrementAndGet();
+            if (waiter.compareAndSet(false, true))
+            {
+                LockSupport.unpark(waiter._thread);
+                return;
+            }
+            // The waiter has been cancelled.
+            _signalled.decrementAndGet();
+        }
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return size() == 0;
+    }
+
+    @Override
+    public int remainingCapacity()
+    {
+        int maxCapacity = getMaxCapacity();
+        return maxCapacity == Integer.MAX_VALUE ? Integer.MAX_VALUE : Math.max(0, maxCapacity - size());
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c)
+    {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements)
+    {
+        Objects.requireNonNull(c);
+        if (c == this)
+            throw new IllegalArgumentException();
+        int count = 0;
+        while (count < maxElements)
+        {
+            E e = tryPoll();
+            if (e == null)
+                break;
+            c.add(e);
+            ++count;
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of threads waiting for an element
+     */
+    public int getWaitingThreads()
+    {
+        return _waiters.size();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{size=%d,capacity=%d,waiting=%d}",
+            getClass().getSimpleName(),
+            hashCode(),
+            size(),
+            getMaxCapacity(),
+            getWaitingThreads());
+    }
+
+    /**
+     * <p>A bounded {@link ConcurrentBlockingQueue} backed by a circular array of elements,
+     * each slot of which has a sequence number that tells whether the slot is ready to be
+     * written by a producer or read by a consumer, as in the multi producer, multi consumer
+     * queue by Dmitry Vyukov.</p>
+     * <p>Producers and consumers only contend on the compare-and-set of the tail and head
+     * positions, and never on the same slot unless the queue is empty or full.</p>
+     *
+     * @param <E> The element type
+     */
+    public static class Bounded<E> extends ConcurrentBlockingQueue<E>
+    {
+        private final AtomicLong _head = new AtomicLong();
+        private final AtomicLong _tail = new AtomicLong();
+        private final AtomicReferenceArray<E> _elements;
+        private final AtomicLongArray _sequences;
+        private final int _mask;
+
+        /**
+         * @param maxCapacity the maximum capacity of the queue, rounded up to a power of 2
+         */
+        public Bounded(@Name("maxCapacity") int maxCapacity)
+        {
+            if (maxCapacity <= 0 || maxCapacity > 1 << 30)
+                throw new IllegalArgumentException("Invalid capacity " + maxCapacity);
+            // Round up to a power of 2 so that the slot is selected with a mask.
+            int capacity = 1;
+            while (capacity < maxCapacity)
+            {
+                capacity <<= 1;
+            }
+            _mask = capacity - 1;
+            _elements = new AtomicReferenceArray<>(capacity);
+            _sequences = new AtomicLongArray(capacity);
+            for (int i = 0; i < capacity; ++i)
+            {
+                _sequences.set(i, i);
+            }
+        }
+
+        @Override
+        public int getMaxCapacity()
+        {
+            return _mask + 1;
+        }
+
+        @Override
+        protected boolean tryOffer(E e)
+        {
+            long tail = _tail.get();
+            while (true)
+            {
+                int index = (int)tail & _mask;
+                long delta = _sequences.get(index) - tail;
+                if (delta == 0)
+                {
+                    if (_tail.compareAndSet(tail, tail + 1))
+                    {
+                        _elements.lazySet(index, e);
+                        // Publish the element to the consumers.
+                        _sequences.set(index, tail + 1);
+                        return true;
+                    }
+                    tail = _tail.get();
+                }
+                else if (delta < 0)
+                {
+                    // The slot has not been consumed yet since the previous lap, the queue is full.
+                    return false;
+                }
+                else
+                {
+                    // Another producer has taken this slot.
+                    tail = _tail.get();
+                }
+            }
+        }
+
+        @Override
+        protected E tryPoll()
+        {
+            long head = _head.get();
+            while (true)
+            {
+                int index = (int)head & _mask;
+                long delta = _sequences.get(index) - (head + 1);
+                if (delta == 0)
+                {
+                    if (_head.compareAndSet(head, head + 1))
+                    {
+                        E e = _elements.get(index);
+                        _elements.lazySet(index, null);
+                        // Release the slot to the producers of the next lap.
+                        _sequences.set(index, head + _mask + 1);
+                        return e;
+                    }
+                    head = _head.get();
+                }
+                else if (delta < 0)
+                {
+                    // The slot has not been published yet, the queue is empty.
+                    return null;
+                }
+                else
+                {
+                    // Another consumer has taken this slot.
+                    head = _head.get();
+                }
+            }
+        }
+
+        @Override
+        public E peek()
+        {
+            while (true)
+            {
+                long head = _head.get();
+                int index = (int)head & _mask;
+                if (_sequences.get(index) != head + 1)
+                    return null;
+                E e = _elements.get(index);
+                if (e != null && _head.get() == head)
+                    return e;
+            }
+        }
+
+        @Override
+        public int size()
+        {
+            long head = _head.get();
+            long tail = _tail.get();
+            return (int)Math.max(0, Math.min(_mask + 1, tail - head));
+        }
+
+        @Override
+        public Iterator<E> iterator()
+        {
+            List<E> snapshot = new ArrayList<>();
+            long head = _head.get();
+            long tail = _tail.get();
+            for (long position = head; position < tail; ++position)
+            {
+                int index = (int)position & _mask;
+                if (_sequences.get(index) == position + 1)
+                {
+                    E e = _elements.get(index);
+                    if (e != null)
+                        snapshot.add(e);
+                }
+            }
+            return Collections.unmodifiableList(snapshot).iterator();
+        }
+    }
+
+    /**
+     * <p>An unbounded {@link ConcurrentBlockingQueue} backed by a {@link ConcurrentLinkedQueue}
+     * that keeps track of its size, so that {@link #size()} is a constant time operation.</p>
+     *
+     * @param <E> The element type
+     */
+    public static class Unbounded<E> extends ConcurrentBlockingQueue<E>
+    {
+        private final Queue<E> _elements = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger _size = new AtomicInteger();
+
+        @Override
+        public int getMaxCapacity()
+        {
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        protected boolean tryOffer(E e)
+        {
+            _elements.offer(e);
+            _size.incrementAndGet();
+            return true;
+        }
+
+        @Override
+        protected E tryPoll()
+        {
+            E e = _elements.poll();
+            if (e != null)
+                _size.decrementAndGet();
+            return e;
+        }
+
+        @Override
+        public E peek()
+        {
+            return _elements.peek();
+        }
+
+        @Override
+        public boolean isEmpty()
+        {
+            return _elements.isEmpty();
+        }
+
+        @Override
+        public int size()
+        {
+            return Math.max(0, _size.get());
+        }
+
+        @Override
+        public Iterator<E> iterator()
+        {
+            return Collections.unmodifiableList(new ArrayList<>(_elements)).iterator();
+        }
+    }
+
+    private static class Waiter extends AtomicBoolean
+    {
+        private final Thread _thread = Thread.currentThread();
+    }
+}
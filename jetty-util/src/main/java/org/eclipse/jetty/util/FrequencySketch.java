@@ -0,0 +1,155 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under
+// the terms of the Eclipse Public License 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0
+//
+// This Source Code may also be made available under the following
+// Secondary Licenses when the conditions for such availability set
+// forth in the Eclipse Public License, v. 2.0 are satisfied:
+// the Apache License v2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>A probabilistic estimate of the recent frequency of keys, in the form
+ * of a count-min sketch of 4-bit counters, as used by the TinyLFU admission
+ * policy (see {@link TinyLfuPolicy}).</p>
+ * <p>Each key is counted in 4 counters, selected by 4 hashes of the key among
+ * 16 counters packed in each {@code long} of a table sized from the expected
+ * number of keys, and the estimated frequency of the key is the minimum of
+ * these counters, so that it may be over estimated by hash collisions but
+ * is never under estimated.</p>
+ * <p>Counters saturate at 15, and are periodically halved, after a number
+ * of increments 10 times the size of the table, so that the frequencies
+ * reflect the recent history of the keys.</p>
+ * <p>Increments are lock-free and may be lost under contention, which
+ * is acceptable for an estimate.</p>
+ */
+public class FrequencySketch
+{
+    private static final long[] SEEDS = {
+        0xC3A5C85C97CB3127L, 0xB492B66FBE98F273L, 0x9AE16A3B2F90404FL, 0xCBF29CE484222325L
+    };
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private final AtomicLongArray _table;
+    private final AtomicInteger _additions = new AtomicInteger();
+    private final int _mask;
+    private final int _sampleSize;
+
+    /**
+     * @param maxKeys the expected number of keys, that is the maximum size of the cache
+     */
+    public FrequencySketch(int maxKeys)
+    {
+        int length = 16;
+        while (length < maxKeys && length < (1 << 30))
+        {
+            length <<= 1;
+        }
+        _table = new AtomicLongArray(length);
+        _mask = length - 1;
+        _sampleSize = 10 * length;
+    }
+
+    /**
+     * @param key the key
+     * @return the estimated number of occurrences of the key, between 0 and 15
+     */
+    public int frequency(Object key)
+    {
+        int hash = spread(key.hashCode());
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < SEEDS.length; ++i)
+        {
+            long value = _table.get(indexOf(hash, i));
+            frequency = Math.min(frequency, (int)((value >>> shiftOf(hash, i)) & 0xF));
+        }
+        return frequency;
+    }
+
+    /**
+     * Increments the estimated frequency of the given key.
+     *
+     * @param key the key
+     */
+    public void increment(Object key)
+    {
+        int hash = spread(key.hashCode());
+        boolean added = false;
+        for (int i = 0; i < SEEDS.length; ++i)
+        {
+            added |= increment(indexOf(hash, i), shiftOf(hash, i));
+        }
+        if (added && _additions.incrementAndGet() >= _sampleSize)
+            reset();
+    }
+
+    private boolean increment(int index, int shift)
+    {
+        while (true)
+        {
+            long value = _table.get(index);
+            if (((value >>> shift) & 0xF) == 0xF)
+                return false;
+            if (_table.compareAndSet(index, value, value + (1L << shift)))
+                return true;
+        }
+    }
+
+    /**
+     * Halves all the counters, to age the frequencies.
+     */
+    private void reset()
+    {
+        int additions = _additions.get();
+        if (additions < _sampleSize || !_additions.compareAndSet(additions, additions / 2))
+            return;
+        for (int i = 0; i < _table.length(); ++i)
+        {
+            while (true)
+            {
+                long value = _table.get(i);
+                if (_table.compareAndSet(i, value, (value >>> 1) & RESET_MASK))
+                    break;
+            }
+        }
+    }
+
+    private int indexOf(int hash, int i)
+    {
+        long h = (hash + SEEDS[i]) * SEEDS[i];
+        h += h >>> 32;
+        return (int)h & _mask;
+    }
+
+    private static int shiftOf(int hash, int i)
+    {
+        // Each hash selects one of the 16 counters of its long.
+        return ((hash >>> (i << 3)) & 0xF) << 2;
+    }
+
+    private static int spread(int hash)
+    {
+        hash = ((hash >>> 16) ^ hash) * 0x45D9F3B;
+        hash = ((hash >>> 16) ^ hash) * 0x45D9F3B;
+        return (hash >>> 16) ^ hash;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{length=%d,additions=%d}", getClass().getSimpleName(), hashCode(), _table.length(), _additions.get());
+    }
+}
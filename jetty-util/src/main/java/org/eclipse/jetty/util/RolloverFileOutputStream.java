@@ -22,6 +22,8 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.text.SimpleDateFormat;
 import java.time.ZonedDateTime;
@@ -53,7 +55,7 @@ public class RolloverFileOutputStream extends OutputStream
     static final String ROLLOVER_FILE_BACKUP_FORMAT = "HHmmssSSS";
     static final int ROLLOVER_FILE_RETAIN_DAYS = 31;
 
-    private OutputStream _out;
+    private FileOutputStream _out;
     private RollTask _rollTask;
     private SimpleDateFormat _fileBackupFormat;
     private SimpleDateFormat _fileDateFormat;
@@ -376,6 +378,37 @@ public class RolloverFileOutputStream extends OutputStream
         }
     }
 
+    /**
+     * <p>Writes the remaining bytes of a sequence of buffers with a single gathering write,
+     * that is atomic with respect to a concurrent rollover.</p>
+     *
+     * @param buffers the buffers to write
+     * @param offset the index of the first buffer to write
+     * @param length the number of buffers to write
+     * @return the number of bytes written
+     * @throws IOException if the buffers cannot be written
+     * @see FileChannel#write(ByteBuffer[], int, int)
+     */
+    public long write(ByteBuffer[] buffers, int offset, int length)
+        throws IOException
+    {
+        synchronized (this)
+        {
+            FileChannel channel = _out.getChannel();
+            long written = 0;
+            int end = offset + length;
+            while (offset < end)
+            {
+                written += channel.write(buffers, offset, end - offset);
+                while (offset < end && !buffers[offset].hasRemaining())
+                {
+                    offset++;
+                }
+            }
+            return written;
+        }
+    }
+
     @Override
     public void flush() throws IOException
     {
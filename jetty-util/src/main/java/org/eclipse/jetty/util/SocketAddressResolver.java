@@ -23,14 +23,20 @@ import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
 import org.eclipse.jetty.util.thread.Scheduler;
@@ -199,4 +205,305 @@ public interface SocketAddressResolver
             });
         }
     }
+
+    /**
+     * <p>Caches the addresses resolved by another {@link SocketAddressResolver}.</p>
+     * <p>Successful resolutions are cached for a {@link #getTimeToLive() time to live},
+     * and failed resolutions for a {@link #getNegativeTimeToLive() negative time to live}.
+     * When a cached resolution is used within the {@link #getRefreshAhead() refresh ahead}
+     * period before its expiration, it is refreshed in the background, so that
+     * frequently used hosts never wait for the DNS resolution.
+     * Concurrent resolutions of the same host are coalesced into a single
+     * resolution, and successive resolutions of the same host rotate the
+     * returned addresses in round-robin order.</p>
+     * <p>The resolver to which resolutions are delegated should be asynchronous,
+     * for example {@link Async}, so that background refreshes do not block.</p>
+     */
+    @ManagedObject("The caching address resolver")
+    public static class Caching implements SocketAddressResolver
+    {
+        private static final Logger LOG = Log.getLogger(SocketAddressResolver.class);
+
+        private final ConcurrentMap<String, Entry> cache = new ConcurrentHashMap<>();
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder refreshes = new LongAdder();
+        private final SocketAddressResolver resolver;
+        private long timeToLive = 30000;
+        private long negativeTimeToLive = 5000;
+        private long refreshAhead = 5000;
+        private int maxEntries = 1024;
+
+        /**
+         * @param resolver the resolver to which resolutions are delegated
+         */
+        public Caching(SocketAddressResolver resolver)
+        {
+            this.resolver = resolver;
+        }
+
+        public SocketAddressResolver getResolver()
+        {
+            return resolver;
+        }
+
+        @ManagedAttribute("The time, in milliseconds, successful resolutions are cached")
+        public long getTimeToLive()
+        {
+            return timeToLive;
+        }
+
+        public void setTimeToLive(long timeToLive)
+        {
+            this.timeToLive = timeToLive;
+        }
+
+        @ManagedAttribute("The time, in milliseconds, failed resolutions are cached")
+        public long getNegativeTimeToLive()
+        {
+            return negativeTimeToLive;
+        }
+
+        public void setNegativeTimeToLive(long negativeTimeToLive)
+        {
+            this.negativeTimeToLive = negativeTimeToLive;
+        }
+
+        @ManagedAttribute("The time, in milliseconds, before expiration when used resolutions are refreshed")
+        public long getRefreshAhead()
+        {
+            return refreshAhead;
+        }
+
+        public void setRefreshAhead(long refreshAhead)
+        {
+            this.refreshAhead = refreshAhead;
+        }
+
+        @ManagedAttribute("The max number of cached hosts")
+        public int getMaxEntries()
+        {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(int maxEntries)
+        {
+            this.maxEntries = maxEntries;
+        }
+
+        @ManagedAttribute(value = "The number of cached hosts", readonly = true)
+        public int getEntryCount()
+        {
+            return cache.size();
+        }
+
+        @ManagedAttribute(value = "The number of resolutions served from the cache", readonly = true)
+        public long getHits()
+        {
+            return hits.sum();
+        }
+
+        @ManagedAttribute(value = "The number of resolutions not served from the cache", readonly = true)
+        public long getMisses()
+        {
+            return misses.sum();
+        }
+
+        @ManagedAttribute(value = "The number of background refreshes", readonly = true)
+        public long getRefreshes()
+        {
+            return refreshes.sum();
+        }
+
+        @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+        public void resetStats()
+        {
+            hits.reset();
+            misses.reset();
+            refreshes.reset();
+        }
+
+        @ManagedOperation(value = "Removes all cached resolutions", impact = "ACTION")
+        public void clear()
+        {
+            cache.clear();
+        }
+
+        @Override
+        public void resolve(String host, int port, Promise<List<InetSocketAddress>> promise)
+        {
+            Entry entry = cache.get(host);
+            if (entry == null)
+            {
+                if (cache.size() >= getMaxEntries())
+                    purge();
+                entry = cache.computeIfAbsent(host, Entry::new);
+            }
+            entry.resolve(port, promise);
+        }
+
+        private void purge()
+        {
+            long now = System.nanoTime();
+            cache.values().removeIf(entry -> entry.isExpired(now));
+            // Still too many hosts, make room evicting arbitrary ones.
+            Iterator<String> iterator = cache.keySet().iterator();
+            while (cache.size() >= getMaxEntries() && iterator.hasNext())
+            {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+
+        private class Entry implements Promise<List<InetSocketAddress>>
+        {
+            private final AtomicInteger next = new AtomicInteger();
+            private final List<Waiter> waiters = new ArrayList<>();
+            private final String host;
+            private List<InetAddress> addresses;
+            private Throwable failure;
+            private long expires;
+            private boolean resolving;
+
+            private Entry(String host)
+            {
+                this.host = host;
+            }
+
+            private void resolve(int port, Promise<List<InetSocketAddress>> promise)
+            {
+                long now = System.nanoTime();
+                List<InetAddress> cached = null;
+                Throwable failed = null;
+                boolean refresh = false;
+                boolean start = false;
+                synchronized (this)
+                {
+                    if ((addresses != null || failure != null) && now - expires < 0)
+                    {
+                        cached = addresses;
+                        failed = failure;
+                        if (cached != null && !resolving && expires - now < TimeUnit.MILLISECONDS.toNanos(getRefreshAhead()))
+                            resolving = refresh = true;
+                    }
+                    else
+                    {
+                        waiters.add(new Waiter(port, promise));
+                        if (!resolving)
+                            resolving = start = true;
+                    }
+                }
+
+                if (cached != null || failed != null)
+                {
+                    hits.increment();
+                    if (refresh)
+                    {
+                        refreshes.increment();
+                        if (LOG.isDebugEnabled())
+                            LOG.debug("Refreshing {}", host);
+                        resolver.resolve(host, port, this);
+                    }
+                    if (cached != null)
+                        promise.succeeded(rotate(cached, port));
+                    else
+                        promise.failed(failed);
+                }
+                else
+                {
+                    misses.increment();
+                    if (start)
+                        resolver.resolve(host, port, this);
+                }
+            }
+
+            private List<InetSocketAddress> rotate(List<InetAddress> addresses, int port)
+            {
+                int size = addresses.size();
+                int start = Math.floorMod(next.getAndIncrement(), size);
+                List<InetSocketAddress> result = new ArrayList<>(size);
+                for (int i = 0; i < size; ++i)
+                {
+                    result.add(new InetSocketAddress(addresses.get((start + i) % size), port));
+                }
+                return result;
+            }
+
+            private boolean isExpired(long now)
+            {
+                synchronized (this)
+                {
+                    return !resolving && (addresses == null && failure == null || now - expires >= 0);
+                }
+            }
+
+            @Override
+            public void succeeded(List<InetSocketAddress> result)
+            {
+                List<InetAddress> resolved = new ArrayList<>(result.size());
+                for (InetSocketAddress address : result)
+                {
+                    resolved.add(address.getAddress());
+                }
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Resolved {} to {}", host, resolved);
+                List<Waiter> ready;
+                synchronized (this)
+                {
+                    addresses = resolved;
+                    failure = null;
+                    expires = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(getTimeToLive());
+                    resolving = false;
+                    ready = new ArrayList<>(waiters);
+                    waiters.clear();
+                }
+                for (Waiter waiter : ready)
+                {
+                    waiter.promise.succeeded(rotate(resolved, waiter.port));
+                }
+            }
+
+            @Override
+            public void failed(Throwable x)
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Could not resolve " + host, x);
+                List<Waiter> ready;
+                synchronized (this)
+                {
+                    resolving = false;
+                    ready = new ArrayList<>(waiters);
+                    waiters.clear();
+                    // A failed refresh keeps the addresses until they expire.
+                    if (ready.isEmpty() && addresses != null)
+                        return;
+                    addresses = null;
+                    failure = x;
+                    expires = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(getNegativeTimeToLive());
+                }
+                for (Waiter waiter : ready)
+                {
+                    waiter.promise.failed(x);
+                }
+            }
+
+            @Override
+            public String toString()
+            {
+                return String.format("%s@%x[%s]", getClass().getSimpleName(), hashCode(), host);
+            }
+        }
+
+        private static class Waiter
+        {
+            private final int port;
+            private final Promise<List<InetSocketAddress>> promise;
+
+            private Waiter(int port, Promise<List<InetSocketAddress>> promise)
+            {
+                this.port = port;
+                this.promise = promise;
+            }
+        }
+    }
 }
@@ -0,0 +1,439 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under
+// the terms of the Eclipse Public License 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0
+//
+// This Source Code may also be made available under the following
+// Secondary Licenses when the conditions for such availability set
+// forth in the Eclipse Public License, v. 2.0 are satisfied:
+// the Apache License v2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.util;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>An eviction policy for bounded caches that implements Window TinyLFU:
+ * recently added entries are held in a small LRU window, and then compete to
+ * enter a main segmented LRU (SLRU) area, where an entry is admitted only if its
+ * recent frequency, as estimated by a {@link FrequencySketch}, is higher than
+ * the frequency of the entry it would replace.</p>
+ * <p>The window absorbs bursts of new entries, while the frequency based
+ * admission protects the entries of the working set from being evicted by scans
+ * of entries that are accessed only once, which is what thrashes a plain LRU
+ * policy when the working set is larger than the cache.
+ * The main area is split in a probation segment and a protected segment of
+ * 80% of the main area, into which the entries are promoted when accessed
+ * again while in probation.</p>
+ * <p>This class only orders the entries: the cache calls {@link #add(Object, Object)}
+ * when an entry is added, {@link #access(Node)} when an entry is hit,
+ * {@link #remove(Node)} when an entry is removed, and {@link #evict()} to
+ * select the entry to remove while the cache is above its bounds, which may
+ * be expressed in number of entries, in bytes or both.
+ * Accesses do not block: the order of the entries is not updated if another
+ * thread holds the lock of the policy, while the frequency is always recorded.</p>
+ *
+ * @param <V> the type of the cache entries
+ */
+public class TinyLfuPolicy<V>
+{
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+    private static final int REMOVED = 3;
+
+    private final ReentrantLock _lock = new ReentrantLock();
+    private final Segment<V> _window = new Segment<>();
+    private final Segment<V> _probation = new Segment<>();
+    private final Segment<V> _protected = new Segment<>();
+    private final LongAdder _rejections = new LongAdder();
+    private volatile FrequencySketch _sketch;
+    private int _maxEntries;
+    private int _maxWindow;
+    private int _maxProtected;
+
+    /**
+     * @param maxEntries the maximum number of entries of the cache, used to size the
+     * window, the segments and the frequency sketch
+     */
+    public TinyLfuPolicy(int maxEntries)
+    {
+        setMaxEntries(maxEntries);
+    }
+
+    /**
+     * <p>Resizes the window and the segments for a new maximum number of entries.</p>
+     * <p>The frequencies recorded so far are discarded if the maximum number of entries changes.</p>
+     *
+     * @param maxEntries the maximum number of entries of the cache
+     */
+    public void setMaxEntries(int maxEntries)
+    {
+        maxEntries = Math.max(1, maxEntries);
+        _lock.lock();
+        try
+        {
+            _maxWindow = Math.max(1, maxEntries / 100);
+            _maxProtected = Math.max(0, maxEntries - _maxWindow) * 4 / 5;
+            if (_sketch == null || maxEntries != _maxEntries)
+                _sketch = new FrequencySketch(maxEntries);
+            _maxEntries = maxEntries;
+            balance();
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of entries ordered by this policy
+     */
+    public int size()
+    {
+        _lock.lock();
+        try
+        {
+            return _window._size + _probation._size + _protected._size;
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of entries that were evicted instead of being admitted in the main area
+     */
+    public long getRejections()
+    {
+        return _rejections.sum();
+    }
+
+    /**
+     * @param key the key of the entry
+     * @return the estimated recent frequency of the key, between 0 and 15
+     */
+    public int frequency(Object key)
+    {
+        return _sketch.frequency(key);
+    }
+
+    /**
+     * Records an access to a key, for example on a cache miss, without ordering an entry.
+     *
+     * @param key the key accessed
+     */
+    public void record(Object key)
+    {
+        _sketch.increment(key);
+    }
+
+    /**
+     * Adds an entry to the window of recently added entries.
+     *
+     * @param key the key of the entry
+     * @param value the entry
+     * @return the node of the entry, to be passed to {@link #access(Node)} and {@link #remove(Node)}
+     */
+    public Node<V> add(Object key, V value)
+    {
+        Node<V> node = new Node<>(key, value);
+        _sketch.increment(key);
+        _lock.lock();
+        try
+        {
+            _window.addLast(node, WINDOW);
+            balance();
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+        return node;
+    }
+
+    /**
+     * Records an access to an entry.
+     *
+     * @param node the node of the entry accessed
+     */
+    public void access(Node<V> node)
+    {
+        _sketch.increment(node._key);
+        if (!_lock.tryLock())
+            return;
+        try
+        {
+            switch (node._segment)
+            {
+                case WINDOW:
+                    _window.moveToLast(node);
+                    break;
+                case PROBATION:
+                    _probation.remove(node);
+                    _protected.addLast(node, PROTECTED);
+                    balance();
+                    break;
+                case PROTECTED:
+                    _protected.moveToLast(node);
+                    break;
+                default:
+                    break;
+            }
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * Removes an entry from this policy; removing an entry more than once is a no-op.
+     *
+     * @param node the node of the entry removed
+     */
+    public void remove(Node<V> node)
+    {
+        _lock.lock();
+        try
+        {
+            segmentOf(node).remove(node);
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * <p>Selects and removes from this policy the entry to evict.</p>
+     * <p>The candidate, that is the entry most recently moved from the window to
+     * the probation segment (or the least recently used entry of the window if
+     * there is no other entry in probation) is compared with the victim, that is
+     * the least recently used entry of the main area, and the one with the lower
+     * frequency is evicted, the victim being kept in case of a tie.</p>
+     *
+     * @return the entry to evict, or null if there are no entries
+     */
+    public V evict()
+    {
+        _lock.lock();
+        try
+        {
+            Node<V> victim = _probation._first != null ? _probation._first : _protected._first;
+            Node<V> candidate = _probation._size > 1 ? _probation._last : _window._first;
+
+            Node<V> evicted;
+            if (victim == null)
+            {
+                evicted = candidate;
+            }
+            else if (candidate == null)
+            {
+                evicted = victim;
+            }
+            else
+            {
+                FrequencySketch sketch = _sketch;
+                if (sketch.frequency(candidate._key) > sketch.frequency(victim._key))
+                {
+                    evicted = victim;
+                }
+                else
+                {
+                    evicted = candidate;
+                    _rejections.increment();
+                }
+            }
+
+            if (evicted == null)
+                return null;
+            segmentOf(evicted).remove(evicted);
+            return evicted._value;
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * Removes all the entries from this policy.
+     */
+    public void clear()
+    {
+        _lock.lock();
+        try
+        {
+            _window.clear();
+            _probation.clear();
+            _protected.clear();
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    private void balance()
+    {
+        while (_window._size > _maxWindow)
+        {
+            Node<V> node = _window._first;
+            _window.remove(node);
+            _probation.addLast(node, PROBATION);
+        }
+        while (_protected._size > _maxProtected)
+        {
+            Node<V> node = _protected._first;
+            _protected.remove(node);
+            _probation.addLast(node, PROBATION);
+        }
+    }
+
+    private Segment<V> segmentOf(Node<V> node)
+    {
+        switch (node._segment)
+        {
+            case WINDOW:
+                return _window;
+            case PROBATION:
+                return _probation;
+            case PROTECTED:
+                return _protected;
+            default:
+                return Segment.none();
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        _lock.lock();
+        try
+        {
+            return String.format("%s@%x{window=%d/%d,probation=%d,protected=%d/%d,rejections=%d}",
+                getClass().getSimpleName(),
+                hashCode(),
+                _window._size,
+                _maxWindow,
+                _probation._size,
+                _protected._size,
+                _maxProtected,
+                getRejections());
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * The handle of an entry ordered by a {@link TinyLfuPolicy}.
+     *
+     * @param <V> the type of the cache entries
+     */
+    public static class Node<V>
+    {
+        private final Object _key;
+        private final V _value;
+        private Node<V> _previous;
+        private Node<V> _next;
+        private int _segment = REMOVED;
+
+        private Node(Object key, V value)
+        {
+            _key = key;
+            _value = value;
+        }
+
+        public V getValue()
+        {
+            return _value;
+        }
+    }
+
+    /**
+     * A doubly linked list of nodes, from the least to the most recently used.
+     */
+    private static class Segment<V>
+    {
+        private static final Segment<?> NONE = new Segment<>();
+
+        private Node<V> _first;
+        private Node<V> _last;
+        private int _size;
+
+        @SuppressWarnings("unchecked")
+        private static <V> Segment<V> none()
+        {
+            return (Segment<V>)NONE;
+        }
+
+        private void addLast(Node<V> node, int segment)
+        {
+            node._segment = segment;
+            node._previous = _last;
+            node._next = null;
+            if (_last == null)
+                _first = node;
+            else
+                _last._next = node;
+            _last = node;
+            ++_size;
+        }
+
+        private void remove(Node<V> node)
+        {
+            if (this == NONE)
+                return;
+            if (node._previous == null)
+                _first = node._next;
+            else
+                node._previous._next = node._next;
+            if (node._next == null)
+                _last = node._previous;
+            else
+                node._next._previous = node._previous;
+            node._previous = null;
+            node._next = null;
+            node._segment = REMOVED;
+            --_size;
+        }
+
+        private void moveToLast(Node<V> node)
+        {
+            if (node == _last)
+                return;
+            int segment = node._segment;
+            remove(node);
+            addLast(node, segment);
+        }
+
+        private void clear()
+        {
+            Node<V> node = _first;
+            while (node != null)
+            {
+                Node<V> next = node._next;
+                node._previous = null;
+                node._next = null;
+                node._segment = REMOVED;
+                node = next;
+            }
+            _first = null;
+            _last = null;
+            _size = 0;
+        }
+    }
+}
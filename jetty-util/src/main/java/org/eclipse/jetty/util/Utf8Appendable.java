@@ -56,6 +56,7 @@ public abstract class Utf8Appendable
     public static final byte[] REPLACEMENT_UTF8 = new byte[]{(byte)0xEF, (byte)0xBF, (byte)0xBD};
     private static final int UTF8_ACCEPT = 0;
     private static final int UTF8_REJECT = 12;
+    private static final long NON_ASCII_MASK = 0x8080808080808080L;
 
     protected final Appendable _appendable;
     protected int _state = UTF8_ACCEPT;
@@ -167,6 +168,15 @@ public abstract class Utf8Appendable
         {
             while (buf.remaining() > 0)
             {
+                if (_state == UTF8_ACCEPT)
+                {
+                    int ascii = asciiLength(buf, buf.position(), buf.limit());
+                    if (ascii > 0)
+                    {
+                        appendAscii(buf, ascii);
+                        continue;
+                    }
+                }
                 appendByte(buf.get());
             }
         }
@@ -183,18 +193,7 @@ public abstract class Utf8Appendable
 
     public void append(byte[] b, int offset, int length)
     {
-        try
-        {
-            int end = offset + length;
-            for (int i = offset; i < end; i++)
-            {
-                appendByte(b[i]);
-            }
-        }
-        catch (IOException e)
-        {
-            throw new RuntimeException(e);
-        }
+        append(ByteBuffer.wrap(b, offset, length));
     }
 
     public boolean append(byte[] b, int offset, int length, int maxChars)
@@ -216,6 +215,47 @@ public abstract class Utf8Appendable
         }
     }
 
+    /**
+     * <p>Appends the given number of ASCII bytes from the buffer, advancing its position.</p>
+     * <p>ASCII bytes map one to one to characters, so subclasses may override this method
+     * to append them in bulk, or to skip them if they only validate the UTF-8 encoding.</p>
+     *
+     * @param buf the buffer to append from
+     * @param length the number of ASCII bytes at the buffer position
+     * @throws IOException if the bytes cannot be appended
+     */
+    protected void appendAscii(ByteBuffer buf, int length) throws IOException
+    {
+        for (int i = 0; i < length; i++)
+        {
+            _appendable.append((char)buf.get());
+        }
+    }
+
+    /**
+     * <p>Counts the ASCII bytes of the buffer between the given indexes.</p>
+     * <p>The bytes are tested 8 at a time while the buffer is long enough, since the
+     * high bit of any of them set in a {@code long} means that there is a non ASCII byte.</p>
+     *
+     * @param buf the buffer to scan, whose position is not modified
+     * @param index the index of the first byte to test
+     * @param end the index after the last byte to test
+     * @return the number of consecutive ASCII bytes starting at {@code index}
+     */
+    public static int asciiLength(ByteBuffer buf, int index, int end)
+    {
+        int i = index;
+        while (end - i >= 8 && (buf.getLong(i) & NON_ASCII_MASK) == 0)
+        {
+            i += 8;
+        }
+        while (i < end && buf.get(i) >= 0)
+        {
+            i++;
+        }
+        return i - index;
+    }
+
     protected void appendByte(byte b) throws IOException
     {
 
@@ -18,6 +18,8 @@
 
 package org.eclipse.jetty.util;
 
+import java.nio.ByteBuffer;
+
 /**
  * UTF-8 StringBuilder.
  *
@@ -59,6 +61,16 @@ public class Utf8StringBuilder extends Utf8Appendable
         _buffer.setLength(0);
     }
 
+    @Override
+    protected void appendAscii(ByteBuffer buf, int length)
+    {
+        _buffer.ensureCapacity(_buffer.length() + length);
+        for (int i = 0; i < length; i++)
+        {
+            _buffer.append((char)buf.get());
+        }
+    }
+
     @Override
     public String getPartialString()
     {
@@ -0,0 +1,121 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under
+// the terms of the Eclipse Public License 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0
+//
+// This Source Code may also be made available under the following
+// Secondary Licenses when the conditions for such availability set
+// forth in the Eclipse Public License, v. 2.0 are satisfied:
+// the Apache License v2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.util.compression;
+
+import java.nio.ByteBuffer;
+
+import org.eclipse.jetty.util.component.Destroyable;
+
+/**
+ * <p>A content coding, such as {@code gzip}, that can encode and decode content.</p>
+ * <p>Implementations other than the built-in ones may be provided by optional modules,
+ * and are discovered with the {@link java.util.ServiceLoader}.</p>
+ */
+public interface Compression
+{
+    /**
+     * @return the name of the content coding, as used in the {@code Content-Encoding}
+     * and {@code Accept-Encoding} headers, for example {@code gzip}
+     */
+    String getEncoding();
+
+    /**
+     * @return a new encoder, that must be destroyed once the content is encoded
+     */
+    Encoder newEncoder();
+
+    /**
+     * @param bufferSize the size of the buffers of decoded content
+     * @return a new decoder, that must be destroyed once the content is decoded
+     */
+    Decoder newDecoder(int bufferSize);
+
+    /**
+     * <p>Encodes content, in the style of {@link java.util.zip.Deflater}.</p>
+     * <p>Content is passed with {@link #setInput(ByteBuffer)} and is consumed by calls to
+     * {@link #encode(ByteBuffer, boolean)}, until {@link #needsInput()} returns true.
+     * Once all the content has been passed, {@link #finish()} is called and
+     * {@link #encode(ByteBuffer, boolean)} is called until {@link #finished()} returns true.</p>
+     */
+    interface Encoder extends Destroyable
+    {
+        /**
+         * <p>Sets the content to encode.</p>
+         * <p>The position of the buffer is advanced as the content is encoded,
+         * and the buffer must not be modified until {@link #needsInput()} returns true.</p>
+         *
+         * @param content the content to encode
+         */
+        void setInput(ByteBuffer content);
+
+        /**
+         * @return whether all the content passed to {@link #setInput(ByteBuffer)} has been consumed
+         */
+        boolean needsInput();
+
+        /**
+         * Indicates that there is no more content to encode.
+         */
+        void finish();
+
+        /**
+         * @return whether {@link #finish()} has been called and all the encoded content has been produced
+         */
+        boolean finished();
+
+        /**
+         * <p>Encodes content in the space of a buffer in flush mode, that is between its limit and
+         * its capacity, then moves the limit of the buffer after the encoded bytes.</p>
+         *
+         * @param buffer the buffer to append the encoded content to
+         * @param flush whether all the content consumed so far must be encoded,
+         * possibly at the expense of the compression ratio
+         * @return the number of encoded bytes appended to the buffer
+         */
+        int encode(ByteBuffer buffer, boolean flush);
+    }
+
+    /**
+     * Decodes content, in the style of {@link java.util.zip.Inflater}.
+     */
+    interface Decoder extends Destroyable
+    {
+        /**
+         * <p>Decodes content from a buffer.</p>
+         * <p>This method may consume all the content of the buffer but return only a part
+         * of the decoded content, so that the decoded content is consumed before more content
+         * is decoded. In this case, this method must be called again with the same buffer,
+         * even if it is empty, to decode more content, until it returns an empty buffer.</p>
+         *
+         * @param compressed the buffer of encoded content
+         * @return a buffer of decoded content, possibly empty, to be released with {@link #release(ByteBuffer)}
+         */
+        ByteBuffer decode(ByteBuffer compressed);
+
+        /**
+         * @return whether the decoder is at the end of a complete encoded content
+         */
+        boolean isFinished();
+
+        /**
+         * @param buffer a buffer returned by {@link #decode(ByteBuffer)}
+         */
+        void release(ByteBuffer buffer);
+    }
+}
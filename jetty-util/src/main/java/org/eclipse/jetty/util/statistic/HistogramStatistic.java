@@ -0,0 +1,301 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under
+// the terms of the Eclipse Public License 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0
+//
+// This Source Code may also be made available under the following
+// Secondary Licenses when the conditions for such availability set
+// forth in the Eclipse Public License, v. 2.0 are satisfied:
+// the Apache License v2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.util.statistic;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * <p>Statistics on the distribution of a sampled value.</p>
+ * <p>Provides count, max and percentiles (for example the median, the 99th
+ * and the 99.9th percentiles) of a sequence of non negative samples, either
+ * since the last {@link #reset()} or over a rolling time window.</p>
+ * <p>Samples are counted in a fixed number of log-linear buckets, in the style
+ * of the <a href="http://hdrhistogram.org/">HdrHistogram</a>: values below
+ * {@code 2^precision} have a bucket each, while larger values share a bucket
+ * whose width is at most {@code 2^(1-precision)} times the value, so that
+ * percentiles are reported with a relative error of at most {@code 2^-precision}.
+ * Recording a sample is lock-free and does not allocate, and the memory used
+ * is fixed at construction.</p>
+ * <p>A rolling window is divided in {@code slices}: samples are recorded in
+ * the slice of the current time, and the slice is cleared when it is reused
+ * for a later time, so that the statistics cover at least
+ * {@code (slices - 1) / slices} of the window and at most the window.
+ * Samples recorded concurrently with the clearing of a slice may be lost.</p>
+ */
+public class HistogramStatistic
+{
+    public static final int DEFAULT_PRECISION = 6;
+
+    private final int _precision;
+    private final int _buckets;
+    private final long _sliceNanos;
+    private final Slice[] _slices;
+
+    /**
+     * Creates a histogram that records all samples since the last {@link #reset()}.
+     */
+    public HistogramStatistic()
+    {
+        this(DEFAULT_PRECISION, 0, TimeUnit.MILLISECONDS, 1);
+    }
+
+    /**
+     * Creates a histogram that records the samples of a rolling time window.
+     *
+     * @param window the duration of the window
+     * @param units the units of the window duration
+     */
+    public HistogramStatistic(long window, TimeUnit units)
+    {
+        this(DEFAULT_PRECISION, window, units, 4);
+    }
+
+    /**
+     * @param precision the number of significant bits of the recorded values, between 2 and 16
+     * @param window the duration of the rolling window, or 0 to record all samples since the last {@link #reset()}
+     * @param units the units of the window duration
+     * @param slices the number of slices the rolling window is divided in
+     */
+    public HistogramStatistic(int precision, long window, TimeUnit units, int slices)
+    {
+        if (precision < 2 || precision > 16)
+            throw new IllegalArgumentException("Invalid precision " + precision);
+        _precision = precision;
+        // Values with the highest bit at position p or above share buckets
+        // 2^(p-1) by 2^(p-1), up to the highest bit at position 62.
+        _buckets = (65 - precision) << (precision - 1);
+        if (window > 0)
+        {
+            if (slices <= 0)
+                throw new IllegalArgumentException("Invalid slices " + slices);
+            _sliceNanos = Math.max(1, units.toNanos(window) / slices);
+        }
+        else
+        {
+            slices = 1;
+            _sliceNanos = 0;
+        }
+        _slices = new Slice[slices];
+        for (int i = 0; i < slices; ++i)
+        {
+            _slices[i] = new Slice(_buckets);
+        }
+    }
+
+    /**
+     * @return the duration in milliseconds of the rolling window, or 0 if there is no window
+     */
+    public long getWindow()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(_sliceNanos * _slices.length);
+    }
+
+    /**
+     * Resets the statistics.
+     */
+    public void reset()
+    {
+        for (Slice slice : _slices)
+        {
+            slice.clear();
+        }
+    }
+
+    /**
+     * Records a sample value.
+     *
+     * @param sample the value to record; negative values are recorded as 0
+     */
+    public void record(long sample)
+    {
+        if (sample < 0)
+            sample = 0;
+        long tick = tick();
+        Slice slice = _slices[(int)Math.floorMod(tick, (long)_slices.length)];
+        long sliceTick = slice._tick.get();
+        if (sliceTick < tick && slice._tick.compareAndSet(sliceTick, tick))
+            slice.clear();
+        slice._counts.incrementAndGet(indexFor(sample));
+        slice._max.accumulate(sample);
+    }
+
+    /**
+     * @return the number of samples recorded
+     */
+    public long getCount()
+    {
+        long count = 0;
+        long tick = tick();
+        for (Slice slice : _slices)
+        {
+            if (isCurrent(slice, tick))
+            {
+                for (int i = 0; i < _buckets; ++i)
+                {
+                    count += slice._counts.get(i);
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the max value of the recorded samples
+     */
+    public long getMax()
+    {
+        long max = 0;
+        long tick = tick();
+        for (Slice slice : _slices)
+        {
+            if (isCurrent(slice, tick))
+                max = Math.max(max, slice._max.get());
+        }
+        return max;
+    }
+
+    /**
+     * @param percentile the percentile, between 0 and 100, for example 99.9
+     * @return an estimate of the value below which the given percentage of the recorded samples fall,
+     * or zero if there are no samples
+     */
+    public long getValueAtPercentile(double percentile)
+    {
+        return getValuesAtPercentiles(percentile)[0];
+    }
+
+    /**
+     * @param percentiles the percentiles, between 0 and 100, in ascending order
+     * @return the estimates of the values at the given percentiles, see {@link #getValueAtPercentile(double)}
+     */
+    public long[] getValuesAtPercentiles(double... percentiles)
+    {
+        long[] counts = new long[_buckets];
+        long total = 0;
+        long max = 0;
+        long tick = tick();
+        for (Slice slice : _slices)
+        {
+            if (isCurrent(slice, tick))
+            {
+                for (int i = 0; i < _buckets; ++i)
+                {
+                    long count = slice._counts.get(i);
+                    counts[i] += count;
+                    total += count;
+                }
+                max = Math.max(max, slice._max.get());
+            }
+        }
+
+        long[] values = new long[percentiles.length];
+        if (total == 0)
+            return values;
+
+        int index = 0;
+        long cumulative = 0;
+        for (int p = 0; p < percentiles.length; ++p)
+        {
+            double percentile = Math.min(100.0D, Math.max(0.0D, percentiles[p]));
+            long rank = Math.max(1, (long)Math.ceil(percentile * total / 100.0D));
+            while (index < _buckets && cumulative + counts[index] < rank)
+            {
+                cumulative += counts[index++];
+            }
+            values[p] = index < _buckets && rank < total ? Math.min(max, valueFor(index)) : max;
+        }
+        return values;
+    }
+
+    private long tick()
+    {
+        return _sliceNanos == 0 ? 0 : Math.floorDiv(nanoTime(), _sliceNanos);
+    }
+
+    private boolean isCurrent(Slice slice, long tick)
+    {
+        return slice._tick.get() > tick - _slices.length;
+    }
+
+    /**
+     * @return the current time in nanoseconds, as used to select the slice of the rolling window
+     */
+    protected long nanoTime()
+    {
+        return System.nanoTime();
+    }
+
+    private int indexFor(long value)
+    {
+        int shift = Math.max(0, 64 - Long.numberOfLeadingZeros(value) - _precision);
+        return (shift << (_precision - 1)) + (int)(value >>> shift);
+    }
+
+    /**
+     * @param index the index of a bucket
+     * @return the value in the middle of the bucket
+     */
+    private long valueFor(int index)
+    {
+        int half = 1 << (_precision - 1);
+        int shift = index / half - 1;
+        if (shift <= 0)
+            return index;
+        long mantissa = index - ((long)shift << (_precision - 1));
+        return (mantissa << shift) + (1L << (shift - 1));
+    }
+
+    @Override
+    public String toString()
+    {
+        long[] values = getValuesAtPercentiles(50.0D, 99.0D, 99.9D);
+        return String.format("%s@%x{count=%d,p50=%d,p99=%d,p999=%d,max=%d}",
+            getClass().getSimpleName(),
+            hashCode(),
+            getCount(),
+            values[0],
+            values[1],
+            values[2],
+            getMax());
+    }
+
+    private static class Slice
+    {
+        private final AtomicLong _tick = new AtomicLong(Long.MIN_VALUE);
+        private final AtomicLongArray _counts;
+        private final LongAccumulator _max = new LongAccumulator(Math::max, 0L);
+
+        private Slice(int buckets)
+        {
+            _counts = new AtomicLongArray(buckets);
+        }
+
+        private void clear()
+        {
+            for (int i = 0; i < _counts.length(); ++i)
+            {
+                _counts.set(i, 0);
+            }
+            _max.reset();
+        }
+    }
+}
@@ -32,6 +32,7 @@ import java.util.concurrent.atomic.AtomicLong;
 
 import org.eclipse.jetty.util.AtomicBiInteger;
 import org.eclipse.jetty.util.BlockingArrayQueue;
+import org.eclipse.jetty.util.ConcurrentBlockingQueue;
 import org.eclipse.jetty.util.StringUtil;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
@@ -42,10 +43,11 @@ import org.eclipse.jetty.util.component.Dumpable;
 import org.eclipse.jetty.util.component.DumpableCollection;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
+import org.eclipse.jetty.util.statistic.HistogramStatistic;
 import org.eclipse.jetty.util.thread.ThreadPool.SizedThreadPool;
 
 @ManagedObject("A thread pool")
-public class QueuedThreadPool extends ContainerLifeCycle implements ThreadFactory, SizedThreadPool, Dumpable, TryExecutor
+public class QueuedThreadPool extends ContainerLifeCycle implements ThreadFactory, SizedThreadPool, Dumpable, TryExecutor, VirtualThreads.Configurable
 {
     private static final Logger LOG = Log.getLogger(QueuedThreadPool.class);
     private static Runnable NOOP = () ->
@@ -78,6 +80,8 @@ public class QueuedThreadPool extends ContainerLifeCycle implements ThreadFactor
     private boolean _daemon = false;
     private boolean _detailedDump = false;
     private int _lowThreadsThreshold = 1;
+    private volatile HistogramStatistic _queueWaitTimes;
+    private boolean _useVirtualThreads;
     private ThreadPoolBudget _budget;
     private long _stopTimeout;
 
@@ -123,6 +127,16 @@ public class QueuedThreadPool extends ContainerLifeCycle implements ThreadFactor
         this(maxThreads, minThreads, idleTimeout, reservedThreads, queue, threadGroup, null);
     }
 
+    /**
+     * @param maxThreads the maximum number of threads
+     * @param minThreads the minimum number of threads
+     * @param idleTimeout the idle timeout in milliseconds of the threads above the minimum
+     * @param reservedThreads the number of reserved threads, or -1 for a heuristic value
+     * @param queue the job queue, or null for a {@link BlockingArrayQueue} that grows as needed;
+     * a {@link ConcurrentBlockingQueue} is a lock-free alternative for pools with many concurrent producers
+     * @param threadGroup the thread group of the pool threads, or null
+     * @param threadFactory the factory of the pool threads, or null to use this pool as the factory
+     */
     public QueuedThreadPool(@Name("maxThreads") int maxThreads, @Name("minThreads") int minThreads,
                             @Name("idleTimeout") int idleTimeout, @Name("reservedThreads") int reservedThreads,
                             @Name("queue") BlockingQueue<Runnable> queue, @Name("threadGroup") ThreadGroup threadGroup,
@@ -258,7 +272,7 @@ public class QueuedThreadPool extends ContainerLifeCycle implements ThreadFactor
         // Close any un-executed jobs
         while (!_jobs.isEmpty())
         {
-            Runnable job = _jobs.poll();
+            Runnable job = QueuedJob.unwrap(_jobs.poll());
             if (job instanceof Closeable)
             {
                 try
@@ -499,6 +513,90 @@ public class QueuedThreadPool extends ContainerLifeCycle implements ThreadFactor
         _detailedDump = detailedDump;
     }
 
+    /**
+     * @return whether the time jobs wait in the queue before being run is recorded
+     */
+    @ManagedAttribute("records the time jobs wait in the queue")
+    public boolean isRecordQueueWaitTime()
+    {
+        return _queueWaitTimes != null;
+    }
+
+    /**
+     * <p>Sets whether the time jobs wait in the queue before being run is recorded,
+     * so that its percentiles over the last minute are reported by
+     * {@link #getQueueWaitTimeP50()}, {@link #getQueueWaitTimeP99()} and {@link #getQueueWaitTimeP999()}.</p>
+     * <p>Recording the queue wait time costs one allocation and two calls to
+     * {@link System#nanoTime()} per queued job.</p>
+     *
+     * @param recordQueueWaitTime whether to record the queue wait time
+     */
+    public void setRecordQueueWaitTime(boolean recordQueueWaitTime)
+    {
+        if (recordQueueWaitTime != isRecordQueueWaitTime())
+            _queueWaitTimes = recordQueueWaitTime ? new HistogramStatistic(1, TimeUnit.MINUTES) : null;
+    }
+
+    @ManagedAttribute("median time jobs waited in the queue over the last minute (in us)")
+    public long getQueueWaitTimeP50()
+    {
+        return getQueueWaitTime(50);
+    }
+
+    @ManagedAttribute("99th percentile time jobs waited in the queue over the last minute (in us)")
+    public long getQueueWaitTimeP99()
+    {
+        return getQueueWaitTime(99);
+    }
+
+    @ManagedAttribute("99.9th percentile time jobs waited in the queue over the last minute (in us)")
+    public long getQueueWaitTimeP999()
+    {
+        return getQueueWaitTime(99.9);
+    }
+
+    @ManagedAttribute("maximum time jobs waited in the queue over the last minute (in us)")
+    public long getQueueWaitTimeMax()
+    {
+        HistogramStatistic queueWaitTimes = _queueWaitTimes;
+        return queueWaitTimes == null ? 0 : queueWaitTimes.getMax();
+    }
+
+    private long getQueueWaitTime(double percentile)
+    {
+        HistogramStatistic queueWaitTimes = _queueWaitTimes;
+        return queueWaitTimes == null ? 0 : queueWaitTimes.getValueAtPercentile(percentile);
+    }
+
+    @Override
+    @ManagedAttribute("blocking tasks are run on virtual threads")
+    public boolean isUseVirtualThreads()
+    {
+        return _useVirtualThreads;
+    }
+
+    /**
+     * <p>Sets whether blocking tasks, such as the handling of requests by
+     * servlets, are run on virtual threads rather than on the threads of this pool.</p>
+     * <p>The threads of this pool still run the selectors, the acceptors and the
+     * non-blocking tasks, so the pool may be sized for those only.</p>
+     * <p>If the JVM does not support virtual threads, a warning is logged
+     * and blocking tasks are run on the threads of this pool.</p>
+     *
+     * @param useVirtualThreads whether to run blocking tasks on virtual threads
+     * @see VirtualThreads
+     */
+    @Override
+    public void setUseVirtualThreads(boolean useVirtualThreads)
+    {
+        if (useVirtualThreads && !VirtualThreads.areSupported())
+        {
+            LOG.warn("Virtual threads not supported by {}, using platform threads", System.getProperty("java.version"));
+            useVirtualThreads = false;
+        }
+        _useVirtualThreads = useVirtualThreads;
+    }
+
     @ManagedAttribute("threshold at which the pool is low on threads")
     public int getLowThreadsThreshold()
     {
@@ -541,7 +639,8 @@ public class QueuedThreadPool extends ContainerLifeCycle implements ThreadFactor
             break;
         }
 
-        if (!_jobs.offer(job))
+        HistogramStatistic queueWaitTimes = _queueWaitTimes;
+        if (!_jobs.offer(queueWaitTimes == null ? job : new QueuedJob(job, queueWaitTimes)))
         {
             // reverse our changes to _counts.
             if (addCounts(-startThread, 1 - startThread))
@@ -782,6 +881,10 @@ public class QueuedThreadPool extends ContainerLifeCycle implements ThreadFactor
             List<Runnable> jobs = new ArrayList<>(getQueue());
             dumpObjects(out, indent, new DumpableCollection("threads", threads), new DumpableCollection("jobs", jobs));
         }
+        else if (_queueWaitTimes != null)
+        {
+            dumpObjects(out, indent, new DumpableCollection("threads", threads), "queue wait times (us): " + _queueWaitTimes);
+        }
         else
         {
             dumpObjects(out, indent, new DumpableCollection("threads", threads));
@@ -873,6 +976,52 @@ public class QueuedThreadPool extends ContainerLifeCycle implements ThreadFactor
         return null;
     }
 
+    /**
+     * <p>A queued job that records the time it waited in the queue.</p>
+     */
+    private static class QueuedJob implements Runnable, Closeable
+    {
+        private final Runnable _job;
+        private final HistogramStatistic _queueWaitTimes;
+        private final long _queued = System.nanoTime();
+
+        private QueuedJob(Runnable job, HistogramStatistic queueWaitTimes)
+        {
+            _job = job;
+            _queueWaitTimes = queueWaitTimes;
+        }
+
+        private static Runnable unwrap(Runnable job)
+        {
+            if (job instanceof QueuedJob)
+            {
+                QueuedJob queued = (QueuedJob)job;
+                queued._queueWaitTimes.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - queued._queued));
+                return queued._job;
+            }
+            return job;
+        }
+
+        @Override
+        public void run()
+        {
+            _job.run();
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            if (_job instanceof Closeable)
+                ((Closeable)_job).close();
+        }
+
+        @Override
+        public String toString()
+        {
+            return _job.toString();
+        }
+    }
+
     private class Runner implements Runnable
     {
         private Runnable idleJobPoll(long idleTimeout) throws InterruptedException
@@ -938,6 +1087,7 @@ public class QueuedThreadPool extends ContainerLifeCycle implements ThreadFactor
                         }
 
                         idle = false;
+                        job = QueuedJob.unwrap(job);
 
                         // run job
                         if (LOG.isDebugEnabled())
@@ -0,0 +1,166 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under
+// the terms of the Eclipse Public License 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0
+//
+// This Source Code may also be made available under the following
+// Secondary Licenses when the conditions for such availability set
+// forth in the Eclipse Public License, v. 2.0 are satisfied:
+// the Apache License v2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.util.thread;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+
+/**
+ * <p>Utility methods to run tasks on virtual threads, when the JVM supports them.</p>
+ * <p>Jetty is compiled for a Java version without virtual threads, so they are
+ * looked up reflectively: when the JVM does not support them (or supports them only
+ * as a preview feature that is not enabled), {@link #areSupported()} returns false.</p>
+ * <p>Executors that can run blocking tasks on virtual threads implement
+ * {@link Configurable}; when such an executor {@link Configurable#isUseVirtualThreads()
+ * is configured to use virtual threads}, the components that dispatch blocking
+ * work (for example {@link org.eclipse.jetty.util.thread.strategy.EatWhatYouKill}
+ * for the tasks produced by the selectors, or the servlet dispatch of requests)
+ * run it on a new virtual thread, while the components that must not block, like the
+ * selectors themselves, keep running on the platform threads of the executor.</p>
+ */
+public class VirtualThreads
+{
+    private static final Logger LOG = Log.getLogger(VirtualThreads.class);
+    private static final Executor executor = probeVirtualThreadExecutor();
+    private static final Method isVirtualThread = probeIsVirtualThread();
+
+    private static Executor probeVirtualThreadExecutor()
+    {
+        try
+        {
+            return (Executor)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (Throwable x)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Virtual threads not supported", x);
+            return null;
+        }
+    }
+
+    private static Method probeIsVirtualThread()
+    {
+        try
+        {
+            return Thread.class.getMethod("isVirtual");
+        }
+        catch (Throwable x)
+        {
+            return null;
+        }
+    }
+
+    private VirtualThreads()
+    {
+    }
+
+    /**
+     * @return whether the JVM supports virtual threads
+     */
+    public static boolean areSupported()
+    {
+        return executor != null;
+    }
+
+    /**
+     * <p>Runs the given task on a new virtual thread.</p>
+     *
+     * @param task the task to run
+     * @throws RejectedExecutionException if virtual threads are not supported
+     * @see #areSupported()
+     */
+    public static void executeOnVirtualThread(Runnable task)
+    {
+        if (executor == null)
+            throw new RejectedExecutionException("Virtual threads not supported");
+        executor.execute(task);
+    }
+
+    /**
+     * @return whether the current thread is a virtual thread
+     */
+    public static boolean isVirtualThread()
+    {
+        if (isVirtualThread == null)
+            return false;
+        try
+        {
+            return (Boolean)isVirtualThread.invoke(Thread.currentThread());
+        }
+        catch (Throwable x)
+        {
+            LOG.warn("Cannot determine whether the current thread is virtual", x);
+            return false;
+        }
+    }
+
+    /**
+     * @param executor the executor to test
+     * @return whether the given executor is {@link Configurable} and configured to use virtual threads
+     */
+    public static boolean isUseVirtualThreads(Executor executor)
+    {
+        return executor instanceof Configurable && ((Configurable)executor).isUseVirtualThreads();
+    }
+
+    /**
+     * <p>Runs the given task on a new virtual thread if the given executor is
+     * {@link #isUseVirtualThreads(Executor) configured to use virtual threads},
+     * otherwise with the given executor.</p>
+     *
+     * @param executor the executor
+     * @param task the task to run
+     */
+    public static void execute(Executor executor, Runnable task)
+    {
+        if (isUseVirtualThreads(executor))
+            executeOnVirtualThread(task);
+        else
+            executor.execute(task);
+    }
+
+    /**
+     * <p>Implemented by executors that can be configured to run blocking tasks on virtual threads.</p>
+     */
+    public interface Configurable
+    {
+        /**
+         * @return whether blocking tasks are run on virtual threads
+         */
+        default boolean isUseVirtualThreads()
+        {
+            return false;
+        }
+
+        /**
+         * @param useVirtualThreads whether to run blocking tasks on virtual threads
+         * @throws UnsupportedOperationException if virtual threads are not supported
+         */
+        default void setUseVirtualThreads(boolean useVirtualThreads)
+        {
+            if (useVirtualThreads)
+                throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -34,6 +34,7 @@ import org.eclipse.jetty.util.log.Logger;
 import org.eclipse.jetty.util.thread.ExecutionStrategy;
 import org.eclipse.jetty.util.thread.Invocable;
 import org.eclipse.jetty.util.thread.TryExecutor;
+import org.eclipse.jetty.util.thread.VirtualThreads;
 
 /**
  * <p>A strategy where the thread that produces will run the resulting task if it
@@ -52,6 +53,9 @@ import org.eclipse.jetty.util.thread.TryExecutor;
  * indicated it is non-blocking, then this strategy will dispatch the execution of
  * the task and immediately continue production. When operating in this pattern, the
  * sub-strategy is called ProduceExecuteConsume (PEC).</p>
+ * <p>If the executor is {@link VirtualThreads#isUseVirtualThreads(Executor) configured
+ * to use virtual threads}, blocking tasks are always executed in PEC mode on a
+ * new virtual thread, while production stays on the threads of the executor.</p>
  */
 @ManagedObject("eat what you kill execution strategy")
 public class EatWhatYouKill extends ContainerLifeCycle implements ExecutionStrategy, Runnable
@@ -81,6 +85,7 @@ public class EatWhatYouKill extends ContainerLifeCycle implements ExecutionStrat
     private final TryExecutor _tryExecutor;
     private State _state = State.IDLE;
     private boolean _pending;
+    private volatile boolean _useVirtualThreads;
 
     public EatWhatYouKill(Producer producer, Executor executor)
     {
@@ -93,6 +98,13 @@ public class EatWhatYouKill extends ContainerLifeCycle implements ExecutionStrat
             LOG.debug("{} created", this);
     }
 
+    @Override
+    protected void doStart() throws Exception
+    {
+        _useVirtualThreads = VirtualThreads.isUseVirtualThreads(_executor);
+        super.doStart();
+    }
+
     @Override
     public void dispatch()
     {
@@ -235,6 +247,13 @@ public class EatWhatYouKill extends ContainerLifeCycle implements ExecutionStrat
                     break;
 
                 case BLOCKING:
+                    // The task is blocking and can run on a virtual thread,
+                    // so there is no need to hand over production.
+                    if (_useVirtualThreads)
+                    {
+                        mode = Mode.PRODUCE_EXECUTE_CONSUME;
+                        break;
+                    }
                     // The task is blocking, so PC is not an option. Thus we choose
                     // between EPC and PEC based on the availability of a reserved thread.
                     synchronized (this)
@@ -370,7 +389,11 @@ public class EatWhatYouKill extends ContainerLifeCycle implements ExecutionStrat
     {
         try
         {
-            _executor.execute(task);
+            // Only blocking tasks are executed.
+            if (_useVirtualThreads)
+                VirtualThreads.executeOnVirtualThread(task);
+            else
+                _executor.execute(task);
         }
         catch (RejectedExecutionException e)
         {
@@ -417,6 +440,12 @@ public class EatWhatYouKill extends ContainerLifeCycle implements ExecutionStrat
         return _epcMode.longValue();
     }
 
+    @ManagedAttribute(value = "whether blocking tasks are executed on virtual threads", readonly = true)
+    public boolean isUseVirtualThreads()
+    {
+        return _useVirtualThreads;
+    }
+
     @ManagedAttribute(value = "whether this execution strategy is idle", readonly = true)
     public boolean isIdle()
     {
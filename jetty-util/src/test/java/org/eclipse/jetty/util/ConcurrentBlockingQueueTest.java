@@ -0,0 +1,248 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under
+// the terms of the Eclipse Public License 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0
+//
+// This Source Code may also be made available under the following
+// Secondary Licenses when the conditions for such availability set
+// forth in the Eclipse Public License, v. 2.0 are satisfied:
+// the Apache License v2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ConcurrentBlockingQueueTest
+{
+    public static Stream<Integer> capacities()
+    {
+        return Stream.of(4, 0);
+    }
+
+    @ParameterizedTest
+    @MethodSource("capacities")
+    public void testOfferPollWrap(int capacity)
+    {
+        ConcurrentBlockingQueue<String> queue = ConcurrentBlockingQueue.newInstance(capacity);
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+
+        for (int i = 0; i < 10; ++i)
+        {
+            assertTrue(queue.offer("one"));
+            assertTrue(queue.offer("two"));
+            assertTrue(queue.offer("three"));
+            assertEquals(3, queue.size());
+            assertEquals("one", queue.peek());
+            assertThat(new ArrayList<>(queue), contains("one", "two", "three"));
+
+            assertEquals("one", queue.poll());
+            assertEquals("two", queue.poll());
+            assertEquals("three", queue.poll());
+            assertTrue(queue.isEmpty());
+            assertNull(queue.peek());
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("capacities")
+    public void testIteratorDoesNotRemove(int capacity)
+    {
+        ConcurrentBlockingQueue<String> queue = ConcurrentBlockingQueue.newInstance(capacity);
+        queue.offer("one");
+        assertThrows(UnsupportedOperationException.class, () ->
+        {
+            Iterator<String> iterator = queue.iterator();
+            iterator.next();
+            iterator.remove();
+        });
+        assertEquals(1, queue.size());
+    }
+
+    @ParameterizedTest
+    @MethodSource("capacities")
+    public void testDrainTo(int capacity)
+    {
+        ConcurrentBlockingQueue<Integer> queue = ConcurrentBlockingQueue.newInstance(capacity);
+        queue.offer(1);
+        queue.offer(2);
+        queue.offer(3);
+
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(2, queue.drainTo(drained, 2));
+        assertEquals(1, queue.drainTo(drained));
+        assertThat(drained, contains(1, 2, 3));
+        assertTrue(queue.isEmpty());
+    }
+
+    @ParameterizedTest
+    @MethodSource("capacities")
+    public void testPollTimeout(int capacity) throws Exception
+    {
+        ConcurrentBlockingQueue<String> queue = ConcurrentBlockingQueue.newInstance(capacity);
+        long start = System.nanoTime();
+        assertNull(queue.poll(100, TimeUnit.MILLISECONDS));
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), greaterThanOrEqualTo(100L));
+        // The timed out waiter is not left registered.
+        assertEquals(0, queue.getWaitingThreads());
+    }
+
+    @ParameterizedTest
+    @MethodSource("capacities")
+    public void testTakeWakesOnOffer(int capacity) throws Exception
+    {
+        ConcurrentBlockingQueue<String> queue = ConcurrentBlockingQueue.newInstance(capacity);
+        AtomicReference<String> taken = new AtomicReference<>();
+        CountDownLatch latch = new CountDownLatch(1);
+        Thread thread = new Thread(() ->
+        {
+            try
+            {
+                taken.set(queue.take());
+                latch.countDown();
+            }
+            catch (InterruptedException x)
+            {
+                x.printStackTrace();
+            }
+        });
+        thread.start();
+
+        while (queue.getWaitingThreads() == 0)
+        {
+            Thread.sleep(10);
+        }
+        assertTrue(queue.offer("job"));
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals("job", taken.get());
+        assertEquals(0, queue.getWaitingThreads());
+    }
+
+    @ParameterizedTest
+    @MethodSource("capacities")
+    public void testTakeInterrupted(int capacity) throws Exception
+    {
+        ConcurrentBlockingQueue<String> queue = ConcurrentBlockingQueue.newInstance(capacity);
+        Thread.currentThread().interrupt();
+        assertThrows(InterruptedException.class, queue::take);
+        assertEquals(0, queue.getWaitingThreads());
+    }
+
+    @ParameterizedTest
+    @MethodSource("capacities")
+    public void testConcurrentAccess(int capacity) throws Exception
+    {
+        int threads = 8;
+        int loops = 10000;
+        ConcurrentBlockingQueue<Integer> queue = ConcurrentBlockingQueue.newInstance(capacity == 0 ? 0 : 64);
+        Set<Integer> consumed = ConcurrentHashMap.newKeySet();
+        CountDownLatch latch = new CountDownLatch(threads * loops);
+
+        List<Thread> consumers = new ArrayList<>();
+        for (int i = 0; i < threads; ++i)
+        {
+            Thread consumer = new Thread(() ->
+            {
+                try
+                {
+                    while (true)
+                    {
+                        Integer element = (consumed.size() & 1) == 0 ? queue.take() : queue.poll(1, TimeUnit.MILLISECONDS);
+                        if (element != null && consumed.add(element))
+                            latch.countDown();
+                    }
+                }
+                catch (InterruptedException x)
+                {
+                    // Stopped.
+                }
+            });
+            consumers.add(consumer);
+            consumer.start();
+        }
+
+        List<Thread> producers = new ArrayList<>();
+        for (int i = 0; i < threads; ++i)
+        {
+            int id = i;
+            Thread producer = new Thread(() ->
+            {
+                try
+                {
+                    for (int j = 0; j < loops; ++j)
+                    {
+                        queue.put(id * loops + j);
+                    }
+                }
+                catch (InterruptedException x)
+                {
+                    x.printStackTrace();
+                }
+            });
+            producers.add(producer);
+            producer.start();
+        }
+
+        for (Thread producer : producers)
+        {
+            producer.join();
+        }
+        assertTrue(latch.await(15, TimeUnit.SECONDS));
+        assertEquals(threads * loops, consumed.size());
+        assertTrue(queue.isEmpty());
+
+        for (Thread consumer : consumers)
+        {
+            consumer.interrupt();
+            consumer.join();
+        }
+    }
+
+    @Test
+    public void testBoundedCapacity() throws Exception
+    {
+        // The capacity is rounded up to a power of 2.
+        ConcurrentBlockingQueue<Integer> queue = new ConcurrentBlockingQueue.Bounded<>(3);
+        int capacity = queue.getMaxCapacity();
+        assertEquals(4, capacity);
+        for (int i = 0; i < capacity; ++i)
+        {
+            assertTrue(queue.offer(i));
+        }
+        assertEquals(0, queue.remainingCapacity());
+        assertFalse(queue.offer(capacity));
+        assertFalse(queue.offer(capacity, 10, TimeUnit.MILLISECONDS));
+        assertEquals(0, queue.poll());
+        assertTrue(queue.offer(capacity));
+        assertEquals(capacity, queue.size());
+    }
+}
@@ -0,0 +1,60 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under
+// the terms of the Eclipse Public License 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0
+//
+// This Source Code may also be made available under the following
+// Secondary Licenses when the conditions for such availability set
+// forth in the Eclipse Public License, v. 2.0 are satisfied:
+// the Apache License v2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class FrequencySketchTest
+{
+    @Test
+    public void testIncrementAndSaturate()
+    {
+        FrequencySketch sketch = new FrequencySketch(1024);
+        assertEquals(0, sketch.frequency("key"));
+        for (int i = 1; i <= 15; ++i)
+        {
+            sketch.increment("key");
+            assertEquals(i, sketch.frequency("key"));
+        }
+        sketch.increment("key");
+        assertEquals(15, sketch.frequency("key"));
+    }
+
+    @Test
+    public void testAging()
+    {
+        FrequencySketch sketch = new FrequencySketch(16);
+        for (int i = 0; i < 10; ++i)
+        {
+            sketch.increment("hot");
+        }
+        assertEquals(10, sketch.frequency("hot"));
+
+        // Enough other increments to trigger the halving of the counters.
+        for (int i = 0; i < 10 * 16; ++i)
+        {
+            sketch.increment("cold-" + i);
+        }
+        assertThat(sketch.frequency("hot"), lessThan(10));
+    }
+}
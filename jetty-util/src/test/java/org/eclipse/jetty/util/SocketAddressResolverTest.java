@@ -0,0 +1,200 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under
+// the terms of the Eclipse Public License 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0
+//
+// This Source Code may also be made available under the following
+// Secondary Licenses when the conditions for such availability set
+// forth in the Eclipse Public License, v. 2.0 are satisfied:
+// the Apache License v2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.util;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SocketAddressResolverTest
+{
+    private static class ControlledResolver implements SocketAddressResolver
+    {
+        private final List<Promise<List<InetSocketAddress>>> pending = new ArrayList<>();
+        private final AtomicInteger resolutions = new AtomicInteger();
+        private final List<InetAddress> addresses = new ArrayList<>();
+
+        private ControlledResolver(String... addresses) throws UnknownHostException
+        {
+            for (String address : addresses)
+            {
+                this.addresses.add(InetAddress.getByName(address));
+            }
+        }
+
+        @Override
+        public void resolve(String host, int port, Promise<List<InetSocketAddress>> promise)
+        {
+            resolutions.incrementAndGet();
+            pending.add(promise);
+        }
+
+        private void succeed(int port)
+        {
+            List<InetSocketAddress> result = new ArrayList<>();
+            for (InetAddress address : addresses)
+            {
+                result.add(new InetSocketAddress(address, port));
+            }
+            List<Promise<List<InetSocketAddress>>> promises = new ArrayList<>(pending);
+            pending.clear();
+            promises.forEach(promise -> promise.succeeded(result));
+        }
+
+        private void fail()
+        {
+            List<Promise<List<InetSocketAddress>>> promises = new ArrayList<>(pending);
+            pending.clear();
+            promises.forEach(promise -> promise.failed(new UnknownHostException()));
+        }
+    }
+
+    private static class Result extends Promise.Adapter<List<InetSocketAddress>>
+    {
+        private List<InetSocketAddress> addresses;
+        private Throwable failure;
+
+        @Override
+        public void succeeded(List<InetSocketAddress> result)
+        {
+            addresses = result;
+        }
+
+        @Override
+        public void failed(Throwable x)
+        {
+            failure = x;
+        }
+    }
+
+    @Test
+    public void testConcurrentResolutionsAreCoalescedAndCached() throws Exception
+    {
+        ControlledResolver delegate = new ControlledResolver("127.0.0.1");
+        SocketAddressResolver.Caching resolver = new SocketAddressResolver.Caching(delegate);
+
+        Result result1 = new Result();
+        resolver.resolve("host", 8080, result1);
+        Result result2 = new Result();
+        resolver.resolve("host", 8443, result2);
+        assertEquals(1, delegate.resolutions.get());
+        assertNull(result1.addresses);
+
+        delegate.succeed(8080);
+        assertEquals(8080, result1.addresses.get(0).getPort());
+        // Each waiter receives the addresses with its own port.
+        assertEquals(8443, result2.addresses.get(0).getPort());
+
+        Result result3 = new Result();
+        resolver.resolve("host", 80, result3);
+        assertNotNull(result3.addresses);
+        assertEquals(80, result3.addresses.get(0).getPort());
+        assertEquals(1, delegate.resolutions.get());
+        assertEquals(1, resolver.getHits());
+        assertEquals(2, resolver.getMisses());
+    }
+
+    @Test
+    public void testAddressesAreRotated() throws Exception
+    {
+        ControlledResolver delegate = new ControlledResolver("127.0.0.1", "127.0.0.2", "127.0.0.3");
+        SocketAddressResolver.Caching resolver = new SocketAddressResolver.Caching(delegate);
+
+        Result result = new Result();
+        resolver.resolve("host", 80, result);
+        delegate.succeed(80);
+
+        List<InetAddress> firsts = new ArrayList<>();
+        firsts.add(result.addresses.get(0).getAddress());
+        for (int i = 0; i < 2; ++i)
+        {
+            result = new Result();
+            resolver.resolve("host", 80, result);
+            assertEquals(3, result.addresses.size());
+            firsts.add(result.addresses.get(0).getAddress());
+        }
+        assertEquals(delegate.addresses, firsts);
+    }
+
+    @Test
+    public void testFailuresAreCachedForNegativeTimeToLive() throws Exception
+    {
+        ControlledResolver delegate = new ControlledResolver("127.0.0.1");
+        SocketAddressResolver.Caching resolver = new SocketAddressResolver.Caching(delegate);
+        resolver.setNegativeTimeToLive(100);
+
+        Result result = new Result();
+        resolver.resolve("host", 80, result);
+        delegate.fail();
+        assertTrue(result.failure instanceof UnknownHostException);
+
+        result = new Result();
+        resolver.resolve("host", 80, result);
+        assertTrue(result.failure instanceof UnknownHostException);
+        assertEquals(1, delegate.resolutions.get());
+
+        Thread.sleep(200);
+
+        result = new Result();
+        resolver.resolve("host", 80, result);
+        assertEquals(2, delegate.resolutions.get());
+        delegate.succeed(80);
+        assertNotNull(result.addresses);
+    }
+
+    @Test
+    public void testRefreshAheadServesCachedAddresses() throws Exception
+    {
+        ControlledResolver delegate = new ControlledResolver("127.0.0.1");
+        SocketAddressResolver.Caching resolver = new SocketAddressResolver.Caching(delegate);
+        resolver.setTimeToLive(1000);
+        resolver.setRefreshAhead(1000);
+
+        Result result = new Result();
+        resolver.resolve("host", 80, result);
+        delegate.succeed(80);
+
+        // Within the refresh ahead period, the cached addresses are returned
+        // immediately and a single background refresh is started.
+        result = new Result();
+        resolver.resolve("host", 80, result);
+        assertNotNull(result.addresses);
+        result = new Result();
+        resolver.resolve("host", 80, result);
+        assertNotNull(result.addresses);
+        assertEquals(2, delegate.resolutions.get());
+        assertEquals(1, resolver.getRefreshes());
+
+        // A failed refresh keeps the cached addresses.
+        delegate.fail();
+        result = new Result();
+        resolver.resolve("host", 80, result);
+        assertNotNull(result.addresses);
+    }
+}
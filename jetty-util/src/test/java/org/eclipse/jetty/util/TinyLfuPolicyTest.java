@@ -0,0 +1,100 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under
+// the terms of the Eclipse Public License 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0
+//
+// This Source Code may also be made available under the following
+// Secondary Licenses when the conditions for such availability set
+// forth in the Eclipse Public License, v. 2.0 are satisfied:
+// the Apache License v2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TinyLfuPolicyTest
+{
+    @Test
+    public void testEvictsAllEntries()
+    {
+        TinyLfuPolicy<String> policy = new TinyLfuPolicy<>(10);
+        for (int i = 0; i < 5; ++i)
+        {
+            policy.add("k" + i, "v" + i);
+        }
+        assertEquals(5, policy.size());
+        for (int i = 0; i < 5; ++i)
+        {
+            assertTrue(policy.evict().startsWith("v"));
+        }
+        assertEquals(0, policy.size());
+        assertNull(policy.evict());
+    }
+
+    @Test
+    public void testRemove()
+    {
+        TinyLfuPolicy<String> policy = new TinyLfuPolicy<>(10);
+        TinyLfuPolicy.Node<String> node = policy.add("key", "value");
+        policy.remove(node);
+        assertEquals(0, policy.size());
+        // Removing twice is a no-op.
+        policy.remove(node);
+        assertEquals(0, policy.size());
+        assertNull(policy.evict());
+    }
+
+    @Test
+    public void testFrequentEntriesSurviveScan()
+    {
+        int maxEntries = 100;
+        TinyLfuPolicy<String> policy = new TinyLfuPolicy<>(maxEntries);
+        Map<String, TinyLfuPolicy.Node<String>> cache = new HashMap<>();
+
+        // A working set of entries accessed frequently.
+        for (int i = 0; i < maxEntries / 2; ++i)
+        {
+            String key = "hot-" + i;
+            cache.put(key, policy.add(key, key));
+        }
+        for (int round = 0; round < 4; ++round)
+        {
+            for (int i = 0; i < maxEntries / 2; ++i)
+            {
+                policy.access(cache.get("hot-" + i));
+            }
+        }
+
+        // A scan of many entries accessed once.
+        for (int i = 0; i < 10 * maxEntries; ++i)
+        {
+            String key = "scan-" + i;
+            cache.put(key, policy.add(key, key));
+            while (cache.size() > maxEntries)
+            {
+                cache.remove(policy.evict());
+            }
+        }
+
+        for (int i = 0; i < maxEntries / 2; ++i)
+        {
+            assertTrue(cache.containsKey("hot-" + i), "hot-" + i);
+        }
+        assertTrue(policy.getRejections() > 0);
+    }
+}
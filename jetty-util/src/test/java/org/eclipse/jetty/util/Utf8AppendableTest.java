@@ -19,6 +19,7 @@
 package org.eclipse.jetty.util;
 
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -71,6 +72,40 @@ public class Utf8AppendableTest
         assertTrue(buffer.toString().endsWith("jetty"));
     }
 
+    @ParameterizedTest
+    @MethodSource("implementations")
+    public void testAsciiRunsAroundMultiByteCharacters(Class<Utf8Appendable> impl) throws Exception
+    {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 20; i++)
+        {
+            builder.append("abcdefghijklmnopqrst", 0, i).append("\u00a4\u10fb\uD842\uDF9F");
+        }
+        String source = builder.toString();
+        byte[] bytes = source.getBytes(StandardCharsets.UTF_8);
+
+        Utf8Appendable heap = impl.getDeclaredConstructor().newInstance();
+        heap.append(bytes, 0, bytes.length);
+        assertEquals(source, heap.toString());
+
+        Utf8Appendable direct = impl.getDeclaredConstructor().newInstance();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+        direct.append(buffer);
+        assertEquals(source, direct.toString());
+        assertThat(buffer.remaining(), is(0));
+    }
+
+    @ParameterizedTest
+    @MethodSource("implementations")
+    public void testInvalidByteAfterAsciiRun(Class<Utf8Appendable> impl) throws Exception
+    {
+        byte[] bytes = "0123456789abcdefghijX".getBytes(StandardCharsets.UTF_8);
+        bytes[bytes.length - 1] = (byte)0xFF;
+        Utf8Appendable buffer = impl.getDeclaredConstructor().newInstance();
+        assertThrows(NotUtf8Exception.class, () -> buffer.append(ByteBuffer.wrap(bytes)));
+    }
+
     @ParameterizedTest
     @MethodSource("implementations")
     public void testUtf8WithMissingByte(Class<Utf8Appendable> impl) throws Exception
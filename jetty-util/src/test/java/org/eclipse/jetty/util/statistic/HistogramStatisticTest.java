@@ -0,0 +1,148 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under
+// the terms of the Eclipse Public License 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0
+//
+// This Source Code may also be made available under the following
+// Secondary Licenses when the conditions for such availability set
+// forth in the Eclipse Public License, v. 2.0 are satisfied:
+// the Apache License v2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.util.statistic;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class HistogramStatisticTest
+{
+    @Test
+    public void testEmpty()
+    {
+        HistogramStatistic histogram = new HistogramStatistic();
+        assertThat(histogram.getCount(), equalTo(0L));
+        assertThat(histogram.getMax(), equalTo(0L));
+        assertThat(histogram.getValueAtPercentile(99), equalTo(0L));
+    }
+
+    @Test
+    public void testSmallValuesAreExact()
+    {
+        HistogramStatistic histogram = new HistogramStatistic();
+        for (int i = 1; i <= 50; ++i)
+        {
+            histogram.record(i);
+        }
+        assertThat(histogram.getCount(), equalTo(50L));
+        assertThat(histogram.getMax(), equalTo(50L));
+        assertThat(histogram.getValueAtPercentile(0), equalTo(1L));
+        assertThat(histogram.getValueAtPercentile(50), equalTo(25L));
+        assertThat(histogram.getValueAtPercentile(90), equalTo(45L));
+        assertThat(histogram.getValueAtPercentile(100), equalTo(50L));
+    }
+
+    @Test
+    public void testPercentilesPrecision()
+    {
+        HistogramStatistic histogram = new HistogramStatistic();
+        for (long i = 1; i <= 1_000_000; ++i)
+        {
+            histogram.record(i);
+        }
+        assertThat(histogram.getCount(), equalTo(1_000_000L));
+        assertThat(histogram.getMax(), equalTo(1_000_000L));
+
+        double[] percentiles = {50, 90, 99, 99.9};
+        long[] values = histogram.getValuesAtPercentiles(percentiles);
+        for (int i = 0; i < percentiles.length; ++i)
+        {
+            long expected = (long)(percentiles[i] * 10_000);
+            long error = expected / 64;
+            assertThat(values[i], allOf(greaterThanOrEqualTo(expected - error), lessThanOrEqualTo(expected + error)));
+        }
+    }
+
+    @Test
+    public void testOutliers()
+    {
+        HistogramStatistic histogram = new HistogramStatistic();
+        for (int i = 0; i < 999; ++i)
+        {
+            histogram.record(10);
+        }
+        histogram.record(Long.MAX_VALUE);
+        histogram.record(-1);
+
+        assertThat(histogram.getValueAtPercentile(0), equalTo(0L));
+        assertThat(histogram.getValueAtPercentile(50), equalTo(10L));
+        assertThat(histogram.getValueAtPercentile(99.9), equalTo(10L));
+        assertThat(histogram.getValueAtPercentile(100), equalTo(Long.MAX_VALUE));
+        assertThat(histogram.getMax(), equalTo(Long.MAX_VALUE));
+
+        histogram.reset();
+        assertThat(histogram.getCount(), equalTo(0L));
+        assertThat(histogram.getMax(), equalTo(0L));
+    }
+
+    @Test
+    public void testRollingWindow()
+    {
+        TestHistogramStatistic histogram = new TestHistogramStatistic();
+        histogram.record(100);
+        assertThat(histogram.getCount(), equalTo(1L));
+
+        histogram.age(30, TimeUnit.SECONDS);
+        histogram.record(200);
+        assertThat(histogram.getCount(), equalTo(2L));
+        assertThat(histogram.getMax(), equalTo(200L));
+
+        histogram.age(45, TimeUnit.SECONDS);
+        histogram.record(50);
+        assertThat(histogram.getCount(), equalTo(2L));
+        assertThat(histogram.getMax(), equalTo(200L));
+        assertThat(histogram.getValueAtPercentile(50), equalTo(50L));
+
+        histogram.age(50, TimeUnit.SECONDS);
+        assertThat(histogram.getCount(), equalTo(1L));
+        assertThat(histogram.getMax(), equalTo(50L));
+
+        histogram.age(60, TimeUnit.SECONDS);
+        assertThat(histogram.getCount(), equalTo(0L));
+        assertThat(histogram.getMax(), equalTo(0L));
+    }
+
+    private static class TestHistogramStatistic extends HistogramStatistic
+    {
+        private long _nanoTime = -TimeUnit.HOURS.toNanos(1);
+
+        private TestHistogramStatistic()
+        {
+            super(DEFAULT_PRECISION, 1, TimeUnit.MINUTES, 4);
+        }
+
+        private void age(long time, TimeUnit unit)
+        {
+            _nanoTime += unit.toNanos(time);
+        }
+
+        @Override
+        protected long nanoTime()
+        {
+            return _nanoTime;
+        }
+    }
+}
@@ -21,8 +21,10 @@ package org.eclipse.jetty.util.thread;
 import java.io.Closeable;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.eclipse.jetty.util.ConcurrentBlockingQueue;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
 import org.eclipse.jetty.util.log.StacklessLogging;
@@ -833,6 +835,96 @@ public class QueuedThreadPoolTest extends AbstractThreadPoolTest
         assertThat(count(dump, "QueuedThreadPoolTest.lambda$testDump$"), is(1));
     }
 
+    @Test
+    public void testRecordQueueWaitTime() throws Exception
+    {
+        QueuedThreadPool pool = new QueuedThreadPool(1, 1);
+        pool.setReservedThreads(0);
+        pool.setRecordQueueWaitTime(true);
+        pool.start();
+        try
+        {
+            CountDownLatch blocked = new CountDownLatch(1);
+            CountDownLatch unblock = new CountDownLatch(1);
+            CountDownLatch ran = new CountDownLatch(1);
+            pool.execute(() ->
+            {
+                try
+                {
+                    blocked.countDown();
+                    unblock.await();
+                }
+                catch (InterruptedException x)
+                {
+                    throw new RuntimeException(x);
+                }
+            });
+            assertTrue(blocked.await(5, TimeUnit.SECONDS));
+
+            // The second job waits in the queue until the first completes.
+            pool.execute(ran::countDown);
+            Thread.sleep(100);
+            unblock.countDown();
+            assertTrue(ran.await(5, TimeUnit.SECONDS));
+
+            assertThat(pool.getQueueWaitTimeMax(), greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toMicros(100)));
+            assertThat(pool.getQueueWaitTimeP999(), greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toMicros(90)));
+        }
+        finally
+        {
+            pool.stop();
+        }
+    }
+
+    @Test
+    public void testConcurrentBlockingQueue() throws Exception
+    {
+        QueuedThreadPool pool = new QueuedThreadPool(4, 2, 60000, 0, ConcurrentBlockingQueue.newInstance(1024), null);
+        pool.start();
+        try
+        {
+            int jobs = 1000;
+            CountDownLatch latch = new CountDownLatch(jobs);
+            for (int i = 0; i < jobs; ++i)
+            {
+                pool.execute(latch::countDown);
+            }
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            assertThat(pool.getQueueSize(), is(0));
+        }
+        finally
+        {
+            pool.stop();
+        }
+    }
+
+    @Test
+    public void testUseVirtualThreads() throws Exception
+    {
+        QueuedThreadPool pool = new QueuedThreadPool();
+        pool.setUseVirtualThreads(true);
+        assertThat(pool.isUseVirtualThreads(), is(VirtualThreads.areSupported()));
+        assertThat(VirtualThreads.isUseVirtualThreads(pool), is(VirtualThreads.areSupported()));
+
+        pool.start();
+        try
+        {
+            CountDownLatch latch = new CountDownLatch(1);
+            AtomicBoolean virtual = new AtomicBoolean();
+            VirtualThreads.execute(pool, () ->
+            {
+                virtual.set(VirtualThreads.isVirtualThread());
+                latch.countDown();
+            });
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            assertThat(virtual.get(), is(VirtualThreads.areSupported()));
+        }
+        finally
+        {
+            pool.stop();
+        }
+    }
+
     private int count(String s, String p)
     {
         int c = 0;
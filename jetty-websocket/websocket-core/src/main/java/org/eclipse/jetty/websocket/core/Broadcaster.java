@@ -0,0 +1,365 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under
+// the terms of the Eclipse Public License 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0
+//
+// This Source Code may also be made available under the following
+// Secondary Licenses when the conditions for such availability set
+// forth in the Eclipse Public License, v. 2.0 are satisfied:
+// the Apache License v2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.websocket.core;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+
+import org.eclipse.jetty.io.RetainableByteBuffer;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.compression.DeflaterPool;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+import org.eclipse.jetty.websocket.core.internal.EncodedFrame;
+import org.eclipse.jetty.websocket.core.internal.Generator;
+import org.eclipse.jetty.websocket.core.internal.PerMessageDeflateExtension;
+import org.eclipse.jetty.websocket.core.internal.WebSocketCoreSession;
+
+/**
+ * <p>Sends the same frame to many {@link CoreSession}s, encoding it only once.</p>
+ * <p>The frame is generated once, and compressed once for the sessions that negotiated
+ * the {@code permessage-deflate} extension, into a {@link RetainableByteBuffer} that is
+ * shared by the sessions and released when the last session has written it.
+ * Sessions that cannot share the encoded frame, for example client sessions (that mask
+ * the frames they send) or sessions that negotiated other extensions, are sent the frame
+ * with {@link CoreSession#sendFrame(Frame, Callback, boolean)}.</p>
+ * <p>Each session may have at most {@link #getMaxBacklog()} broadcast frames not yet
+ * written; further frames are handled according to the {@link BacklogPolicy}, so that
+ * slow consumers do not accumulate an unbounded number of frames.</p>
+ */
+@ManagedObject("Broadcasts frames to many sessions")
+public class Broadcaster
+{
+    private static final Logger LOG = Log.getLogger(Broadcaster.class);
+    private static final byte[] TAIL_BYTES = new byte[]{0x00, 0x00, (byte)0xFF, (byte)0xFF};
+
+    private final Map<CoreSession, AtomicInteger> backlogs = new ConcurrentHashMap<>();
+    private final LongAdder broadcasts = new LongAdder();
+    private final LongAdder encodings = new LongAdder();
+    private final LongAdder sharedFrames = new LongAdder();
+    private final LongAdder unsharedFrames = new LongAdder();
+    private final LongAdder droppedFrames = new LongAdder();
+    private final Generator generator = new Generator();
+    private int maxBacklog = 64;
+    private BacklogPolicy backlogPolicy = BacklogPolicy.DROP;
+
+    /**
+     * @return the max number of broadcast frames not yet written for each session
+     */
+    @ManagedAttribute("The max number of broadcast frames not yet written for each session")
+    public int getMaxBacklog()
+    {
+        return maxBacklog;
+    }
+
+    /**
+     * @param maxBacklog the max number of broadcast frames not yet written for each session
+     */
+    public void setMaxBacklog(int maxBacklog)
+    {
+        this.maxBacklog = maxBacklog;
+    }
+
+    /**
+     * @return what to do when a session exceeds the max backlog
+     */
+    @ManagedAttribute("What to do when a session exceeds the max backlog")
+    public BacklogPolicy getBacklogPolicy()
+    {
+        return backlogPolicy;
+    }
+
+    /**
+     * @param backlogPolicy what to do when a session exceeds the max backlog
+     */
+    public void setBacklogPolicy(BacklogPolicy backlogPolicy)
+    {
+        this.backlogPolicy = backlogPolicy;
+    }
+
+    @ManagedAttribute(value = "The number of broadcasts", readonly = true)
+    public long getBroadcasts()
+    {
+        return broadcasts.longValue();
+    }
+
+    @ManagedAttribute(value = "The number of frame encodings", readonly = true)
+    public long getEncodings()
+    {
+        return encodings.longValue();
+    }
+
+    @ManagedAttribute(value = "The number of frames sent with a shared encoding", readonly = true)
+    public long getSharedFrames()
+    {
+        return sharedFrames.longValue();
+    }
+
+    @ManagedAttribute(value = "The number of frames sent without a shared encoding", readonly = true)
+    public long getUnsharedFrames()
+    {
+        return unsharedFrames.longValue();
+    }
+
+    @ManagedAttribute(value = "The number of frames not sent to slow sessions", readonly = true)
+    public long getDroppedFrames()
+    {
+        return droppedFrames.longValue();
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void resetStats()
+    {
+        broadcasts.reset();
+        encodings.reset();
+        sharedFrames.reset();
+        unsharedFrames.reset();
+        droppedFrames.reset();
+    }
+
+    /**
+     * @param session the session
+     * @return the number of broadcast frames not yet written for the given session
+     */
+    public int getBacklog(CoreSession session)
+    {
+        AtomicInteger backlog = backlogs.get(session);
+        return backlog == null ? 0 : backlog.get();
+    }
+
+    /**
+     * <p>Sends the given frame to the given sessions.</p>
+     * <p>The callback is succeeded when the frame has been written, or could not be
+     * written, to all the sessions; failures to write to a session are handled by the
+     * session itself, as if the frame was sent with {@link CoreSession#sendFrame(Frame, Callback, boolean)}.</p>
+     *
+     * @param sessions the sessions to send the frame to
+     * @param frame the frame to send, which must not be fragmented
+     * @param callback the callback notified when the frame has been sent to all the sessions
+     */
+    public void broadcast(Collection<? extends CoreSession> sessions, Frame frame, Callback callback)
+    {
+        if (!frame.isFin())
+            throw new IllegalArgumentException("Cannot broadcast fragmented frames");
+
+        broadcasts.increment();
+        AtomicInteger pending = new AtomicInteger(sessions.size() + 1);
+        Runnable complete = () ->
+        {
+            if (pending.decrementAndGet() == 0)
+                callback.succeeded();
+        };
+
+        EncodedFrame plain = null;
+        EncodedFrame deflated = null;
+        try
+        {
+            for (CoreSession session : sessions)
+            {
+                if (!session.isOutputOpen() || !reserve(session))
+                {
+                    complete.run();
+                    continue;
+                }
+
+                Callback sessionCallback = Callback.from(() ->
+                {
+                    release(session);
+                    complete.run();
+                });
+
+                EncodedFrame encoded = null;
+                switch (encodingOf(session, frame))
+                {
+                    case PLAIN:
+                        if (plain == null)
+                            plain = encode(session, frame);
+                        encoded = plain;
+                        break;
+                    case DEFLATE:
+                        if (deflated == null)
+                            deflated = encode(session, deflate(session.getWebSocketComponents().getDeflaterPool(), frame));
+                        encoded = deflated;
+                        break;
+                    default:
+                        break;
+                }
+
+                long maxFrameSize = session.getMaxFrameSize();
+                if (encoded != null && (maxFrameSize <= 0 || encoded.getPayloadLength() <= maxFrameSize))
+                {
+                    sharedFrames.increment();
+                    RetainableByteBuffer buffer = encoded.getRetainableByteBuffer();
+                    buffer.retain();
+                    session.sendFrame(encoded, Callback.from(sessionCallback, buffer::release), false);
+                }
+                else
+                {
+                    unsharedFrames.increment();
+                    Frame copy = Frame.copyWithoutPayload(frame);
+                    if (frame.hasPayload())
+                        copy.setPayload(frame.getPayload().slice());
+                    session.sendFrame(copy, sessionCallback, false);
+                }
+            }
+        }
+        finally
+        {
+            if (plain != null)
+                plain.getRetainableByteBuffer().release();
+            if (deflated != null)
+                deflated.getRetainableByteBuffer().release();
+            complete.run();
+        }
+    }
+
+    private boolean reserve(CoreSession session)
+    {
+        AtomicInteger backlog = backlogs.computeIfAbsent(session, s -> new AtomicInteger());
+        while (true)
+        {
+            int current = backlog.get();
+            if (current >= maxBacklog)
+            {
+                droppedFrames.increment();
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Backlog {} exceeded for {}, applying {}", current, session, backlogPolicy);
+                if (backlogPolicy == BacklogPolicy.CLOSE)
+                    session.close(CloseStatus.POLICY_VIOLATION, "Slow consumer", Callback.NOOP);
+                return false;
+            }
+            if (backlog.compareAndSet(current, current + 1))
+                return true;
+        }
+    }
+
+    private void release(CoreSession session)
+    {
+        backlogs.computeIfPresent(session, (s, backlog) -> backlog.decrementAndGet() == 0 ? null : backlog);
+    }
+
+    private Encoding encodingOf(CoreSession session, Frame frame)
+    {
+        if (!(session instanceof WebSocketCoreSession))
+            return Encoding.NONE;
+        WebSocketCoreSession coreSession = (WebSocketCoreSession)session;
+        if (coreSession.getBehavior() != Behavior.SERVER)
+            return Encoding.NONE;
+        List<Extension> extensions = coreSession.getExtensionStack().getExtensions();
+        if (extensions.isEmpty())
+            return Encoding.PLAIN;
+        if (extensions.size() == 1 && extensions.get(0) instanceof PerMessageDeflateExtension)
+            return frame.isDataFrame() ? Encoding.DEFLATE : Encoding.PLAIN;
+        return Encoding.NONE;
+    }
+
+    private EncodedFrame encode(CoreSession session, Frame frame)
+    {
+        encodings.increment();
+        Frame unmasked = Frame.copyWithoutPayload(frame);
+        unmasked.setMask(null);
+        unmasked.setPayload(frame.getPayload());
+        RetainableByteBuffer buffer = new RetainableByteBuffer(session.getByteBufferPool(), Generator.MAX_HEADER_LENGTH + frame.getPayloadLength(), false);
+        BufferUtil.clear(buffer.getBuffer());
+        generator.generateWholeFrame(unmasked, buffer.getBuffer());
+        return new EncodedFrame(unmasked, buffer);
+    }
+
+    private Frame deflate(DeflaterPool deflaterPool, Frame frame)
+    {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(Math.max(64, frame.getPayloadLength() / 2));
+        Deflater deflater = deflaterPool.acquire();
+        try
+        {
+            if (frame.hasPayload())
+                deflater.setInput(frame.getPayload().slice());
+            byte[] chunk = new byte[4096];
+            while (true)
+            {
+                int compressed = deflater.deflate(chunk, 0, chunk.length, Deflater.SYNC_FLUSH);
+                output.write(chunk, 0, compressed);
+                if (compressed < chunk.length)
+                    break;
+            }
+        }
+        finally
+        {
+            deflaterPool.release(deflater);
+        }
+
+        byte[] bytes = output.toByteArray();
+        int length = bytes.length;
+        if (endsWithTail(bytes))
+            length -= TAIL_BYTES.length;
+        ByteBuffer compressed = length == 0 ? ByteBuffer.wrap(new byte[]{0x00}) : ByteBuffer.wrap(bytes, 0, length);
+
+        Frame result = new Frame(frame.getOpCode(), true, compressed);
+        result.setRsv1(true);
+        return result;
+    }
+
+    private static boolean endsWithTail(byte[] bytes)
+    {
+        if (bytes.length < TAIL_BYTES.length)
+            return false;
+        for (int i = 1; i <= TAIL_BYTES.length; ++i)
+        {
+            if (bytes[bytes.length - i] != TAIL_BYTES[TAIL_BYTES.length - i])
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[backlog=%d,policy=%s,sessions=%d]", getClass().getSimpleName(), hashCode(), maxBacklog, backlogPolicy, backlogs.size());
+    }
+
+    /**
+     * What to do when a session exceeds the max backlog.
+     */
+    public enum BacklogPolicy
+    {
+        /**
+         * The frame is not sent to the session.
+         */
+        DROP,
+        /**
+         * The frame is not sent to the session, and the session is closed.
+         */
+        CLOSE
+    }
+
+    private enum Encoding
+    {
+        NONE, PLAIN, DEFLATE
+    }
+}
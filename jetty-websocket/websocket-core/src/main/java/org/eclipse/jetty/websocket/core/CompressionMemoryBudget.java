@@ -0,0 +1,144 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under
+// the terms of the Eclipse Public License 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0
+//
+// This Source Code may also be made available under the following
+// Secondary Licenses when the conditions for such availability set
+// forth in the Eclipse Public License, v. 2.0 are satisfied:
+// the Apache License v2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.websocket.core;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+
+/**
+ * <p>Accounts for the native zlib memory held by the {@code permessage-deflate} extensions
+ * of the sessions sharing a {@link WebSocketComponents}.</p>
+ * <p>A session that negotiates context takeover keeps its {@link java.util.zip.Deflater} and
+ * {@link java.util.zip.Inflater} for its whole lifetime, while a session without context takeover
+ * borrows them from the pools only for the duration of a message.
+ * When {@link #getMaxMemory() the budget} is exceeded, newly negotiated server sessions are
+ * downgraded to {@code server_no_context_takeover} and {@code client_no_context_takeover},
+ * so that the memory in use is bounded by the messages in flight rather than by the sessions.</p>
+ * <p>The memory is estimated from the zlib defaults used by the JDK (15 window bits and
+ * memory level 8), as the JDK offers no way to reduce the window size.</p>
+ */
+@ManagedObject("Compression memory budget")
+public class CompressionMemoryBudget
+{
+    /**
+     * The estimated native memory of a zlib deflater: {@code (1 << (windowBits + 2)) + (1 << (memLevel + 9))} plus its state.
+     */
+    public static final long DEFLATER_MEMORY = (1 << 17) + (1 << 17) + 6 * 1024;
+    /**
+     * The estimated native memory of a zlib inflater: {@code 1 << windowBits} plus its state.
+     */
+    public static final long INFLATER_MEMORY = (1 << 15) + 7 * 1024;
+
+    private final AtomicInteger deflaters = new AtomicInteger();
+    private final AtomicInteger inflaters = new AtomicInteger();
+    private final LongAdder downgrades = new LongAdder();
+    private volatile long maxMemory = -1;
+
+    /**
+     * @return the max estimated native memory, in bytes, before context takeover is refused, or -1 for no limit
+     */
+    @ManagedAttribute("The max native memory in bytes before context takeover is refused, or -1 for no limit")
+    public long getMaxMemory()
+    {
+        return maxMemory;
+    }
+
+    /**
+     * @param maxMemory the max estimated native memory, in bytes, before context takeover is refused, or -1 for no limit
+     */
+    public void setMaxMemory(long maxMemory)
+    {
+        this.maxMemory = maxMemory;
+    }
+
+    @ManagedAttribute(value = "The estimated native memory in bytes held by deflaters and inflaters", readonly = true)
+    public long getMemory()
+    {
+        return deflaters.get() * DEFLATER_MEMORY + inflaters.get() * INFLATER_MEMORY;
+    }
+
+    @ManagedAttribute(value = "The number of deflaters in use", readonly = true)
+    public int getDeflaters()
+    {
+        return deflaters.get();
+    }
+
+    @ManagedAttribute(value = "The number of inflaters in use", readonly = true)
+    public int getInflaters()
+    {
+        return inflaters.get();
+    }
+
+    @ManagedAttribute(value = "The number of negotiations downgraded to no context takeover", readonly = true)
+    public long getContextTakeoverDowngrades()
+    {
+        return downgrades.sum();
+    }
+
+    /**
+     * @return whether the estimated native memory in use has reached the max memory
+     */
+    public boolean isExceeded()
+    {
+        long max = getMaxMemory();
+        return max >= 0 && getMemory() >= max;
+    }
+
+    public void onDeflaterAcquired()
+    {
+        deflaters.incrementAndGet();
+    }
+
+    public void onDeflaterReleased()
+    {
+        deflaters.decrementAndGet();
+    }
+
+    public void onInflaterAcquired()
+    {
+        inflaters.incrementAndGet();
+    }
+
+    public void onInflaterReleased()
+    {
+        inflaters.decrementAndGet();
+    }
+
+    public void onContextTakeoverDowngraded()
+    {
+        downgrades.increment();
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void resetStats()
+    {
+        downgrades.reset();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{memory=%d/%d,deflaters=%d,inflaters=%d}", getClass().getSimpleName(), hashCode(),
+            getMemory(), getMaxMemory(), getDeflaters(), getInflaters());
+    }
+}
@@ -90,4 +90,11 @@ public interface Extension extends IncomingFrames, OutgoingFrames
      * @param coreSession
      */
     void setCoreSession(CoreSession coreSession);
+
+    /**
+     * Called when the connection of the {@link CoreSession} is closed, to release the resources held by this Extension.
+     */
+    default void close()
+    {
+    }
 }
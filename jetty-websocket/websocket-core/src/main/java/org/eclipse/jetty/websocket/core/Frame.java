@@ -24,6 +24,7 @@ import java.util.Arrays;
 import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.StringUtil;
 import org.eclipse.jetty.util.TypeUtil;
+import org.eclipse.jetty.websocket.core.internal.MaskUtil;
 
 /**
  * A Base Frame as seen in <a href="https://tools.ietf.org/html/rfc6455#section-5.2">RFC 6455. Sec 5.2</a>
@@ -368,34 +369,7 @@ public class Frame
     {
         if (isMasked() && hasPayload())
         {
-            int maskInt = 0;
-            for (byte maskByte : mask)
-            {
-                maskInt = (maskInt << 8) + (maskByte & 0xFF);
-            }
-
-            int maskOffset = 0;
-
-            int start = payload.position();
-            int end = payload.limit();
-            int offset = maskOffset;
-            int remaining;
-            while ((remaining = end - start) > 0)
-            {
-                if (remaining >= 4 && (offset & 3) == 0)
-                {
-                    payload.putInt(start, payload.getInt(start) ^ maskInt);
-                    start += 4;
-                    offset += 4;
-                }
-                else
-                {
-                    payload.put(start, (byte)(payload.get(start) ^ mask[offset & 3]));
-                    ++start;
-                    ++offset;
-                }
-            }
-
+            MaskUtil.mask(mask, payload);
             Arrays.fill(mask, (byte)0);
         }
     }
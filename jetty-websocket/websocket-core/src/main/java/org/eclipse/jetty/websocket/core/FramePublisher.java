@@ -0,0 +1,315 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under
+// the terms of the Eclipse Public License 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0
+//
+// This Source Code may also be made available under the following
+// Secondary Licenses when the conditions for such availability set
+// forth in the Eclipse Public License, v. 2.0 are satisfied:
+// the Apache License v2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.websocket.core;
+
+import java.util.Objects;
+import java.util.concurrent.Flow;
+
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+import org.eclipse.jetty.websocket.core.exception.CloseException;
+
+/**
+ * <p>A demanding {@link FrameHandler} that is a {@link Flow.Publisher} of the data frames it receives.</p>
+ * <p>The frames are not aggregated into messages: each TEXT, BINARY or CONTINUATION frame is passed
+ * to {@link Flow.Subscriber#onNext(Object)}, and the {@link Frame#isFin() fin} flag marks the end of
+ * a message, so that messages of any size can be streamed with constant memory.
+ * The frame payload is only valid until {@code onNext()} returns, after which the frame is
+ * completed and its buffer may be reused; a subscriber that needs the payload later must copy it.</p>
+ * <p>Calls to {@link Flow.Subscription#request(long)} are mapped to {@link CoreSession#demand(long)}, so
+ * no frame is read from the network until it is requested. Control frames are not published: pings
+ * are answered with a pong and the demand consumed by the control frame is given back.</p>
+ * <p>The subscriber is completed when the session is closed normally, and failed if it is closed
+ * abnormally. Cancelling the subscription closes the session, and the frames received
+ * until the close handshake completes are discarded and demanded internally, so that
+ * the CLOSE frame of the peer is read regardless of the demand of the subscriber.</p>
+ * <p>Only one subscriber is allowed.</p>
+ */
+public class FramePublisher implements FrameHandler, Flow.Publisher<Frame>
+{
+    private static final Logger LOG = Log.getLogger(FramePublisher.class);
+
+    private CoreSession coreSession;
+    private Flow.Subscriber<? super Frame> subscriber;
+    private long pendingDemand;
+    private boolean cancelled;
+    private boolean terminated;
+    private Throwable failure;
+    private CloseStatus closeStatus;
+
+    public CoreSession getCoreSession()
+    {
+        synchronized (this)
+        {
+            return coreSession;
+        }
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super Frame> subscriber)
+    {
+        Objects.requireNonNull(subscriber);
+        boolean accepted;
+        synchronized (this)
+        {
+            accepted = this.subscriber == null;
+            if (accepted)
+                this.subscriber = subscriber;
+        }
+
+        if (!accepted)
+        {
+            subscriber.onSubscribe(new Flow.Subscription()
+            {
+                @Override
+                public void request(long n)
+                {
+                }
+
+                @Override
+                public void cancel()
+                {
+                }
+            });
+            subscriber.onError(new IllegalStateException("Already subscribed"));
+            return;
+        }
+
+        subscriber.onSubscribe(new FrameSubscription());
+
+        // The session may have been closed before the subscription.
+        notifyTermination();
+    }
+
+    @Override
+    public void onOpen(CoreSession coreSession, Callback callback)
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug("onOpen {}", coreSession);
+
+        long demand;
+        boolean close;
+        synchronized (this)
+        {
+            this.coreSession = coreSession;
+            demand = pendingDemand;
+            pendingDemand = 0;
+            close = cancelled;
+        }
+        callback.succeeded();
+
+        if (close)
+            closeCancelled(coreSession);
+        else if (demand > 0)
+            coreSession.demand(demand);
+    }
+
+    @Override
+    public void onFrame(Frame frame, Callback callback)
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug("onFrame {}", frame);
+
+        if (frame.isDataFrame())
+        {
+            Flow.Subscriber<? super Frame> subscriber;
+            boolean discard;
+            synchronized (this)
+            {
+                discard = cancelled;
+                subscriber = discard ? null : this.subscriber;
+            }
+
+            try
+            {
+                if (subscriber != null)
+                    subscriber.onNext(frame);
+                callback.succeeded();
+            }
+            catch (Throwable x)
+            {
+                callback.failed(x);
+                return;
+            }
+
+            // Nobody demands the frames after the cancellation,
+            // so keep reading until the CLOSE frame of the peer.
+            if (discard)
+                demandDiscarded(getCoreSession());
+            return;
+        }
+
+        switch (frame.getOpCode())
+        {
+            case OpCode.CLOSE:
+                callback.succeeded();
+                break;
+            case OpCode.PING:
+                // Control frames are not published, so the demand they consumed is given back.
+                Frame pong = new Frame(OpCode.PONG, true, frame.getPayload());
+                getCoreSession().sendFrame(pong, Callback.from(() -> onControlFrameHandled(callback), callback::failed), false);
+                break;
+            default:
+                onControlFrameHandled(callback);
+                break;
+        }
+    }
+
+    private void closeCancelled(CoreSession coreSession)
+    {
+        coreSession.close(CloseStatus.NORMAL, null, Callback.NOOP);
+        // The subscriber may have no outstanding demand,
+        // so demand the frames up to the CLOSE frame reply.
+        demandDiscarded(coreSession);
+    }
+
+    private void demandDiscarded(CoreSession coreSession)
+    {
+        try
+        {
+            coreSession.demand(1);
+        }
+        catch (IllegalStateException x)
+        {
+            // The CLOSE frame of the peer has already been received.
+            LOG.ignore(x);
+        }
+    }
+
+    private void onControlFrameHandled(Callback callback)
+    {
+        callback.succeeded();
+        getCoreSession().demand(1);
+    }
+
+    @Override
+    public void onError(Throwable cause, Callback callback)
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug("onError", cause);
+
+        synchronized (this)
+        {
+            if (failure == null)
+                failure = cause;
+        }
+        callback.succeeded();
+    }
+
+    @Override
+    public void onClosed(CloseStatus closeStatus, Callback callback)
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug("onClosed {}", closeStatus);
+
+        synchronized (this)
+        {
+            this.closeStatus = closeStatus;
+        }
+        notifyTermination();
+        callback.succeeded();
+    }
+
+    @Override
+    public boolean isDemanding()
+    {
+        return true;
+    }
+
+    private void notifyTermination()
+    {
+        Flow.Subscriber<? super Frame> subscriber;
+        Throwable cause;
+        synchronized (this)
+        {
+            if (terminated || closeStatus == null || this.subscriber == null)
+                return;
+            terminated = true;
+            subscriber = cancelled ? null : this.subscriber;
+            cause = failure;
+            if (cause == null && closeStatus.isAbnormal())
+                cause = new CloseException(closeStatus.getCode(), closeStatus.getReason(), closeStatus.getCause());
+        }
+
+        if (subscriber == null)
+            return;
+
+        if (cause == null)
+            subscriber.onComplete();
+        else
+            subscriber.onError(cause);
+    }
+
+    private class FrameSubscription implements Flow.Subscription
+    {
+        @Override
+        public void request(long n)
+        {
+            if (n <= 0)
+            {
+                Flow.Subscriber<? super Frame> subscriber;
+                synchronized (FramePublisher.this)
+                {
+                    subscriber = terminated || cancelled ? null : FramePublisher.this.subscriber;
+                    terminated = true;
+                }
+                cancel();
+                if (subscriber != null)
+                    subscriber.onError(new IllegalArgumentException("Invalid demand " + n));
+                return;
+            }
+
+            CoreSession session;
+            synchronized (FramePublisher.this)
+            {
+                if (cancelled || terminated)
+                    return;
+                session = coreSession;
+                if (session == null)
+                {
+                    long demand = pendingDemand + n;
+                    pendingDemand = demand < 0 ? Long.MAX_VALUE : demand;
+                }
+            }
+
+            if (session != null)
+                session.demand(n);
+        }
+
+        @Override
+        public void cancel()
+        {
+            CoreSession session;
+            synchronized (FramePublisher.this)
+            {
+                if (cancelled)
+                    return;
+                cancelled = true;
+                session = coreSession;
+            }
+
+            if (LOG.isDebugEnabled())
+                LOG.debug("cancelled {}", session);
+
+            if (session != null)
+                closeCancelled(session);
+        }
+    }
+}
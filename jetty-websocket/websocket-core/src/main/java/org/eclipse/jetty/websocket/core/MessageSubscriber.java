@@ -0,0 +1,132 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under
+// the terms of the Eclipse Public License 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0
+//
+// This Source Code may also be made available under the following
+// Secondary Licenses when the conditions for such availability set
+// forth in the Eclipse Public License, v. 2.0 are satisfied:
+// the Apache License v2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.websocket.core;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+
+/**
+ * <p>A {@link Flow.Subscriber} of {@link ByteBuffer}s that sends them as the frames of a single
+ * TEXT or BINARY message, so that a message of any size can be streamed with constant memory.</p>
+ * <p>Only one buffer is requested at a time: the next one is requested when the frame of the
+ * previous one has been written by the session, so the publisher is never faster than the network.
+ * The message is ended with an empty final frame when the publisher completes, after which the
+ * callback is succeeded.</p>
+ * <p>If the publisher fails or a frame cannot be sent, the callback is failed and, if the message
+ * was started, the session is closed as the message cannot be completed.</p>
+ */
+public class MessageSubscriber implements Flow.Subscriber<ByteBuffer>
+{
+    private static final Logger LOG = Log.getLogger(MessageSubscriber.class);
+
+    private final AtomicBoolean complete = new AtomicBoolean();
+    private final CoreSession coreSession;
+    private final byte opCode;
+    private final Callback callback;
+    private Flow.Subscription subscription;
+    private volatile boolean started;
+
+    /**
+     * @param coreSession the session to send the message to
+     * @param opCode the message {@link OpCode#TEXT} or {@link OpCode#BINARY} opcode
+     * @param callback the callback completed when the message is sent or failed
+     */
+    public MessageSubscriber(CoreSession coreSession, byte opCode, Callback callback)
+    {
+        if (opCode != OpCode.TEXT && opCode != OpCode.BINARY)
+            throw new IllegalArgumentException("Not a message opcode: " + OpCode.name(opCode));
+        this.coreSession = Objects.requireNonNull(coreSession);
+        this.opCode = opCode;
+        this.callback = Objects.requireNonNull(callback);
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription)
+    {
+        if (this.subscription != null)
+        {
+            subscription.cancel();
+            return;
+        }
+        this.subscription = subscription;
+        subscription.request(1);
+    }
+
+    @Override
+    public void onNext(ByteBuffer buffer)
+    {
+        if (complete.get())
+            return;
+
+        Frame frame = new Frame(started ? OpCode.CONTINUATION : opCode, false, buffer);
+        started = true;
+        if (LOG.isDebugEnabled())
+            LOG.debug("onNext {}", frame);
+        coreSession.sendFrame(frame, Callback.from(() -> subscription.request(1), this::fail), false);
+    }
+
+    @Override
+    public void onError(Throwable failure)
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug("onError", failure);
+        fail(failure);
+    }
+
+    @Override
+    public void onComplete()
+    {
+        if (complete.get())
+            return;
+
+        Frame frame = new Frame(started ? OpCode.CONTINUATION : opCode, true, BufferUtil.EMPTY_BUFFER);
+        started = true;
+        if (LOG.isDebugEnabled())
+            LOG.debug("onComplete {}", frame);
+        coreSession.sendFrame(frame, Callback.from(this::succeed, this::fail), false);
+    }
+
+    private void succeed()
+    {
+        if (complete.compareAndSet(false, true))
+            callback.succeeded();
+    }
+
+    private void fail(Throwable failure)
+    {
+        if (!complete.compareAndSet(false, true))
+            return;
+
+        if (subscription != null)
+            subscription.cancel();
+
+        // A partially sent message cannot be completed, so the session must be closed.
+        if (started)
+            coreSession.close(CloseStatus.SERVER_ERROR, failure.getMessage(), Callback.NOOP);
+
+        callback.failed(failure);
+    }
+}
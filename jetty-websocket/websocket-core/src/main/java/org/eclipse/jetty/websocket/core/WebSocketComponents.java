@@ -23,6 +23,7 @@ import javax.servlet.ServletContext;
 
 import org.eclipse.jetty.io.ByteBufferPool;
 import org.eclipse.jetty.io.MappedByteBufferPool;
+import org.eclipse.jetty.server.handler.ContextHandler;
 import org.eclipse.jetty.util.DecoratedObjectFactory;
 import org.eclipse.jetty.util.compression.CompressionPool;
 import org.eclipse.jetty.util.compression.DeflaterPool;
@@ -47,6 +48,11 @@ public class WebSocketComponents
         {
             components = new WebSocketComponents();
             servletContext.setAttribute(WEBSOCKET_COMPONENTS_ATTRIBUTE, components);
+
+            // Expose the compression memory of this context via JMX.
+            ContextHandler contextHandler = ContextHandler.getContextHandler(servletContext);
+            if (contextHandler != null)
+                contextHandler.addBean(components.getCompressionMemoryBudget());
         }
 
         return components;
@@ -74,6 +80,7 @@ public class WebSocketComponents
     private ByteBufferPool bufferPool;
     private InflaterPool inflaterPool;
     private DeflaterPool deflaterPool;
+    private final CompressionMemoryBudget compressionMemoryBudget = new CompressionMemoryBudget();
 
     public ByteBufferPool getBufferPool()
     {
@@ -99,4 +106,12 @@ public class WebSocketComponents
     {
         return deflaterPool;
     }
+
+    /**
+     * @return the budget of native memory used by the compression extensions of the sessions sharing these components
+     */
+    public CompressionMemoryBudget getCompressionMemoryBudget()
+    {
+        return compressionMemoryBudget;
+    }
 }
@@ -0,0 +1,59 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under
+// the terms of the Eclipse Public License 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0
+//
+// This Source Code may also be made available under the following
+// Secondary Licenses when the conditions for such availability set
+// forth in the Eclipse Public License, v. 2.0 are satisfied:
+// the Apache License v2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.websocket.core.internal;
+
+import java.nio.ByteBuffer;
+
+import org.eclipse.jetty.io.RetainableByteBuffer;
+import org.eclipse.jetty.websocket.core.Frame;
+
+/**
+ * <p>A frame that has already been generated into its wire representation,
+ * header included, possibly shared by many sessions.</p>
+ * <p>The {@link FrameFlusher} writes the encoded bytes as they are, and
+ * extensions do not transform them. The payload of this frame is the
+ * (possibly compressed) payload of the wire representation.</p>
+ */
+public class EncodedFrame extends Frame
+{
+    private final RetainableByteBuffer encoded;
+
+    public EncodedFrame(Frame frame, RetainableByteBuffer encoded)
+    {
+        super(frame.getOpCode());
+        copyHeaders(frame);
+        this.encoded = encoded;
+        ByteBuffer payload = encoded.getBuffer().slice();
+        payload.position(payload.limit() - frame.getPayloadLength());
+        setPayload(payload.slice());
+    }
+
+    /**
+     * @return a new view of the encoded bytes of this frame
+     */
+    public ByteBuffer getEncoded()
+    {
+        return encoded.getBuffer().slice();
+    }
+
+    public RetainableByteBuffer getRetainableByteBuffer()
+    {
+        return encoded;
+    }
+}
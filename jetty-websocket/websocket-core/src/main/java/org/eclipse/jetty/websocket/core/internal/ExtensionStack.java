@@ -125,6 +125,11 @@ public class ExtensionStack implements IncomingFrames, OutgoingFrames, Dumpable
         {
             Extension ext;
 
+            // Only the server may downgrade the negotiated configuration,
+            // which is then sent to the client in the upgrade response.
+            if (behavior == Behavior.SERVER)
+                config = PerMessageDeflateExtension.negotiateContextTakeover(config, components.getCompressionMemoryBudget());
+
             try
             {
                 ext = components.getExtensionRegistry().newInstance(config, components);
@@ -258,6 +263,24 @@ public class ExtensionStack implements IncomingFrames, OutgoingFrames, Dumpable
         }
     }
 
+    public void close()
+    {
+        if (extensions == null)
+            return;
+
+        for (Extension extension : extensions)
+        {
+            try
+            {
+                extension.close();
+            }
+            catch (Throwable x)
+            {
+                LOG.warn("Failed to close " + extension, x);
+            }
+        }
+    }
+
     public Extension getRsv1User()
     {
         return rsvClaims[0];
@@ -226,6 +226,15 @@ public class FrameFlusher extends IteratingCallback
 
                 messagesOut.increment();
 
+                if (entry.frame instanceof EncodedFrame)
+                {
+                    // The frame has already been generated, possibly shared with other sessions.
+                    buffers.add(((EncodedFrame)entry.frame).getEncoded());
+                    flush = true;
+                    flushed = true;
+                    continue;
+                }
+
                 int batchSpace = batchBuffer == null ? bufferSize : BufferUtil.space(batchBuffer);
 
                 boolean batch = entry.batch &&
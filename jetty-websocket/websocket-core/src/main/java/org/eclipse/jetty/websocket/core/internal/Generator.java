@@ -174,35 +174,8 @@ public class Generator
 
     private void maskPayload(ByteBuffer buffer, Frame frame)
     {
-        byte[] mask = frame.getMask();
-        int maskInt = 0;
-        for (byte maskByte : mask)
-        {
-            maskInt = (maskInt << 8) + (maskByte & 0xFF);
-        }
-
-        // perform data masking here
         ByteBuffer payload = frame.getPayload();
         if ((payload != null) && (payload.remaining() > 0))
-        {
-            int maskOffset = 0;
-            int start = payload.position();
-            int end = payload.limit();
-            int remaining;
-            while ((remaining = end - start) > 0)
-            {
-                if (remaining >= 4)
-                {
-                    buffer.putInt(payload.getInt(start) ^ maskInt);
-                    start += 4;
-                }
-                else
-                {
-                    buffer.put((byte)(payload.get(start) ^ mask[maskOffset & 3]));
-                    ++start;
-                    ++maskOffset;
-                }
-            }
-        }
+            MaskUtil.mask(frame.getMask(), payload, buffer);
     }
 }
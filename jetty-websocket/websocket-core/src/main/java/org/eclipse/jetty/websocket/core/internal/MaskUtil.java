@@ -0,0 +1,98 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under
+// the terms of the Eclipse Public License 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0
+//
+// This Source Code may also be made available under the following
+// Secondary Licenses when the conditions for such availability set
+// forth in the Eclipse Public License, v. 2.0 are satisfied:
+// the Apache License v2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.websocket.core.internal;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * <p>Utility methods to apply a WebSocket masking key to a payload.</p>
+ * <p>The payload is XOR-ed 8 bytes at a time with the masking key repeated twice in a {@code long},
+ * which lets the JIT use wide loads and stores; the trailing bytes, and buffers that are not
+ * big endian, are masked one byte at a time.</p>
+ */
+public class MaskUtil
+{
+    private MaskUtil()
+    {
+    }
+
+    /**
+     * Masks, or demasks, the bytes between position and limit of the buffer in place,
+     * without modifying its position.
+     *
+     * @param mask the 4 bytes masking key
+     * @param buffer the buffer to mask
+     */
+    public static void mask(byte[] mask, ByteBuffer buffer)
+    {
+        int start = buffer.position();
+        int end = buffer.limit();
+        int i = start;
+        if (buffer.order() == ByteOrder.BIG_ENDIAN)
+        {
+            long maskLong = toLong(mask);
+            while (end - i >= 8)
+            {
+                buffer.putLong(i, buffer.getLong(i) ^ maskLong);
+                i += 8;
+            }
+        }
+        while (i < end)
+        {
+            buffer.put(i, (byte)(buffer.get(i) ^ mask[(i - start) & 3]));
+            i++;
+        }
+    }
+
+    /**
+     * Copies the masked bytes between position and limit of the source buffer to the
+     * destination buffer, without modifying the position of the source buffer.
+     *
+     * @param mask the 4 bytes masking key
+     * @param source the buffer to mask
+     * @param destination the buffer, in fill mode, to write the masked bytes to
+     */
+    public static void mask(byte[] mask, ByteBuffer source, ByteBuffer destination)
+    {
+        int start = source.position();
+        int end = source.limit();
+        int i = start;
+        if (source.order() == ByteOrder.BIG_ENDIAN && destination.order() == ByteOrder.BIG_ENDIAN)
+        {
+            long maskLong = toLong(mask);
+            while (end - i >= 8)
+            {
+                destination.putLong(source.getLong(i) ^ maskLong);
+                i += 8;
+            }
+        }
+        while (i < end)
+        {
+            destination.put((byte)(source.get(i) ^ mask[(i - start) & 3]));
+            i++;
+        }
+    }
+
+    private static long toLong(byte[] mask)
+    {
+        long maskInt = ((mask[0] & 0xFFL) << 24) | ((mask[1] & 0xFFL) << 16) | ((mask[2] & 0xFFL) << 8) | (mask[3] & 0xFFL);
+        return (maskInt << 32) | maskInt;
+    }
+}
@@ -18,6 +18,8 @@
 
 package org.eclipse.jetty.websocket.core.internal;
 
+import java.nio.ByteBuffer;
+
 import org.eclipse.jetty.util.Utf8Appendable;
 
 public class NullAppendable extends Utf8Appendable
@@ -46,6 +48,13 @@ public class NullAppendable extends Utf8Appendable
         });
     }
 
+    @Override
+    protected void appendAscii(ByteBuffer buf, int length)
+    {
+        // ASCII bytes are always valid UTF-8, so there is nothing to do.
+        buf.position(buf.position() + length);
+    }
+
     @Override
     public int length()
     {
@@ -21,6 +21,7 @@ package org.eclipse.jetty.websocket.core.internal;
 import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.zip.DataFormatException;
 import java.util.zip.Deflater;
 import java.util.zip.Inflater;
@@ -30,6 +31,7 @@ import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
 import org.eclipse.jetty.websocket.core.AbstractExtension;
+import org.eclipse.jetty.websocket.core.CompressionMemoryBudget;
 import org.eclipse.jetty.websocket.core.ExtensionConfig;
 import org.eclipse.jetty.websocket.core.Frame;
 import org.eclipse.jetty.websocket.core.OpCode;
@@ -54,6 +56,8 @@ public class PerMessageDeflateExtension extends AbstractExtension
     private final TransformingFlusher incomingFlusher;
     private Deflater deflaterImpl;
     private Inflater inflaterImpl;
+    private CompressionMemoryBudget memoryBudget;
+    private boolean closed;
     private boolean incomingCompressed;
 
     private ExtensionConfig configRequested;
@@ -141,6 +145,7 @@ public class PerMessageDeflateExtension extends AbstractExtension
             }
         }
 
+        memoryBudget = components.getCompressionMemoryBudget();
         configNegotiated = new ExtensionConfig(config.getName(), paramsNegotiated);
         LOG.debug("config: outgoingContextTakover={}, incomingContextTakeover={} : {}", outgoingContextTakeover, incomingContextTakeover, this);
 
@@ -159,6 +164,36 @@ public class PerMessageDeflateExtension extends AbstractExtension
             deflater.getTotalIn(), deflater.getTotalOut());
     }
 
+    /**
+     * <p>Adds the no context takeover parameters to the configuration negotiated by a server
+     * if the compression memory budget is exceeded, so that the Deflater and Inflater are only
+     * borrowed from the pools for the duration of a message, rather than for the session lifetime.</p>
+     * <p>Only a server may downgrade the context takeover, since a client must use the
+     * configuration in the response of the server for its context to match the server one.</p>
+     *
+     * @param config the configuration negotiated by the server
+     * @param memoryBudget the compression memory budget
+     * @return the configuration to use
+     */
+    static ExtensionConfig negotiateContextTakeover(ExtensionConfig config, CompressionMemoryBudget memoryBudget)
+    {
+        if (!"permessage-deflate".equals(config.getName()) || memoryBudget == null)
+            return config;
+        Set<String> keys = config.getParameterKeys();
+        if (keys.contains("client_no_context_takeover") && keys.contains("server_no_context_takeover"))
+            return config;
+        if (!memoryBudget.isExceeded())
+            return config;
+
+        if (LOG.isDebugEnabled())
+            LOG.debug("No context takeover, compression memory budget exceeded {}", memoryBudget);
+        ExtensionConfig downgraded = new ExtensionConfig(config);
+        downgraded.setParameter("client_no_context_takeover");
+        downgraded.setParameter("server_no_context_takeover");
+        memoryBudget.onContextTakeoverDowngraded();
+        return downgraded;
+    }
+
     public static boolean endsWithTail(ByteBuffer buf)
     {
         if ((buf == null) || (buf.remaining() < TAIL_BYTES.length))
@@ -178,28 +213,89 @@ public class PerMessageDeflateExtension extends AbstractExtension
 
     public Deflater getDeflater()
     {
-        if (deflaterImpl == null)
-            deflaterImpl = getDeflaterPool().acquire();
-        return deflaterImpl;
+        synchronized (this)
+        {
+            if (closed)
+                throw new IllegalStateException("Closed " + this);
+            if (deflaterImpl == null)
+            {
+                deflaterImpl = getDeflaterPool().acquire();
+                memoryBudget.onDeflaterAcquired();
+            }
+            return deflaterImpl;
+        }
     }
 
     public Inflater getInflater()
     {
-        if (inflaterImpl == null)
-            inflaterImpl = getInflaterPool().acquire();
-        return inflaterImpl;
+        synchronized (this)
+        {
+            if (closed)
+                throw new IllegalStateException("Closed " + this);
+            if (inflaterImpl == null)
+            {
+                inflaterImpl = getInflaterPool().acquire();
+                memoryBudget.onInflaterAcquired();
+            }
+            return inflaterImpl;
+        }
     }
 
     public void releaseInflater()
     {
-        getInflaterPool().release(inflaterImpl);
-        inflaterImpl = null;
+        Inflater inflater;
+        synchronized (this)
+        {
+            inflater = inflaterImpl;
+            if (inflater == null)
+                return;
+            inflaterImpl = null;
+            memoryBudget.onInflaterReleased();
+        }
+        getInflaterPool().release(inflater);
     }
 
     public void releaseDeflater()
     {
-        getDeflaterPool().release(deflaterImpl);
-        deflaterImpl = null;
+        Deflater deflater;
+        synchronized (this)
+        {
+            deflater = deflaterImpl;
+            if (deflater == null)
+                return;
+            deflaterImpl = null;
+            memoryBudget.onDeflaterReleased();
+        }
+        getDeflaterPool().release(deflater);
+    }
+
+    @Override
+    public void close()
+    {
+        Deflater deflater;
+        Inflater inflater;
+        synchronized (this)
+        {
+            if (closed)
+                return;
+            closed = true;
+            deflater = deflaterImpl;
+            deflaterImpl = null;
+            if (deflater != null)
+                memoryBudget.onDeflaterReleased();
+            inflater = inflaterImpl;
+            inflaterImpl = null;
+            if (inflater != null)
+                memoryBudget.onInflaterReleased();
+        }
+        // A frame may still be transformed by an aborted flusher, so the
+        // Deflater and Inflater are ended rather than returned to the pools.
+        // They are not referenced by this extension anymore, so they cannot
+        // be returned to the pools by a concurrent release either.
+        if (deflater != null)
+            deflater.end();
+        if (inflater != null)
+            inflater.end();
     }
 
     @Override
@@ -248,6 +344,16 @@ public class PerMessageDeflateExtension extends AbstractExtension
                 return true;
             }
 
+            if (frame instanceof EncodedFrame)
+            {
+                // The frame was compressed with a new context, so the
+                // context must be reset for the next compressed frames
+                // not to refer to data that the peer did not see.
+                releaseDeflater();
+                nextOutgoingFrame(frame, callback, batch);
+                return true;
+            }
+
             _first = true;
             _frame = frame;
             _batch = batch;
@@ -342,6 +342,7 @@ public class WebSocketCoreSession implements IncomingFrames, CoreSession, Dumpab
             LOG.debug("closeConnection() {} {} {}", closeStatus, this);
 
         abort();
+        negotiated.getExtensions().close();
 
         // Forward Errors to Local WebSocket EndPoint
         if (closeStatus.isAbnormal() && closeStatus.getCause() != null)
@@ -0,0 +1,182 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under
+// the terms of the Eclipse Public License 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0
+//
+// This Source Code may also be made available under the following
+// Secondary Licenses when the conditions for such availability set
+// forth in the Eclipse Public License, v. 2.0 are satisfied:
+// the Apache License v2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.websocket.core;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.FutureCallback;
+import org.eclipse.jetty.websocket.core.client.ClientUpgradeRequest;
+import org.eclipse.jetty.websocket.core.client.WebSocketCoreClient;
+import org.eclipse.jetty.websocket.core.server.Negotiation;
+import org.eclipse.jetty.websocket.core.server.WebSocketNegotiator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BroadcasterTest
+{
+    private final BlockingQueue<TestFrameHandler> serverHandlers = new LinkedBlockingQueue<>();
+    private WebSocketServer server;
+    private URI serverUri;
+    private WebSocketCoreClient client;
+
+    @BeforeEach
+    public void setup() throws Exception
+    {
+        server = new WebSocketServer(new WebSocketNegotiator.AbstractNegotiator()
+        {
+            @Override
+            public FrameHandler negotiate(Negotiation negotiation)
+            {
+                TestFrameHandler handler = new TestFrameHandler();
+                serverHandlers.offer(handler);
+                return handler;
+            }
+        });
+        server.start();
+        serverUri = new URI("ws://localhost:" + server.getLocalPort());
+
+        client = new WebSocketCoreClient();
+        client.start();
+    }
+
+    @AfterEach
+    public void stop() throws Exception
+    {
+        client.stop();
+        server.stop();
+    }
+
+    private TestFrameHandler connect(String extensions) throws Exception
+    {
+        TestFrameHandler clientHandler = new TestFrameHandler();
+        ClientUpgradeRequest upgradeRequest = ClientUpgradeRequest.from(client, serverUri, clientHandler);
+        if (extensions != null)
+            upgradeRequest.addExtensions(extensions);
+        client.connect(upgradeRequest).get(5, TimeUnit.SECONDS);
+        return clientHandler;
+    }
+
+    private List<CoreSession> serverSessions(int count) throws Exception
+    {
+        List<CoreSession> sessions = new ArrayList<>();
+        for (int i = 0; i < count; ++i)
+        {
+            TestFrameHandler handler = serverHandlers.poll(5, TimeUnit.SECONDS);
+            assertNotNull(handler);
+            assertTrue(handler.open.await(5, TimeUnit.SECONDS));
+            sessions.add(handler.getCoreSession());
+        }
+        return sessions;
+    }
+
+    @Test
+    public void testBroadcastEncodesOncePerExtensionConfiguration() throws Exception
+    {
+        List<TestFrameHandler> clientHandlers = new ArrayList<>();
+        clientHandlers.add(connect(null));
+        clientHandlers.add(connect(null));
+        clientHandlers.add(connect("permessage-deflate"));
+        clientHandlers.add(connect("permessage-deflate"));
+        List<CoreSession> sessions = serverSessions(clientHandlers.size());
+
+        // Send a message with the session context, before and after the
+        // broadcast, to verify that the compression context is not corrupted.
+        String text = "Hello, Broadcast World! Hello, Broadcast World!";
+        for (CoreSession session : sessions)
+        {
+            session.sendFrame(new Frame(OpCode.TEXT, text), Callback.NOOP, false);
+        }
+
+        Broadcaster broadcaster = new Broadcaster();
+        FutureCallback callback = new FutureCallback();
+        broadcaster.broadcast(sessions, new Frame(OpCode.TEXT, text), callback);
+        callback.get(5, TimeUnit.SECONDS);
+
+        for (CoreSession session : sessions)
+        {
+            session.sendFrame(new Frame(OpCode.TEXT, text), Callback.NOOP, false);
+        }
+
+        for (TestFrameHandler clientHandler : clientHandlers)
+        {
+            for (int i = 0; i < 3; ++i)
+            {
+                Frame frame = clientHandler.receivedFrames.poll(5, TimeUnit.SECONDS);
+                assertNotNull(frame);
+                assertEquals(OpCode.TEXT, frame.getOpCode());
+                assertEquals(text, frame.getPayloadAsUTF8());
+            }
+        }
+
+        assertEquals(1, broadcaster.getBroadcasts());
+        assertEquals(2, broadcaster.getEncodings());
+        assertEquals(sessions.size(), broadcaster.getSharedFrames());
+        assertEquals(0, broadcaster.getUnsharedFrames());
+        for (CoreSession session : sessions)
+        {
+            assertEquals(0, broadcaster.getBacklog(session));
+        }
+    }
+
+    @Test
+    public void testBroadcastDropsFramesForSlowSessions() throws Exception
+    {
+        TestFrameHandler clientHandler = connect(null);
+        List<CoreSession> sessions = serverSessions(1);
+
+        Broadcaster broadcaster = new Broadcaster();
+        broadcaster.setMaxBacklog(0);
+        FutureCallback callback = new FutureCallback();
+        broadcaster.broadcast(sessions, new Frame(OpCode.TEXT, "dropped"), callback);
+        callback.get(5, TimeUnit.SECONDS);
+
+        assertEquals(1, broadcaster.getDroppedFrames());
+        assertNull(clientHandler.receivedFrames.poll(500, TimeUnit.MILLISECONDS));
+        assertTrue(sessions.get(0).isOutputOpen());
+    }
+
+    @Test
+    public void testBroadcastClosesSlowSessions() throws Exception
+    {
+        TestFrameHandler clientHandler = connect(null);
+        List<CoreSession> sessions = serverSessions(1);
+
+        Broadcaster broadcaster = new Broadcaster();
+        broadcaster.setMaxBacklog(0);
+        broadcaster.setBacklogPolicy(Broadcaster.BacklogPolicy.CLOSE);
+        FutureCallback callback = new FutureCallback();
+        broadcaster.broadcast(sessions, new Frame(OpCode.TEXT, "dropped"), callback);
+        callback.get(5, TimeUnit.SECONDS);
+
+        assertTrue(clientHandler.closed.await(5, TimeUnit.SECONDS));
+        assertEquals(CloseStatus.POLICY_VIOLATION, clientHandler.closeStatus.getCode());
+    }
+}
@@ -0,0 +1,239 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under
+// the terms of the Eclipse Public License 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0
+//
+// This Source Code may also be made available under the following
+// Secondary Licenses when the conditions for such availability set
+// forth in the Eclipse Public License, v. 2.0 are satisfied:
+// the Apache License v2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.websocket.core;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.FutureCallback;
+import org.eclipse.jetty.websocket.core.client.ClientUpgradeRequest;
+import org.eclipse.jetty.websocket.core.client.WebSocketCoreClient;
+import org.eclipse.jetty.websocket.core.server.Negotiation;
+import org.eclipse.jetty.websocket.core.server.WebSocketNegotiator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FlowTest
+{
+    private final BlockingQueue<FramePublisher> serverPublishers = new LinkedBlockingQueue<>();
+    private final CountDownLatch serverClosed = new CountDownLatch(1);
+    private WebSocketServer server;
+    private WebSocketCoreClient client;
+    private TestFrameHandler clientHandler;
+
+    @BeforeEach
+    public void setup() throws Exception
+    {
+        server = new WebSocketServer(new WebSocketNegotiator.AbstractNegotiator()
+        {
+            @Override
+            public FrameHandler negotiate(Negotiation negotiation)
+            {
+                FramePublisher publisher = new FramePublisher()
+                {
+                    @Override
+                    public void onClosed(CloseStatus closeStatus, Callback callback)
+                    {
+                        super.onClosed(closeStatus, callback);
+                        serverClosed.countDown();
+                    }
+                };
+                serverPublishers.offer(publisher);
+                return publisher;
+            }
+        });
+        server.start();
+
+        client = new WebSocketCoreClient();
+        client.start();
+        clientHandler = new TestFrameHandler();
+        URI serverUri = new URI("ws://localhost:" + server.getLocalPort());
+        client.connect(ClientUpgradeRequest.from(client, serverUri, clientHandler)).get(5, TimeUnit.SECONDS);
+        assertTrue(clientHandler.open.await(5, TimeUnit.SECONDS));
+    }
+
+    @AfterEach
+    public void stop() throws Exception
+    {
+        client.stop();
+        server.stop();
+    }
+
+    @Test
+    public void testRequestDrivesFrameDemand() throws Exception
+    {
+        FramePublisher publisher = serverPublishers.poll(5, TimeUnit.SECONDS);
+        assertNotNull(publisher);
+        FrameSubscriber subscriber = new FrameSubscriber();
+        publisher.subscribe(subscriber);
+
+        clientHandler.sendFrame(new Frame(OpCode.TEXT, false, "Hello"));
+        clientHandler.sendFrame(new Frame(OpCode.PING));
+        clientHandler.sendFrame(new Frame(OpCode.CONTINUATION, true, " World"));
+        clientHandler.sendText("Bye");
+
+        // Nothing is read until it is requested.
+        assertNull(subscriber.frames.poll(500, TimeUnit.MILLISECONDS));
+
+        subscriber.subscription.request(1);
+        assertEquals("Hello", subscriber.frames.poll(5, TimeUnit.SECONDS));
+        assertNull(subscriber.frames.poll(500, TimeUnit.MILLISECONDS));
+
+        // The ping is answered but does not consume the subscriber demand.
+        subscriber.subscription.request(1);
+        assertEquals(" World", subscriber.frames.poll(5, TimeUnit.SECONDS));
+        Frame pong = clientHandler.receivedFrames.poll(5, TimeUnit.SECONDS);
+        assertNotNull(pong);
+        assertEquals(OpCode.PONG, pong.getOpCode());
+        assertNull(subscriber.frames.poll(500, TimeUnit.MILLISECONDS));
+
+        subscriber.subscription.request(2);
+        assertEquals("Bye", subscriber.frames.poll(5, TimeUnit.SECONDS));
+
+        clientHandler.getCoreSession().close(CloseStatus.NORMAL, null, Callback.NOOP);
+        assertTrue(subscriber.complete.await(5, TimeUnit.SECONDS));
+        assertNull(subscriber.failure);
+    }
+
+    @Test
+    public void testCancelClosesSession() throws Exception
+    {
+        FramePublisher publisher = serverPublishers.poll(5, TimeUnit.SECONDS);
+        assertNotNull(publisher);
+        FrameSubscriber subscriber = new FrameSubscriber();
+        publisher.subscribe(subscriber);
+
+        // A frame that is not demanded by the subscriber, so that
+        // it must be discarded before reading the CLOSE frame reply.
+        FutureCallback sent = new FutureCallback();
+        clientHandler.getCoreSession().sendFrame(new Frame(OpCode.TEXT, "not demanded"), sent, false);
+        sent.get(5, TimeUnit.SECONDS);
+
+        subscriber.subscription.cancel();
+
+        Frame close = clientHandler.receivedFrames.poll(5, TimeUnit.SECONDS);
+        assertNotNull(close);
+        assertEquals(OpCode.CLOSE, close.getOpCode());
+        assertTrue(clientHandler.closed.await(5, TimeUnit.SECONDS));
+        // The server reads the CLOSE frame reply without any demand from the subscriber.
+        assertTrue(serverClosed.await(5, TimeUnit.SECONDS));
+        assertFalse(subscriber.complete.await(500, TimeUnit.MILLISECONDS));
+        assertTrue(subscriber.frames.isEmpty());
+    }
+
+    @Test
+    public void testStreamMessageFromPublisher() throws Exception
+    {
+        FramePublisher serverPublisher = serverPublishers.poll(5, TimeUnit.SECONDS);
+        assertNotNull(serverPublisher);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (serverPublisher.getCoreSession() == null && System.nanoTime() < deadline)
+        {
+            Thread.sleep(10);
+        }
+        CoreSession serverSession = serverPublisher.getCoreSession();
+        assertNotNull(serverSession);
+
+        int chunks = 64;
+        int chunkSize = 1024;
+        FutureCallback callback = new FutureCallback();
+        try (SubmissionPublisher<ByteBuffer> publisher = new SubmissionPublisher<>())
+        {
+            publisher.subscribe(new MessageSubscriber(serverSession, OpCode.BINARY, callback));
+            for (int i = 0; i < chunks; ++i)
+            {
+                byte[] bytes = new byte[chunkSize];
+                bytes[0] = (byte)i;
+                publisher.submit(ByteBuffer.wrap(bytes));
+            }
+        }
+        callback.get(5, TimeUnit.SECONDS);
+
+        // The client may receive the message in different frames, so the message is reassembled.
+        ByteArrayOutputStream message = new ByteArrayOutputStream();
+        Frame frame = clientHandler.receivedFrames.poll(5, TimeUnit.SECONDS);
+        assertNotNull(frame);
+        assertEquals(OpCode.BINARY, frame.getOpCode());
+        while (true)
+        {
+            message.write(BufferUtil.toArray(frame.getPayload()));
+            if (frame.isFin())
+                break;
+            frame = clientHandler.receivedFrames.poll(5, TimeUnit.SECONDS);
+            assertNotNull(frame);
+            assertEquals(OpCode.CONTINUATION, frame.getOpCode());
+        }
+
+        byte[] bytes = message.toByteArray();
+        assertEquals(chunks * chunkSize, bytes.length);
+        for (int i = 0; i < chunks; ++i)
+        {
+            assertEquals((byte)i, bytes[i * chunkSize]);
+        }
+    }
+
+    private static class FrameSubscriber implements Flow.Subscriber<Frame>
+    {
+        private final BlockingQueue<String> frames = new LinkedBlockingQueue<>();
+        private final CountDownLatch complete = new CountDownLatch(1);
+        private Flow.Subscription subscription;
+        private Throwable failure;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription)
+        {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(Frame frame)
+        {
+            frames.offer(frame.getPayloadAsUTF8());
+        }
+
+        @Override
+        public void onError(Throwable failure)
+        {
+            this.failure = failure;
+            complete.countDown();
+        }
+
+        @Override
+        public void onComplete()
+        {
+            complete.countDown();
+        }
+    }
+}
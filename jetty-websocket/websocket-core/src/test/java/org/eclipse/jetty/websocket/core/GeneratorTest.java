@@ -527,6 +527,33 @@ public class GeneratorTest
         assertGeneratedBytes(expected, frames);
     }
 
+    @Test
+    public void testGenerateMaskedPayloadAndDemask()
+    {
+        byte[] maskingKey = Hex.asByteArray("11223344");
+        for (int length = 1; length <= 33; length++)
+        {
+            byte[] bytes = new byte[length];
+            for (int i = 0; i < length; i++)
+            {
+                bytes[i] = (byte)(i * 7);
+            }
+            byte[] expected = Arrays.copyOf(bytes, length);
+            mask(expected, maskingKey);
+
+            Frame frame = new Frame(OpCode.BINARY).setPayload(ByteBuffer.wrap(bytes));
+            frame.setMask(maskingKey);
+            ByteBuffer masked = BufferUtil.allocateDirect(length);
+            generator.generatePayload(frame, masked);
+            assertThat(BufferUtil.toArray(masked), is(expected));
+
+            Frame received = new Frame(OpCode.BINARY).setPayload(masked);
+            received.setMask(Arrays.copyOf(maskingKey, 4));
+            received.demask();
+            assertThat(BufferUtil.toArray(received.getPayload()), is(bytes));
+        }
+    }
+
     /**
      * From Autobahn WebSocket Client Testcase 2.4
      */
@@ -25,12 +25,14 @@ import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
 
 import org.eclipse.jetty.toolchain.test.ByteBufferAssert;
 import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.TypeUtil;
 import org.eclipse.jetty.websocket.core.Behavior;
+import org.eclipse.jetty.websocket.core.CompressionMemoryBudget;
 import org.eclipse.jetty.websocket.core.Configuration.ConfigurationCustomizer;
 import org.eclipse.jetty.websocket.core.ExtensionConfig;
 import org.eclipse.jetty.websocket.core.Frame;
@@ -46,6 +48,8 @@ import org.eclipse.jetty.websocket.core.internal.WebSocketCoreSession;
 import org.junit.jupiter.api.Test;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasItem;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -521,6 +525,113 @@ public class PerMessageDeflateExtensionTest extends AbstractExtensionTest
         //assertThat("Frame.payload", actual.getPayload(), is(BufferUtil.EMPTY_BUFFER));
     }
 
+    @Test
+    public void testContextTakeoverHoldsDeflaterUntilClose()
+    {
+        CompressionMemoryBudget budget = components.getCompressionMemoryBudget();
+        PerMessageDeflateExtension ext = new PerMessageDeflateExtension();
+        ext.init(ExtensionConfig.parse("permessage-deflate"), components);
+        ext.setCoreSession(newSession());
+        OutgoingFramesCapture capture = new OutgoingFramesCapture();
+        ext.setNextOutgoingFrames(capture);
+
+        ext.sendFrame(new Frame(OpCode.TEXT, "Hello"), Callback.NOOP, false);
+        ext.sendFrame(new Frame(OpCode.TEXT, "World"), Callback.NOOP, false);
+
+        capture.assertFrameCount(2);
+        assertThat(budget.getDeflaters(), is(1));
+        assertThat(budget.getMemory(), is(CompressionMemoryBudget.DEFLATER_MEMORY));
+
+        ext.close();
+        assertThat(budget.getDeflaters(), is(0));
+        assertThat(budget.getMemory(), is(0L));
+    }
+
+    @Test
+    public void testNoContextTakeoverBorrowsDeflaterPerMessage()
+    {
+        CompressionMemoryBudget budget = components.getCompressionMemoryBudget();
+        PerMessageDeflateExtension ext = new PerMessageDeflateExtension();
+        ext.init(ExtensionConfig.parse("permessage-deflate; server_no_context_takeover"), components);
+        ext.setCoreSession(newSession());
+        OutgoingFramesCapture capture = new OutgoingFramesCapture();
+        ext.setNextOutgoingFrames(capture);
+
+        ext.sendFrame(new Frame(OpCode.TEXT, false, "Hello "), Callback.NOOP, false);
+        assertThat(budget.getDeflaters(), is(1));
+        ext.sendFrame(new Frame(OpCode.CONTINUATION, true, "World"), Callback.NOOP, false);
+
+        capture.assertFrameCount(2);
+        assertThat(budget.getDeflaters(), is(0));
+        assertThat(budget.getContextTakeoverDowngrades(), is(0L));
+    }
+
+    @Test
+    public void testContextTakeoverRefusedWhenMemoryBudgetExceeded()
+    {
+        CompressionMemoryBudget budget = components.getCompressionMemoryBudget();
+        budget.setMaxMemory(CompressionMemoryBudget.DEFLATER_MEMORY);
+
+        PerMessageDeflateExtension ext1 = new PerMessageDeflateExtension();
+        ext1.init(ExtensionConfig.parse("permessage-deflate"), components);
+        ext1.setCoreSession(newSession());
+        ext1.setNextOutgoingFrames(new OutgoingFramesCapture());
+        ext1.sendFrame(new Frame(OpCode.TEXT, "Hello"), Callback.NOOP, false);
+        assertThat(ext1.getConfig().getParameterizedName(), is("permessage-deflate"));
+        assertThat(budget.isExceeded(), is(true));
+
+        // Only the server downgrades the configuration it negotiates.
+        List<ExtensionConfig> offered = List.of(ExtensionConfig.parse("permessage-deflate"));
+        ExtensionStack clientStack = new ExtensionStack(components, Behavior.CLIENT);
+        clientStack.negotiate(offered, offered);
+        assertThat(clientStack.getExtensions().get(0).getConfig().getParameterizedName(), is("permessage-deflate"));
+        assertThat(budget.getContextTakeoverDowngrades(), is(0L));
+
+        ExtensionStack serverStack = new ExtensionStack(components, Behavior.SERVER);
+        serverStack.negotiate(offered, offered);
+        PerMessageDeflateExtension ext2 = (PerMessageDeflateExtension)serverStack.getExtensions().get(0);
+        ext2.setCoreSession(newSession());
+        OutgoingFramesCapture capture = new OutgoingFramesCapture();
+        ext2.setNextOutgoingFrames(capture);
+        ext2.sendFrame(new Frame(OpCode.TEXT, "World"), Callback.NOOP, false);
+
+        ExtensionConfig negotiated = ext2.getConfig();
+        assertThat(negotiated.getParameterKeys(), hasItem("client_no_context_takeover"));
+        assertThat(negotiated.getParameterKeys(), hasItem("server_no_context_takeover"));
+        assertThat(budget.getContextTakeoverDowngrades(), is(1L));
+        capture.assertFrameCount(1);
+        assertThat(budget.getDeflaters(), is(1));
+
+        ext1.close();
+        assertThat(budget.isExceeded(), is(false));
+    }
+
+    @Test
+    public void testReleaseAfterCloseDoesNotPoolEndedDeflater() throws Exception
+    {
+        CompressionMemoryBudget budget = components.getCompressionMemoryBudget();
+        PerMessageDeflateExtension ext = new PerMessageDeflateExtension();
+        ext.init(ExtensionConfig.parse("permessage-deflate"), components);
+        ext.setCoreSession(newSession());
+        ext.setNextOutgoingFrames(new OutgoingFramesCapture());
+        ext.sendFrame(new Frame(OpCode.TEXT, "Hello"), Callback.NOOP, false);
+        assertThat(budget.getDeflaters(), is(1));
+
+        ext.close();
+        ext.releaseDeflater();
+        ext.close();
+        assertThat(budget.getDeflaters(), is(0));
+        assertThat(budget.getMemory(), is(0L));
+        assertThrows(IllegalStateException.class, ext::getDeflater);
+
+        // The ended Deflater has not been returned to the pool.
+        Deflater deflater = components.getDeflaterPool().acquire();
+        deflater.setInput(new byte[]{'a', 'b', 'c'});
+        deflater.finish();
+        assertThat(deflater.deflate(new byte[64]), greaterThan(0));
+        components.getDeflaterPool().release(deflater);
+    }
+
     @Test
     public void testPyWebSocketClientNoContextTakeoverThreeOra()
     {
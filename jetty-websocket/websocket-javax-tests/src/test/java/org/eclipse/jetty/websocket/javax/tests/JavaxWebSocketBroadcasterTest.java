@@ -0,0 +1,143 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under
+// the terms of the Eclipse Public License 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0
+//
+// This Source Code may also be made available under the following
+// Secondary Licenses when the conditions for such availability set
+// forth in the Eclipse Public License, v. 2.0 are satisfied:
+// the Apache License v2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.websocket.javax.tests;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import javax.websocket.EndpointConfig;
+import javax.websocket.SendHandler;
+import javax.websocket.Session;
+import javax.websocket.server.ServerEndpoint;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.util.BlockingArrayQueue;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.websocket.javax.client.JavaxWebSocketClientContainer;
+import org.eclipse.jetty.websocket.javax.common.JavaxWebSocketBroadcaster;
+import org.eclipse.jetty.websocket.javax.server.config.JavaxWebSocketServletContainerInitializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JavaxWebSocketBroadcasterTest
+{
+    private static final BlockingQueue<BroadcastEndpoint> serverEndpoints = new BlockingArrayQueue<>();
+
+    private Server server;
+    private ServerConnector connector;
+    private JavaxWebSocketClientContainer client = new JavaxWebSocketClientContainer();
+
+    @ServerEndpoint("/")
+    public static class BroadcastEndpoint extends EventSocket
+    {
+        @Override
+        public void onOpen(Session session, EndpointConfig endpointConfig)
+        {
+            super.onOpen(session, endpointConfig);
+            serverEndpoints.add(this);
+        }
+    }
+
+    @BeforeEach
+    public void start() throws Exception
+    {
+        server = new Server();
+        connector = new ServerConnector(server);
+        server.addConnector(connector);
+
+        ServletContextHandler contextHandler = new ServletContextHandler(ServletContextHandler.SESSIONS);
+        contextHandler.setContextPath("/");
+        server.setHandler(contextHandler);
+
+        JavaxWebSocketServletContainerInitializer.configure(contextHandler, (servletContext, container) ->
+            container.addEndpoint(BroadcastEndpoint.class));
+
+        client.start();
+        server.start();
+    }
+
+    @AfterEach
+    public void stop() throws Exception
+    {
+        serverEndpoints.clear();
+        client.stop();
+        server.stop();
+    }
+
+    private static SendHandler handler(CompletableFuture<Void> completable)
+    {
+        return result ->
+        {
+            if (result.isOK())
+                completable.complete(null);
+            else
+                completable.completeExceptionally(result.getException());
+        };
+    }
+
+    @Test
+    public void testBroadcastToTwoSessions() throws Exception
+    {
+        URI uri = new URI("ws://localhost:" + connector.getLocalPort() + "/");
+        List<EventSocket> clientEndpoints = new ArrayList<>();
+        List<Session> serverSessions = new ArrayList<>();
+        for (int i = 0; i < 2; ++i)
+        {
+            EventSocket clientEndpoint = new EventSocket();
+            client.connectToServer(clientEndpoint, uri);
+            clientEndpoints.add(clientEndpoint);
+
+            BroadcastEndpoint serverEndpoint = serverEndpoints.poll(5, TimeUnit.SECONDS);
+            assertNotNull(serverEndpoint);
+            serverSessions.add(serverEndpoint.session);
+        }
+
+        JavaxWebSocketBroadcaster broadcaster = new JavaxWebSocketBroadcaster();
+        CompletableFuture<Void> textSent = new CompletableFuture<>();
+        broadcaster.broadcastText(serverSessions, "Hello Broadcast", handler(textSent));
+        textSent.get(5, TimeUnit.SECONDS);
+        CompletableFuture<Void> binarySent = new CompletableFuture<>();
+        broadcaster.broadcastBinary(serverSessions, BufferUtil.toBuffer("Binary Broadcast"), handler(binarySent));
+        binarySent.get(5, TimeUnit.SECONDS);
+
+        for (EventSocket clientEndpoint : clientEndpoints)
+        {
+            assertEquals("Hello Broadcast", clientEndpoint.textMessages.poll(5, TimeUnit.SECONDS));
+            ByteBuffer binary = clientEndpoint.binaryMessages.poll(5, TimeUnit.SECONDS);
+            assertNotNull(binary);
+            assertEquals("Binary Broadcast", BufferUtil.toString(binary));
+            clientEndpoint.session.close();
+            assertTrue(clientEndpoint.closeLatch.await(5, TimeUnit.SECONDS));
+        }
+
+        assertEquals(2, broadcaster.getBroadcaster().getBroadcasts());
+        assertEquals(4, broadcaster.getBroadcaster().getSharedFrames());
+    }
+}
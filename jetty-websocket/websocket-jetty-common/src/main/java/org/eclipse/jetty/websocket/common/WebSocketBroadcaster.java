@@ -0,0 +1,80 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under
+// the terms of the Eclipse Public License 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0
+//
+// This Source Code may also be made available under the following
+// Secondary Licenses when the conditions for such availability set
+// forth in the Eclipse Public License, v. 2.0 are satisfied:
+// the Apache License v2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.websocket.common;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.eclipse.jetty.websocket.core.Broadcaster;
+import org.eclipse.jetty.websocket.core.CoreSession;
+import org.eclipse.jetty.websocket.core.Frame;
+import org.eclipse.jetty.websocket.core.OpCode;
+
+/**
+ * <p>Sends the same message to many sessions, encoding it only once.</p>
+ *
+ * @see Broadcaster
+ */
+public class WebSocketBroadcaster
+{
+    private final Broadcaster broadcaster = new Broadcaster();
+
+    public Broadcaster getBroadcaster()
+    {
+        return broadcaster;
+    }
+
+    /**
+     * @param sessions the sessions to send the text message to
+     * @param text the text message
+     * @param callback the callback notified when the message has been sent to all the sessions
+     */
+    public void broadcastString(Collection<? extends Session> sessions, String text, WriteCallback callback)
+    {
+        broadcast(sessions, new Frame(OpCode.TEXT).setPayload(text), callback);
+    }
+
+    /**
+     * @param sessions the sessions to send the binary message to
+     * @param data the binary message
+     * @param callback the callback notified when the message has been sent to all the sessions
+     */
+    public void broadcastBytes(Collection<? extends Session> sessions, ByteBuffer data, WriteCallback callback)
+    {
+        broadcast(sessions, new Frame(OpCode.BINARY).setPayload(data), callback);
+    }
+
+    private void broadcast(Collection<? extends Session> sessions, Frame frame, WriteCallback callback)
+    {
+        List<CoreSession> coreSessions = new ArrayList<>(sessions.size());
+        for (Session session : sessions)
+        {
+            if (!(session instanceof WebSocketSession))
+                throw new IllegalArgumentException("Unsupported session " + session);
+            coreSessions.add(((WebSocketSession)session).getCoreSession());
+        }
+        Callback cb = callback == null ? Callback.NOOP : Callback.from(callback::writeSuccess, callback::writeFailed);
+        broadcaster.broadcast(coreSessions, frame, cb);
+    }
+}
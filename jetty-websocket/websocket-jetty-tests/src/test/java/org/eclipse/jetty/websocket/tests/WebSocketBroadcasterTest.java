@@ -0,0 +1,123 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under
+// the terms of the Eclipse Public License 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0
+//
+// This Source Code may also be made available under the following
+// Secondary Licenses when the conditions for such availability set
+// forth in the Eclipse Public License, v. 2.0 are satisfied:
+// the Apache License v2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.websocket.tests;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.util.BlockingArrayQueue;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.client.WebSocketClient;
+import org.eclipse.jetty.websocket.common.WebSocketBroadcaster;
+import org.eclipse.jetty.websocket.server.config.JettyWebSocketServletContainerInitializer;
+import org.eclipse.jetty.websocket.tests.util.FutureWriteCallback;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WebSocketBroadcasterTest
+{
+    private final BlockingQueue<EventSocket> serverEndpoints = new BlockingArrayQueue<>();
+    private Server server;
+    private ServerConnector connector;
+    private WebSocketClient client;
+
+    @BeforeEach
+    public void start() throws Exception
+    {
+        server = new Server();
+        connector = new ServerConnector(server);
+        server.addConnector(connector);
+
+        ServletContextHandler contextHandler = new ServletContextHandler(ServletContextHandler.SESSIONS);
+        contextHandler.setContextPath("/");
+        server.setHandler(contextHandler);
+
+        JettyWebSocketServletContainerInitializer.configure(contextHandler, (servletContext, container) ->
+            container.addMapping("/", (req, resp) ->
+            {
+                EventSocket endpoint = new EventSocket();
+                serverEndpoints.offer(endpoint);
+                return endpoint;
+            }));
+
+        client = new WebSocketClient();
+        server.start();
+        client.start();
+    }
+
+    @AfterEach
+    public void stop() throws Exception
+    {
+        client.stop();
+        server.stop();
+    }
+
+    @Test
+    public void testBroadcastToTwoSessions() throws Exception
+    {
+        URI uri = new URI("ws://localhost:" + connector.getLocalPort() + "/");
+        List<EventSocket> clientEndpoints = new ArrayList<>();
+        List<Session> serverSessions = new ArrayList<>();
+        for (int i = 0; i < 2; ++i)
+        {
+            EventSocket clientEndpoint = new EventSocket();
+            client.connect(clientEndpoint, uri).get(5, TimeUnit.SECONDS);
+            clientEndpoints.add(clientEndpoint);
+
+            EventSocket serverEndpoint = serverEndpoints.poll(5, TimeUnit.SECONDS);
+            assertNotNull(serverEndpoint);
+            assertTrue(serverEndpoint.openLatch.await(5, TimeUnit.SECONDS));
+            serverSessions.add(serverEndpoint.session);
+        }
+
+        WebSocketBroadcaster broadcaster = new WebSocketBroadcaster();
+        FutureWriteCallback textCallback = new FutureWriteCallback();
+        broadcaster.broadcastString(serverSessions, "Hello Broadcast", textCallback);
+        textCallback.get(5, TimeUnit.SECONDS);
+        FutureWriteCallback binaryCallback = new FutureWriteCallback();
+        broadcaster.broadcastBytes(serverSessions, BufferUtil.toBuffer("Binary Broadcast"), binaryCallback);
+        binaryCallback.get(5, TimeUnit.SECONDS);
+
+        for (EventSocket clientEndpoint : clientEndpoints)
+        {
+            assertEquals("Hello Broadcast", clientEndpoint.messageQueue.poll(5, TimeUnit.SECONDS));
+            ByteBuffer binary = clientEndpoint.binaryMessageQueue.poll(5, TimeUnit.SECONDS);
+            assertNotNull(binary);
+            assertEquals("Binary Broadcast", BufferUtil.toString(binary));
+            clientEndpoint.session.close();
+            assertTrue(clientEndpoint.closeLatch.await(5, TimeUnit.SECONDS));
+        }
+
+        assertEquals(2, broadcaster.getBroadcaster().getBroadcasts());
+        assertEquals(4, broadcaster.getBroadcaster().getSharedFrames());
+    }
+}
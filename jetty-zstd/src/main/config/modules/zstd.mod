@@ -0,0 +1,25 @@
+DO NOT EDIT - See: https://www.eclipse.org/jetty/documentation/current/startup-modules.html
+
+[description]
+Enables the zstd content coding, so that GzipHandler can
+compress responses and uncompress requests with Zstandard
+when the client accepts it.
+
+[tags]
+handler
+
+[depend]
+gzip
+
+[files]
+maven://io.airlift/aircompressor/0.25|lib/zstd/aircompressor-0.25.jar
+
+[lib]
+lib/jetty-zstd-${jetty.version}.jar
+lib/zstd/*.jar
+
+[license]
+Jetty Zstandard support is implemented using aircompressor, which is an
+open source project hosted on Github and released under the Apache 2.0 license.
+https://github.com/airlift/aircompressor
+http://www.apache.org/licenses/LICENSE-2.0.html
@@ -0,0 +1,517 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under
+// the terms of the Eclipse Public License 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0
+//
+// This Source Code may also be made available under the following
+// Secondary Licenses when the conditions for such availability set
+// forth in the Eclipse Public License, v. 2.0 are satisfied:
+// the Apache License v2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.zstd;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+
+import io.airlift.compress.MalformedInputException;
+import io.airlift.compress.zstd.ZstdCompressor;
+import io.airlift.compress.zstd.ZstdDecompressor;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.compression.Compression;
+
+/**
+ * <p>The {@code zstd} content coding (RFC 8878), implemented with the pure Java
+ * <a href="https://github.com/airlift/aircompressor">aircompressor</a> library.</p>
+ * <p>Content is encoded in frames of at most {@link #getFrameSize()} bytes of content, each frame
+ * being compressed at once when it is full, when the content is flushed or when it is finished.
+ * A sequence of frames is a valid encoded content, that decoders decode as the concatenation
+ * of the content of the frames.</p>
+ * <p>Encoders reuse their compressor and buffers from a pool of at most {@link #getPoolCapacity()}
+ * entries.  Decoders buffer one frame of compressed content at a time, of at most
+ * {@link #getMaxFrameSize()} bytes, and decode it at once, rejecting frames whose content
+ * could be larger than {@link #getMaxContentSize()} bytes.</p>
+ * <p>This compression is discovered by the {@link java.util.ServiceLoader}, so that it is
+ * available to {@code GzipHandler} as soon as this module is in the class path.</p>
+ */
+public class ZstdCompression implements Compression
+{
+    public static final String ZSTD = "zstd";
+    public static final int DEFAULT_FRAME_SIZE = 128 * 1024;
+    public static final int DEFAULT_POOL_CAPACITY = 16;
+    public static final int DEFAULT_MAX_FRAME_SIZE = 8 * 1024 * 1024;
+    public static final int DEFAULT_MAX_CONTENT_SIZE = 8 * 1024 * 1024;
+
+    private final Queue<EncoderContext> _pool;
+    private final int _frameSize;
+    private final int _poolCapacity;
+    private final int _maxFrameSize;
+    private final int _maxContentSize;
+
+    public ZstdCompression()
+    {
+        this(DEFAULT_FRAME_SIZE);
+    }
+
+    /**
+     * @param frameSize the maximum size of the content compressed in a frame
+     */
+    public ZstdCompression(int frameSize)
+    {
+        this(frameSize, DEFAULT_POOL_CAPACITY, DEFAULT_MAX_FRAME_SIZE);
+    }
+
+    /**
+     * @param frameSize the maximum size of the content compressed in a frame
+     * @param poolCapacity the maximum number of encoder compressors and buffers kept for reuse, or 0 to not reuse them
+     * @param maxFrameSize the maximum size of a compressed frame that decoders accept
+     */
+    public ZstdCompression(int frameSize, int poolCapacity, int maxFrameSize)
+    {
+        this(frameSize, poolCapacity, maxFrameSize, DEFAULT_MAX_CONTENT_SIZE);
+    }
+
+    /**
+     * @param frameSize the maximum size of the content compressed in a frame
+     * @param poolCapacity the maximum number of encoder compressors and buffers kept for reuse, or 0 to not reuse them
+     * @param maxFrameSize the maximum size of a compressed frame that decoders accept
+     * @param maxContentSize the maximum size of the decoded content of a frame that decoders accept
+     */
+    public ZstdCompression(int frameSize, int poolCapacity, int maxFrameSize, int maxContentSize)
+    {
+        if (frameSize <= 0)
+            throw new IllegalArgumentException("Invalid frame size " + frameSize);
+        if (poolCapacity < 0)
+            throw new IllegalArgumentException("Invalid pool capacity " + poolCapacity);
+        if (maxFrameSize <= 0)
+            throw new IllegalArgumentException("Invalid max frame size " + maxFrameSize);
+        if (maxContentSize <= 0)
+            throw new IllegalArgumentException("Invalid max content size " + maxContentSize);
+        _frameSize = frameSize;
+        _poolCapacity = poolCapacity;
+        _maxFrameSize = maxFrameSize;
+        _maxContentSize = maxContentSize;
+        _pool = poolCapacity == 0 ? null : new ArrayBlockingQueue<>(poolCapacity);
+    }
+
+    /**
+     * @return the maximum size of the content compressed in a frame
+     */
+    public int getFrameSize()
+    {
+        return _frameSize;
+    }
+
+    /**
+     * @return the maximum number of encoder compressors and buffers kept for reuse
+     */
+    public int getPoolCapacity()
+    {
+        return _poolCapacity;
+    }
+
+    /**
+     * @return the maximum size of a compressed frame that decoders accept
+     */
+    public int getMaxFrameSize()
+    {
+        return _maxFrameSize;
+    }
+
+    /**
+     * @return the maximum size of the decoded content of a frame that decoders accept
+     */
+    public int getMaxContentSize()
+    {
+        return _maxContentSize;
+    }
+
+    @Override
+    public String getEncoding()
+    {
+        return ZSTD;
+    }
+
+    @Override
+    public Encoder newEncoder()
+    {
+        EncoderContext context = _pool == null ? null : _pool.poll();
+        if (context == null)
+            context = new EncoderContext();
+        return new ZstdEncoder(context, _frameSize);
+    }
+
+    @Override
+    public Decoder newDecoder(int bufferSize)
+    {
+        return new ZstdDecoder(bufferSize, _maxFrameSize, _maxContentSize);
+    }
+
+    private void release(EncoderContext context)
+    {
+        if (_pool != null)
+            _pool.offer(context);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{%s,frameSize=%d}", getClass().getSimpleName(), hashCode(), getEncoding(), _frameSize);
+    }
+
+    /**
+     * The reusable state of an encoder.
+     */
+    private static class EncoderContext
+    {
+        private final ZstdCompressor _compressor = new ZstdCompressor();
+        private byte[] _frame = new byte[0];
+        private byte[] _output = new byte[0];
+    }
+
+    private class ZstdEncoder implements Encoder
+    {
+        private final int _frameSize;
+        private EncoderContext _context;
+        private ByteBuffer _input;
+        private int _frameLength;
+        private int _outputOffset;
+        private int _outputLimit;
+        private int _frames;
+        private boolean _finish;
+        private boolean _finished;
+
+        private ZstdEncoder(EncoderContext context, int frameSize)
+        {
+            _context = context;
+            _frameSize = frameSize;
+        }
+
+        @Override
+        public void setInput(ByteBuffer content)
+        {
+            _input = content;
+        }
+
+        @Override
+        public boolean needsInput()
+        {
+            return BufferUtil.isEmpty(_input);
+        }
+
+        @Override
+        public void finish()
+        {
+            _finish = true;
+        }
+
+        @Override
+        public boolean finished()
+        {
+            return _finished;
+        }
+
+        @Override
+        public int encode(ByteBuffer buffer, boolean flush)
+        {
+            int position = BufferUtil.flipToFill(buffer);
+            int start = buffer.position();
+            try
+            {
+                while (buffer.hasRemaining() && !_finished)
+                {
+                    // Write the pending compressed frame.
+                    if (_outputOffset < _outputLimit)
+                    {
+                        int length = Math.min(buffer.remaining(), _outputLimit - _outputOffset);
+                        buffer.put(_context._output, _outputOffset, length);
+                        _outputOffset += length;
+                        continue;
+                    }
+
+                    // Accumulate the content in the frame.
+                    if (!needsInput())
+                    {
+                        int length = Math.min(_input.remaining(), _frameSize - _frameLength);
+                        byte[] frame = _context._frame;
+                        if (frame.length < _frameLength + length)
+                            frame = _context._frame = Arrays.copyOf(frame, Math.min(_frameSize, Math.max(_frameLength + length, 2 * frame.length)));
+                        _input.get(frame, _frameLength, length);
+                        _frameLength += length;
+                        // Forget the consumed content, as its buffer may then be reused and refilled.
+                        if (!_input.hasRemaining())
+                            _input = null;
+                    }
+
+                    boolean last = _finish && needsInput();
+                    if (_frameLength == _frameSize || (_frameLength > 0 && (flush || last)) || (last && _frames == 0))
+                    {
+                        compressFrame();
+                        continue;
+                    }
+
+                    if (last)
+                        _finished = true;
+                    else if (needsInput())
+                        break;
+                }
+                return buffer.position() - start;
+            }
+            finally
+            {
+                BufferUtil.flipToFlush(buffer, position);
+            }
+        }
+
+        private void compressFrame()
+        {
+            EncoderContext context = _context;
+            int maxLength = context._compressor.maxCompressedLength(_frameLength);
+            if (context._output.length < maxLength)
+                context._output = new byte[maxLength];
+            _outputLimit = context._compressor.compress(context._frame, 0, _frameLength, context._output, 0, context._output.length);
+            _outputOffset = 0;
+            _frameLength = 0;
+            _frames++;
+        }
+
+        @Override
+        public void destroy()
+        {
+            _input = null;
+            EncoderContext context = _context;
+            _context = null;
+            // Buffers of other frame sizes are not reused, as they would not fit this compression.
+            if (context != null && context._frame.length <= _frameSize)
+                release(context);
+        }
+    }
+
+    private static class ZstdDecoder implements Decoder
+    {
+        private static final int ZSTD_MAGIC = 0xFD2FB528;
+        private static final int SKIPPABLE_MAGIC_MASK = 0xFFFFFFF0;
+        private static final int SKIPPABLE_MAGIC = 0x184D2A50;
+        private static final int MAX_BLOCK_SIZE = 128 * 1024;
+        private static final int[] DICTIONARY_ID_SIZES = {0, 1, 2, 4};
+        private static final int MIN_INPUT_SIZE = 4096;
+
+        private final ZstdDecompressor _decompressor = new ZstdDecompressor();
+        private final int _bufferSize;
+        private final int _maxFrameSize;
+        private final int _maxContentSize;
+        private ByteBuffer _chunk;
+        private byte[] _input = new byte[MIN_INPUT_SIZE];
+        private int _inputLimit;
+        private byte[] _output = new byte[0];
+        private int _outputOffset;
+        private int _outputLimit;
+        private long _contentBound;
+
+        private ZstdDecoder(int bufferSize, int maxFrameSize, int maxContentSize)
+        {
+            _bufferSize = bufferSize;
+            _maxFrameSize = maxFrameSize;
+            _maxContentSize = maxContentSize;
+        }
+
+        @Override
+        public ByteBuffer decode(ByteBuffer compressed)
+        {
+            // The decoded chunk is released before more content is decoded, so it is reused.
+            ByteBuffer chunk = _chunk == null ? BufferUtil.allocate(_bufferSize) : _chunk;
+            _chunk = null;
+            int position = BufferUtil.flipToFill(chunk);
+            while (chunk.hasRemaining())
+            {
+                // Copy the content of the decoded frame.
+                if (_outputOffset < _outputLimit)
+                {
+                    int length = Math.min(chunk.remaining(), _outputLimit - _outputOffset);
+                    chunk.put(_output, _outputOffset, length);
+                    _outputOffset += length;
+                    // Do not keep the buffer of an unusually large frame.
+                    if (_outputOffset == _outputLimit && _output.length > MAX_BLOCK_SIZE)
+                    {
+                        _output = new byte[0];
+                        _outputOffset = 0;
+                        _outputLimit = 0;
+                    }
+                    continue;
+                }
+
+                append(compressed);
+                int frameLength = frameLength();
+                if (frameLength < 0)
+                {
+                    if (_inputLimit > _maxFrameSize)
+                        throw new MalformedInputException(_inputLimit, "Frame larger than " + _maxFrameSize + " bytes");
+                    break;
+                }
+
+                if (_contentBound > 0)
+                {
+                    // The declared content size is controlled by the peer, so it is
+                    // trusted only if the blocks of the frame may actually produce it.
+                    long contentSize = ZstdDecompressor.getDecompressedSize(_input, 0, frameLength);
+                    long outputSize = contentSize >= 0 ? Math.min(contentSize, _contentBound) : _contentBound;
+                    if (outputSize > _maxContentSize)
+                        throw new MalformedInputException(0, "Frame content larger than " + _maxContentSize + " bytes");
+                    if (_output.length < outputSize)
+                        _output = new byte[(int)outputSize];
+                    _outputLimit = _decompressor.decompress(_input, 0, frameLength, _output, 0, (int)outputSize);
+                    _outputOffset = 0;
+                }
+                System.arraycopy(_input, frameLength, _input, 0, _inputLimit - frameLength);
+                _inputLimit -= frameLength;
+                if (_inputLimit == 0 && _input.length > MAX_BLOCK_SIZE)
+                    _input = new byte[MIN_INPUT_SIZE];
+            }
+            BufferUtil.flipToFlush(chunk, position);
+            if (!chunk.hasRemaining())
+            {
+                _chunk = chunk;
+                return BufferUtil.EMPTY_BUFFER;
+            }
+            return chunk;
+        }
+
+        /**
+         * Copies compressed content to the input buffer.
+         */
+        private void append(ByteBuffer compressed)
+        {
+            int length = compressed.remaining();
+            if (length == 0)
+                return;
+            if (_input.length - _inputLimit < length)
+                _input = Arrays.copyOf(_input, Math.max(_inputLimit + length, 2 * _input.length));
+            compressed.get(_input, _inputLimit, length);
+            _inputLimit += length;
+        }
+
+        /**
+         * <p>Scans the frame at the beginning of the input buffer, without decoding it.</p>
+         * <p>Also computes the max size of the content of the frame, that is 0 for skippable frames.</p>
+         *
+         * @return the length of the frame, or -1 if the input buffer does not hold the whole frame
+         */
+        private int frameLength()
+        {
+            byte[] input = _input;
+            int limit = _inputLimit;
+            if (limit < 4)
+                return -1;
+
+            int magic = readInt(input, 0);
+            if ((magic & SKIPPABLE_MAGIC_MASK) == SKIPPABLE_MAGIC)
+            {
+                if (limit < 8)
+                    return -1;
+                long length = 8 + (readInt(input, 4) & 0xFFFFFFFFL);
+                if (length > _maxFrameSize)
+                    throw new MalformedInputException(0, "Frame larger than " + _maxFrameSize + " bytes");
+                _contentBound = 0;
+                return length > limit ? -1 : (int)length;
+            }
+            if (magic != ZSTD_MAGIC)
+                throw new MalformedInputException(0, "Invalid magic prefix");
+            if (limit < 5)
+                return -1;
+
+            int descriptor = input[4] & 0xFF;
+            int contentSizeFlag = descriptor >>> 6;
+            boolean singleSegment = (descriptor & 0x20) != 0;
+            boolean checksum = (descriptor & 0x04) != 0;
+            int offset = 5;
+            if (!singleSegment)
+                offset += 1;
+            offset += DICTIONARY_ID_SIZES[descriptor & 0x03];
+            if (contentSizeFlag > 0)
+                offset += 1 << contentSizeFlag;
+            else if (singleSegment)
+                offset += 1;
+
+            long bound = 0;
+            while (true)
+            {
+                if (offset + 3 > limit)
+                    return -1;
+                int header = (input[offset] & 0xFF) | (input[offset + 1] & 0xFF) << 8 | (input[offset + 2] & 0xFF) << 16;
+                offset += 3;
+                int size = header >>> 3;
+                if (size > MAX_BLOCK_SIZE)
+                    throw new MalformedInputException(offset, "Block larger than " + MAX_BLOCK_SIZE + " bytes");
+                switch ((header >>> 1) & 0x03)
+                {
+                    case 0: // Raw block.
+                        offset += size;
+                        bound += size;
+                        break;
+                    case 1: // RLE block.
+                        offset += 1;
+                        bound += size;
+                        break;
+                    case 2: // Compressed block.
+                        offset += size;
+                        bound += MAX_BLOCK_SIZE;
+                        break;
+                    default:
+                        throw new MalformedInputException(offset, "Invalid block type");
+                }
+                if (offset > limit)
+                    return -1;
+                if ((header & 0x01) != 0)
+                    break;
+            }
+            if (checksum)
+                offset += 4;
+            if (offset > limit)
+                return -1;
+            // An empty frame still needs to be decoded to be verified.
+            _contentBound = Math.max(1, bound);
+            return offset;
+        }
+
+        private static int readInt(byte[] bytes, int offset)
+        {
+            return (bytes[offset] & 0xFF) |
+                (bytes[offset + 1] & 0xFF) << 8 |
+                (bytes[offset + 2] & 0xFF) << 16 |
+                (bytes[offset + 3] & 0xFF) << 24;
+        }
+
+        @Override
+        public boolean isFinished()
+        {
+            return _inputLimit == 0 && _outputOffset == _outputLimit;
+        }
+
+        @Override
+        public void release(ByteBuffer buffer)
+        {
+            if (buffer.capacity() == _bufferSize)
+            {
+                BufferUtil.clear(buffer);
+                _chunk = buffer;
+            }
+        }
+
+        @Override
+        public void destroy()
+        {
+            _chunk = null;
+            _input = null;
+            _output = null;
+        }
+    }
+}
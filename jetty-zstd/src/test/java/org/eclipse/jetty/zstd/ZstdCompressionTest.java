@@ -0,0 +1,261 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under
+// the terms of the Eclipse Public License 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0
+//
+// This Source Code may also be made available under the following
+// Secondary Licenses when the conditions for such availability set
+// forth in the Eclipse Public License, v. 2.0 are satisfied:
+// the Apache License v2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.zstd;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import io.airlift.compress.MalformedInputException;
+import io.airlift.compress.zstd.ZstdInputStream;
+import io.airlift.compress.zstd.ZstdOutputStream;
+import org.eclipse.jetty.http.tools.HttpTester;
+import org.eclipse.jetty.server.LocalConnector;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.server.handler.gzip.GzipHandler;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.compression.Compression;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ZstdCompressionTest
+{
+    private static byte[] content(int size)
+    {
+        Random random = new Random(size);
+        byte[] content = new byte[size];
+        for (int i = 0; i < size; i++)
+        {
+            content[i] = (byte)('a' + random.nextInt(8));
+        }
+        return content;
+    }
+
+    private static byte[] encode(Compression compression, byte[] content, int chunkSize, int bufferSize, boolean flush)
+    {
+        Compression.Encoder encoder = compression.newEncoder();
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        ByteBuffer buffer = BufferUtil.allocate(bufferSize);
+
+        // Pass the content in chunks, reusing the same buffer as an application would.
+        ByteBuffer input = BufferUtil.allocate(chunkSize);
+        for (int offset = 0; offset < content.length; offset += chunkSize)
+        {
+            BufferUtil.clear(input);
+            BufferUtil.append(input, content, offset, Math.min(chunkSize, content.length - offset));
+            encoder.setInput(input);
+            do
+            {
+                BufferUtil.clear(buffer);
+                encoder.encode(buffer, flush);
+                encoded.write(buffer.array(), buffer.arrayOffset(), buffer.remaining());
+            }
+            while (!encoder.needsInput() || buffer.hasRemaining());
+        }
+        encoder.finish();
+        while (!encoder.finished())
+        {
+            BufferUtil.clear(buffer);
+            encoder.encode(buffer, false);
+            encoded.write(buffer.array(), buffer.arrayOffset(), buffer.remaining());
+        }
+        encoder.destroy();
+        return encoded.toByteArray();
+    }
+
+    private static byte[] decode(Compression compression, byte[] encoded, int chunkSize, int bufferSize)
+    {
+        Compression.Decoder decoder = compression.newDecoder(bufferSize);
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        for (int offset = 0; offset < encoded.length; offset += chunkSize)
+        {
+            ByteBuffer input = ByteBuffer.wrap(encoded, offset, Math.min(chunkSize, encoded.length - offset));
+            while (true)
+            {
+                ByteBuffer chunk = decoder.decode(input);
+                if (!chunk.hasRemaining())
+                    break;
+                assertTrue(chunk.remaining() <= bufferSize);
+                decoded.write(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining());
+                decoder.release(chunk);
+            }
+        }
+        assertTrue(decoder.isFinished());
+        decoder.destroy();
+        return decoded.toByteArray();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, 1000, 300_000})
+    public void testRoundTrip(int size)
+    {
+        byte[] content = content(size);
+        ZstdCompression compression = new ZstdCompression(64 * 1024);
+
+        byte[] encoded = encode(compression, content, 1000, 512, false);
+        assertArrayEquals(content, decode(compression, encoded, 100, 1024));
+
+        byte[] flushed = encode(compression, content, 1000, 512, true);
+        assertArrayEquals(content, decode(compression, flushed, 4096, 100));
+    }
+
+    @Test
+    public void testPooledEncoders()
+    {
+        ZstdCompression compression = new ZstdCompression(16 * 1024, 1, 64 * 1024);
+        // Encoders reuse the compressor and buffers of the previous, destroyed, encoder.
+        for (int size : new int[]{100_000, 10, 50_000, 0})
+        {
+            byte[] content = content(size);
+            byte[] encoded = encode(compression, content, 1000, 512, false);
+            assertArrayEquals(content, decode(compression, encoded, 700, 1024));
+        }
+    }
+
+    @Test
+    public void testFrameLargerThanMaxFrameSize()
+    {
+        byte[] content = content(100_000);
+        byte[] encoded = encode(new ZstdCompression(), content, 8192, 4096, false);
+
+        ZstdCompression compression = new ZstdCompression(ZstdCompression.DEFAULT_FRAME_SIZE, 0, 1024);
+        assertThrows(MalformedInputException.class, () -> decode(compression, encoded, 4096, 4096));
+    }
+
+    @Test
+    public void testFrameContentLargerThanMaxContentSize()
+    {
+        byte[] content = content(100_000);
+        byte[] encoded = encode(new ZstdCompression(), content, 8192, 4096, false);
+        ZstdCompression compression = new ZstdCompression(ZstdCompression.DEFAULT_FRAME_SIZE, 0, ZstdCompression.DEFAULT_MAX_FRAME_SIZE, 64 * 1024);
+        assertThrows(MalformedInputException.class, () -> decode(compression, encoded, 4096, 4096));
+
+        // A small frame that declares a huge content size, made of RLE blocks.
+        int blocks = 100;
+        ByteBuffer bomb = ByteBuffer.allocate(14 + 4 * blocks).order(ByteOrder.LITTLE_ENDIAN);
+        bomb.putInt(0xFD2FB528);
+        // Single segment, 8 bytes content size.
+        bomb.put((byte)0xE0);
+        bomb.putLong(Integer.MAX_VALUE - 8);
+        for (int i = 0; i < blocks; i++)
+        {
+            // RLE blocks of 128 KiB, the last one ending the frame.
+            int header = (128 * 1024) << 3 | 1 << 1 | (i == blocks - 1 ? 1 : 0);
+            bomb.put((byte)header).put((byte)(header >>> 8)).put((byte)(header >>> 16));
+            bomb.put((byte)'a');
+        }
+        byte[] bytes = bomb.array();
+        assertThat(bytes.length, lessThan(ZstdCompression.DEFAULT_MAX_FRAME_SIZE));
+        assertThrows(MalformedInputException.class, () -> decode(new ZstdCompression(), bytes, 4096, 4096));
+    }
+
+    @Test
+    public void testInteroperability() throws IOException
+    {
+        byte[] content = content(300_000);
+        ZstdCompression compression = new ZstdCompression();
+
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        IO.copy(new ZstdInputStream(new ByteArrayInputStream(encode(compression, content, 8192, 4096, false))), decoded);
+        assertArrayEquals(content, decoded.toByteArray());
+
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        try (ZstdOutputStream output = new ZstdOutputStream(encoded))
+        {
+            output.write(content);
+        }
+        assertArrayEquals(content, decode(compression, encoded.toByteArray(), 8192, 4096));
+    }
+
+    @Test
+    public void testGzipHandler() throws Exception
+    {
+        byte[] content = content(100_000);
+        Server server = new Server();
+        LocalConnector connector = new LocalConnector(server);
+        server.addConnector(connector);
+        GzipHandler gzipHandler = new GzipHandler();
+        gzipHandler.setInflateBufferSize(4096);
+        server.setHandler(gzipHandler);
+        gzipHandler.setHandler(new AbstractHandler()
+        {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException
+            {
+                baseRequest.setHandled(true);
+                response.setContentType("text/plain");
+                if ("POST".equals(request.getMethod()))
+                    IO.copy(request.getInputStream(), response.getOutputStream());
+                else
+                    response.getOutputStream().write(content);
+            }
+        });
+        server.start();
+        try
+        {
+            HttpTester.Request request = HttpTester.newRequest();
+            request.setURI("/");
+            request.setHeader("Host", "localhost");
+            request.setHeader("Accept-Encoding", "gzip, zstd");
+
+            HttpTester.Response response = HttpTester.parseResponse(connector.getResponse(request.generate()));
+            assertThat(response.getStatus(), is(200));
+            assertThat(response.get("Content-Encoding"), is("zstd"));
+            assertArrayEquals(content, decode(new ZstdCompression(), response.getContentBytes(), 8192, 4096));
+
+            request.setHeader("Accept-Encoding", "gzip, zstd;q=0.5");
+            response = HttpTester.parseResponse(connector.getResponse(request.generate()));
+            assertThat(response.getStatus(), is(200));
+            assertThat(response.get("Content-Encoding"), is("gzip"));
+
+            String text = "Hello Zstandard";
+            request = HttpTester.newRequest();
+            request.setMethod("POST");
+            request.setURI("/");
+            request.setHeader("Host", "localhost");
+            request.setHeader("Content-Encoding", "zstd");
+            request.setContent(encode(new ZstdCompression(), text.getBytes(StandardCharsets.UTF_8), 1024, 1024, false));
+            response = HttpTester.parseResponse(connector.getResponse(request.generate()));
+            assertThat(response.getStatus(), is(200));
+            assertEquals(text, response.getContent());
+        }
+        finally
+        {
+            server.stop();
+        }
+    }
+}
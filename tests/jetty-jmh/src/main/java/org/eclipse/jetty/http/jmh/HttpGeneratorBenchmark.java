@@ -0,0 +1,137 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under
+// the terms of the Eclipse Public License 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0
+//
+// This Source Code may also be made available under the following
+// Secondary Licenses when the conditions for such availability set
+// forth in the Eclipse Public License, v. 2.0 are satisfied:
+// the Apache License v2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http.jmh;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.http.DateGenerator;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpGenerator;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.http.MimeTypes;
+import org.eclipse.jetty.http.PreEncodedHttpField;
+import org.eclipse.jetty.util.BufferUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Generates the header of responses with a typical set of fields,
+ * either {@link PreEncodedHttpField pre-encoded} or not.</p>
+ */
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class HttpGeneratorBenchmark
+{
+    @Param({"PREENCODED", "PLAIN"})
+    public String fields;
+
+    private HttpGenerator generator;
+    private MetaData.Response info;
+    private ByteBuffer header;
+    private ByteBuffer content;
+    private ByteBuffer chunk;
+
+    @Setup(Level.Trial)
+    public void setupTrial()
+    {
+        generator = new HttpGenerator();
+        HttpFields httpFields = new HttpFields();
+        if ("PREENCODED".equals(fields))
+        {
+            httpFields.put(new PreEncodedHttpField(HttpHeader.SERVER, "Jetty(10.0.0)"));
+            httpFields.put(new PreEncodedHttpField(HttpHeader.DATE, DateGenerator.__01Jan1970));
+            httpFields.put(MimeTypes.Type.TEXT_HTML_UTF_8.getContentTypeField());
+            httpFields.put(new PreEncodedHttpField(HttpHeader.CACHE_CONTROL, "no-cache"));
+            httpFields.put(new PreEncodedHttpField(HttpHeader.LAST_MODIFIED, DateGenerator.__01Jan1970));
+            httpFields.put(new PreEncodedHttpField(HttpHeader.ETAG, "W/\"1234567890\""));
+        }
+        else
+        {
+            httpFields.put(HttpHeader.SERVER, "Jetty(10.0.0)");
+            httpFields.put(HttpHeader.DATE, DateGenerator.__01Jan1970);
+            httpFields.put(HttpHeader.CONTENT_TYPE, "text/html;charset=utf-8");
+            httpFields.put(HttpHeader.CACHE_CONTROL, "no-cache");
+            httpFields.put(HttpHeader.LAST_MODIFIED, DateGenerator.__01Jan1970);
+            httpFields.put(HttpHeader.ETAG, "W/\"1234567890\"");
+        }
+        httpFields.put("X-Custom-Header", "some custom value");
+        info = new MetaData.Response(HttpVersion.HTTP_1_1, 200, null, httpFields, -1);
+        header = BufferUtil.allocate(8192);
+        chunk = BufferUtil.allocate(64);
+        content = BufferUtil.toBuffer("Hello, World!");
+    }
+
+    @Benchmark
+    public int testGenerateResponse() throws Exception
+    {
+        BufferUtil.clear(header);
+        BufferUtil.clear(chunk);
+        ByteBuffer body = content.slice();
+        int length = 0;
+        generator.reset();
+        while (true)
+        {
+            HttpGenerator.Result result = generator.generateResponse(info, false, header, chunk, body, true);
+            switch (result)
+            {
+                case FLUSH:
+                    length += header.remaining() + chunk.remaining() + body.remaining();
+                    BufferUtil.clear(header);
+                    BufferUtil.clear(chunk);
+                    BufferUtil.clear(body);
+                    break;
+                case CONTINUE:
+                    break;
+                case DONE:
+                    return length;
+                default:
+                    throw new IllegalStateException(result.toString());
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(HttpGeneratorBenchmark.class.getSimpleName())
+            .forks(1)
+            .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,208 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under
+// the terms of the Eclipse Public License 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0
+//
+// This Source Code may also be made available under the following
+// Secondary Licenses when the conditions for such availability set
+// forth in the Eclipse Public License, v. 2.0 are satisfied:
+// the Apache License v2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http.jmh;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpParser;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.util.BufferUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Parses browser-like requests and server-like responses.</p>
+ * <p>With {@code CACHED} fields, all the request header fields are found in
+ * {@link HttpParser#CACHE}, while with {@code UNCACHED} fields none of their
+ * values are, so that each field must be parsed and allocated.</p>
+ */
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class HttpParserBenchmark
+{
+    private static final String CACHED_REQUEST =
+        "GET /context/path/resource.html?query=value HTTP/1.1\r\n" +
+            "Host: www.example.com\r\n" +
+            "Connection: keep-alive\r\n" +
+            "Cache-Control: max-age=0\r\n" +
+            "Accept: text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8\r\n" +
+            "Accept-Encoding: gzip, deflate, br\r\n" +
+            "Accept-Language: en-US,en;q=0.5\r\n" +
+            "Pragma: no-cache\r\n" +
+            "\r\n";
+
+    private static final String UNCACHED_REQUEST =
+        "GET /context/path/resource.html?query=value HTTP/1.1\r\n" +
+            "Host: www.example.com\r\n" +
+            "Connection: keep-alive, TE\r\n" +
+            "Cache-Control: max-age=3600\r\n" +
+            "Accept: text/html,application/xhtml+xml;q=0.9,*/*;q=0.7\r\n" +
+            "Accept-Encoding: br;q=1.0, gzip;q=0.8\r\n" +
+            "Accept-Language: fr-CH, fr;q=0.9, en;q=0.8, de;q=0.7\r\n" +
+            "User-Agent: Mozilla/5.0 (X11; Linux x86_64; rv:78.0) Gecko/20100101 Firefox/78.0\r\n" +
+            "Cookie: JSESSIONID=node01abcdefghijklmnop0123456789.node0; theme=dark\r\n" +
+            "X-Request-Id: 6f1c2a9e-4b3d-4c8e-9f0a-1b2c3d4e5f60\r\n" +
+            "\r\n";
+
+    private static final String RESPONSE =
+        "HTTP/1.1 200 OK\r\n" +
+            "Date: Thu, 01 Jan 1970 00:00:00 GMT\r\n" +
+            "Server: Jetty(10.0.0)\r\n" +
+            "Content-Type: text/html;charset=utf-8\r\n" +
+            "Cache-Control: no-cache\r\n" +
+            "Last-Modified: Thu, 01 Jan 1970 00:00:00 GMT\r\n" +
+            "ETag: W/\"1234567890\"\r\n" +
+            "Content-Length: 13\r\n" +
+            "\r\n" +
+            "Hello, World!";
+
+    @Param({"CACHED", "UNCACHED"})
+    public String fields;
+
+    private ByteBuffer request;
+    private ByteBuffer response;
+    private Handler handler;
+    private HttpParser requestParser;
+    private HttpParser responseParser;
+
+    @Setup(Level.Trial)
+    public void setupTrial()
+    {
+        request = BufferUtil.toBuffer("CACHED".equals(fields) ? CACHED_REQUEST : UNCACHED_REQUEST);
+        response = BufferUtil.toBuffer(RESPONSE);
+        handler = new Handler();
+        requestParser = new HttpParser((HttpParser.RequestHandler)handler);
+        responseParser = new HttpParser((HttpParser.ResponseHandler)handler);
+    }
+
+    @Benchmark
+    public void testParseRequest(Blackhole blackhole)
+    {
+        handler.blackhole = blackhole;
+        parse(requestParser, request.slice());
+    }
+
+    @Benchmark
+    public void testParseRequestNewParser(Blackhole blackhole)
+    {
+        handler.blackhole = blackhole;
+        parse(new HttpParser((HttpParser.RequestHandler)handler), request.slice());
+    }
+
+    @Benchmark
+    public void testParseResponse(Blackhole blackhole)
+    {
+        handler.blackhole = blackhole;
+        parse(responseParser, response.slice());
+    }
+
+    private static void parse(HttpParser parser, ByteBuffer buffer)
+    {
+        while (buffer.hasRemaining() && !parser.isComplete())
+        {
+            parser.parseNext(buffer);
+        }
+        if (!parser.isComplete())
+            throw new IllegalStateException();
+        parser.reset();
+    }
+
+    private static class Handler implements HttpParser.RequestHandler, HttpParser.ResponseHandler
+    {
+        private Blackhole blackhole;
+
+        @Override
+        public void startRequest(String method, String uri, HttpVersion version)
+        {
+            blackhole.consume(uri);
+        }
+
+        @Override
+        public void startResponse(HttpVersion version, int status, String reason)
+        {
+            blackhole.consume(status);
+        }
+
+        @Override
+        public void parsedHeader(HttpField field)
+        {
+            blackhole.consume(field);
+        }
+
+        @Override
+        public boolean content(ByteBuffer item)
+        {
+            blackhole.consume(item);
+            return false;
+        }
+
+        @Override
+        public boolean headerComplete()
+        {
+            return false;
+        }
+
+        @Override
+        public boolean contentComplete()
+        {
+            return false;
+        }
+
+        @Override
+        public boolean messageComplete()
+        {
+            return true;
+        }
+
+        @Override
+        public void earlyEOF()
+        {
+            throw new IllegalStateException();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(HttpParserBenchmark.class.getSimpleName())
+            .forks(1)
+            .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,138 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under
+// the terms of the Eclipse Public License 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0
+//
+// This Source Code may also be made available under the following
+// Secondary Licenses when the conditions for such availability set
+// forth in the Eclipse Public License, v. 2.0 are satisfied:
+// the Apache License v2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http.pathmap.jmh;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.http.pathmap.MappedResource;
+import org.eclipse.jetty.http.pathmap.PathMappings;
+import org.eclipse.jetty.http.pathmap.RegexPathSpec;
+import org.eclipse.jetty.http.pathmap.ServletPathSpec;
+import org.eclipse.jetty.http.pathmap.UriTemplatePathSpec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Matches paths against a number of exact, prefix and suffix servlet
+ * path specs, optionally mixed with regex and URI template path specs.</p>
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PathMappingsBenchmark
+{
+    @Param({"10", "100", "500"})
+    public int specs;
+
+    @Param({"SERVLET", "MIXED"})
+    public String types;
+
+    private PathMappings<String> mappings;
+    private String[] paths;
+
+    @Setup(Level.Trial)
+    public void setupTrial()
+    {
+        mappings = new PathMappings<>();
+        mappings.put(new ServletPathSpec("/"), "default");
+        boolean mixed = "MIXED".equals(types);
+        for (int i = 0; i < specs; ++i)
+        {
+            switch (i % (mixed ? 5 : 3))
+            {
+                case 0:
+                    mappings.put(new ServletPathSpec("/exact/" + i), "exact" + i);
+                    break;
+                case 1:
+                    mappings.put(new ServletPathSpec("/prefix/" + i + "/*"), "prefix" + i);
+                    break;
+                case 2:
+                    mappings.put(new ServletPathSpec("*.ext" + i), "suffix" + i);
+                    break;
+                case 3:
+                    mappings.put(new RegexPathSpec("^/regex/" + i + "/[a-z]+$"), "regex" + i);
+                    break;
+                default:
+                    mappings.put(new UriTemplatePathSpec("/template/" + i + "/{id}"), "template" + i);
+                    break;
+            }
+        }
+
+        paths = new String[1024];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < paths.length; ++i)
+        {
+            int spec = random.nextInt(specs);
+            switch (random.nextInt(mixed ? 6 : 4))
+            {
+                case 0:
+                    paths[i] = "/exact/" + spec;
+                    break;
+                case 1:
+                    paths[i] = "/prefix/" + spec + "/some/resource";
+                    break;
+                case 2:
+                    paths[i] = "/some/resource.ext" + spec;
+                    break;
+                case 3:
+                    paths[i] = "/unmatched/" + spec;
+                    break;
+                case 4:
+                    paths[i] = "/regex/" + spec + "/resource";
+                    break;
+                default:
+                    paths[i] = "/template/" + spec + "/" + i;
+                    break;
+            }
+        }
+    }
+
+    @Benchmark
+    public MappedResource<String> testGetMatch()
+    {
+        String path = paths[ThreadLocalRandom.current().nextInt(paths.length)];
+        return mappings.getMatch(path);
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(PathMappingsBenchmark.class.getSimpleName())
+            .forks(1)
+            .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,137 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under
+// the terms of the Eclipse Public License 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0
+//
+// This Source Code may also be made available under the following
+// Secondary Licenses when the conditions for such availability set
+// forth in the Eclipse Public License, v. 2.0 are satisfied:
+// the Apache License v2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2.hpack.jmh;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.http.HostPortHttpField;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpScheme;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.http2.hpack.HpackDecoder;
+import org.eclipse.jetty.http2.hpack.HpackEncoder;
+import org.eclipse.jetty.util.BufferUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Encodes and decodes the headers of a browser-like request.</p>
+ * <p>With a {@code NEW} context, each operation uses a new encoder or
+ * decoder, as for the first request of a connection, so that the fields
+ * are encoded literally; with a {@code REUSED} context, the fields are
+ * already in the dynamic table, as for the following requests.</p>
+ */
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class HpackBenchmark
+{
+    @Param({"NEW", "REUSED"})
+    public String context;
+
+    private MetaData.Request request;
+    private ByteBuffer buffer;
+    private HpackEncoder encoder;
+    private HpackDecoder decoder;
+    private ByteBuffer literalBlock;
+    private ByteBuffer indexedBlock;
+
+    @Setup(Level.Trial)
+    public void setupTrial() throws Exception
+    {
+        HttpFields fields = new HttpFields();
+        fields.put(HttpHeader.ACCEPT, "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8");
+        fields.put(HttpHeader.ACCEPT_ENCODING, "gzip, deflate, br");
+        fields.put(HttpHeader.ACCEPT_LANGUAGE, "en-US,en;q=0.5");
+        fields.put(HttpHeader.CACHE_CONTROL, "max-age=0");
+        fields.put(HttpHeader.USER_AGENT, "Mozilla/5.0 (X11; Linux x86_64; rv:78.0) Gecko/20100101 Firefox/78.0");
+        fields.put(HttpHeader.COOKIE, "JSESSIONID=node01abcdefghijklmnop0123456789.node0; theme=dark");
+        fields.put("x-request-id", "6f1c2a9e-4b3d-4c8e-9f0a-1b2c3d4e5f60");
+        request = new MetaData.Request("GET", HttpScheme.HTTPS, new HostPortHttpField("www.example.com"), "/context/path/resource.html?query=value", HttpVersion.HTTP_2, fields);
+        buffer = BufferUtil.allocate(8192);
+
+        encoder = new HpackEncoder();
+        decoder = newDecoder();
+
+        // The first block adds the fields to the dynamic table,
+        // so the second block refers to them by index.
+        literalBlock = encode(encoder);
+        indexedBlock = encode(encoder);
+        decoder.decode(literalBlock.slice());
+    }
+
+    private ByteBuffer encode(HpackEncoder encoder) throws Exception
+    {
+        ByteBuffer block = BufferUtil.allocate(8192);
+        BufferUtil.clearToFill(block);
+        encoder.encode(block, request);
+        BufferUtil.flipToFlush(block, 0);
+        return block;
+    }
+
+    private static HpackDecoder newDecoder()
+    {
+        return new HpackDecoder(4096, 8192);
+    }
+
+    @Benchmark
+    public int testEncode() throws Exception
+    {
+        HpackEncoder encoder = "NEW".equals(context) ? new HpackEncoder() : this.encoder;
+        BufferUtil.clearToFill(buffer);
+        encoder.encode(buffer, request);
+        return buffer.position();
+    }
+
+    @Benchmark
+    public MetaData testDecode() throws Exception
+    {
+        if ("NEW".equals(context))
+            return newDecoder().decode(literalBlock.slice());
+        return decoder.decode(indexedBlock.slice());
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(HpackBenchmark.class.getSimpleName())
+            .forks(1)
+            .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,115 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under
+// the terms of the Eclipse Public License 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0
+//
+// This Source Code may also be made available under the following
+// Secondary Licenses when the conditions for such availability set
+// forth in the Eclipse Public License, v. 2.0 are satisfied:
+// the Apache License v2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.io.jmh;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.io.ArrayByteBufferPool;
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.io.MappedByteBufferPool;
+import org.eclipse.jetty.io.StripedByteBufferPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Acquires and releases ByteBuffers of typical sizes from a pool
+ * shared by several threads.</p>
+ */
+@State(Scope.Benchmark)
+@Threads(8)
+@Warmup(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ByteBufferPoolBenchmark
+{
+    private static final int[] SIZES = {1024, 4096, 8192, 16384, 32768};
+
+    @Param({"ARRAY", "MAPPED", "STRIPED"})
+    public String poolType;
+
+    private ByteBufferPool pool;
+
+    @Setup(Level.Trial)
+    public void setupTrial()
+    {
+        switch (poolType)
+        {
+            case "ARRAY":
+                pool = new ArrayByteBufferPool();
+                break;
+            case "MAPPED":
+                pool = new MappedByteBufferPool();
+                break;
+            case "STRIPED":
+                pool = new StripedByteBufferPool();
+                break;
+            default:
+                throw new IllegalStateException("Unknown poolType Parameter");
+        }
+    }
+
+    @Benchmark
+    public int testAcquireRelease()
+    {
+        int size = SIZES[ThreadLocalRandom.current().nextInt(SIZES.length)];
+        ByteBuffer buffer = pool.acquire(size, true);
+        int capacity = buffer.capacity();
+        pool.release(buffer);
+        return capacity;
+    }
+
+    @Benchmark
+    public int testAcquireAcquireReleaseRelease()
+    {
+        // Holds two buffers at once, as when reading and writing at the same time.
+        ByteBuffer input = pool.acquire(SIZES[1], true);
+        ByteBuffer output = pool.acquire(SIZES[3], true);
+        int capacity = input.capacity() + output.capacity();
+        pool.release(input);
+        pool.release(output);
+        return capacity;
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(ByteBufferPoolBenchmark.class.getSimpleName())
+            .forks(1)
+            .build();
+
+        new Runner(opt).run();
+    }
+}
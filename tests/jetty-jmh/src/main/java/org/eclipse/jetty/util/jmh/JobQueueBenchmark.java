@@ -0,0 +1,118 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under
+// the terms of the Eclipse Public License 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0
+//
+// This Source Code may also be made available under the following
+// Secondary Licenses when the conditions for such availability set
+// forth in the Eclipse Public License, v. 2.0 are satisfied:
+// the Apache License v2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.util.jmh;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.util.BlockingArrayQueue;
+import org.eclipse.jetty.util.ConcurrentBlockingQueue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the job queues of the QueuedThreadPool under the executor pattern,
+ * where several threads offer jobs and several worker threads take them.
+ */
+@State(Scope.Group)
+@Warmup(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JobQueueBenchmark
+{
+    private static final Runnable JOB = () ->
+    {
+    };
+
+    public enum Type
+    {
+        BLOCKING_ARRAY, CONCURRENT_BOUNDED, CONCURRENT_UNBOUNDED
+    }
+
+    @Param({"BLOCKING_ARRAY", "CONCURRENT_BOUNDED", "CONCURRENT_UNBOUNDED"})
+    Type type;
+
+    BlockingQueue<Runnable> queue;
+
+    @Setup
+    public void setUp()
+    {
+        switch (type)
+        {
+            case BLOCKING_ARRAY:
+                queue = new BlockingArrayQueue<>(32768, 32768);
+                break;
+            case CONCURRENT_BOUNDED:
+                queue = ConcurrentBlockingQueue.newInstance(32768);
+                break;
+            case CONCURRENT_UNBOUNDED:
+                queue = ConcurrentBlockingQueue.newInstance(0);
+                break;
+            default:
+                throw new IllegalStateException();
+        }
+    }
+
+    @Benchmark
+    @Group("offerPoll")
+    @GroupThreads(4)
+    public boolean offer()
+    {
+        // Apply back pressure, so that the offers are measured at the rate of the polls.
+        while (queue.size() >= 1024)
+        {
+            Thread.yield();
+        }
+        return queue.offer(JOB);
+    }
+
+    @Benchmark
+    @Group("offerPoll")
+    @GroupThreads(4)
+    public void poll(Blackhole blackhole) throws InterruptedException
+    {
+        blackhole.consume(queue.poll(1, TimeUnit.MILLISECONDS));
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(JobQueueBenchmark.class.getSimpleName())
+            .forks(1)
+            .build();
+
+        new Runner(opt).run();
+    }
+}
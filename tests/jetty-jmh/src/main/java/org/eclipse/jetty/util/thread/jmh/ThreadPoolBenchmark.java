@@ -24,6 +24,7 @@ import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
 import org.eclipse.jetty.util.BlockingArrayQueue;
+import org.eclipse.jetty.util.ConcurrentBlockingQueue;
 import org.eclipse.jetty.util.component.LifeCycle;
 import org.eclipse.jetty.util.thread.ExecutorThreadPool;
 import org.eclipse.jetty.util.thread.QueuedThreadPool;
@@ -51,10 +52,10 @@ public class ThreadPoolBenchmark
 {
     public enum Type
     {
-        QTP, ETP, LQTP, LETP, AQTP, AETP;
+        QTP, ETP, LQTP, LETP, AQTP, AETP, CQTP;
     }
 
-    @Param({"QTP", "ETP" /*, "LQTP", "LETP", "AQTP", "AETP" */})
+    @Param({"QTP", "ETP", "CQTP" /*, "LQTP", "LETP", "AQTP", "AETP" */})
     Type type;
 
     @Param({"200"})
@@ -103,6 +104,14 @@ public class ThreadPoolBenchmark
                 pool = new ExecutorThreadPool(size, size, new ArrayBlockingQueue<>(32768));
                 break;
 
+            case CQTP:
+            {
+                QueuedThreadPool qtp = new QueuedThreadPool(size, size, ConcurrentBlockingQueue.newInstance(32768));
+                qtp.setReservedThreads(0);
+                pool = qtp;
+                break;
+            }
+
             default:
                 throw new IllegalStateException();
         }
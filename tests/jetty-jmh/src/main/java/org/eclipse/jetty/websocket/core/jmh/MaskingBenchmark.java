@@ -0,0 +1,128 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under
+// the terms of the Eclipse Public License 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0
+//
+// This Source Code may also be made available under the following
+// Secondary Licenses when the conditions for such availability set
+// forth in the Eclipse Public License, v. 2.0 are satisfied:
+// the Apache License v2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.websocket.core.jmh;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.websocket.core.internal.MaskUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+@State(Scope.Thread)
+@Warmup(iterations = 7, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 7, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+public class MaskingBenchmark
+{
+    @Param({"16", "1024", "65536"})
+    int size;
+
+    @Param({"HEAP", "DIRECT"})
+    String type;
+
+    private final byte[] mask = new byte[4];
+    private ByteBuffer payload;
+    private ByteBuffer output;
+
+    @Setup
+    public void setUp()
+    {
+        ThreadLocalRandom.current().nextBytes(mask);
+        byte[] bytes = new byte[size];
+        ThreadLocalRandom.current().nextBytes(bytes);
+        boolean direct = "DIRECT".equals(type);
+        payload = direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+        payload.put(bytes).flip();
+        output = direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public ByteBuffer testIntMaskInPlace()
+    {
+        int maskInt = 0;
+        for (byte maskByte : mask)
+        {
+            maskInt = (maskInt << 8) + (maskByte & 0xFF);
+        }
+
+        int start = payload.position();
+        int end = payload.limit();
+        int offset = 0;
+        int remaining;
+        while ((remaining = end - start) > 0)
+        {
+            if (remaining >= 4)
+            {
+                payload.putInt(start, payload.getInt(start) ^ maskInt);
+                start += 4;
+                offset += 4;
+            }
+            else
+            {
+                payload.put(start, (byte)(payload.get(start) ^ mask[offset & 3]));
+                ++start;
+                ++offset;
+            }
+        }
+        return payload;
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public ByteBuffer testLongMaskInPlace()
+    {
+        MaskUtil.mask(mask, payload);
+        return payload;
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public ByteBuffer testLongMaskCopy()
+    {
+        output.clear();
+        MaskUtil.mask(mask, payload, output);
+        return output;
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(MaskingBenchmark.class.getSimpleName())
+            .warmupIterations(10)
+            .measurementIterations(10)
+            .forks(1)
+            .threads(1)
+            .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,122 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2020 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under
+// the terms of the Eclipse Public License 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0
+//
+// This Source Code may also be made available under the following
+// Secondary Licenses when the conditions for such availability set
+// forth in the Eclipse Public License, v. 2.0 are satisfied:
+// the Apache License v2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.websocket.core.jmh;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.util.Utf8StringBuilder;
+import org.eclipse.jetty.websocket.core.internal.NullAppendable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+@State(Scope.Thread)
+@Warmup(iterations = 7, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 7, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+public class Utf8ValidationBenchmark
+{
+    @Param({"1024", "65536"})
+    int size;
+
+    @Param({"ASCII", "MIXED"})
+    String content;
+
+    private ByteBuffer payload;
+    private final NullAppendable validator = new NullAppendable();
+    private final Utf8StringBuilder builder = new Utf8StringBuilder();
+
+    @Setup
+    public void setUp()
+    {
+        String chunk = "ASCII".equals(content) ? "The quick brown fox jumps over the lazy dog. " : "Café über naïve résumé ჻. ";
+        StringBuilder text = new StringBuilder();
+        while (text.length() < size)
+        {
+            text.append(chunk);
+        }
+        payload = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public NullAppendable testValidateByteByByte()
+    {
+        for (int i = payload.position(); i < payload.limit(); i++)
+        {
+            validator.append(payload.get(i));
+        }
+        validator.checkState();
+        return validator;
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public NullAppendable testValidateBuffer()
+    {
+        validator.append(payload.slice());
+        validator.checkState();
+        return validator;
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public String testDecodeByteByByte()
+    {
+        builder.reset();
+        for (int i = payload.position(); i < payload.limit(); i++)
+        {
+            builder.append(payload.get(i));
+        }
+        return builder.toString();
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public String testDecodeBuffer()
+    {
+        builder.reset();
+        builder.append(payload.slice());
+        return builder.toString();
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(Utf8ValidationBenchmark.class.getSimpleName())
+            .warmupIterations(10)
+            .measurementIterations(10)
+            .forks(1)
+            .threads(1)
+            .build();
+
+        new Runner(opt).run();
+    }
+}